@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+/**
+ * Base class for the elements handed out by {@link CancellableGraph}.
+ */
+public abstract class CancellableElement implements Element {
+
+  protected final Element baseElement;
+
+  protected final CancellableGraph graph;
+
+  protected CancellableElement( Element baseElement, CancellableGraph graph ) {
+    this.baseElement = baseElement;
+    this.graph = graph;
+  }
+
+  public <T> T getProperty( String key ) {
+    graph.getCancellation().check();
+    return baseElement.getProperty( key );
+  }
+
+  public Set<String> getPropertyKeys() {
+    graph.getCancellation().check();
+    return baseElement.getPropertyKeys();
+  }
+
+  public void setProperty( String key, Object value ) {
+    graph.getCancellation().check();
+    baseElement.setProperty( key, value );
+  }
+
+  public <T> T removeProperty( String key ) {
+    graph.getCancellation().check();
+    return baseElement.removeProperty( key );
+  }
+
+  public void remove() {
+    graph.getCancellation().check();
+    baseElement.remove();
+  }
+
+  public Object getId() {
+    return baseElement.getId();
+  }
+
+  public boolean equals( Object object ) {
+    return ElementHelper.areEqual( this, object );
+  }
+
+  public int hashCode() {
+    return baseElement.hashCode();
+  }
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.IndexableGraph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+import com.tinkerpop.blueprints.util.wrappers.WrapperGraph;
+
+/**
+ * A Graph wrapper that checks a {@link GremlinScriptCancellation} on every call and on every element returned by its
+ * iterables, so that long traversals can be stopped between two elements.
+ * <p>
+ * Use {@link #cancellableGraph(Graph, GremlinScriptCancellation)} to get a wrapper that also implements the
+ * transactional and index interfaces of the base graph, so that scripts can still commit or use indices and the
+ * features the wrapper reports hold for the wrapper itself.
+ */
+public class CancellableGraph implements Graph, WrapperGraph<Graph> {
+
+  private final Graph baseGraph;
+
+  private final GremlinScriptCancellation cancellation;
+
+  public CancellableGraph( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+    this.baseGraph = baseGraph;
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * @return a wrapper implementing {@link TransactionalGraph}, {@link KeyIndexableGraph} and {@link IndexableGraph} if
+   *         and only if the base graph does
+   */
+  public static CancellableGraph cancellableGraph( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+    boolean keyIndexable = baseGraph instanceof KeyIndexableGraph;
+    boolean indexable = baseGraph instanceof IndexableGraph;
+    if ( baseGraph instanceof TransactionalGraph ) {
+      if ( keyIndexable ) {
+        return indexable ? new TransactionalKeyIndexableIndexable( baseGraph, cancellation )
+            : new TransactionalKeyIndexable( baseGraph, cancellation );
+      }
+      return indexable ? new TransactionalIndexable( baseGraph, cancellation ) : new Transactional( baseGraph,
+          cancellation );
+    }
+    if ( keyIndexable ) {
+      return indexable ? new KeyIndexableIndexable( baseGraph, cancellation ) : new KeyIndexable( baseGraph,
+          cancellation );
+    }
+    return indexable ? new Indexable( baseGraph, cancellation ) : new CancellableGraph( baseGraph, cancellation );
+  }
+
+  public Graph getBaseGraph() {
+    return baseGraph;
+  }
+
+  GremlinScriptCancellation getCancellation() {
+    return cancellation;
+  }
+
+  public Features getFeatures() {
+    Features features = baseGraph.getFeatures().copyFeatures();
+    features.isWrapper = true;
+    return features;
+  }
+
+  public Vertex addVertex( Object id ) {
+    cancellation.check();
+    return wrap( baseGraph.addVertex( id ) );
+  }
+
+  public Vertex getVertex( Object id ) {
+    cancellation.check();
+    return wrap( baseGraph.getVertex( id ) );
+  }
+
+  public void removeVertex( Vertex vertex ) {
+    cancellation.check();
+    baseGraph.removeVertex( unwrap( vertex ) );
+  }
+
+  public Iterable<Vertex> getVertices() {
+    cancellation.check();
+    return vertices( baseGraph.getVertices() );
+  }
+
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    cancellation.check();
+    return vertices( baseGraph.getVertices( key, value ) );
+  }
+
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    cancellation.check();
+    return wrap( baseGraph.addEdge( id, unwrap( outVertex ), unwrap( inVertex ), label ) );
+  }
+
+  public Edge getEdge( Object id ) {
+    cancellation.check();
+    return wrap( baseGraph.getEdge( id ) );
+  }
+
+  public void removeEdge( Edge edge ) {
+    cancellation.check();
+    baseGraph.removeEdge( unwrap( edge ) );
+  }
+
+  public Iterable<Edge> getEdges() {
+    cancellation.check();
+    return edges( baseGraph.getEdges() );
+  }
+
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    cancellation.check();
+    return edges( baseGraph.getEdges( key, value ) );
+  }
+
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  // TransactionalGraph, implemented by the subclasses returned for a transactional base graph
+
+  public void stopTransaction( TransactionalGraph.Conclusion conclusion ) {
+    if ( conclusion == TransactionalGraph.Conclusion.SUCCESS ) {
+      commit();
+    } else {
+      rollback();
+    }
+  }
+
+  public void commit() {
+    cancellation.check();
+    transactionalGraph().commit();
+  }
+
+  /**
+   * Not checked: a script that was cancelled must still be able to roll back.
+   */
+  public void rollback() {
+    transactionalGraph().rollback();
+  }
+
+  // KeyIndexableGraph, implemented by the subclasses returned for a key indexable base graph
+
+  public <T extends Element> void createKeyIndex( String key, Class<T> elementClass, Parameter... indexParameters ) {
+    cancellation.check();
+    keyIndexableGraph().createKeyIndex( key, elementClass, indexParameters );
+  }
+
+  public <T extends Element> void dropKeyIndex( String key, Class<T> elementClass ) {
+    cancellation.check();
+    keyIndexableGraph().dropKeyIndex( key, elementClass );
+  }
+
+  public <T extends Element> Set<String> getIndexedKeys( Class<T> elementClass ) {
+    cancellation.check();
+    return keyIndexableGraph().getIndexedKeys( elementClass );
+  }
+
+  // IndexableGraph, implemented by the subclasses returned for an indexable base graph
+
+  public <T extends Element> Index<T> createIndex( String indexName, Class<T> indexClass,
+      Parameter... indexParameters ) {
+    cancellation.check();
+    return wrap( indexableGraph().createIndex( indexName, indexClass, indexParameters ) );
+  }
+
+  public <T extends Element> Index<T> getIndex( String indexName, Class<T> indexClass ) {
+    cancellation.check();
+    return wrap( indexableGraph().getIndex( indexName, indexClass ) );
+  }
+
+  public Iterable<Index<? extends Element>> getIndices() {
+    cancellation.check();
+    List<Index<? extends Element>> indices = new ArrayList<Index<? extends Element>>();
+    for ( Index<? extends Element> index : indexableGraph().getIndices() ) {
+      indices.add( wrap( index ) );
+    }
+    return indices;
+  }
+
+  public void dropIndex( String indexName ) {
+    cancellation.check();
+    indexableGraph().dropIndex( indexName );
+  }
+
+  /**
+   * Not forwarded: the lifecycle of the wrapped graph belongs to the step, not to the script.
+   */
+  public void shutdown() {
+  }
+
+  public String toString() {
+    return StringFactory.graphString( this, baseGraph.toString() );
+  }
+
+  private TransactionalGraph transactionalGraph() {
+    if ( !( baseGraph instanceof TransactionalGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support transactions: " + baseGraph );
+    }
+    return (TransactionalGraph) baseGraph;
+  }
+
+  private KeyIndexableGraph keyIndexableGraph() {
+    if ( !( baseGraph instanceof KeyIndexableGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support key indices: " + baseGraph );
+    }
+    return (KeyIndexableGraph) baseGraph;
+  }
+
+  private IndexableGraph indexableGraph() {
+    if ( !( baseGraph instanceof IndexableGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support indices: " + baseGraph );
+    }
+    return (IndexableGraph) baseGraph;
+  }
+
+  Vertex wrap( Vertex vertex ) {
+    return vertex == null ? null : new CancellableVertex( vertex, this );
+  }
+
+  Edge wrap( Edge edge ) {
+    return edge == null ? null : new CancellableEdge( edge, this );
+  }
+
+  <T extends Element> Index<T> wrap( Index<T> index ) {
+    return index == null ? null : new CancellableIndex<T>( index, this );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  <T extends Element> T wrapElement( T element ) {
+    if ( element instanceof Vertex ) {
+      return (T) wrap( (Vertex) element );
+    } else if ( element instanceof Edge ) {
+      return (T) wrap( (Edge) element );
+    }
+    return element;
+  }
+
+  static Vertex unwrap( Vertex vertex ) {
+    return vertex instanceof CancellableVertex ? ( (CancellableVertex) vertex ).getBaseVertex() : vertex;
+  }
+
+  static Edge unwrap( Edge edge ) {
+    return edge instanceof CancellableEdge ? ( (CancellableEdge) edge ).getBaseEdge() : edge;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  static <T extends Element> T unwrapElement( T element ) {
+    if ( element instanceof CancellableElement ) {
+      return (T) ( (CancellableElement) element ).baseElement;
+    }
+    return element;
+  }
+
+  Iterable<Vertex> vertices( Iterable<Vertex> base ) {
+    return new CheckedIterable<Vertex>( base ) {
+      Vertex wrapNext( Vertex vertex ) {
+        return wrap( vertex );
+      }
+    };
+  }
+
+  Iterable<Edge> edges( Iterable<Edge> base ) {
+    return new CheckedIterable<Edge>( base ) {
+      Edge wrapNext( Edge edge ) {
+        return wrap( edge );
+      }
+    };
+  }
+
+  <T extends Element> CloseableIterable<T> elements( Iterable<T> base ) {
+    return new CheckedIterable<T>( base ) {
+      T wrapNext( T element ) {
+        return wrapElement( element );
+      }
+    };
+  }
+
+  /**
+   * Checks the cancellation before every step of the iteration of a base graph iterable.
+   */
+  private abstract class CheckedIterable<T> implements CloseableIterable<T> {
+
+    private final Iterable<T> base;
+
+    CheckedIterable( Iterable<T> base ) {
+      this.base = base;
+    }
+
+    abstract T wrapNext( T element );
+
+    public Iterator<T> iterator() {
+      final Iterator<T> it = base.iterator();
+      return new Iterator<T>() {
+        public boolean hasNext() {
+          cancellation.check();
+          return it.hasNext();
+        }
+
+        public T next() {
+          cancellation.check();
+          return wrapNext( it.next() );
+        }
+
+        public void remove() {
+          it.remove();
+        }
+      };
+    }
+
+    public void close() {
+      if ( base instanceof CloseableIterable ) {
+        ( (CloseableIterable<T>) base ).close();
+      }
+    }
+  }
+
+  static class Transactional extends CancellableGraph implements TransactionalGraph {
+    Transactional( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class KeyIndexable extends CancellableGraph implements KeyIndexableGraph {
+    KeyIndexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class Indexable extends CancellableGraph implements IndexableGraph {
+    Indexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class KeyIndexableIndexable extends CancellableGraph implements KeyIndexableGraph, IndexableGraph {
+    KeyIndexableIndexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class TransactionalKeyIndexable extends CancellableGraph implements TransactionalGraph, KeyIndexableGraph {
+    TransactionalKeyIndexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class TransactionalIndexable extends CancellableGraph implements TransactionalGraph, IndexableGraph {
+    TransactionalIndexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+
+  static class TransactionalKeyIndexableIndexable extends CancellableGraph implements TransactionalGraph,
+      KeyIndexableGraph, IndexableGraph {
+    TransactionalKeyIndexableIndexable( Graph baseGraph, GremlinScriptCancellation cancellation ) {
+      super( baseGraph, cancellation );
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * An index of a {@link CancellableGraph}, checking the cancellation like the graph itself.
+ */
+public class CancellableIndex<T extends Element> implements Index<T> {
+
+  private final Index<T> baseIndex;
+
+  private final CancellableGraph graph;
+
+  public CancellableIndex( Index<T> baseIndex, CancellableGraph graph ) {
+    this.baseIndex = baseIndex;
+    this.graph = graph;
+  }
+
+  public Index<T> getBaseIndex() {
+    return baseIndex;
+  }
+
+  public String getIndexName() {
+    return baseIndex.getIndexName();
+  }
+
+  public Class<T> getIndexClass() {
+    return baseIndex.getIndexClass();
+  }
+
+  public void put( String key, Object value, T element ) {
+    graph.getCancellation().check();
+    baseIndex.put( key, value, CancellableGraph.unwrapElement( element ) );
+  }
+
+  public CloseableIterable<T> get( String key, Object value ) {
+    graph.getCancellation().check();
+    return graph.elements( baseIndex.get( key, value ) );
+  }
+
+  public CloseableIterable<T> query( String key, Object query ) {
+    graph.getCancellation().check();
+    return graph.elements( baseIndex.query( key, query ) );
+  }
+
+  public long count( String key, Object value ) {
+    graph.getCancellation().check();
+    return baseIndex.count( key, value );
+  }
+
+  public void remove( String key, Object value, T element ) {
+    graph.getCancellation().check();
+    baseIndex.remove( key, value, CancellableGraph.unwrapElement( element ) );
+  }
+
+  public String toString() {
+    return StringFactory.indexString( this );
+  }
+}
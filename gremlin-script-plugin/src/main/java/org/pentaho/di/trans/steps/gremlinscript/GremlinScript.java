@@ -23,12 +23,17 @@
 package org.pentaho.di.trans.steps.gremlinscript;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.script.Compilable;
 import javax.script.CompiledScript;
-import javax.script.ScriptContext;
 import javax.script.ScriptException;
 
 import org.pentaho.di.compatibility.Value;
@@ -36,6 +41,7 @@ import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.graph.SpillGraph;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
@@ -50,9 +56,13 @@ import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphFactory;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import com.tinkerpop.blueprints.util.io.graphson.GraphSONReader;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
 
 /**
  * Executes a Gremlin script on the values in the input stream. Selected calculated values can then be put on the output
@@ -93,6 +103,21 @@ public class GremlinScript extends BaseStep implements StepInterface {
 
   private Graph baseGraph;
 
+  /** true if baseGraph was obtained from the GremlinScriptGraphRegistry */
+  private boolean sharedBaseGraph;
+
+  private GremlinScriptEnginePool enginePool;
+
+  private final GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+
+  /** Per-row evaluation budget in milliseconds, 0 for none */
+  private long evalTimeout;
+
+  private GremlinScriptMetrics metrics;
+
+  /** true if metrics are logged periodically (and at the end) at the basic log level */
+  private boolean logMetrics;
+
   public GremlinScript( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
       Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
@@ -170,8 +195,9 @@ public class GremlinScript extends BaseStep implements StepInterface {
         }
       }
 
-      data.cx = GremlinScriptUtils.createNewScriptEngine( meta.getEngineName() );
-      data.scope = data.cx.getBindings( ScriptContext.ENGINE_SCOPE );
+      // The engine may be shared with other copies over its lifetime, so keep all state in bindings of our own
+      //
+      data.scope = data.cx.createBindings();
 
       bFirstRun = true;
 
@@ -210,8 +236,8 @@ public class GremlinScript extends BaseStep implements StepInterface {
         //
         data.scope.put( "rowMeta", rowMeta );
 
-        // add the base graph
-        data.scope.put( "g", baseGraph );
+        // add the base graph, wrapped so that traversals over it can be timed out or cancelled
+        data.scope.put( "g", CancellableGraph.cancellableGraph( baseGraph, cancellation ) );
 
         // Modification for Additional GremlinScript parsing
         //
@@ -242,8 +268,15 @@ public class GremlinScript extends BaseStep implements StepInterface {
         try {
           // Checking for StartScript
           if ( strStartScript != null && strStartScript.length() > 0 ) {
+            long compileStart = System.nanoTime();
             CompiledScript startScript = ( (Compilable) data.cx ).compile( strStartScript );
-            startScript.eval( data.scope );
+            metrics.record( GremlinScriptMetrics.COMPILE, compileStart );
+            cancellation.start( 0L );
+            try {
+              startScript.eval( data.scope );
+            } finally {
+              cancellation.finish();
+            }
             if ( log.isDetailed() )
               logDetailed( ( "Start script found!" ) );
           } else {
@@ -262,7 +295,9 @@ public class GremlinScript extends BaseStep implements StepInterface {
         // languages, see how we were doing before:
         // http://github.com/rvalyi/jripple/blob/e6190fd89014a49b0faffae68c75762be124d899/src/org/pentaho/di/trans/steps/scriptvalues_mod/ScriptValuesMod.java
 
+        long compileStart = System.nanoTime();
         data.script = ( (Compilable) data.cx ).compile( strTransformScript );
+        metrics.record( GremlinScriptMetrics.COMPILE, compileStart );
       } catch ( Exception e ) {
         throw new KettleValueException( BaseMessages.getString( PKG, "GremlinScript.Log.CouldNotCompileJavascript" ), e );
       }
@@ -276,6 +311,7 @@ public class GremlinScript extends BaseStep implements StepInterface {
     int outputIndex = rowMeta.size();
 
     try {
+      long bindStart = System.nanoTime();
       try {
         data.scope.put( "row", row );
 
@@ -294,7 +330,7 @@ public class GremlinScript extends BaseStep implements StepInterface {
             ByteArrayInputStream bais =
                 new ByteArrayInputStream( valueMeta.getString( normalStorageValueData ).getBytes() );
             GraphSONReader.inputGraph( graph, bais );
-            normalStorageValueData = graph;
+            normalStorageValueData = CancellableGraph.cancellableGraph( graph, cancellation );
           }
           data.scope.put( valueMeta.getName(), normalStorageValueData );
         }
@@ -305,8 +341,11 @@ public class GremlinScript extends BaseStep implements StepInterface {
       } catch ( Exception e ) {
         throw new KettleValueException( BaseMessages.getString( PKG, "GremlinScript.Log.UnexpectedeError" ), e );
       }
+      metrics.record( GremlinScriptMetrics.BIND, bindStart );
 
-      data.script.eval( data.scope );
+      long evalStart = System.nanoTime();
+      Object scriptValue = evalScript();
+      metrics.record( GremlinScriptMetrics.EVAL, evalStart );
 
       if ( bFirstRun ) {
         bFirstRun = false;
@@ -329,8 +368,12 @@ public class GremlinScript extends BaseStep implements StepInterface {
         iTranStat = CONTINUE_TRANSFORMATION;
       }
 
-      if ( iTranStat == CONTINUE_TRANSFORMATION ) {
+      if ( iTranStat == CONTINUE_TRANSFORMATION && meta.isOutputPerElement() ) {
+        bRC = true;
+        putResultElements( rowMeta, row, scriptValue );
+      } else if ( iTranStat == CONTINUE_TRANSFORMATION ) {
         bRC = true;
+        long convertStart = System.nanoTime();
         for ( int i = 0; i < meta.getFieldname().length; i++ ) {
           Object result = data.scope.get( meta.getFieldname()[i] );
           Object valueData = getValueFromJScript( result, i );
@@ -340,8 +383,12 @@ public class GremlinScript extends BaseStep implements StepInterface {
             outputRow[data.replaceIndex[i]] = valueData;
           }
         }
+        metrics.record( GremlinScriptMetrics.CONVERT, convertStart );
 
+        // This includes the time spent waiting for room in the output row sets
+        long putStart = System.nanoTime();
         putRow( data.outputRowMeta, outputRow );
+        metrics.record( GremlinScriptMetrics.PUT_ROW, putStart );
       } else {
         switch ( iTranStat ) {
           case SKIP_TRANSFORMATION:
@@ -376,6 +423,137 @@ public class GremlinScript extends BaseStep implements StepInterface {
     return bRC;
   }
 
+  /**
+   * Evaluates the transform script for the current row within the configured time budget. A row whose evaluation was
+   * cut short fails with a KettleValueException, so that it can be sent to the error hop.
+   * 
+   * @return the value of the script, i.e. of its last statement
+   */
+  private Object evalScript() throws ScriptException, KettleValueException {
+    Object result = null;
+    cancellation.start( evalTimeout );
+    try {
+      result = data.script.eval( data.scope );
+    } catch ( ScriptException e ) {
+      if ( !cancellation.isTripped() ) {
+        throw e;
+      }
+    } catch ( GremlinScriptCancellation.CancelledException e ) {
+      // reported below
+    } finally {
+      cancellation.finish();
+    }
+    checkCancellation();
+    return result;
+  }
+
+  /**
+   * Reports a tripped cancellation as a row error. This also catches scripts that swallowed the cancellation
+   * exception themselves.
+   */
+  private void checkCancellation() throws KettleValueException {
+    if ( cancellation.isTripped() ) {
+      if ( cancellation.isCancelled() ) {
+        throw new KettleValueException( BaseMessages.getString( PKG, "GremlinScript.Log.EvaluationCancelled" ) );
+      }
+      throw new KettleValueException( BaseMessages.getString( PKG, "GremlinScript.Log.EvaluationTimedOut", String
+          .valueOf( evalTimeout ) ) );
+    }
+  }
+
+  /**
+   * Emits one output row per element of the script's result (an Iterator such as a Gremlin pipeline, an Iterable, an
+   * array or a single object). Elements are pulled one at a time, right before their row is passed on, so a traversal
+   * only runs as fast as the next steps consume its rows and is never collected in memory. Pulling each element gets
+   * its own evaluation time budget; rows already emitted for an input row are not taken back if a later element fails.
+   */
+  private void putResultElements( RowMetaInterface rowMeta, Object[] row, Object result ) throws KettleException {
+    Iterator<?> elements = asIterator( result );
+    while ( !isStopped() ) {
+      long evalStart = System.nanoTime();
+      Object element = null;
+      boolean hasNext = false;
+      cancellation.start( evalTimeout );
+      try {
+        hasNext = elements.hasNext();
+        if ( hasNext ) {
+          element = elements.next();
+        }
+      } catch ( GremlinScriptCancellation.CancelledException e ) {
+        // reported below
+      } catch ( RuntimeException e ) {
+        throw new KettleValueException( BaseMessages.getString( PKG, "GremlinScript.Log.JavascriptError" ), e );
+      } finally {
+        cancellation.finish();
+      }
+      checkCancellation();
+      if ( !hasNext ) {
+        break;
+      }
+      metrics.record( GremlinScriptMetrics.EVAL, evalStart );
+
+      // Every element needs its own row: the input row may have room for the new fields and be passed on as is
+      long convertStart = System.nanoTime();
+      Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+      int outputIndex = rowMeta.size();
+      for ( int i = 0; i < meta.getFieldname().length; i++ ) {
+        Object valueData = getValueFromJScript( getElementValue( element, i ), i );
+        if ( data.replaceIndex[i] < 0 ) {
+          outputRow[outputIndex++] = valueData;
+        } else {
+          outputRow[data.replaceIndex[i]] = valueData;
+        }
+      }
+      metrics.record( GremlinScriptMetrics.CONVERT, convertStart );
+
+      long putStart = System.nanoTime();
+      putRow( data.outputRowMeta, outputRow );
+      metrics.record( GremlinScriptMetrics.PUT_ROW, putStart );
+    }
+  }
+
+  private static Iterator<?> asIterator( Object result ) {
+    if ( result == null ) {
+      return Collections.emptyList().iterator();
+    } else if ( result instanceof Iterator ) {
+      return (Iterator<?>) result;
+    } else if ( result instanceof Iterable ) {
+      return ( (Iterable<?>) result ).iterator();
+    } else if ( result instanceof Object[] ) {
+      return Arrays.asList( (Object[]) result ).iterator();
+    }
+    return Collections.singletonList( result ).iterator();
+  }
+
+  /**
+   * Looks up output field i in a result element: a map entry by field name, a graph element's property (or _id and
+   * _label, as in GraphSON), or the element itself for the first field of scalar results. Anything not found in the
+   * element is read from the script scope, as in one-row-per-input mode.
+   */
+  private Object getElementValue( Object element, int i ) {
+    String name = meta.getFieldname()[i];
+    if ( element instanceof Map ) {
+      Map<?, ?> map = (Map<?, ?>) element;
+      if ( map.containsKey( name ) ) {
+        return map.get( name );
+      }
+    } else if ( element instanceof Element ) {
+      Element graphElement = (Element) element;
+      if ( GraphSONTokens._ID.equals( name ) ) {
+        return graphElement.getId();
+      } else if ( GraphSONTokens._LABEL.equals( name ) && element instanceof Edge ) {
+        return ( (Edge) element ).getLabel();
+      }
+      Object value = graphElement.getProperty( name );
+      if ( value != null ) {
+        return value;
+      }
+    } else if ( i == 0 ) {
+      return element;
+    }
+    return data.scope.get( name );
+  }
+
   public Object getValueFromJScript( Object result, int i ) throws KettleValueException {
     if ( meta.getFieldname()[i] != null && meta.getFieldname()[i].length() > 0 ) {
       // res.setName(meta.getRename()[i]);
@@ -569,6 +747,43 @@ public class GremlinScript extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Logs one line per phase that has samples: at the basic level when a metrics interval is configured, otherwise
+   * only when logging is detailed.
+   */
+  private void logMetrics( String header ) {
+    if ( !logMetrics && !log.isDetailed() ) {
+      return;
+    }
+    StringBuilder message = new StringBuilder( header );
+    for ( int phase = 0; phase < metrics.getNrPhases(); phase++ ) {
+      if ( metrics.getCount( phase ) == 0 ) {
+        continue;
+      }
+      message.append( Const.CR ).append(
+          BaseMessages.getString( PKG, "GremlinScript.Log.MetricsPhase", metrics.getPhaseName( phase ), String
+              .valueOf( metrics.getCount( phase ) ), millis( metrics.getAverageNanos( phase ) ), millis( metrics
+              .getPercentileNanos( phase, 50 ) ), millis( metrics.getPercentileNanos( phase, 99 ) ), millis( metrics
+              .getMaxNanos( phase ) ), millis( metrics.getTotalNanos( phase ) ) ) );
+    }
+    if ( logMetrics ) {
+      logBasic( message.toString() );
+    } else {
+      logDetailed( message.toString() );
+    }
+  }
+
+  private static String millis( double nanos ) {
+    return String.format( "%.3f", nanos / 1000000.0 );
+  }
+
+  /**
+   * @return the timings of this copy, for monitoring and benchmarking tools
+   */
+  public GremlinScriptMetrics getMetrics() {
+    return metrics;
+  }
+
   public RowMetaInterface getOutputRowMeta() {
     return data.outputRowMeta;
   }
@@ -578,14 +793,25 @@ public class GremlinScript extends BaseStep implements StepInterface {
     meta = (GremlinScriptMeta) smi;
     data = (GremlinScriptData) sdi;
 
+    if ( isStopped() ) {
+      return false;
+    }
+
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) {
       // Modification for Additional End Function
       try {
-        if ( data.cx != null ) {
+        if ( data.scope != null ) {
           // Checking for EndScript
           if ( strEndScript != null && strEndScript.length() > 0 ) {
-            data.cx.eval( strEndScript, data.scope );
+            cancellation.start( 0L );
+            beginEvaluation();
+            try {
+              data.cx.eval( strEndScript, data.scope );
+            } finally {
+              endEvaluation();
+              cancellation.finish();
+            }
             if ( log.isDetailed() )
               logDetailed( ( "End Script found!" ) );
           } else {
@@ -601,16 +827,25 @@ public class GremlinScript extends BaseStep implements StepInterface {
         stopAll();
       }
 
-      if ( data.cx != null ) {
-        setOutputDone();
-      }
+      logMetrics( BaseMessages.getString( PKG, "GremlinScript.Log.FinalMetrics", String.valueOf( getLinesRead() ) ) );
+      setOutputDone();
       return false;
     }
 
     // Getting the Row, with the Transformation Status
     try {
-      addValues( getInputRowMeta(), r );
+      // The evaluation includes passing on the output rows, as one row per element output pulls the traversal then
+      beginEvaluation();
+      try {
+        addValues( getInputRowMeta(), r );
+      } finally {
+        endEvaluation();
+      }
     } catch ( KettleValueException e ) {
+      if ( cancellation.isCancelled() ) {
+        // The transformation is being stopped: the row is not in error
+        return false;
+      }
       String location = null;
       if ( e.getCause() instanceof ScriptException ) {
         ScriptException ee = (ScriptException) e.getCause();
@@ -629,6 +864,9 @@ public class GremlinScript extends BaseStep implements StepInterface {
 
     if ( checkFeedback( getLinesRead() ) )
       logBasic( BaseMessages.getString( PKG, "GremlinScript.Log.LineNumber" ) + getLinesRead() );
+    if ( metrics.isReportDue() ) {
+      logMetrics( BaseMessages.getString( PKG, "GremlinScript.Log.Metrics", String.valueOf( getLinesRead() ) ) );
+    }
     return bRC;
   }
 
@@ -657,17 +895,151 @@ public class GremlinScript extends BaseStep implements StepInterface {
         }
       }
 
-      baseGraph = new TinkerGraph();
+      evalTimeout = Const.toLong( environmentSubstitute( meta.getEvalTimeout() ), 0L );
+      long metricsInterval = Const.toLong( environmentSubstitute( meta.getMetricsInterval() ), 0L );
+      metrics = new GremlinScriptMetrics( metricsInterval );
+      logMetrics = metricsInterval > 0;
+
+      enginePool = GremlinScriptEnginePool.acquire( meta.getEngineName() );
+      enginePool.ensureCapacity( getStepMeta().getCopies() );
+      data.cx = enginePool.borrowEngine();
+      if ( data.cx == null ) {
+        logError( BaseMessages.getString( PKG, "GremlinScript.Log.NoScriptEngine", meta.getEngineName() ) );
+        return false;
+      }
+
+      // A persistent graph can only be opened once, so all copies share it
+      //
+      if ( meta.isShareBaseGraph() || meta.isPersistentBaseGraph() ) {
+        try {
+          baseGraph = GremlinScriptGraphRegistry.acquire( getTrans(), getStepname(), getStepMeta().getCopies(),
+              new Callable<Graph>() {
+                public Graph call() throws Exception {
+                  return openBaseGraph();
+                }
+              } );
+          sharedBaseGraph = true;
+        } catch ( KettleException e ) {
+          logError( e.getMessage(), e );
+          return false;
+        }
+      } else {
+        try {
+          baseGraph = openBaseGraph();
+        } catch ( KettleException e ) {
+          logError( e.getMessage(), e );
+          return false;
+        }
+      }
       return true;
     }
     return false;
   }
 
-  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+  /**
+   * Keeps the other copies sharing a synchronized base graph from writing to it while this copy evaluates a script, so
+   * that the traversals it runs do not see the graph change under them.
+   */
+  private void beginEvaluation() {
+    if ( baseGraph instanceof SynchronizedGraph ) {
+      ( (SynchronizedGraph) baseGraph ).beginEvaluation();
+    }
+  }
+
+  private void endEvaluation() {
+    if ( baseGraph instanceof SynchronizedGraph ) {
+      ( (SynchronizedGraph) baseGraph ).endEvaluation();
+    }
+  }
+
+  /**
+   * Makes running and future script evaluations fail at their next graph access.
+   */
+  public void stopRunning( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    cancellation.cancel();
+    super.stopRunning( smi, sdi );
+  }
+
+  /**
+   * Opens the graph bound to g as configured in the step: an empty in-memory TinkerGraph, a graph spilling to local
+   * disk, a TinkerGraph persisted in a directory or any Blueprints implementation described by a GraphFactory
+   * properties file.
+   */
+  private Graph openBaseGraph() throws KettleException {
+    if ( GremlinScriptMeta.BASE_GRAPH_TYPE_SPILL.equals( meta.getBaseGraphType() ) ) {
+      return openSpillGraph();
+    }
+    if ( !meta.isPersistentBaseGraph() ) {
+      return new TinkerGraph();
+    }
+    String location = environmentSubstitute( meta.getBaseGraphLocation() );
+    if ( Const.isEmpty( location ) ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GremlinScript.Exception.NoBaseGraphLocation" ) );
+    }
     try {
-      if ( data.cx != null )
-        return;
-    } catch ( Exception er ) {
+      Graph graph;
+      if ( GremlinScriptMeta.BASE_GRAPH_TYPE_TINKERGRAPH.equals( meta.getBaseGraphType() ) ) {
+        TinkerGraph.FileType fileType = TinkerGraph.FileType.JAVA;
+        if ( !Const.isEmpty( meta.getBaseGraphFileType() ) ) {
+          fileType = TinkerGraph.FileType.valueOf( meta.getBaseGraphFileType().toUpperCase() );
+        }
+        graph = new TinkerGraph( location, fileType );
+      } else {
+        graph = GraphFactory.open( location );
+      }
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GremlinScript.Log.OpenedBaseGraph", location, graph.toString() ) );
+      }
+      return graph;
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GremlinScript.Exception.CouldNotOpenBaseGraph",
+          location ), e );
+    }
+  }
+
+  /**
+   * The spill graph classes belong to the graph value plugin. This plugin is installed into the same plugin folder (see
+   * build.gradle), so both share a classloader and the spill graph implements this plugin's Graph interface.
+   */
+  private Graph openSpillGraph() throws KettleException {
+    String location = environmentSubstitute( meta.getBaseGraphLocation() );
+    int cacheSize = Const.toInt( environmentSubstitute( meta.getBaseGraphCacheSize() ), SpillGraph.DEFAULT_CACHE_SIZE );
+    try {
+      Graph graph = new SpillGraph( Const.isEmpty( location ) ? null : new File( location ), cacheSize );
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GremlinScript.Log.OpenedBaseGraph", Const.NVL( location, "" ), graph
+            .toString() ) );
+      }
+      return graph;
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GremlinScript.Exception.CouldNotOpenBaseGraph", Const
+          .NVL( location, "" ) ), e );
+    }
+  }
+
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GremlinScriptMeta) smi;
+    data = (GremlinScriptData) sdi;
+
+    if ( enginePool != null ) {
+      if ( data.cx != null ) {
+        enginePool.returnEngine( data.cx );
+        data.cx = null;
+      }
+      enginePool.release();
+      enginePool = null;
+    }
+    data.scope = null;
+    data.script = null;
+
+    if ( baseGraph != null ) {
+      if ( sharedBaseGraph ) {
+        GremlinScriptGraphRegistry.release( getTrans(), getStepname(), getErrors() == 0 );
+        sharedBaseGraph = false;
+      } else {
+        baseGraph.shutdown();
+      }
+      baseGraph = null;
     }
 
     super.dispose( smi, sdi );
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+/**
+ * Cooperative cancellation for script evaluation. The graphs bound into a GremlinScript scope are wrapped in a
+ * {@link CancellableGraph} that calls {@link #check()} on every graph access and on every element a traversal pulls,
+ * so a traversal stops at the next element once the row's time budget is spent or the transformation is stopped.
+ * Scripts that loop without touching a graph are not interrupted.
+ */
+public class GremlinScriptCancellation {
+
+  private volatile boolean cancelled;
+
+  private volatile long deadline;
+
+  private volatile boolean tripped;
+
+  /**
+   * Starts the time budget of a new evaluation.
+   * 
+   * @param timeoutMillis
+   *          the budget in milliseconds, 0 or less for no limit
+   */
+  public void start( long timeoutMillis ) {
+    tripped = false;
+    deadline = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1000000L : 0L;
+  }
+
+  /**
+   * Ends the current evaluation, further checks only fail after a cancel.
+   */
+  public void finish() {
+    deadline = 0L;
+  }
+
+  /**
+   * Cancels the current and all future evaluations; called when the transformation is stopped.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @return true if a check failed since the last {@link #start(long)}, even if the script caught the exception
+   */
+  public boolean isTripped() {
+    return tripped;
+  }
+
+  /**
+   * @throws CancelledException
+   *           if the evaluation was cancelled or ran out of time
+   */
+  public void check() throws CancelledException {
+    if ( cancelled ) {
+      tripped = true;
+      throw new CancelledException( "Script evaluation cancelled" );
+    }
+    long d = deadline;
+    if ( d != 0L && System.nanoTime() - d > 0 ) {
+      tripped = true;
+      throw new CancelledException( "Script evaluation timed out" );
+    }
+  }
+
+  /**
+   * Thrown into the script from graph accesses. It is unchecked so it can cross the Blueprints interfaces.
+   */
+  public static class CancelledException extends RuntimeException {
+    private static final long serialVersionUID = -2619137455387318411L;
+
+    public CancelledException( String message ) {
+      super( message );
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+
+/**
+ * Keeps idle ScriptEngine instances per engine name so that step copies (and subsequent runs of a transformation) do
+ * not pay the engine start-up and script class compilation cost every time. An engine is only ever handed to one step
+ * copy at a time; all per-row state lives in the Bindings each copy creates with {@link ScriptEngine#createBindings()},
+ * so a returned engine carries nothing over to its next borrower.
+ * 
+ * Borrowing never blocks: when no idle engine is available a new one is created, and engines returned beyond the
+ * number of idle slots are simply dropped.
+ * 
+ * Pools are reference counted by the step copies using them. When the last copy releases a pool, its idle engines are
+ * dropped and the next copy to acquire an engine of that name starts with a new pool, so engines (and the script
+ * classes they compiled) do not outlive the transformations that use them.
+ */
+public class GremlinScriptEnginePool {
+
+  private static final Map<String, GremlinScriptEnginePool> pools = new HashMap<String, GremlinScriptEnginePool>();
+
+  private final String engineName;
+
+  private final LinkedList<ScriptEngine> idle = new LinkedList<ScriptEngine>();
+
+  private int maxIdle = 1;
+
+  /** the number of step copies that acquired this pool and did not release it yet, guarded by the pools map */
+  private int users;
+
+  private GremlinScriptEnginePool( String engineName ) {
+    this.engineName = engineName;
+  }
+
+  /**
+   * Acquires the pool for the given engine for one step copy. Every call must be matched with a call to
+   * {@link #release()} once the copy has returned its engine.
+   * 
+   * @param engineName
+   *          the name of the script engine, as stored in the step metadata
+   * @return the pool for the given engine, created if no step copy is using it
+   */
+  public static GremlinScriptEnginePool acquire( String engineName ) {
+    String key = engineName == null ? "" : engineName;
+    synchronized ( pools ) {
+      GremlinScriptEnginePool pool = pools.get( key );
+      if ( pool == null ) {
+        pool = new GremlinScriptEnginePool( engineName );
+        pools.put( key, pool );
+      }
+      pool.users++;
+      return pool;
+    }
+  }
+
+  /**
+   * Releases a pool obtained with {@link #acquire(String)}. When no step copy is left using it, the pool is forgotten
+   * and its idle engines are dropped.
+   */
+  public void release() {
+    synchronized ( pools ) {
+      if ( --users > 0 ) {
+        return;
+      }
+      String key = engineName == null ? "" : engineName;
+      if ( pools.get( key ) == this ) {
+        pools.remove( key );
+      }
+    }
+    synchronized ( this ) {
+      idle.clear();
+    }
+  }
+
+  /**
+   * Makes sure the pool keeps at least the given number of engines around, typically the number of step copies.
+   * 
+   * @param size
+   *          the minimum number of idle engines to retain
+   */
+  public synchronized void ensureCapacity( int size ) {
+    if ( size > maxIdle ) {
+      maxIdle = size;
+    }
+  }
+
+  /**
+   * @return an engine for the exclusive use of the caller, or null if no engine of that name (nor the Gremlin-Groovy
+   *         fallback) is available
+   */
+  public ScriptEngine borrowEngine() {
+    synchronized ( this ) {
+      if ( !idle.isEmpty() ) {
+        return idle.removeFirst();
+      }
+    }
+    return GremlinScriptUtils.createNewScriptEngine( engineName );
+  }
+
+  /**
+   * Hands an engine back to the pool. The caller must not use it afterwards.
+   * 
+   * @param engine
+   *          the engine obtained from {@link #borrowEngine()}
+   */
+  public synchronized void returnEngine( ScriptEngine engine ) {
+    if ( engine != null && idle.size() < maxIdle ) {
+      idle.addFirst( engine );
+    }
+  }
+
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.Trans;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+
+/**
+ * Hands out one base graph per running transformation and GremlinScript step, shared by all copies of that step. The
+ * graph is opened by the first copy to initialize and shut down (which persists file-backed graphs) when the last copy
+ * is disposed. It is only wrapped in a {@link SynchronizedGraph} when the step runs in more than one copy.
+ */
+public class GremlinScriptGraphRegistry {
+
+  private static final Map<Key, SharedGraph> graphs = new HashMap<Key, SharedGraph>();
+
+  /**
+   * @param trans
+   *          the running transformation
+   * @param stepName
+   *          the name of the step whose copies share the graph
+   * @param copies
+   *          the number of copies of the step; the graph is only made thread-safe if there is more than one
+   * @param opener
+   *          opens the underlying graph; only called by the first copy
+   * @return the shared base graph
+   * @throws KettleException
+   *           if the graph could not be opened
+   */
+  public static synchronized Graph acquire( Trans trans, String stepName, int copies, Callable<Graph> opener )
+    throws KettleException {
+    Key key = new Key( trans, stepName );
+    SharedGraph shared = graphs.get( key );
+    if ( shared == null ) {
+      try {
+        Graph graph = opener.call();
+        shared = new SharedGraph( copies > 1 ? SynchronizedGraph.synchronizedGraph( graph ) : graph );
+      } catch ( KettleException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new KettleException( e );
+      }
+      graphs.put( key, shared );
+    }
+    shared.references++;
+    return shared.graph;
+  }
+
+  /**
+   * Releases a reference obtained with {@link #acquire(Trans, String, int, Callable)}, shutting the graph down when it
+   * was the last one. Transactional stores bind transactions to threads, so every copy concludes its own transaction
+   * here before letting go of the graph.
+   * 
+   * @param trans
+   *          the running transformation
+   * @param stepName
+   *          the name of the step whose copies share the graph
+   * @param success
+   *          true to commit the calling copy's work, false to roll it back
+   */
+  public static void release( Trans trans, String stepName, boolean success ) {
+    Key key = new Key( trans, stepName );
+    SharedGraph current;
+    synchronized ( GremlinScriptGraphRegistry.class ) {
+      current = graphs.get( key );
+    }
+    if ( current != null ) {
+      concludeTransaction( current.graph, success );
+    }
+
+    Graph toShutdown = null;
+    synchronized ( GremlinScriptGraphRegistry.class ) {
+      SharedGraph shared = graphs.get( key );
+      if ( shared != null && --shared.references <= 0 ) {
+        graphs.remove( key );
+        toShutdown = shared.graph;
+      }
+    }
+    if ( toShutdown != null ) {
+      toShutdown.shutdown();
+    }
+  }
+
+  private static void concludeTransaction( Graph graph, boolean commit ) {
+    if ( graph instanceof SynchronizedGraph ) {
+      ( (SynchronizedGraph) graph ).concludeTransaction( commit );
+    } else if ( graph instanceof TransactionalGraph ) {
+      if ( commit ) {
+        ( (TransactionalGraph) graph ).commit();
+      } else {
+        ( (TransactionalGraph) graph ).rollback();
+      }
+    }
+  }
+
+  private static class SharedGraph {
+    private final Graph graph;
+    private int references;
+
+    SharedGraph( Graph graph ) {
+      this.graph = graph;
+    }
+  }
+
+  /**
+   * Transformations are matched by identity: two runs of the same transformation never share a graph.
+   */
+  private static class Key {
+    private final Trans trans;
+    private final String stepName;
+
+    Key( Trans trans, String stepName ) {
+      this.trans = trans;
+      this.stepName = stepName;
+    }
+
+    public boolean equals( Object o ) {
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      Key other = (Key) o;
+      return trans == other.trans && ( stepName == null ? other.stepName == null : stepName.equals( other.stepName ) );
+    }
+
+    public int hashCode() {
+      return System.identityHashCode( trans ) * 31 + ( stepName == null ? 0 : stepName.hashCode() );
+    }
+  }
+}
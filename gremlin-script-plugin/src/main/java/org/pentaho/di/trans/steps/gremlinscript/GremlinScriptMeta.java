@@ -66,18 +66,86 @@ import org.pentaho.metastore.api.IMetaStore;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
 @Step( id = "GremlinScript", image = "gremlin-script.png", name = "Gremlin Script",
     description = "A scripting step for the Gremlin-Groovy script engine", categoryDescription = "Graph" )
 public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface {
   private static Class<?> PKG = GremlinScriptMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
 
   private static final String SCRIPT_ENGINE_TAG_TYPE = "scriptEngine";
+  private static final String SHARE_BASE_GRAPH_TAG = "shareBaseGraph";
+  private static final String BASE_GRAPH_TYPE_TAG = "baseGraphType";
+  private static final String BASE_GRAPH_LOCATION_TAG = "baseGraphLocation";
+  private static final String BASE_GRAPH_FILE_TYPE_TAG = "baseGraphFileType";
+  private static final String BASE_GRAPH_CACHE_SIZE_TAG = "baseGraphCacheSize";
+  private static final String EVAL_TIMEOUT_TAG = "evalTimeout";
+  private static final String METRICS_INTERVAL_TAG = "metricsInterval";
+  private static final String OUTPUT_MODE_TAG = "outputMode";
+
+  /** The base graph g is an empty in-memory TinkerGraph, discarded at the end of the transformation */
+  public static final String BASE_GRAPH_TYPE_MEMORY = "memory";
+
+  /** The base graph g is a TinkerGraph loaded from and saved to a directory */
+  public static final String BASE_GRAPH_TYPE_TINKERGRAPH = "tinkergraph";
+
+  /** The base graph g is opened by Blueprints' GraphFactory from a properties file (Neo4j, OrientDB, ...) */
+  public static final String BASE_GRAPH_TYPE_BLUEPRINTS = "blueprints";
+
+  /**
+   * The base graph g keeps its most recently used elements on the heap and spills the rest to a file in the location
+   * directory, discarded at the end of the transformation
+   */
+  public static final String BASE_GRAPH_TYPE_SPILL = "spill";
+
+  /** One output row per input row, with the fields read from the script scope */
+  public static final String OUTPUT_MODE_ROW = "row";
+
+  /** One output row per element of the Iterator, Iterable or array the script evaluates to */
+  public static final String OUTPUT_MODE_ELEMENT = "element";
+
+  public static final String[] OUTPUT_MODE_CODES = new String[] { OUTPUT_MODE_ROW, OUTPUT_MODE_ELEMENT, };
+
+  public static final String[] OUTPUT_MODE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GremlinScriptMeta.OutputMode.Row" ),
+    BaseMessages.getString( PKG, "GremlinScriptMeta.OutputMode.Element" ), };
+
+  public static final String[] BASE_GRAPH_TYPE_CODES = new String[] {
+    BASE_GRAPH_TYPE_MEMORY, BASE_GRAPH_TYPE_TINKERGRAPH, BASE_GRAPH_TYPE_BLUEPRINTS, BASE_GRAPH_TYPE_SPILL, };
+
+  public static final String[] BASE_GRAPH_TYPE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GremlinScriptMeta.BaseGraphType.Memory" ),
+    BaseMessages.getString( PKG, "GremlinScriptMeta.BaseGraphType.TinkerGraph" ),
+    BaseMessages.getString( PKG, "GremlinScriptMeta.BaseGraphType.Blueprints" ),
+    BaseMessages.getString( PKG, "GremlinScriptMeta.BaseGraphType.Spill" ), };
   private static final String JSSCRIPT_TAG_TYPE = "jsScript_type";
   private static final String JSSCRIPT_TAG_NAME = "jsScript_name";
   private static final String JSSCRIPT_TAG_SCRIPT = "jsScript_script";
 
   private String engineName;
 
+  /** Whether all copies of the step work on a single, synchronized base graph g */
+  private boolean shareBaseGraph;
+
+  private String baseGraphType;
+
+  /** The TinkerGraph directory or the Blueprints configuration file, may contain variables */
+  private String baseGraphLocation;
+
+  /** The name of the TinkerGraph.FileType used to persist a TinkerGraph base graph */
+  private String baseGraphFileType;
+
+  /** The number of vertices, and of edges, a spilling base graph keeps on the heap */
+  private String baseGraphCacheSize;
+
+  /** The maximum time in milliseconds a script may spend on one row, may contain variables. Empty or 0 for no limit */
+  private String evalTimeout;
+
+  /** How often, in seconds, phase timings are logged, may contain variables. Empty or 0 to only log them in detail */
+  private String metricsInterval;
+
+  private String outputMode;
+
   private ScriptAddClasses[] additionalClasses;
   private ScriptValuesScript[] jsScripts;
 
@@ -225,6 +293,14 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
   private void readData( Node stepnode ) throws KettleXMLException {
     try {
       setEngineName( XMLHandler.getTagValue( stepnode, SCRIPT_ENGINE_TAG_TYPE ) );
+      shareBaseGraph = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, SHARE_BASE_GRAPH_TAG ) );
+      baseGraphType = getBaseGraphTypeCode( XMLHandler.getTagValue( stepnode, BASE_GRAPH_TYPE_TAG ) );
+      baseGraphLocation = XMLHandler.getTagValue( stepnode, BASE_GRAPH_LOCATION_TAG );
+      baseGraphFileType = XMLHandler.getTagValue( stepnode, BASE_GRAPH_FILE_TYPE_TAG );
+      baseGraphCacheSize = XMLHandler.getTagValue( stepnode, BASE_GRAPH_CACHE_SIZE_TAG );
+      evalTimeout = XMLHandler.getTagValue( stepnode, EVAL_TIMEOUT_TAG );
+      metricsInterval = XMLHandler.getTagValue( stepnode, METRICS_INTERVAL_TAG );
+      outputMode = getOutputModeCode( XMLHandler.getTagValue( stepnode, OUTPUT_MODE_TAG ) );
       Node scripts = XMLHandler.getSubNode( stepnode, "jsScripts" );
       int nrscripts = XMLHandler.countNodes( scripts, "jsScript" );
       jsScripts = new ScriptValuesScript[nrscripts];
@@ -266,6 +342,14 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
         new ScriptValuesScript( ScriptValuesScript.TRANSFORM_SCRIPT, BaseMessages.getString( PKG,
             "GremlinScript.Script1" ), "//" + BaseMessages.getString( PKG, "GremlinScript.ScriptHere" ) + Const.CR
             + Const.CR );
+    shareBaseGraph = false;
+    baseGraphType = BASE_GRAPH_TYPE_MEMORY;
+    baseGraphLocation = null;
+    baseGraphFileType = TinkerGraph.FileType.JAVA.name();
+    baseGraphCacheSize = "100000";
+    evalTimeout = "0";
+    metricsInterval = "0";
+    outputMode = OUTPUT_MODE_ROW;
 
     int nrfields = 0;
     allocate( nrfields );
@@ -331,6 +415,14 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
     StringBuffer retval = new StringBuffer( 300 );
 
     retval.append( "    " ).append( XMLHandler.addTagValue( SCRIPT_ENGINE_TAG_TYPE, getEngineName() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( SHARE_BASE_GRAPH_TAG, shareBaseGraph ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( BASE_GRAPH_TYPE_TAG, baseGraphType ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( BASE_GRAPH_LOCATION_TAG, baseGraphLocation ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( BASE_GRAPH_FILE_TYPE_TAG, baseGraphFileType ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( BASE_GRAPH_CACHE_SIZE_TAG, baseGraphCacheSize ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( EVAL_TIMEOUT_TAG, evalTimeout ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( METRICS_INTERVAL_TAG, metricsInterval ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( OUTPUT_MODE_TAG, outputMode ) );
 
     retval.append( "    <jsScripts>" );
     for ( int i = 0; i < jsScripts.length; i++ ) {
@@ -363,6 +455,14 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
     try {
 
       setEngineName( rep.getStepAttributeString( id_step, SCRIPT_ENGINE_TAG_TYPE ) );
+      shareBaseGraph = rep.getStepAttributeBoolean( id_step, SHARE_BASE_GRAPH_TAG );
+      baseGraphType = getBaseGraphTypeCode( rep.getStepAttributeString( id_step, BASE_GRAPH_TYPE_TAG ) );
+      baseGraphLocation = rep.getStepAttributeString( id_step, BASE_GRAPH_LOCATION_TAG );
+      baseGraphFileType = rep.getStepAttributeString( id_step, BASE_GRAPH_FILE_TYPE_TAG );
+      baseGraphCacheSize = rep.getStepAttributeString( id_step, BASE_GRAPH_CACHE_SIZE_TAG );
+      evalTimeout = rep.getStepAttributeString( id_step, EVAL_TIMEOUT_TAG );
+      metricsInterval = rep.getStepAttributeString( id_step, METRICS_INTERVAL_TAG );
+      outputMode = getOutputModeCode( rep.getStepAttributeString( id_step, OUTPUT_MODE_TAG ) );
       String script = rep.getStepAttributeString( id_step, "script" );
 
       // When in compatibility mode, we load the script, not the other tabs...
@@ -404,6 +504,14 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
     try {
 
       rep.saveStepAttribute( id_transformation, id_step, SCRIPT_ENGINE_TAG_TYPE, getEngineName() );
+      rep.saveStepAttribute( id_transformation, id_step, SHARE_BASE_GRAPH_TAG, shareBaseGraph );
+      rep.saveStepAttribute( id_transformation, id_step, BASE_GRAPH_TYPE_TAG, baseGraphType );
+      rep.saveStepAttribute( id_transformation, id_step, BASE_GRAPH_LOCATION_TAG, baseGraphLocation );
+      rep.saveStepAttribute( id_transformation, id_step, BASE_GRAPH_FILE_TYPE_TAG, baseGraphFileType );
+      rep.saveStepAttribute( id_transformation, id_step, BASE_GRAPH_CACHE_SIZE_TAG, baseGraphCacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, EVAL_TIMEOUT_TAG, evalTimeout );
+      rep.saveStepAttribute( id_transformation, id_step, METRICS_INTERVAL_TAG, metricsInterval );
+      rep.saveStepAttribute( id_transformation, id_step, OUTPUT_MODE_TAG, outputMode );
 
       for ( int i = 0; i < jsScripts.length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, JSSCRIPT_TAG_NAME, jsScripts[i].getScriptName() );
@@ -634,6 +742,13 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
       remarks.add( cr );
     }
 
+    if ( isPersistentBaseGraph() && Const.isEmpty( baseGraphLocation ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GremlinScriptMeta.CheckResult.NoBaseGraphLocation" ), stepMeta );
+      remarks.add( cr );
+    }
+
     // See if we have input streams leading to this step!
     if ( input.length > 0 ) {
       cr =
@@ -864,4 +979,141 @@ public class GremlinScriptMeta extends BaseStepMeta implements StepMetaInterface
     this.engineName = engineName;
   }
 
+  /**
+   * @return true if all copies of this step share one base graph g, false if each copy has its own
+   */
+  public boolean isShareBaseGraph() {
+    return shareBaseGraph;
+  }
+
+  /**
+   * @param shareBaseGraph
+   *          true to let all copies of this step share one base graph g
+   */
+  public void setShareBaseGraph( boolean shareBaseGraph ) {
+    this.shareBaseGraph = shareBaseGraph;
+  }
+
+  /**
+   * @return one of the BASE_GRAPH_TYPE_* codes
+   */
+  public String getBaseGraphType() {
+    return baseGraphType;
+  }
+
+  /**
+   * @param baseGraphType
+   *          one of the BASE_GRAPH_TYPE_* codes
+   */
+  public void setBaseGraphType( String baseGraphType ) {
+    this.baseGraphType = baseGraphType;
+  }
+
+  /**
+   * @return true if the base graph outlives the transformation, in which case it is opened once and shared by all
+   *         copies of the step regardless of the share option
+   */
+  public boolean isPersistentBaseGraph() {
+    return !Const.isEmpty( baseGraphType ) && !BASE_GRAPH_TYPE_MEMORY.equals( baseGraphType )
+        && !BASE_GRAPH_TYPE_SPILL.equals( baseGraphType );
+  }
+
+  public String getBaseGraphLocation() {
+    return baseGraphLocation;
+  }
+
+  public void setBaseGraphLocation( String baseGraphLocation ) {
+    this.baseGraphLocation = baseGraphLocation;
+  }
+
+  public String getBaseGraphFileType() {
+    return baseGraphFileType;
+  }
+
+  public void setBaseGraphFileType( String baseGraphFileType ) {
+    this.baseGraphFileType = baseGraphFileType;
+  }
+
+  public String getBaseGraphCacheSize() {
+    return baseGraphCacheSize;
+  }
+
+  public void setBaseGraphCacheSize( String baseGraphCacheSize ) {
+    this.baseGraphCacheSize = baseGraphCacheSize;
+  }
+
+  public String getEvalTimeout() {
+    return evalTimeout;
+  }
+
+  public void setEvalTimeout( String evalTimeout ) {
+    this.evalTimeout = evalTimeout;
+  }
+
+  public String getMetricsInterval() {
+    return metricsInterval;
+  }
+
+  public void setMetricsInterval( String metricsInterval ) {
+    this.metricsInterval = metricsInterval;
+  }
+
+  /**
+   * @return OUTPUT_MODE_ROW or OUTPUT_MODE_ELEMENT
+   */
+  public String getOutputMode() {
+    return outputMode;
+  }
+
+  public void setOutputMode( String outputMode ) {
+    this.outputMode = outputMode;
+  }
+
+  public boolean isOutputPerElement() {
+    return OUTPUT_MODE_ELEMENT.equals( outputMode );
+  }
+
+  public static String getOutputModeCode( String codeOrDesc ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || OUTPUT_MODE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return OUTPUT_MODE_CODES[i];
+      }
+    }
+    return OUTPUT_MODE_ROW;
+  }
+
+  public static String getOutputModeDesc( String code ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( code ) ) {
+        return OUTPUT_MODE_DESCS[i];
+      }
+    }
+    return OUTPUT_MODE_DESCS[0];
+  }
+
+  /**
+   * @param codeOrDesc
+   *          a base graph type code or its (translated) description
+   * @return the matching code, defaulting to the in-memory graph
+   */
+  public static String getBaseGraphTypeCode( String codeOrDesc ) {
+    for ( int i = 0; i < BASE_GRAPH_TYPE_CODES.length; i++ ) {
+      if ( BASE_GRAPH_TYPE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || BASE_GRAPH_TYPE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return BASE_GRAPH_TYPE_CODES[i];
+      }
+    }
+    return BASE_GRAPH_TYPE_MEMORY;
+  }
+
+  public static String getBaseGraphTypeDesc( String code ) {
+    for ( int i = 0; i < BASE_GRAPH_TYPE_CODES.length; i++ ) {
+      if ( BASE_GRAPH_TYPE_CODES[i].equalsIgnoreCase( code ) ) {
+        return BASE_GRAPH_TYPE_DESCS[i];
+      }
+    }
+    return BASE_GRAPH_TYPE_DESCS[0];
+  }
+
 }
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+/**
+ * Per-phase timings of a GremlinScript step copy. Every phase keeps a count, total, maximum and a histogram with one
+ * bucket per power of two nanoseconds, which is enough to estimate percentiles within a factor of two at a constant
+ * cost per sample. Instances belong to a single step copy and are not thread-safe.
+ */
+public class GremlinScriptMetrics {
+
+  public static final int COMPILE = 0;
+  public static final int BIND = 1;
+  public static final int EVAL = 2;
+  public static final int CONVERT = 3;
+  public static final int PUT_ROW = 4;
+
+  private static final String[] PHASE_NAMES = new String[] { "compile", "bind", "eval", "convert", "putRow", };
+
+  private static final int NR_BUCKETS = 64;
+
+  private final long[] counts = new long[PHASE_NAMES.length];
+  private final long[] totals = new long[PHASE_NAMES.length];
+  private final long[] maxima = new long[PHASE_NAMES.length];
+  private final long[][] histograms = new long[PHASE_NAMES.length][NR_BUCKETS];
+
+  private final long intervalNanos;
+  private long nextReport;
+
+  /**
+   * @param intervalSeconds
+   *          how often {@link #isReportDue()} returns true, 0 or less to never report periodically
+   */
+  public GremlinScriptMetrics( long intervalSeconds ) {
+    intervalNanos = intervalSeconds > 0 ? intervalSeconds * 1000000000L : 0L;
+    nextReport = System.nanoTime() + intervalNanos;
+  }
+
+  /**
+   * Records one sample.
+   * 
+   * @param phase
+   *          one of the phase constants
+   * @param startNanos
+   *          the System.nanoTime() at which the phase started
+   */
+  public void record( int phase, long startNanos ) {
+    long elapsed = System.nanoTime() - startNanos;
+    if ( elapsed < 0 ) {
+      elapsed = 0;
+    }
+    counts[phase]++;
+    totals[phase] += elapsed;
+    if ( elapsed > maxima[phase] ) {
+      maxima[phase] = elapsed;
+    }
+    // bucket b holds [2^b, 2^(b+1))
+    int bucket = elapsed == 0 ? 0 : 63 - Long.numberOfLeadingZeros( elapsed );
+    histograms[phase][bucket]++;
+  }
+
+  /**
+   * @return true, once per interval, when a periodic report should be logged
+   */
+  public boolean isReportDue() {
+    if ( intervalNanos <= 0 ) {
+      return false;
+    }
+    long now = System.nanoTime();
+    if ( now - nextReport >= 0 ) {
+      nextReport = now + intervalNanos;
+      return true;
+    }
+    return false;
+  }
+
+  public int getNrPhases() {
+    return PHASE_NAMES.length;
+  }
+
+  public String getPhaseName( int phase ) {
+    return PHASE_NAMES[phase];
+  }
+
+  public long getCount( int phase ) {
+    return counts[phase];
+  }
+
+  public long getTotalNanos( int phase ) {
+    return totals[phase];
+  }
+
+  public long getMaxNanos( int phase ) {
+    return maxima[phase];
+  }
+
+  public double getAverageNanos( int phase ) {
+    return counts[phase] == 0 ? 0.0 : (double) totals[phase] / counts[phase];
+  }
+
+  /**
+   * @param phase
+   *          one of the phase constants
+   * @param percentile
+   *          between 0 and 100
+   * @return an upper bound (the top of the histogram bucket) for the given percentile, in nanoseconds
+   */
+  public long getPercentileNanos( int phase, double percentile ) {
+    long count = counts[phase];
+    if ( count == 0 ) {
+      return 0L;
+    }
+    long target = (long) Math.ceil( count * percentile / 100.0 );
+    long seen = 0;
+    for ( int bucket = 0; bucket < NR_BUCKETS; bucket++ ) {
+      seen += histograms[phase][bucket];
+      if ( seen >= target && seen > 0 ) {
+        long upper = bucket >= 62 ? Long.MAX_VALUE : ( 1L << ( bucket + 1 ) ) - 1;
+        return Math.min( upper, maxima[phase] );
+      }
+    }
+    return maxima[phase];
+  }
+}
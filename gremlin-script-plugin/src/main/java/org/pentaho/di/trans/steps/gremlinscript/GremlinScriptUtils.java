@@ -17,7 +17,7 @@ public class GremlinScriptUtils {
    * @param engineName
    * @return the desired ScriptEngine, or null if none can be found
    */
-  public static ScriptEngine createNewScriptEngine( String engineName ) {
+  public static synchronized ScriptEngine createNewScriptEngine( String engineName ) {
 
     ScriptEngine scriptEngine = getScriptEngineManager().getEngineByName( engineName );
     if ( scriptEngine == null ) {// falls back to Gremlin-Groovy
@@ -26,7 +26,13 @@ public class GremlinScriptUtils {
     return scriptEngine;
   }
 
-  public static ScriptEngineManager getScriptEngineManager() {
+  /**
+   * The manager is shared by every copy of every GremlinScript step, and step copies are initialized on their own
+   * threads, so creation and lookups are serialized here.
+   * 
+   * @return the plugin-wide ScriptEngineManager
+   */
+  public static synchronized ScriptEngineManager getScriptEngineManager() {
     if ( scriptEngineManager == null ) {
       System.setProperty( "org.jruby.embed.localvariable.behavior", "persistent" );// required for JRuby, transparent
                                                                                    // for others
@@ -35,7 +41,7 @@ public class GremlinScriptUtils {
     return scriptEngineManager;
   }
 
-  public static List<String> getScriptEngineNames() {
+  public static synchronized List<String> getScriptEngineNames() {
     List<String> scriptEngineNames = new ArrayList<String>();
     List<ScriptEngineFactory> engineFactories = getScriptEngineManager().getEngineFactories();
     if ( engineFactories != null ) {
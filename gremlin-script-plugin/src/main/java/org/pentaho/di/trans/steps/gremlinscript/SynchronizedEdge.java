@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * An edge of a {@link SynchronizedGraph}.
+ */
+public class SynchronizedEdge extends SynchronizedElement implements Edge {
+
+  public SynchronizedEdge( Edge baseEdge, SynchronizedGraph graph ) {
+    super( baseEdge, graph );
+  }
+
+  public Edge getBaseEdge() {
+    return (Edge) baseElement;
+  }
+
+  public Vertex getVertex( Direction direction ) throws IllegalArgumentException {
+    graph.getLock().readLock().lock();
+    try {
+      return graph.wrap( getBaseEdge().getVertex( direction ) );
+    } finally {
+      graph.getLock().readLock().unlock();
+    }
+  }
+
+  public String getLabel() {
+    return getBaseEdge().getLabel();
+  }
+
+  public String toString() {
+    return StringFactory.edgeString( this );
+  }
+}
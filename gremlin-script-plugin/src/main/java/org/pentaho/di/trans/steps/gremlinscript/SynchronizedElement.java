@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+/**
+ * Base class for the elements handed out by {@link SynchronizedGraph}. Property reads take the graph's read lock,
+ * property writes and removal take its write lock.
+ */
+public abstract class SynchronizedElement implements Element {
+
+  protected final Element baseElement;
+
+  protected final SynchronizedGraph graph;
+
+  protected SynchronizedElement( Element baseElement, SynchronizedGraph graph ) {
+    this.baseElement = baseElement;
+    this.graph = graph;
+  }
+
+  public <T> T getProperty( String key ) {
+    graph.getLock().readLock().lock();
+    try {
+      return baseElement.getProperty( key );
+    } finally {
+      graph.getLock().readLock().unlock();
+    }
+  }
+
+  public Set<String> getPropertyKeys() {
+    graph.getLock().readLock().lock();
+    try {
+      return new HashSet<String>( baseElement.getPropertyKeys() );
+    } finally {
+      graph.getLock().readLock().unlock();
+    }
+  }
+
+  public void setProperty( String key, Object value ) {
+    int readHolds = graph.lockForWrite();
+    try {
+      baseElement.setProperty( key, value );
+    } finally {
+      graph.unlockAfterWrite( readHolds );
+    }
+  }
+
+  public <T> T removeProperty( String key ) {
+    int readHolds = graph.lockForWrite();
+    try {
+      return baseElement.removeProperty( key );
+    } finally {
+      graph.unlockAfterWrite( readHolds );
+    }
+  }
+
+  public void remove() {
+    int readHolds = graph.lockForWrite();
+    try {
+      baseElement.remove();
+    } finally {
+      graph.unlockAfterWrite( readHolds );
+    }
+  }
+
+  public Object getId() {
+    return baseElement.getId();
+  }
+
+  public boolean equals( Object object ) {
+    return ElementHelper.areEqual( this, object );
+  }
+
+  public int hashCode() {
+    return baseElement.hashCode();
+  }
+}
@@ -0,0 +1,543 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.IndexableGraph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Parameter;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+import com.tinkerpop.blueprints.util.wrappers.WrapperGraph;
+
+/**
+ * A Graph wrapper that lets several GremlinScript step copies work on the same base graph. Reads (lookups, property
+ * access, iteration) take a shared lock and may run in parallel, mutations take an exclusive lock.
+ * <p>
+ * Iterables are lazy, so a step copy brackets each script evaluation with {@link #beginEvaluation()} and
+ * {@link #endEvaluation()}, holding the shared lock for the whole evaluation. Writes of other copies wait until it
+ * ends, so the base graph does not change under an iterator that is still in use, even when the base graph's iterators
+ * are fail-fast. A copy that writes during its own evaluation gives up its shared lock for the duration of the write (a
+ * shared lock cannot be upgraded), so the pending writes of other copies may be applied at that point, as if the script
+ * had made them itself. Outside an evaluation every hasNext() and next() call takes the shared lock on its own and
+ * iteration is only as consistent as the base graph's iterators. <p> Use {@link #synchronizedGraph(Graph)} to get a
+ * wrapper that also implements the transactional and index interfaces of the base graph.
+ */
+public class SynchronizedGraph implements Graph, WrapperGraph<Graph> {
+
+  private final Graph baseGraph;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  public SynchronizedGraph( Graph baseGraph ) {
+    this.baseGraph = baseGraph;
+  }
+
+  /**
+   * @return a wrapper implementing {@link TransactionalGraph}, {@link KeyIndexableGraph} and {@link IndexableGraph} if
+   *         and only if the base graph does
+   */
+  public static SynchronizedGraph synchronizedGraph( Graph baseGraph ) {
+    boolean keyIndexable = baseGraph instanceof KeyIndexableGraph;
+    boolean indexable = baseGraph instanceof IndexableGraph;
+    if ( baseGraph instanceof TransactionalGraph ) {
+      if ( keyIndexable ) {
+        return indexable ? new TransactionalKeyIndexableIndexable( baseGraph ) : new TransactionalKeyIndexable(
+            baseGraph );
+      }
+      return indexable ? new TransactionalIndexable( baseGraph ) : new Transactional( baseGraph );
+    }
+    if ( keyIndexable ) {
+      return indexable ? new KeyIndexableIndexable( baseGraph ) : new KeyIndexable( baseGraph );
+    }
+    return indexable ? new Indexable( baseGraph ) : new SynchronizedGraph( baseGraph );
+  }
+
+  public Graph getBaseGraph() {
+    return baseGraph;
+  }
+
+  ReadWriteLock getLock() {
+    return lock;
+  }
+
+  /**
+   * Holds the shared lock until the matching {@link #endEvaluation()}, so that no other thread writes to the graph
+   * while the calling thread evaluates a script. Calls may be nested.
+   */
+  public void beginEvaluation() {
+    lock.readLock().lock();
+  }
+
+  public void endEvaluation() {
+    lock.readLock().unlock();
+  }
+
+  /**
+   * Takes the exclusive lock, first giving up any shared lock the calling thread holds for an evaluation.
+   * 
+   * @return the number of shared holds given up, to be passed to {@link #unlockAfterWrite(int)}
+   */
+  int lockForWrite() {
+    int readHolds = lock.getReadHoldCount();
+    for ( int i = 0; i < readHolds; i++ ) {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    return readHolds;
+  }
+
+  void unlockAfterWrite( int readHolds ) {
+    // downgrade: the shared holds are taken back before the exclusive lock is released
+    for ( int i = 0; i < readHolds; i++ ) {
+      lock.readLock().lock();
+    }
+    lock.writeLock().unlock();
+  }
+
+  public Features getFeatures() {
+    Features features = baseGraph.getFeatures().copyFeatures();
+    features.isWrapper = true;
+    return features;
+  }
+
+  public Vertex addVertex( Object id ) {
+    int readHolds = lockForWrite();
+    try {
+      return wrap( baseGraph.addVertex( id ) );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public Vertex getVertex( Object id ) {
+    lock.readLock().lock();
+    try {
+      return wrap( baseGraph.getVertex( id ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void removeVertex( Vertex vertex ) {
+    int readHolds = lockForWrite();
+    try {
+      baseGraph.removeVertex( unwrap( vertex ) );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public Iterable<Vertex> getVertices() {
+    lock.readLock().lock();
+    try {
+      return vertices( baseGraph.getVertices() );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    lock.readLock().lock();
+    try {
+      return vertices( baseGraph.getVertices( key, value ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    int readHolds = lockForWrite();
+    try {
+      return wrap( baseGraph.addEdge( id, unwrap( outVertex ), unwrap( inVertex ), label ) );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public Edge getEdge( Object id ) {
+    lock.readLock().lock();
+    try {
+      return wrap( baseGraph.getEdge( id ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void removeEdge( Edge edge ) {
+    int readHolds = lockForWrite();
+    try {
+      baseGraph.removeEdge( unwrap( edge ) );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public Iterable<Edge> getEdges() {
+    lock.readLock().lock();
+    try {
+      return edges( baseGraph.getEdges() );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    lock.readLock().lock();
+    try {
+      return edges( baseGraph.getEdges( key, value ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  /**
+   * Commits or rolls back the calling thread's transaction if the base graph is transactional; does nothing otherwise.
+   * 
+   * @param commit
+   *          true to commit, false to roll back
+   */
+  public void concludeTransaction( boolean commit ) {
+    if ( !( baseGraph instanceof TransactionalGraph ) ) {
+      return;
+    }
+    if ( commit ) {
+      commit();
+    } else {
+      rollback();
+    }
+  }
+
+  // TransactionalGraph, implemented by the subclasses returned for a transactional base graph
+
+  public void stopTransaction( TransactionalGraph.Conclusion conclusion ) {
+    if ( conclusion == TransactionalGraph.Conclusion.SUCCESS ) {
+      commit();
+    } else {
+      rollback();
+    }
+  }
+
+  public void commit() {
+    int readHolds = lockForWrite();
+    try {
+      transactionalGraph().commit();
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public void rollback() {
+    int readHolds = lockForWrite();
+    try {
+      transactionalGraph().rollback();
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  // KeyIndexableGraph, implemented by the subclasses returned for a key indexable base graph
+
+  public <T extends Element> void createKeyIndex( String key, Class<T> elementClass, Parameter... indexParameters ) {
+    int readHolds = lockForWrite();
+    try {
+      keyIndexableGraph().createKeyIndex( key, elementClass, indexParameters );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public <T extends Element> void dropKeyIndex( String key, Class<T> elementClass ) {
+    int readHolds = lockForWrite();
+    try {
+      keyIndexableGraph().dropKeyIndex( key, elementClass );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public <T extends Element> Set<String> getIndexedKeys( Class<T> elementClass ) {
+    lock.readLock().lock();
+    try {
+      return keyIndexableGraph().getIndexedKeys( elementClass );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // IndexableGraph, implemented by the subclasses returned for an indexable base graph
+
+  public <T extends Element> Index<T> createIndex( String indexName, Class<T> indexClass,
+      Parameter... indexParameters ) {
+    int readHolds = lockForWrite();
+    try {
+      return wrap( indexableGraph().createIndex( indexName, indexClass, indexParameters ) );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public <T extends Element> Index<T> getIndex( String indexName, Class<T> indexClass ) {
+    lock.readLock().lock();
+    try {
+      return wrap( indexableGraph().getIndex( indexName, indexClass ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Iterable<Index<? extends Element>> getIndices() {
+    lock.readLock().lock();
+    try {
+      List<Index<? extends Element>> indices = new ArrayList<Index<? extends Element>>();
+      for ( Index<? extends Element> index : indexableGraph().getIndices() ) {
+        indices.add( wrap( index ) );
+      }
+      return indices;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void dropIndex( String indexName ) {
+    int readHolds = lockForWrite();
+    try {
+      indexableGraph().dropIndex( indexName );
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public void shutdown() {
+    int readHolds = lockForWrite();
+    try {
+      baseGraph.shutdown();
+    } finally {
+      unlockAfterWrite( readHolds );
+    }
+  }
+
+  public String toString() {
+    return StringFactory.graphString( this, baseGraph.toString() );
+  }
+
+  private TransactionalGraph transactionalGraph() {
+    if ( !( baseGraph instanceof TransactionalGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support transactions: " + baseGraph );
+    }
+    return (TransactionalGraph) baseGraph;
+  }
+
+  private KeyIndexableGraph keyIndexableGraph() {
+    if ( !( baseGraph instanceof KeyIndexableGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support key indices: " + baseGraph );
+    }
+    return (KeyIndexableGraph) baseGraph;
+  }
+
+  private IndexableGraph indexableGraph() {
+    if ( !( baseGraph instanceof IndexableGraph ) ) {
+      throw new UnsupportedOperationException( "The base graph does not support indices: " + baseGraph );
+    }
+    return (IndexableGraph) baseGraph;
+  }
+
+  Vertex wrap( Vertex vertex ) {
+    return vertex == null ? null : new SynchronizedVertex( vertex, this );
+  }
+
+  Edge wrap( Edge edge ) {
+    return edge == null ? null : new SynchronizedEdge( edge, this );
+  }
+
+  <T extends Element> Index<T> wrap( Index<T> index ) {
+    return index == null ? null : new SynchronizedIndex<T>( index, this );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  <T extends Element> T wrapElement( T element ) {
+    if ( element instanceof Vertex ) {
+      return (T) wrap( (Vertex) element );
+    } else if ( element instanceof Edge ) {
+      return (T) wrap( (Edge) element );
+    }
+    return element;
+  }
+
+  static Vertex unwrap( Vertex vertex ) {
+    return vertex instanceof SynchronizedVertex ? ( (SynchronizedVertex) vertex ).getBaseVertex() : vertex;
+  }
+
+  static Edge unwrap( Edge edge ) {
+    return edge instanceof SynchronizedEdge ? ( (SynchronizedEdge) edge ).getBaseEdge() : edge;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  static <T extends Element> T unwrapElement( T element ) {
+    if ( element instanceof SynchronizedElement ) {
+      return (T) ( (SynchronizedElement) element ).baseElement;
+    }
+    return element;
+  }
+
+  Iterable<Vertex> vertices( Iterable<Vertex> base ) {
+    return new LockedIterable<Vertex>( base ) {
+      Vertex wrapNext( Vertex vertex ) {
+        return wrap( vertex );
+      }
+    };
+  }
+
+  Iterable<Edge> edges( Iterable<Edge> base ) {
+    return new LockedIterable<Edge>( base ) {
+      Edge wrapNext( Edge edge ) {
+        return wrap( edge );
+      }
+    };
+  }
+
+  <T extends Element> CloseableIterable<T> elements( Iterable<T> base ) {
+    return new LockedIterable<T>( base ) {
+      T wrapNext( T element ) {
+        return wrapElement( element );
+      }
+    };
+  }
+
+  /**
+   * Iterates a base graph iterable lazily, taking the read lock for each step of the iteration. Within an evaluation
+   * the calling thread holds the read lock throughout anyway; outside one, a long traversal neither copies the element
+   * set nor blocks writers until it is done.
+   */
+  private abstract class LockedIterable<T> implements CloseableIterable<T> {
+
+    private final Iterable<T> base;
+
+    LockedIterable( Iterable<T> base ) {
+      this.base = base;
+    }
+
+    abstract T wrapNext( T element );
+
+    public Iterator<T> iterator() {
+      final Iterator<T> it;
+      lock.readLock().lock();
+      try {
+        it = base.iterator();
+      } finally {
+        lock.readLock().unlock();
+      }
+      return new Iterator<T>() {
+        public boolean hasNext() {
+          lock.readLock().lock();
+          try {
+            return it.hasNext();
+          } finally {
+            lock.readLock().unlock();
+          }
+        }
+
+        public T next() {
+          lock.readLock().lock();
+          try {
+            return wrapNext( it.next() );
+          } finally {
+            lock.readLock().unlock();
+          }
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    public void close() {
+      if ( base instanceof CloseableIterable ) {
+        ( (CloseableIterable<T>) base ).close();
+      }
+    }
+  }
+
+  static class Transactional extends SynchronizedGraph implements TransactionalGraph {
+    Transactional( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class KeyIndexable extends SynchronizedGraph implements KeyIndexableGraph {
+    KeyIndexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class Indexable extends SynchronizedGraph implements IndexableGraph {
+    Indexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class KeyIndexableIndexable extends SynchronizedGraph implements KeyIndexableGraph, IndexableGraph {
+    KeyIndexableIndexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class TransactionalKeyIndexable extends SynchronizedGraph implements TransactionalGraph, KeyIndexableGraph {
+    TransactionalKeyIndexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class TransactionalIndexable extends SynchronizedGraph implements TransactionalGraph, IndexableGraph {
+    TransactionalIndexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+
+  static class TransactionalKeyIndexableIndexable extends SynchronizedGraph implements TransactionalGraph,
+      KeyIndexableGraph, IndexableGraph {
+    TransactionalKeyIndexableIndexable( Graph baseGraph ) {
+      super( baseGraph );
+    }
+  }
+}
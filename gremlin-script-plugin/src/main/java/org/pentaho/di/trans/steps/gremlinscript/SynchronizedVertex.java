@@ -0,0 +1,80 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * A vertex of a {@link SynchronizedGraph}.
+ */
+public class SynchronizedVertex extends SynchronizedElement implements Vertex {
+
+  public SynchronizedVertex( Vertex baseVertex, SynchronizedGraph graph ) {
+    super( baseVertex, graph );
+  }
+
+  public Vertex getBaseVertex() {
+    return (Vertex) baseElement;
+  }
+
+  public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+    graph.getLock().readLock().lock();
+    try {
+      return graph.edges( getBaseVertex().getEdges( direction, labels ) );
+    } finally {
+      graph.getLock().readLock().unlock();
+    }
+  }
+
+  public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+    graph.getLock().readLock().lock();
+    try {
+      return graph.vertices( getBaseVertex().getVertices( direction, labels ) );
+    } finally {
+      graph.getLock().readLock().unlock();
+    }
+  }
+
+  public VertexQuery query() {
+    return new DefaultVertexQuery( this );
+  }
+
+  public Edge addEdge( String label, Vertex inVertex ) {
+    int readHolds = graph.lockForWrite();
+    try {
+      return graph.wrap( getBaseVertex().addEdge( label, SynchronizedGraph.unwrap( inVertex ) ) );
+    } finally {
+      graph.unlockAfterWrite( readHolds );
+    }
+  }
+
+  public String toString() {
+    return StringFactory.vertexString( this );
+  }
+}
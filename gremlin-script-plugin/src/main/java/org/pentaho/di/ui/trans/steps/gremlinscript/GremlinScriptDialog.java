@@ -119,10 +119,13 @@ import org.pentaho.di.ui.core.gui.GUIResource;
 import org.pentaho.di.ui.core.widget.ColumnInfo;
 import org.pentaho.di.ui.core.widget.StyledTextComp;
 import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.spoon.Spoon;
 import org.pentaho.di.ui.trans.dialog.TransPreviewProgressDialog;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
 
 public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInterface
 {
@@ -133,6 +136,38 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
 	private Label        wlEngines;
 	private CCombo       wEngines;
 	private FormData     fdlEngines, fdEngines;
+
+	private Label        wlShareGraph;
+	private Button       wShareGraph;
+	private FormData     fdlShareGraph, fdShareGraph;
+
+	private Label        wlGraphType;
+	private CCombo       wGraphType;
+	private FormData     fdlGraphType, fdGraphType;
+
+	private Label        wlGraphLocation;
+	private TextVar      wGraphLocation;
+	private FormData     fdlGraphLocation, fdGraphLocation;
+
+	private Label        wlGraphFileType;
+	private CCombo       wGraphFileType;
+	private FormData     fdlGraphFileType, fdGraphFileType;
+
+	private Label        wlGraphCacheSize;
+	private TextVar      wGraphCacheSize;
+	private FormData     fdlGraphCacheSize, fdGraphCacheSize;
+
+	private Label        wlEvalTimeout;
+	private TextVar      wEvalTimeout;
+	private FormData     fdlEvalTimeout, fdEvalTimeout;
+
+	private Label        wlMetricsInterval;
+	private TextVar      wMetricsInterval;
+	private FormData     fdlMetricsInterval, fdMetricsInterval;
+
+	private Label        wlOutputMode;
+	private CCombo       wOutputMode;
+	private FormData     fdlOutputMode, fdOutputMode;
 	
 	private ModifyListener lsMod;
 	private SashForm     wSash;
@@ -335,13 +370,177 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
     fdEngines.top  = new FormAttachment(wStepname, margin);
     fdEngines.right= new FormAttachment(100, 0);
     wEngines.setLayoutData(fdEngines);
+
+    // Share base graph line
+    wlShareGraph = new Label(shell, SWT.RIGHT);
+    wlShareGraph.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.ShareBaseGraph.Label"));
+    props.setLook(wlShareGraph);
+    fdlShareGraph = new FormData();
+    fdlShareGraph.left = new FormAttachment(0, 0);
+    fdlShareGraph.right = new FormAttachment(middle, -margin);
+    fdlShareGraph.top = new FormAttachment(wEngines, margin);
+    wlShareGraph.setLayoutData(fdlShareGraph);
+    wShareGraph = new Button(shell, SWT.CHECK);
+    wShareGraph.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.ShareBaseGraph.Tooltip"));
+    props.setLook(wShareGraph);
+    wShareGraph.addSelectionListener(new SelectionAdapter() {
+      public void widgetSelected(SelectionEvent e) {
+        input.setChanged();
+      }
+    });
+    fdShareGraph = new FormData();
+    fdShareGraph.left = new FormAttachment(middle, 0);
+    fdShareGraph.top = new FormAttachment(wEngines, margin);
+    fdShareGraph.right = new FormAttachment(100, 0);
+    wShareGraph.setLayoutData(fdShareGraph);
+
+    // Base graph type line
+    wlGraphType = new Label(shell, SWT.RIGHT);
+    wlGraphType.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphType.Label"));
+    props.setLook(wlGraphType);
+    fdlGraphType = new FormData();
+    fdlGraphType.left = new FormAttachment(0, 0);
+    fdlGraphType.right = new FormAttachment(middle, -margin);
+    fdlGraphType.top = new FormAttachment(wShareGraph, margin);
+    wlGraphType.setLayoutData(fdlGraphType);
+    wGraphType = new CCombo(shell, SWT.LEFT | SWT.READ_ONLY | SWT.BORDER);
+    wGraphType.setItems(GremlinScriptMeta.BASE_GRAPH_TYPE_DESCS);
+    props.setLook(wGraphType);
+    wGraphType.addModifyListener(lsMod);
+    wGraphType.addSelectionListener(new SelectionAdapter() {
+      public void widgetSelected(SelectionEvent e) {
+        setGraphTypeFlags();
+      }
+    });
+    fdGraphType = new FormData();
+    fdGraphType.left = new FormAttachment(middle, 0);
+    fdGraphType.top = new FormAttachment(wShareGraph, margin);
+    fdGraphType.right = new FormAttachment(100, 0);
+    wGraphType.setLayoutData(fdGraphType);
+
+    // Base graph location line
+    wlGraphLocation = new Label(shell, SWT.RIGHT);
+    wlGraphLocation.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphLocation.Label"));
+    props.setLook(wlGraphLocation);
+    fdlGraphLocation = new FormData();
+    fdlGraphLocation.left = new FormAttachment(0, 0);
+    fdlGraphLocation.right = new FormAttachment(middle, -margin);
+    fdlGraphLocation.top = new FormAttachment(wGraphType, margin);
+    wlGraphLocation.setLayoutData(fdlGraphLocation);
+    wGraphLocation = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wGraphLocation.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphLocation.Tooltip"));
+    props.setLook(wGraphLocation);
+    wGraphLocation.addModifyListener(lsMod);
+    fdGraphLocation = new FormData();
+    fdGraphLocation.left = new FormAttachment(middle, 0);
+    fdGraphLocation.top = new FormAttachment(wGraphType, margin);
+    fdGraphLocation.right = new FormAttachment(100, 0);
+    wGraphLocation.setLayoutData(fdGraphLocation);
+
+    // TinkerGraph file type line
+    wlGraphFileType = new Label(shell, SWT.RIGHT);
+    wlGraphFileType.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphFileType.Label"));
+    props.setLook(wlGraphFileType);
+    fdlGraphFileType = new FormData();
+    fdlGraphFileType.left = new FormAttachment(0, 0);
+    fdlGraphFileType.right = new FormAttachment(middle, -margin);
+    fdlGraphFileType.top = new FormAttachment(wGraphLocation, margin);
+    wlGraphFileType.setLayoutData(fdlGraphFileType);
+    wGraphFileType = new CCombo(shell, SWT.LEFT | SWT.READ_ONLY | SWT.BORDER);
+    for (TinkerGraph.FileType fileType : TinkerGraph.FileType.values()) {
+      wGraphFileType.add(fileType.name());
+    }
+    props.setLook(wGraphFileType);
+    wGraphFileType.addModifyListener(lsMod);
+    fdGraphFileType = new FormData();
+    fdGraphFileType.left = new FormAttachment(middle, 0);
+    fdGraphFileType.top = new FormAttachment(wGraphLocation, margin);
+    fdGraphFileType.right = new FormAttachment(100, 0);
+    wGraphFileType.setLayoutData(fdGraphFileType);
+
+    // Spill graph cache size line
+    wlGraphCacheSize = new Label(shell, SWT.RIGHT);
+    wlGraphCacheSize.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphCacheSize.Label"));
+    props.setLook(wlGraphCacheSize);
+    fdlGraphCacheSize = new FormData();
+    fdlGraphCacheSize.left = new FormAttachment(0, 0);
+    fdlGraphCacheSize.right = new FormAttachment(middle, -margin);
+    fdlGraphCacheSize.top = new FormAttachment(wGraphFileType, margin);
+    wlGraphCacheSize.setLayoutData(fdlGraphCacheSize);
+    wGraphCacheSize = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wGraphCacheSize.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.BaseGraphCacheSize.Tooltip"));
+    props.setLook(wGraphCacheSize);
+    wGraphCacheSize.addModifyListener(lsMod);
+    fdGraphCacheSize = new FormData();
+    fdGraphCacheSize.left = new FormAttachment(middle, 0);
+    fdGraphCacheSize.top = new FormAttachment(wGraphFileType, margin);
+    fdGraphCacheSize.right = new FormAttachment(100, 0);
+    wGraphCacheSize.setLayoutData(fdGraphCacheSize);
+
+    // Evaluation timeout line
+    wlEvalTimeout = new Label(shell, SWT.RIGHT);
+    wlEvalTimeout.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.EvalTimeout.Label"));
+    props.setLook(wlEvalTimeout);
+    fdlEvalTimeout = new FormData();
+    fdlEvalTimeout.left = new FormAttachment(0, 0);
+    fdlEvalTimeout.right = new FormAttachment(middle, -margin);
+    fdlEvalTimeout.top = new FormAttachment(wGraphCacheSize, margin);
+    wlEvalTimeout.setLayoutData(fdlEvalTimeout);
+    wEvalTimeout = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wEvalTimeout.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.EvalTimeout.Tooltip"));
+    props.setLook(wEvalTimeout);
+    wEvalTimeout.addModifyListener(lsMod);
+    fdEvalTimeout = new FormData();
+    fdEvalTimeout.left = new FormAttachment(middle, 0);
+    fdEvalTimeout.top = new FormAttachment(wGraphCacheSize, margin);
+    fdEvalTimeout.right = new FormAttachment(100, 0);
+    wEvalTimeout.setLayoutData(fdEvalTimeout);
+
+    // Metrics interval line
+    wlMetricsInterval = new Label(shell, SWT.RIGHT);
+    wlMetricsInterval.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.MetricsInterval.Label"));
+    props.setLook(wlMetricsInterval);
+    fdlMetricsInterval = new FormData();
+    fdlMetricsInterval.left = new FormAttachment(0, 0);
+    fdlMetricsInterval.right = new FormAttachment(middle, -margin);
+    fdlMetricsInterval.top = new FormAttachment(wEvalTimeout, margin);
+    wlMetricsInterval.setLayoutData(fdlMetricsInterval);
+    wMetricsInterval = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wMetricsInterval.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.MetricsInterval.Tooltip"));
+    props.setLook(wMetricsInterval);
+    wMetricsInterval.addModifyListener(lsMod);
+    fdMetricsInterval = new FormData();
+    fdMetricsInterval.left = new FormAttachment(middle, 0);
+    fdMetricsInterval.top = new FormAttachment(wEvalTimeout, margin);
+    fdMetricsInterval.right = new FormAttachment(100, 0);
+    wMetricsInterval.setLayoutData(fdMetricsInterval);
+
+    // Output mode line
+    wlOutputMode = new Label(shell, SWT.RIGHT);
+    wlOutputMode.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.OutputMode.Label"));
+    props.setLook(wlOutputMode);
+    fdlOutputMode = new FormData();
+    fdlOutputMode.left = new FormAttachment(0, 0);
+    fdlOutputMode.right = new FormAttachment(middle, -margin);
+    fdlOutputMode.top = new FormAttachment(wMetricsInterval, margin);
+    wlOutputMode.setLayoutData(fdlOutputMode);
+    wOutputMode = new CCombo(shell, SWT.LEFT | SWT.READ_ONLY | SWT.BORDER);
+    wOutputMode.setItems(GremlinScriptMeta.OUTPUT_MODE_DESCS);
+    wOutputMode.setToolTipText(BaseMessages.getString(PKG, "GremlinScriptDialog.OutputMode.Tooltip"));
+    props.setLook(wOutputMode);
+    wOutputMode.addModifyListener(lsMod);
+    fdOutputMode = new FormData();
+    fdOutputMode.left = new FormAttachment(middle, 0);
+    fdOutputMode.top = new FormAttachment(wMetricsInterval, margin);
+    fdOutputMode.right = new FormAttachment(100, 0);
+    wOutputMode.setLayoutData(fdOutputMode);
 		
 
 		wSash = new SashForm(shell, SWT.VERTICAL );
 		wSash.setLayout(new FormLayout());
     FormData fdSashform = new FormData(); 
     fdSashform.left   = new FormAttachment(0, 0); 
-    fdSashform.top    = new FormAttachment(wEngines, 0);
+    fdSashform.top    = new FormAttachment(wOutputMode, 0);
     fdSashform.right  = new FormAttachment(100, 0);
     fdSashform.bottom = new FormAttachment(100, 0);
     wSash.setLayoutData(fdSashform);
@@ -482,7 +681,7 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
 
 		fdSash = new FormData();
 		fdSash.left  = new FormAttachment(0, 0);
-		fdSash.top   = new FormAttachment(wEngines, 0);
+		fdSash.top   = new FormAttachment(wOutputMode, 0);
 		fdSash.right = new FormAttachment(100, 0);
 		fdSash.bottom= new FormAttachment(100, -50);
 		wSash.setLayoutData(fdSash);
@@ -859,6 +1058,23 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
 		wlPosition.setText(BaseMessages.getString(PKG, "GremlinScriptDialog.Position.Label2")+linenr+", "+colnr);  
 	}
 	
+  /**
+   * The location only applies to persistent and spilling base graphs, the file format only to TinkerGraph directories
+   * and the cache size only to spilling graphs.
+   */
+  private void setGraphTypeFlags() {
+    String type = GremlinScriptMeta.getBaseGraphTypeCode(wGraphType.getText());
+    boolean persistent = !GremlinScriptMeta.BASE_GRAPH_TYPE_MEMORY.equals(type);
+    wlGraphLocation.setEnabled(persistent);
+    wGraphLocation.setEnabled(persistent);
+    boolean tinkerGraph = GremlinScriptMeta.BASE_GRAPH_TYPE_TINKERGRAPH.equals(type);
+    wlGraphFileType.setEnabled(tinkerGraph);
+    wGraphFileType.setEnabled(tinkerGraph);
+    boolean spill = GremlinScriptMeta.BASE_GRAPH_TYPE_SPILL.equals(type);
+    wlGraphCacheSize.setEnabled(spill);
+    wGraphCacheSize.setEnabled(spill);
+  }
+
   /**
    * Copy information from the meta-data input to the dialog fields.
    */
@@ -870,6 +1086,20 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
     else {
       wEngines.setText(engineName);
     }
+    wShareGraph.setSelection(input.isShareBaseGraph());
+    wGraphType.setText(GremlinScriptMeta.getBaseGraphTypeDesc(input.getBaseGraphType()));
+    wGraphLocation.setText(Const.NVL(input.getBaseGraphLocation(), ""));
+    if (Const.isEmpty(input.getBaseGraphFileType())) {
+      wGraphFileType.setText(TinkerGraph.FileType.JAVA.name());
+    }
+    else {
+      wGraphFileType.setText(input.getBaseGraphFileType());
+    }
+    wGraphCacheSize.setText(Const.NVL(input.getBaseGraphCacheSize(), ""));
+    setGraphTypeFlags();
+    wEvalTimeout.setText(Const.NVL(input.getEvalTimeout(), "0"));
+    wMetricsInterval.setText(Const.NVL(input.getMetricsInterval(), "0"));
+    wOutputMode.setText(GremlinScriptMeta.getOutputModeDesc(input.getOutputMode()));
     
     for (int i = 0; i < input.getFieldname().length; i++) {
       if (input.getFieldname()[i] != null && input.getFieldname()[i].length() > 0) {
@@ -951,6 +1181,14 @@ public class GremlinScriptDialog extends BaseStepDialog implements StepDialogInt
 	
 	private void getInfo(GremlinScriptMeta meta) {
 	  meta.setEngineName(wEngines.getText());
+	  meta.setShareBaseGraph(wShareGraph.getSelection());
+	  meta.setBaseGraphType(GremlinScriptMeta.getBaseGraphTypeCode(wGraphType.getText()));
+	  meta.setBaseGraphLocation(wGraphLocation.getText());
+	  meta.setBaseGraphFileType(wGraphFileType.getText());
+	  meta.setBaseGraphCacheSize(wGraphCacheSize.getText());
+	  meta.setEvalTimeout(wEvalTimeout.getText());
+	  meta.setMetricsInterval(wMetricsInterval.getText());
+	  meta.setOutputMode(GremlinScriptMeta.getOutputModeCode(wOutputMode.getText()));
 		int nrfields = wFields.nrNonEmpty();
 		meta.allocate(nrfields);
 		for (int i=0;i<nrfields;i++){
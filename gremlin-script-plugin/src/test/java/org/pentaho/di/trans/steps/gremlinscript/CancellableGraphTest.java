@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+
+import org.junit.Test;
+import org.pentaho.di.trans.steps.gremlinscript.GremlinScriptCancellation.CancelledException;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.IndexableGraph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class CancellableGraphTest {
+
+  /**
+   * A graph whose vertex iteration never ends, standing in for a traversal that would run far too long.
+   */
+  private static class EndlessGraph extends TinkerGraph {
+    private static final long serialVersionUID = 1L;
+
+    private final Vertex vertex = addVertex( "1" );
+
+    public Iterable<Vertex> getVertices() {
+      return new Iterable<Vertex>() {
+        public Iterator<Vertex> iterator() {
+          return new Iterator<Vertex>() {
+            public boolean hasNext() {
+              return true;
+            }
+
+            public Vertex next() {
+              return vertex;
+            }
+
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * An in-memory graph that records how many vertices it had at its last commit, standing in for a transactional graph
+   * store.
+   */
+  private static class CommittingGraph extends TinkerGraph implements TransactionalGraph {
+    private static final long serialVersionUID = 1L;
+
+    int committedVertices = -1;
+
+    public void stopTransaction( Conclusion conclusion ) {
+      commit();
+    }
+
+    public void commit() {
+      committedVertices = vertices.size();
+    }
+
+    public void rollback() {
+    }
+  }
+
+  private long iterate( Graph graph ) {
+    long count = 0;
+    for ( Iterator<Vertex> it = graph.getVertices().iterator(); it.hasNext(); it.next() ) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test( timeout = 10000 )
+  public void testTimeoutStopsIteration() {
+    GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    Graph graph = new CancellableGraph( new EndlessGraph(), cancellation );
+    cancellation.start( 50 );
+    try {
+      iterate( graph );
+      fail( "the iteration should have timed out" );
+    } catch ( CancelledException e ) {
+      // expected
+    }
+    assertTrue( cancellation.isTripped() );
+
+    // a new evaluation gets a new budget
+    cancellation.start( 0 );
+    assertFalse( cancellation.isTripped() );
+    graph.getVertex( "1" );
+  }
+
+  @Test( timeout = 10000 )
+  public void testCancelFromAnotherThreadStopsIteration() throws InterruptedException {
+    final GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    Graph graph = new CancellableGraph( new EndlessGraph(), cancellation );
+    cancellation.start( 0 );
+    Thread stopper = new Thread() {
+      public void run() {
+        try {
+          Thread.sleep( 50 );
+        } catch ( InterruptedException e ) {
+          // cancel right away
+        }
+        cancellation.cancel();
+      }
+    };
+    stopper.start();
+    try {
+      iterate( graph );
+      fail( "the iteration should have been cancelled" );
+    } catch ( CancelledException e ) {
+      // expected
+    }
+    stopper.join();
+    assertTrue( cancellation.isCancelled() );
+    try {
+      graph.getVertex( "1" );
+      fail( "a cancelled graph stays cancelled" );
+    } catch ( CancelledException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFinishedEvaluationIsNotCancelled() {
+    GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    Graph graph = new CancellableGraph( TinkerGraphFactory.createTinkerGraph(), cancellation );
+    cancellation.start( 1 );
+    cancellation.finish();
+    assertEquals( 6L, iterate( graph ) );
+  }
+
+  @Test
+  public void testCapabilitiesFollowBaseGraph() {
+    GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    Graph graph = CancellableGraph.cancellableGraph( new TinkerGraph(), cancellation );
+    assertTrue( graph instanceof KeyIndexableGraph );
+    assertTrue( graph instanceof IndexableGraph );
+    assertFalse( graph instanceof TransactionalGraph );
+    assertTrue( graph.getFeatures().supportsKeyIndices );
+
+    graph = CancellableGraph.cancellableGraph( new CancellableGraph( new TinkerGraph(), cancellation ), cancellation );
+    assertFalse( graph instanceof KeyIndexableGraph );
+    assertFalse( graph instanceof IndexableGraph );
+  }
+
+  @Test
+  public void testIndicesAreWrapped() {
+    GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    TinkerGraph base = new TinkerGraph();
+    IndexableGraph graph = (IndexableGraph) CancellableGraph.cancellableGraph( base, cancellation );
+    Index<Vertex> index = graph.createIndex( "people", Vertex.class );
+    Vertex marko = graph.addVertex( "1" );
+    index.put( "name", "marko", marko );
+    assertEquals( base.getVertex( "1" ), base.getIndex( "people", Vertex.class ).get( "name", "marko" ).iterator()
+        .next() );
+    assertTrue( index.get( "name", "marko" ).iterator().next() instanceof CancellableVertex );
+
+    cancellation.cancel();
+    try {
+      index.count( "name", "marko" );
+      fail( "index lookups should be cancelled too" );
+    } catch ( CancelledException e ) {
+      // expected
+    }
+  }
+
+  /**
+   * Evaluates a script the way the step does: with a pooled engine of the step's default language and g bound to the
+   * shared base graph, wrapped for synchronization and cancellation.
+   */
+  @Test
+  public void testScriptCanUseKeyIndicesAndCommit() throws Exception {
+    CommittingGraph base = new CommittingGraph();
+    GremlinScriptCancellation cancellation = new GremlinScriptCancellation();
+    GremlinScriptEnginePool pool = GremlinScriptEnginePool.acquire( "gremlin-groovy" );
+    ScriptEngine engine = pool.borrowEngine();
+    try {
+      assertNotNull( engine );
+      Bindings scope = engine.createBindings();
+      scope.put( "g", CancellableGraph.cancellableGraph( SynchronizedGraph.synchronizedGraph( base ), cancellation ) );
+      String script =
+          "g.createKeyIndex('name', com.tinkerpop.blueprints.Vertex.class)\n"
+              + "g.addVertex(null).setProperty('name', 'marko')\n" + "g.commit()\n"
+              + "g.getVertices('name', 'marko').iterator().next().getProperty('name')";
+      cancellation.start( 0 );
+      Object result;
+      try {
+        result = ( (Compilable) engine ).compile( script ).eval( scope );
+      } finally {
+        cancellation.finish();
+      }
+      assertEquals( "marko", result );
+      assertTrue( base.getIndexedKeys( Vertex.class ).contains( "name" ) );
+      assertEquals( 1, base.committedVertices );
+    } finally {
+      pool.returnEngine( engine );
+      pool.release();
+    }
+  }
+}
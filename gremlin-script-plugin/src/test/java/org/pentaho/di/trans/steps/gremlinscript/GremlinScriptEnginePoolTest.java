@@ -0,0 +1,119 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.Reader;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.SimpleBindings;
+
+import org.junit.Test;
+
+public class GremlinScriptEnginePoolTest {
+
+  private static class TestEngine extends AbstractScriptEngine {
+    public Object eval( String script, ScriptContext context ) {
+      return script;
+    }
+
+    public Object eval( Reader reader, ScriptContext context ) {
+      return null;
+    }
+
+    public Bindings createBindings() {
+      return new SimpleBindings();
+    }
+
+    public ScriptEngineFactory getFactory() {
+      return null;
+    }
+  }
+
+  @Test
+  public void testOnePoolPerEngine() {
+    GremlinScriptEnginePool pool = GremlinScriptEnginePool.acquire( "pool-a" );
+    assertSame( pool, GremlinScriptEnginePool.acquire( "pool-a" ) );
+    assertNotSame( pool, GremlinScriptEnginePool.acquire( null ) );
+    assertSame( GremlinScriptEnginePool.acquire( null ), GremlinScriptEnginePool.acquire( null ) );
+  }
+
+  @Test
+  public void testReleaseDropsIdleEngines() {
+    GremlinScriptEnginePool pool = GremlinScriptEnginePool.acquire( "pool-d" );
+    GremlinScriptEnginePool.acquire( "pool-d" );
+    pool.returnEngine( new TestEngine() );
+
+    // still used by the second copy
+    pool.release();
+    assertEquals( 1, pool.getIdleCount() );
+    assertSame( pool, GremlinScriptEnginePool.acquire( "pool-d" ) );
+    pool.release();
+
+    pool.release();
+    assertEquals( 0, pool.getIdleCount() );
+    GremlinScriptEnginePool next = GremlinScriptEnginePool.acquire( "pool-d" );
+    assertNotSame( pool, next );
+    assertEquals( 0, next.getIdleCount() );
+    next.release();
+  }
+
+  @Test
+  public void testBorrowReturnsIdleEngines() {
+    GremlinScriptEnginePool pool = GremlinScriptEnginePool.acquire( "pool-b" );
+    ScriptEngine first = new TestEngine();
+    ScriptEngine second = new TestEngine();
+    pool.returnEngine( first );
+    assertEquals( 1, pool.getIdleCount() );
+    // one idle engine is kept until the pool is told about more step copies
+    pool.returnEngine( second );
+    assertEquals( 1, pool.getIdleCount() );
+    pool.returnEngine( null );
+    assertEquals( 1, pool.getIdleCount() );
+    assertSame( first, pool.borrowEngine() );
+    assertEquals( 0, pool.getIdleCount() );
+  }
+
+  @Test
+  public void testEnsureCapacity() {
+    GremlinScriptEnginePool pool = GremlinScriptEnginePool.acquire( "pool-c" );
+    pool.ensureCapacity( 2 );
+    pool.ensureCapacity( 1 );
+    ScriptEngine first = new TestEngine();
+    ScriptEngine second = new TestEngine();
+    pool.returnEngine( first );
+    pool.returnEngine( second );
+    pool.returnEngine( new TestEngine() );
+    assertEquals( 2, pool.getIdleCount() );
+    assertSame( second, pool.borrowEngine() );
+    assertSame( first, pool.borrowEngine() );
+  }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.Trans;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+public class GremlinScriptGraphRegistryTest {
+
+  /**
+   * An in-memory graph that records how it was concluded and shut down.
+   */
+  private static class RecordingGraph extends TinkerGraph implements TransactionalGraph {
+    private static final long serialVersionUID = 1L;
+
+    int commits;
+    int rollbacks;
+    boolean shutDown;
+
+    public void stopTransaction( Conclusion conclusion ) {
+      if ( conclusion == Conclusion.SUCCESS ) {
+        commit();
+      } else {
+        rollback();
+      }
+    }
+
+    public void commit() {
+      commits++;
+    }
+
+    public void rollback() {
+      rollbacks++;
+    }
+
+    public void shutdown() {
+      shutDown = true;
+      super.shutdown();
+    }
+  }
+
+  private static class Opener implements Callable<Graph> {
+    final RecordingGraph graph = new RecordingGraph();
+    int opened;
+
+    public Graph call() {
+      opened++;
+      return graph;
+    }
+  }
+
+  @Test
+  public void testLastReleaseShutsDown() throws KettleException {
+    Trans trans = new Trans();
+    Opener opener = new Opener();
+    Graph first = GremlinScriptGraphRegistry.acquire( trans, "step", 2, opener );
+    Graph second = GremlinScriptGraphRegistry.acquire( trans, "step", 2, opener );
+    assertSame( first, second );
+    assertEquals( 1, opener.opened );
+
+    GremlinScriptGraphRegistry.release( trans, "step", true );
+    assertFalse( opener.graph.shutDown );
+    GremlinScriptGraphRegistry.release( trans, "step", true );
+    assertTrue( opener.graph.shutDown );
+
+    // the next run opens the graph again
+    GremlinScriptGraphRegistry.acquire( trans, "step", 2, opener );
+    assertEquals( 2, opener.opened );
+    GremlinScriptGraphRegistry.release( trans, "step", true );
+  }
+
+  @Test
+  public void testOnlySharedGraphsAreSynchronized() throws KettleException {
+    Trans trans = new Trans();
+    Opener single = new Opener();
+    assertSame( single.graph, GremlinScriptGraphRegistry.acquire( trans, "single", 1, single ) );
+    Opener shared = new Opener();
+    Graph graph = GremlinScriptGraphRegistry.acquire( trans, "shared", 3, shared );
+    assertTrue( graph instanceof SynchronizedGraph );
+    assertSame( shared.graph, ( (SynchronizedGraph) graph ).getBaseGraph() );
+    GremlinScriptGraphRegistry.release( trans, "single", true );
+    GremlinScriptGraphRegistry.release( trans, "shared", true );
+  }
+
+  @Test
+  public void testEachCopyCommitsOrRollsBack() throws KettleException {
+    Trans trans = new Trans();
+    Opener opener = new Opener();
+    GremlinScriptGraphRegistry.acquire( trans, "step", 2, opener );
+    GremlinScriptGraphRegistry.acquire( trans, "step", 2, opener );
+    GremlinScriptGraphRegistry.release( trans, "step", true );
+    GremlinScriptGraphRegistry.release( trans, "step", false );
+    assertEquals( 1, opener.graph.commits );
+    assertEquals( 1, opener.graph.rollbacks );
+
+    Opener single = new Opener();
+    GremlinScriptGraphRegistry.acquire( trans, "single", 1, single );
+    GremlinScriptGraphRegistry.release( trans, "single", false );
+    assertEquals( 0, single.graph.commits );
+    assertEquals( 1, single.graph.rollbacks );
+  }
+
+  @Test
+  public void testTransformationsDoNotShareGraphs() throws KettleException {
+    Trans first = new Trans();
+    Trans second = new Trans();
+    Graph a = GremlinScriptGraphRegistry.acquire( first, "step", 1, new Opener() );
+    Graph b = GremlinScriptGraphRegistry.acquire( second, "step", 1, new Opener() );
+    assertNotSame( a, b );
+    GremlinScriptGraphRegistry.release( first, "step", true );
+    GremlinScriptGraphRegistry.release( second, "step", true );
+  }
+
+  @Test( expected = KettleException.class )
+  public void testOpenFailure() throws KettleException {
+    GremlinScriptGraphRegistry.acquire( new Trans(), "step", 1, new Callable<Graph>() {
+      public Graph call() throws Exception {
+        throw new IllegalStateException( "no graph" );
+      }
+    } );
+  }
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.gremlinscript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.IndexableGraph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class SynchronizedGraphTest {
+
+  /**
+   * Counts the vertices pulled from the base graph.
+   */
+  private static class CountingGraph extends TinkerGraph {
+    private static final long serialVersionUID = 1L;
+
+    int pulled;
+
+    public Iterable<Vertex> getVertices() {
+      final Iterable<Vertex> vertices = super.getVertices();
+      return new Iterable<Vertex>() {
+        public Iterator<Vertex> iterator() {
+          final Iterator<Vertex> it = vertices.iterator();
+          return new Iterator<Vertex>() {
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+
+            public Vertex next() {
+              pulled++;
+              return it.next();
+            }
+
+            public void remove() {
+              it.remove();
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * An in-memory graph that counts its commits.
+   */
+  private static class CommittingGraph extends TinkerGraph implements TransactionalGraph {
+    private static final long serialVersionUID = 1L;
+
+    int commits;
+
+    public void stopTransaction( Conclusion conclusion ) {
+      commit();
+    }
+
+    public void commit() {
+      commits++;
+    }
+
+    public void rollback() {
+    }
+  }
+
+  @Test
+  public void testIterationIsLazy() {
+    CountingGraph base = new CountingGraph();
+    for ( int i = 0; i < 100; i++ ) {
+      base.addVertex( i );
+    }
+    SynchronizedGraph graph = new SynchronizedGraph( base );
+    Iterator<Vertex> vertices = graph.getVertices().iterator();
+    assertEquals( 0, base.pulled );
+    assertTrue( vertices.next() instanceof SynchronizedVertex );
+    assertEquals( 1, base.pulled );
+  }
+
+  @Test
+  public void testLockIsReleasedBetweenElements() {
+    SynchronizedGraph graph = new SynchronizedGraph( TinkerGraphFactory.createTinkerGraph() );
+    Iterator<Vertex> vertices = graph.getVertices().iterator();
+    vertices.next();
+    // a writer on another thread would block if the iterator still held the read lock
+    assertTrue( graph.getLock().writeLock().tryLock() );
+    graph.getLock().writeLock().unlock();
+  }
+
+  @Test
+  public void testElementsAreWrappedAndUnwrapped() {
+    TinkerGraph base = TinkerGraphFactory.createTinkerGraph();
+    SynchronizedGraph graph = new SynchronizedGraph( base );
+    Vertex marko = graph.getVertex( "1" );
+    Vertex peter = graph.getVertex( "6" );
+    Edge edge = graph.addEdge( null, marko, peter, "knows" );
+    assertTrue( edge instanceof SynchronizedEdge );
+    assertSame( base.getVertex( "6" ), SynchronizedGraph.unwrap( edge.getVertex( Direction.IN ) ) );
+    int knows = 0;
+    for ( Vertex vertex : marko.getVertices( Direction.OUT, "knows" ) ) {
+      assertTrue( vertex instanceof SynchronizedVertex );
+      knows++;
+    }
+    assertEquals( 3, knows );
+    graph.removeEdge( edge );
+    assertNull( base.getEdge( edge.getId() ) );
+  }
+
+  @Test
+  public void testConcurrentWriterAndReaders() throws Exception {
+    TinkerGraph base = new TinkerGraph();
+    Vertex hub = base.addVertex( null );
+    for ( int i = 0; i < 200; i++ ) {
+      base.addEdge( null, hub, base.addVertex( null ), "to" );
+    }
+    final SynchronizedGraph graph = SynchronizedGraph.synchronizedGraph( base );
+    final Object hubId = hub.getId();
+    final List<Throwable> errors = Collections.synchronizedList( new ArrayList<Throwable>() );
+
+    List<Thread> threads = new ArrayList<Thread>();
+    threads.add( new Thread() {
+      public void run() {
+        try {
+          for ( int i = 0; i < 300; i++ ) {
+            graph.beginEvaluation();
+            try {
+              Vertex vertex = graph.addVertex( null );
+              graph.getVertex( hubId ).addEdge( "to", vertex );
+              vertex.setProperty( "i", i );
+            } finally {
+              graph.endEvaluation();
+            }
+          }
+        } catch ( Throwable t ) {
+          errors.add( t );
+        }
+      }
+    } );
+    for ( int r = 0; r < 3; r++ ) {
+      threads.add( new Thread() {
+        public void run() {
+          try {
+            for ( int i = 0; i < 300; i++ ) {
+              graph.beginEvaluation();
+              try {
+                Vertex hub = graph.getVertex( hubId );
+                int vertices = count( graph.getVertices() );
+                int edges = count( hub.getEdges( Direction.OUT, "to" ) );
+                // nobody writes to the graph while this evaluation runs
+                assertEquals( vertices, count( graph.getVertices() ) );
+                assertEquals( edges, count( hub.getEdges( Direction.OUT, "to" ) ) );
+              } finally {
+                graph.endEvaluation();
+              }
+            }
+          } catch ( Throwable t ) {
+            errors.add( t );
+          }
+        }
+      } );
+    }
+    for ( Thread thread : threads ) {
+      thread.start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join( 60000L );
+      assertFalse( thread.isAlive() );
+    }
+    assertEquals( Collections.emptyList(), errors );
+    assertEquals( 501, count( base.getVertices() ) );
+  }
+
+  @Test
+  public void testWritesWaitForOtherEvaluations() throws Exception {
+    TinkerGraph base = new TinkerGraph();
+    final SynchronizedGraph graph = SynchronizedGraph.synchronizedGraph( base );
+    Thread writer = new Thread() {
+      public void run() {
+        graph.beginEvaluation();
+        try {
+          graph.addVertex( null );
+        } finally {
+          graph.endEvaluation();
+        }
+      }
+    };
+    graph.beginEvaluation();
+    try {
+      writer.start();
+      writer.join( 200L );
+      assertTrue( writer.isAlive() );
+      assertEquals( 0, count( graph.getVertices() ) );
+    } finally {
+      graph.endEvaluation();
+    }
+    writer.join( 10000L );
+    assertFalse( writer.isAlive() );
+    assertEquals( 1, count( base.getVertices() ) );
+  }
+
+  @Test
+  public void testCapabilitiesFollowBaseGraph() {
+    Object graph = SynchronizedGraph.synchronizedGraph( new TinkerGraph() );
+    assertTrue( graph instanceof KeyIndexableGraph );
+    assertTrue( graph instanceof IndexableGraph );
+    assertFalse( graph instanceof TransactionalGraph );
+    // the plain wrapper implements none of the optional interfaces
+    graph = SynchronizedGraph.synchronizedGraph( new SynchronizedGraph( new TinkerGraph() ) );
+    assertFalse( graph instanceof KeyIndexableGraph );
+    assertFalse( graph instanceof IndexableGraph );
+  }
+
+  @Test
+  public void testIndicesAndTransactionsAreDelegated() {
+    CommittingGraph base = new CommittingGraph();
+    SynchronizedGraph graph = SynchronizedGraph.synchronizedGraph( base );
+    assertTrue( graph instanceof TransactionalGraph );
+
+    ( (KeyIndexableGraph) graph ).createKeyIndex( "name", Vertex.class );
+    assertTrue( base.getIndexedKeys( Vertex.class ).contains( "name" ) );
+
+    Index<Vertex> index = ( (IndexableGraph) graph ).createIndex( "people", Vertex.class );
+    Vertex marko = graph.addVertex( null );
+    index.put( "name", "marko", marko );
+    assertSame( base.getVertex( marko.getId() ), base.getIndex( "people", Vertex.class ).get( "name", "marko" )
+        .iterator().next() );
+    Vertex found = index.get( "name", "marko" ).iterator().next();
+    assertTrue( found instanceof SynchronizedVertex );
+    assertEquals( marko, found );
+    assertEquals( 1L, index.count( "name", "marko" ) );
+
+    int commits = base.commits;
+    ( (TransactionalGraph) graph ).commit();
+    assertEquals( commits + 1, base.commits );
+  }
+
+  private static int count( Iterable<?> iterable ) {
+    int count = 0;
+    for ( Iterator<?> it = iterable.iterator(); it.hasNext(); it.next() ) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,529 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogLevel;
+import org.pentaho.di.core.plugins.PluginInterface;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.plugins.StepPluginType;
+import org.pentaho.di.core.plugins.ValueMetaPluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaPlugin;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaDataCombi;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.addnodestograph.AddNodesToGraphMeta;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.di.trans.steps.gremlinscript.GremlinScript;
+import org.pentaho.di.trans.steps.gremlinscript.GremlinScriptMeta;
+import org.pentaho.di.trans.steps.gremlinscript.GremlinScriptMetrics;
+import org.pentaho.di.trans.steps.gremlinscript.ScriptValuesScript;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+import org.pentaho.di.trans.steps.vertexlookup.VertexLookupMeta;
+
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Drives the graph steps through a real, headless Kettle transformation (Injector -> step under test -> Dummy) and
+ * reports throughput, per-row latency and allocation for each of them. Nothing here touches Spoon or SWT, so it can run
+ * in a build pipeline and fail it: any threshold that is exceeded makes the process exit with status 1.
+ * <p>
+ * Example:
+ * 
+ * <pre>
+ * gradle :pdi-graph-benchmarks:stepThroughput -PharnessArgs="-rows 200000 -copies 2 -maxP99Micros 500"
+ * </pre>
+ * 
+ * Run without arguments to use the defaults, or with <code>-help</code> for the list of options.
+ */
+public class StepThroughputHarness {
+
+  public static final String STEP_ADD_NODES = "addnodes";
+  public static final String STEP_VERTEX_LOOKUP = "vertexlookup";
+  public static final String STEP_GREMLIN = "gremlin";
+
+  private static final String INPUT_STEP = "input";
+  private static final String OUTPUT_STEP = "output";
+
+  private static final String ID_FIELD = "id";
+  private static final String GRAPH_FIELD = "graph";
+  private static final String MAP_FIELD = "properties";
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private int rows = 100000;
+  private int warmupRows = 10000;
+  private int mapWidth = 8;
+  private int graphSize = 10000;
+  private int copies = 1;
+  private String[] steps = { STEP_ADD_NODES, STEP_VERTEX_LOOKUP, STEP_GREMLIN };
+  private String script;
+
+  private double maxP99Micros = -1;
+  private double minRowsPerSecond = -1;
+  private double maxBytesPerRow = -1;
+
+  private int mapType = -1;
+
+  public static void main( String[] args ) throws Exception {
+    StepThroughputHarness harness = new StepThroughputHarness();
+    if ( !harness.parseArguments( args ) ) {
+      printUsage();
+      System.exit( 2 );
+    }
+    System.exit( harness.run() );
+  }
+
+  /**
+   * Runs every requested step and prints one result line per step.
+   * 
+   * @return 0 when all thresholds are met, 1 when at least one is exceeded and 2 when a transformation failed
+   */
+  public int run() throws KettleException {
+    init();
+
+    int status = 0;
+    for ( String step : steps ) {
+      if ( STEP_ADD_NODES.equals( step ) && mapType < 0 ) {
+        System.out.println( step + ": skipped, the Map value type plugin is not on the classpath" );
+        continue;
+      }
+      if ( warmupRows > 0 ) {
+        runStep( step, warmupRows );
+      }
+      Result result = runStep( step, rows );
+      if ( result == null ) {
+        status = 2;
+        continue;
+      }
+      System.out.println( result );
+      for ( String metricsLine : result.gremlinMetrics ) {
+        System.out.println( "  " + metricsLine );
+      }
+      if ( status == 0 && !checkThresholds( result ) ) {
+        status = 1;
+      }
+    }
+    return status;
+  }
+
+  private void init() throws KettleException {
+    KettleEnvironment.init( false );
+
+    // The plugins are on the classpath rather than in a plugins folder, so register them by hand
+    PluginRegistry registry = PluginRegistry.getInstance();
+    registry.registerPluginClass( ValueMetaGraph.class.getName(), ValueMetaPluginType.class, ValueMetaPlugin.class );
+    registry.registerPluginClass( AddNodesToGraphMeta.class.getName(), StepPluginType.class, Step.class );
+    registry.registerPluginClass( GremlinScriptMeta.class.getName(), StepPluginType.class, Step.class );
+    try {
+      registry.registerPluginClass( "org.pentaho.di.core.row.value.ValueMetaMap", ValueMetaPluginType.class,
+          ValueMetaPlugin.class );
+      PluginInterface mapPlugin = registry.findPluginWithName( ValueMetaPluginType.class, "Map" );
+      if ( mapPlugin != null ) {
+        mapType = Integer.parseInt( mapPlugin.getIds()[0] );
+      }
+    } catch ( Exception e ) {
+      mapType = -1;
+    }
+
+    if ( THREADS instanceof com.sun.management.ThreadMXBean ) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+      if ( threads.isThreadAllocatedMemorySupported() ) {
+        threads.setThreadAllocatedMemoryEnabled( true );
+      }
+    }
+  }
+
+  private Result runStep( String step, int nrRows ) throws KettleException {
+    RowMetaInterface rowMeta = createRowMeta();
+    Graph[] graphs = new Graph[copies];
+    for ( int i = 0; i < copies; i++ ) {
+      graphs[i] = SyntheticGraphs.create( graphSize, SyntheticGraphs.DEFAULT_SEED + i );
+    }
+
+    // Generate everything up front so the producer never holds back the step under test
+    List<Object[]> input = new ArrayList<Object[]>( nrRows );
+    for ( int i = 0; i < nrRows; i++ ) {
+      input.add( createRow( rowMeta, i, graphs ) );
+    }
+
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( "step-throughput-" + step );
+    StepMeta inputStep = new StepMeta( "Injector", INPUT_STEP, new InjectorMeta() );
+    StepMeta stepUnderTest = createStepUnderTest( step );
+    stepUnderTest.setCopies( copies );
+    StepMeta outputStep = new StepMeta( "Dummy", OUTPUT_STEP, new DummyTransMeta() );
+    transMeta.addStep( inputStep );
+    transMeta.addStep( stepUnderTest );
+    transMeta.addStep( outputStep );
+    transMeta.addTransHop( new TransHopMeta( inputStep, stepUnderTest ) );
+    transMeta.addTransHop( new TransHopMeta( stepUnderTest, outputStep ) );
+
+    Trans trans = new Trans( transMeta );
+    trans.setLogLevel( LogLevel.MINIMAL );
+    trans.prepareExecution( null );
+    RowProducer producer = trans.addRowProducer( INPUT_STEP, 0 );
+
+    List<StepProbe> probes = new ArrayList<StepProbe>();
+    for ( StepMetaDataCombi combi : trans.getSteps() ) {
+      if ( combi.stepname.equals( stepUnderTest.getName() ) ) {
+        StepProbe probe = new StepProbe( nrRows / copies + 1 );
+        combi.step.addRowListener( probe );
+        probes.add( probe );
+      }
+    }
+
+    trans.startThreads();
+    long start = System.nanoTime();
+    for ( Object[] row : input ) {
+      producer.putRow( rowMeta, row );
+    }
+    producer.finished();
+    trans.waitUntilFinished();
+    long elapsed = System.nanoTime() - start;
+
+    if ( trans.getErrors() > 0 ) {
+      System.out.println( step + ": the transformation finished with " + trans.getErrors() + " error(s)" );
+      return null;
+    }
+
+    Result result = new Result( step, nrRows, elapsed, probes );
+    for ( StepMetaDataCombi combi : trans.getSteps() ) {
+      if ( combi.step instanceof GremlinScript && ( (GremlinScript) combi.step ).getMetrics() != null ) {
+        result.addGremlinMetrics( combi.copy, ( (GremlinScript) combi.step ).getMetrics() );
+      }
+    }
+    return result;
+  }
+
+  private RowMetaInterface createRowMeta() throws KettleException {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+    rowMeta.addValueMeta( new ValueMetaGraph( GRAPH_FIELD ) );
+    if ( mapType >= 0 ) {
+      rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( MAP_FIELD, mapType ) );
+    }
+    return rowMeta;
+  }
+
+  private Object[] createRow( RowMetaInterface rowMeta, int rowNr, Graph[] graphs ) {
+    Object[] row = new Object[rowMeta.size()];
+    row[0] = Long.valueOf( rowNr );
+    // Rows are handed out round-robin, so each copy only ever sees (and mutates) its own graph
+    row[1] = graphs[rowNr % graphs.length];
+    if ( mapType >= 0 ) {
+      Map<Object, Object> properties = new HashMap<Object, Object>( mapWidth * 2 );
+      for ( int i = 0; i < mapWidth; i++ ) {
+        properties.put( "p" + i, ( i & 1 ) == 0 ? (Object) Long.valueOf( rowNr + i ) : "value" + rowNr + "_" + i );
+      }
+      row[2] = properties;
+    }
+    return row;
+  }
+
+  private StepMeta createStepUnderTest( String step ) {
+    StepMetaInterface meta;
+    String id;
+    if ( STEP_ADD_NODES.equals( step ) ) {
+      AddNodesToGraphMeta addNodesMeta = new AddNodesToGraphMeta();
+      addNodesMeta.setGraphFieldName( GRAPH_FIELD );
+      addNodesMeta.setMapFieldName( MAP_FIELD );
+      meta = addNodesMeta;
+      id = "AddNodesToGraph";
+    } else if ( STEP_VERTEX_LOOKUP.equals( step ) ) {
+      VertexLookupMeta lookupMeta = new VertexLookupMeta();
+      lookupMeta.setDefault();
+      lookupMeta.allocate( 1, 1 );
+      lookupMeta.setGraphField( GRAPH_FIELD );
+      lookupMeta.getKeystream()[0] = ID_FIELD;
+      lookupMeta.getKeylookup()[0] = ID_FIELD;
+      lookupMeta.getValue()[0] = "name";
+      lookupMeta.getValueName()[0] = "name";
+      lookupMeta.getValueDefault()[0] = "unknown";
+      lookupMeta.getValueDefaultType()[0] = ValueMetaInterface.TYPE_STRING;
+      meta = lookupMeta;
+      id = "VertexLookup";
+    } else if ( STEP_GREMLIN.equals( step ) ) {
+      GremlinScriptMeta gremlinMeta = new GremlinScriptMeta();
+      gremlinMeta.setDefault();
+      gremlinMeta.setJSScripts( new ScriptValuesScript[] { new ScriptValuesScript( ScriptValuesScript.TRANSFORM_SCRIPT,
+          "script", script != null ? script : getDefaultScript() ) } );
+      gremlinMeta.allocate( 1 );
+      gremlinMeta.getFieldname()[0] = "degree";
+      gremlinMeta.getRename()[0] = "degree";
+      gremlinMeta.getType()[0] = ValueMetaInterface.TYPE_INTEGER;
+      gremlinMeta.getLength()[0] = -1;
+      gremlinMeta.getPrecision()[0] = -1;
+      meta = gremlinMeta;
+      id = "GremlinScript";
+    } else {
+      throw new IllegalArgumentException( "Unknown step: " + step );
+    }
+    return new StepMeta( id, step, meta );
+  }
+
+  private String getDefaultScript() {
+    int nrVertices = Math.max( 1, graphSize / 5 );
+    return "def v = graph.getVertex( String.valueOf( id % " + nrVertices + " ) )\n"
+        + "degree = v == null ? 0L : (long) v.getEdges( com.tinkerpop.blueprints.Direction.BOTH ).iterator().size()\n";
+  }
+
+  private boolean checkThresholds( Result result ) {
+    boolean ok = true;
+    if ( maxP99Micros >= 0 && result.getPercentileMicros( 99.0 ) > maxP99Micros ) {
+      System.out.println( "FAILED " + result.step + ": p99 latency " + format( result.getPercentileMicros( 99.0 ) )
+          + " us exceeds " + format( maxP99Micros ) + " us" );
+      ok = false;
+    }
+    if ( minRowsPerSecond >= 0 && result.getRowsPerSecond() < minRowsPerSecond ) {
+      System.out.println( "FAILED " + result.step + ": " + format( result.getRowsPerSecond() )
+          + " rows/s is below " + format( minRowsPerSecond ) + " rows/s" );
+      ok = false;
+    }
+    if ( maxBytesPerRow >= 0 && result.getBytesPerRow() > maxBytesPerRow ) {
+      System.out.println( "FAILED " + result.step + ": " + format( result.getBytesPerRow() )
+          + " allocated bytes/row exceeds " + format( maxBytesPerRow ) );
+      ok = false;
+    }
+    return ok;
+  }
+
+  boolean parseArguments( String[] args ) {
+    try {
+      for ( int i = 0; i < args.length; i++ ) {
+        String arg = args[i];
+        if ( "-help".equals( arg ) ) {
+          return false;
+        }
+        if ( i + 1 >= args.length ) {
+          System.out.println( "Missing value for " + arg );
+          return false;
+        }
+        String value = args[++i];
+        if ( "-rows".equals( arg ) ) {
+          rows = Integer.parseInt( value );
+        } else if ( "-warmupRows".equals( arg ) ) {
+          warmupRows = Integer.parseInt( value );
+        } else if ( "-mapWidth".equals( arg ) ) {
+          mapWidth = Integer.parseInt( value );
+        } else if ( "-graphSize".equals( arg ) ) {
+          graphSize = Integer.parseInt( value );
+        } else if ( "-copies".equals( arg ) ) {
+          copies = Math.max( 1, Integer.parseInt( value ) );
+        } else if ( "-steps".equals( arg ) ) {
+          steps = value.split( "," );
+        } else if ( "-script".equals( arg ) ) {
+          script = value;
+        } else if ( "-maxP99Micros".equals( arg ) ) {
+          maxP99Micros = Double.parseDouble( value );
+        } else if ( "-minRowsPerSecond".equals( arg ) ) {
+          minRowsPerSecond = Double.parseDouble( value );
+        } else if ( "-maxBytesPerRow".equals( arg ) ) {
+          maxBytesPerRow = Double.parseDouble( value );
+        } else {
+          System.out.println( "Unknown option " + arg );
+          return false;
+        }
+      }
+    } catch ( NumberFormatException e ) {
+      System.out.println( "Invalid number: " + e.getMessage() );
+      return false;
+    }
+    return true;
+  }
+
+  private static void printUsage() {
+    System.out.println( "Usage: StepThroughputHarness [options]" );
+    System.out.println( "  -rows <n>               rows to push through each step (100000)" );
+    System.out.println( "  -warmupRows <n>         rows for the untimed warm-up run (10000)" );
+    System.out.println( "  -mapWidth <n>           entries in the property map of each row (8)" );
+    System.out.println( "  -graphSize <n>          vertices plus edges in each row's graph (10000)" );
+    System.out.println( "  -copies <n>             copies of the step under test (1)" );
+    System.out.println( "  -steps <list>           comma separated, from addnodes,vertexlookup,gremlin (all)" );
+    System.out.println( "  -script <gremlin>       transform script for the gremlin step; must set 'degree'" );
+    System.out.println( "  -maxP99Micros <n>       fail if a step's p99 row latency is higher" );
+    System.out.println( "  -minRowsPerSecond <n>   fail if a step's throughput is lower" );
+    System.out.println( "  -maxBytesPerRow <n>     fail if a step allocates more per row" );
+  }
+
+  static String format( double value ) {
+    return String.format( Locale.US, "%.1f", value );
+  }
+
+  static long allocatedBytes( long threadId ) {
+    if ( THREADS instanceof com.sun.management.ThreadMXBean ) {
+      return ( (com.sun.management.ThreadMXBean) THREADS ).getThreadAllocatedBytes( threadId );
+    }
+    return -1L;
+  }
+
+  /**
+   * Listens to one copy of the step under test. Row listeners run on the step's own thread, so the time between a read
+   * and the last write before the next read is the time spent on that row, and the thread's allocation counter
+   * belongs to the step alone.
+   */
+  static class StepProbe extends RowAdapter {
+    private final long[] latencies;
+    private volatile int count;
+
+    private long readNanos = -1L;
+    private long lastWriteNanos = -1L;
+    private long firstReadNanos = -1L;
+
+    private long threadId = -1L;
+    private long startAllocated;
+    private long lastAllocated;
+
+    StepProbe( int capacity ) {
+      latencies = new long[capacity];
+    }
+
+    @Override
+    public void rowReadEvent( RowMetaInterface rowMeta, Object[] row ) {
+      long now = System.nanoTime();
+      flush();
+      if ( threadId < 0 ) {
+        threadId = Thread.currentThread().getId();
+        startAllocated = allocatedBytes( threadId );
+        lastAllocated = startAllocated;
+        firstReadNanos = now;
+      }
+      readNanos = now;
+    }
+
+    @Override
+    public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+      lastWriteNanos = System.nanoTime();
+      lastAllocated = allocatedBytes( threadId );
+    }
+
+    /**
+     * Records the row in flight, if it has produced output.
+     */
+    void flush() {
+      if ( readNanos >= 0 && lastWriteNanos >= readNanos && count < latencies.length ) {
+        latencies[count] = lastWriteNanos - readNanos;
+        count++;
+      }
+      readNanos = -1L;
+    }
+  }
+
+  static class Result {
+    final String step;
+    final int rows;
+    final long elapsedNanos;
+    final long[] latencies;
+    final long allocatedBytes;
+    final long busyNanos;
+    final List<String> gremlinMetrics = new ArrayList<String>();
+
+    Result( String step, int rows, long elapsedNanos, List<StepProbe> probes ) {
+      this.step = step;
+      this.rows = rows;
+      this.elapsedNanos = elapsedNanos;
+
+      int total = 0;
+      long allocated = 0;
+      long busy = 0;
+      for ( StepProbe probe : probes ) {
+        probe.flush();
+        total += probe.count;
+        if ( probe.threadId >= 0 && probe.startAllocated >= 0 ) {
+          allocated += probe.lastAllocated - probe.startAllocated;
+        }
+        if ( probe.firstReadNanos >= 0 ) {
+          busy = Math.max( busy, probe.lastWriteNanos - probe.firstReadNanos );
+        }
+      }
+      latencies = new long[total];
+      int offset = 0;
+      for ( StepProbe probe : probes ) {
+        System.arraycopy( probe.latencies, 0, latencies, offset, probe.count );
+        offset += probe.count;
+      }
+      Arrays.sort( latencies );
+      allocatedBytes = allocated;
+      busyNanos = busy;
+    }
+
+    double getRowsPerSecond() {
+      return elapsedNanos == 0 ? 0.0 : rows * 1000000000.0 / elapsedNanos;
+    }
+
+    double getPercentileMicros( double percentile ) {
+      if ( latencies.length == 0 ) {
+        return 0.0;
+      }
+      int index = (int) Math.ceil( latencies.length * percentile / 100.0 ) - 1;
+      return latencies[Math.max( 0, Math.min( latencies.length - 1, index ) )] / 1000.0;
+    }
+
+    double getBytesPerRow() {
+      return rows == 0 ? 0.0 : (double) allocatedBytes / rows;
+    }
+
+    double getAllocationMBPerSecond() {
+      return busyNanos == 0 ? 0.0 : allocatedBytes / 1048576.0 * 1000000000.0 / busyNanos;
+    }
+
+    void addGremlinMetrics( int copy, GremlinScriptMetrics metrics ) {
+      for ( int phase = 0; phase < metrics.getNrPhases(); phase++ ) {
+        gremlinMetrics.add( "copy " + copy + " " + metrics.getPhaseName( phase ) + ": count="
+            + metrics.getCount( phase ) + " avg=" + format( metrics.getAverageNanos( phase ) / 1000.0 ) + " us p99<="
+            + format( metrics.getPercentileNanos( phase, 99.0 ) / 1000.0 ) + " us" );
+      }
+    }
+
+    @Override
+    public String toString() {
+      return step + ": rows=" + rows + " rows/s=" + format( getRowsPerSecond() ) + " p50="
+          + format( getPercentileMicros( 50.0 ) ) + "us p99=" + format( getPercentileMicros( 99.0 ) ) + "us max="
+          + format( getPercentileMicros( 100.0 ) ) + "us alloc=" + format( getAllocationMBPerSecond() ) + "MB/s ("
+          + format( getBytesPerRow() ) + " bytes/row)";
+    }
+  }
+}
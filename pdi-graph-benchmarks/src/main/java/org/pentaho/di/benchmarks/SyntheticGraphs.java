@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.benchmarks;
+
+import java.util.Random;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * Builds reproducible synthetic graphs for the benchmarks. The same seed and element count always yield the same
+ * graph, so numbers taken before and after a change are measured against identical input.
+ * <p>
+ * Roughly a fifth of the requested elements are vertices and the rest are edges. Edge targets are skewed towards
+ * low-numbered vertices to give a few high in-degree hubs, which is closer to real data than a uniform graph.
+ */
+public class SyntheticGraphs {
+
+  public static final long DEFAULT_SEED = 47274L;
+
+  private static final String[] LABELS = { "knows", "created", "likes" };
+
+  private SyntheticGraphs() {
+  }
+
+  public static Graph create( int elements ) {
+    return create( elements, DEFAULT_SEED );
+  }
+
+  public static Graph create( int elements, long seed ) {
+    Graph graph = new TinkerGraph();
+    populate( graph, elements, seed );
+    return graph;
+  }
+
+  /**
+   * Adds <code>elements</code> vertices and edges to the given graph.
+   * 
+   * @param graph
+   *          the graph to populate, normally empty
+   * @param elements
+   *          the total number of vertices plus edges to add
+   * @param seed
+   *          the random seed
+   */
+  public static void populate( Graph graph, int elements, long seed ) {
+    if ( elements <= 0 ) {
+      return;
+    }
+    Random random = new Random( seed );
+    int nrVertices = Math.max( 1, elements / 5 );
+    int nrEdges = elements - nrVertices;
+
+    Vertex[] vertices = new Vertex[nrVertices];
+    for ( int i = 0; i < nrVertices; i++ ) {
+      Vertex v = graph.addVertex( String.valueOf( i ) );
+      v.setProperty( "name", "v" + i );
+      v.setProperty( "age", 18 + random.nextInt( 60 ) );
+      v.setProperty( "score", random.nextDouble() );
+      vertices[i] = v;
+    }
+
+    for ( int i = 0; i < nrEdges; i++ ) {
+      Vertex out = vertices[random.nextInt( nrVertices )];
+      // Squaring a uniform value favours small indexes, giving a power-law-ish in-degree
+      double r = random.nextDouble();
+      Vertex in = vertices[(int) ( r * r * nrVertices )];
+      Edge e = graph.addEdge( "e" + i, out, in, LABELS[random.nextInt( LABELS.length )] );
+      e.setProperty( "weight", random.nextDouble() );
+    }
+  }
+}
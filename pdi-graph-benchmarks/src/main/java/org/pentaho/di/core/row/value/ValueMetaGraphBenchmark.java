@@ -0,0 +1,172 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.row.value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.benchmarks.SyntheticGraphs;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * JMH benchmarks for the conversions and serialization done by {@link ValueMetaGraph}. This lives in the same package
+ * as the value meta so the protected conversion methods can be measured directly.
+ * <p>
+ * Run with <code>gradle :pdi-graph-benchmarks:jmh</code>; results are written to
+ * <code>build/jmh-results.json</code>.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class ValueMetaGraphBenchmark {
+
+  @State( Scope.Benchmark )
+  public static class GraphState {
+
+    /** Total number of vertices plus edges in the synthetic graph */
+    @Param( { "10", "1000", "100000", "1000000" } )
+    public int elements;
+
+    ValueMetaGraph valueMeta;
+    Graph graph;
+    String graphString;
+    byte[] serialized;
+
+    @Setup
+    public void setUp() throws Exception {
+      valueMeta = new ValueMetaGraph( "graph" );
+      graph = SyntheticGraphs.create( elements );
+      graphString = valueMeta.convertGraphToString( graph );
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream( baos );
+      valueMeta.writeData( dos, graph );
+      dos.flush();
+      serialized = baos.toByteArray();
+    }
+  }
+
+  @State( Scope.Thread )
+  public static class WriteBuffer {
+
+    ByteArrayOutputStream baos;
+    DataOutputStream dos;
+
+    @Setup
+    public void setUp() {
+      baos = new ByteArrayOutputStream();
+      dos = new DataOutputStream( baos );
+    }
+  }
+
+  /**
+   * Holds a string-typed ValueMetaGraph in each of the storage types getGraph() has to handle, plus a native graph
+   * value as the baseline.
+   */
+  @State( Scope.Benchmark )
+  public static class StorageState {
+
+    @Param( { "10", "1000", "100000", "1000000" } )
+    public int elements;
+
+    @Param( { "graph", "string", "binary-string", "indexed" } )
+    public String storage;
+
+    ValueMetaGraph valueMeta;
+    Object value;
+
+    @Setup
+    public void setUp() throws Exception {
+      valueMeta = new ValueMetaGraph( "graph" );
+      Graph graph = SyntheticGraphs.create( elements );
+      String graphString = valueMeta.convertGraphToString( graph );
+
+      if ( "graph".equals( storage ) ) {
+        value = graph;
+        return;
+      }
+      valueMeta.setType( ValueMetaInterface.TYPE_STRING );
+      if ( "string".equals( storage ) ) {
+        valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+        value = graphString;
+      } else if ( "binary-string".equals( storage ) ) {
+        valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+        valueMeta.setStorageMetadata( new ValueMetaString( "graph" ) );
+        value = graphString.getBytes();
+      } else if ( "indexed".equals( storage ) ) {
+        valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_INDEXED );
+        valueMeta.setIndex( new Object[] { graphString } );
+        value = Integer.valueOf( 0 );
+      } else {
+        throw new IllegalArgumentException( "Unknown storage type: " + storage );
+      }
+    }
+  }
+
+  @Benchmark
+  public Graph convertStringToGraph( GraphState state ) throws Exception {
+    return state.valueMeta.convertStringToGraph( state.graphString );
+  }
+
+  @Benchmark
+  public String convertGraphToString( GraphState state ) throws Exception {
+    return state.valueMeta.convertGraphToString( state.graph );
+  }
+
+  @Benchmark
+  public int writeData( GraphState state, WriteBuffer buffer ) throws Exception {
+    buffer.baos.reset();
+    state.valueMeta.writeData( buffer.dos, state.graph );
+    buffer.dos.flush();
+    return buffer.baos.size();
+  }
+
+  @Benchmark
+  public Object readData( GraphState state ) throws Exception {
+    return state.valueMeta.readData( new DataInputStream( new ByteArrayInputStream( state.serialized ) ) );
+  }
+
+  @Benchmark
+  public Graph getGraph( StorageState state ) throws Exception {
+    return state.valueMeta.getGraph( state.value );
+  }
+}
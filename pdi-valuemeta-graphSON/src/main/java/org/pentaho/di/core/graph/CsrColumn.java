@@ -0,0 +1,351 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column storage for one property key of a {@link CsrGraph}. Values of a single primitive wrapper type (Integer, Long,
+ * Double) are kept unboxed in a primitive array with a presence bitmap. String values are dictionary encoded: each
+ * distinct string is stored once and elements hold its code, which suits low-cardinality properties such as
+ * categories or country codes. Anything else falls back to an Object array.
+ */
+abstract class CsrColumn {
+
+  /**
+   * @return the value at the given element index, or null when the element has no value for this key
+   */
+  abstract Object get( int index );
+
+  abstract boolean isSet( int index );
+
+  static final class IntColumn extends CsrColumn {
+    private final int[] values;
+    private final BitSet present;
+
+    IntColumn( int[] values, BitSet present ) {
+      this.values = values;
+      this.present = present;
+    }
+
+    Object get( int index ) {
+      return isSet( index ) ? Integer.valueOf( values[index] ) : null;
+    }
+
+    boolean isSet( int index ) {
+      return present.get( index );
+    }
+  }
+
+  static final class LongColumn extends CsrColumn {
+    private final long[] values;
+    private final BitSet present;
+
+    LongColumn( long[] values, BitSet present ) {
+      this.values = values;
+      this.present = present;
+    }
+
+    Object get( int index ) {
+      return isSet( index ) ? Long.valueOf( values[index] ) : null;
+    }
+
+    boolean isSet( int index ) {
+      return present.get( index );
+    }
+  }
+
+  static final class DoubleColumn extends CsrColumn {
+    private final double[] values;
+    private final BitSet present;
+
+    DoubleColumn( double[] values, BitSet present ) {
+      this.values = values;
+      this.present = present;
+    }
+
+    Object get( int index ) {
+      return isSet( index ) ? Double.valueOf( values[index] ) : null;
+    }
+
+    boolean isSet( int index ) {
+      return present.get( index );
+    }
+
+    double getDouble( int index, double defaultValue ) {
+      return present.get( index ) ? values[index] : defaultValue;
+    }
+  }
+
+  static final class StringColumn extends CsrColumn {
+    private final String[] dictionary;
+    private final int[] codes;
+    private final BitSet present;
+
+    StringColumn( String[] dictionary, int[] codes, BitSet present ) {
+      this.dictionary = dictionary;
+      this.codes = codes;
+      this.present = present;
+    }
+
+    Object get( int index ) {
+      return isSet( index ) ? dictionary[codes[index]] : null;
+    }
+
+    boolean isSet( int index ) {
+      return present.get( index );
+    }
+
+    int getDictionarySize() {
+      return dictionary.length;
+    }
+  }
+
+  static final class ObjectColumn extends CsrColumn {
+    private final Object[] values;
+
+    ObjectColumn( Object[] values ) {
+      this.values = values;
+    }
+
+    Object get( int index ) {
+      return values[index];
+    }
+
+    boolean isSet( int index ) {
+      return values[index] != null;
+    }
+  }
+
+  /**
+   * Collects the values of one key while a graph is being built. The column starts out typed after the first value it
+   * sees and widens to Object storage as soon as a value of another type shows up, so returned values always keep
+   * their original class. A string column also widens once it holds more than {@link #MAX_DICTIONARY_SIZE} distinct
+   * values, as a dictionary no longer saves anything for (nearly) unique values.
+   */
+  static final class Builder {
+    static final int MAX_DICTIONARY_SIZE = 65536;
+
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_DOUBLE = 3;
+    private static final int KIND_OBJECT = 4;
+    private static final int KIND_STRING = 5;
+
+    private int kind;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int[] codes;
+    private Map<String, Integer> dictionary;
+    private List<String> strings;
+    private final BitSet present = new BitSet();
+
+    void set( int index, Object value ) {
+      if ( value == null ) {
+        return;
+      }
+      if ( kind == 0 ) {
+        kind = kindOf( value );
+      } else if ( kind != KIND_OBJECT && kind != kindOf( value ) ) {
+        widen();
+      }
+      switch ( kind ) {
+        case KIND_INT:
+          ints = ensure( ints, index );
+          ints[index] = ( (Integer) value ).intValue();
+          break;
+        case KIND_LONG:
+          longs = ensure( longs, index );
+          longs[index] = ( (Long) value ).longValue();
+          break;
+        case KIND_DOUBLE:
+          doubles = ensure( doubles, index );
+          doubles[index] = ( (Double) value ).doubleValue();
+          break;
+        case KIND_STRING:
+          codes = ensure( codes, index );
+          codes[index] = code( (String) value );
+          present.set( index );
+          if ( strings.size() > MAX_DICTIONARY_SIZE ) {
+            widen();
+          }
+          break;
+        default:
+          objects = ensure( objects, index );
+          objects[index] = value;
+          break;
+      }
+      present.set( index );
+    }
+
+    /**
+     * @param size
+     *          the number of elements in the finished graph
+     * @param permutation
+     *          maps the index a value was set under to its index in the graph, or null if they are the same
+     */
+    CsrColumn build( int size, int[] permutation ) {
+      BitSet finalPresent = present;
+      if ( permutation != null ) {
+        finalPresent = new BitSet( size );
+        for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+          finalPresent.set( permutation[i] );
+        }
+      }
+      switch ( kind ) {
+        case KIND_INT:
+          int[] intValues = new int[size];
+          for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+            intValues[permutation == null ? i : permutation[i]] = ints[i];
+          }
+          return new IntColumn( intValues, finalPresent );
+        case KIND_LONG:
+          long[] longValues = new long[size];
+          for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+            longValues[permutation == null ? i : permutation[i]] = longs[i];
+          }
+          return new LongColumn( longValues, finalPresent );
+        case KIND_DOUBLE:
+          double[] doubleValues = new double[size];
+          for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+            doubleValues[permutation == null ? i : permutation[i]] = doubles[i];
+          }
+          return new DoubleColumn( doubleValues, finalPresent );
+        case KIND_STRING:
+          int[] codeValues = new int[size];
+          for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+            codeValues[permutation == null ? i : permutation[i]] = codes[i];
+          }
+          return new StringColumn( strings.toArray( new String[strings.size()] ), codeValues, finalPresent );
+        default:
+          Object[] objectValues = new Object[size];
+          for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+            objectValues[permutation == null ? i : permutation[i]] = objects[i];
+          }
+          return new ObjectColumn( objectValues );
+      }
+    }
+
+    private static int kindOf( Object value ) {
+      return value instanceof Integer ? KIND_INT : value instanceof Long ? KIND_LONG
+          : value instanceof Double ? KIND_DOUBLE : value instanceof String ? KIND_STRING : KIND_OBJECT;
+    }
+
+    private int code( String value ) {
+      if ( dictionary == null ) {
+        dictionary = new HashMap<String, Integer>();
+        strings = new ArrayList<String>();
+      }
+      Integer code = dictionary.get( value );
+      if ( code == null ) {
+        code = strings.size();
+        dictionary.put( value, code );
+        strings.add( value );
+      }
+      return code;
+    }
+
+    private void widen() {
+      int length = present.length();
+      objects = new Object[Math.max( 16, length )];
+      for ( int i = present.nextSetBit( 0 ); i >= 0; i = present.nextSetBit( i + 1 ) ) {
+        switch ( kind ) {
+          case KIND_INT:
+            objects[i] = Integer.valueOf( ints[i] );
+            break;
+          case KIND_LONG:
+            objects[i] = Long.valueOf( longs[i] );
+            break;
+          case KIND_STRING:
+            objects[i] = strings.get( codes[i] );
+            break;
+          default:
+            objects[i] = Double.valueOf( doubles[i] );
+            break;
+        }
+      }
+      ints = null;
+      longs = null;
+      doubles = null;
+      codes = null;
+      dictionary = null;
+      strings = null;
+      kind = KIND_OBJECT;
+    }
+
+    private static int newCapacity( int length, int index ) {
+      return Math.max( index + 1, Math.max( 16, length + ( length >> 1 ) ) );
+    }
+
+    private static int[] ensure( int[] array, int index ) {
+      if ( array == null || index >= array.length ) {
+        int[] grown = new int[newCapacity( array == null ? 0 : array.length, index )];
+        if ( array != null ) {
+          System.arraycopy( array, 0, grown, 0, array.length );
+        }
+        return grown;
+      }
+      return array;
+    }
+
+    private static long[] ensure( long[] array, int index ) {
+      if ( array == null || index >= array.length ) {
+        long[] grown = new long[newCapacity( array == null ? 0 : array.length, index )];
+        if ( array != null ) {
+          System.arraycopy( array, 0, grown, 0, array.length );
+        }
+        return grown;
+      }
+      return array;
+    }
+
+    private static double[] ensure( double[] array, int index ) {
+      if ( array == null || index >= array.length ) {
+        double[] grown = new double[newCapacity( array == null ? 0 : array.length, index )];
+        if ( array != null ) {
+          System.arraycopy( array, 0, grown, 0, array.length );
+        }
+        return grown;
+      }
+      return array;
+    }
+
+    private static Object[] ensure( Object[] array, int index ) {
+      if ( array == null || index >= array.length ) {
+        Object[] grown = new Object[newCapacity( array == null ? 0 : array.length, index )];
+        if ( array != null ) {
+          System.arraycopy( array, 0, grown, 0, array.length );
+        }
+        return grown;
+      }
+      return array;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * An edge of a {@link CsrGraph}.
+ */
+public class CsrEdge extends CsrElement implements Edge {
+
+  CsrEdge( CsrGraph graph, int index ) {
+    super( graph, index );
+  }
+
+  public Object getId() {
+    return graph.getEdgeId( index );
+  }
+
+  public String getLabel() {
+    return graph.getLabel( graph.getLabelIndex( index ) );
+  }
+
+  public Vertex getVertex( Direction direction ) throws IllegalArgumentException {
+    switch ( direction ) {
+      case OUT:
+        return graph.vertex( graph.getSource( index ) );
+      case IN:
+        return graph.vertex( graph.getTarget( index ) );
+      default:
+        throw ExceptionFactory.bothIsNotSupported();
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  public <T> T getProperty( String key ) {
+    return (T) graph.getEdgeProperty( index, key );
+  }
+
+  public Set<String> getPropertyKeys() {
+    return graph.getEdgePropertyKeys( index );
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.edgeString( this );
+  }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.util.wrappers.readonly.ReadOnlyTokens;
+
+/**
+ * Base class for the flyweight vertices and edges of a {@link CsrGraph}: an element is nothing more than its graph and
+ * its index in that graph.
+ */
+public abstract class CsrElement implements Element {
+
+  protected final CsrGraph graph;
+  protected final int index;
+
+  protected CsrElement( CsrGraph graph, int index ) {
+    this.graph = graph;
+    this.index = index;
+  }
+
+  public CsrGraph getGraph() {
+    return graph;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void setProperty( String key, Object value ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public <T> T removeProperty( String key ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  @Override
+  public boolean equals( Object object ) {
+    if ( this == object ) {
+      return true;
+    }
+    if ( object == null || object.getClass() != getClass() ) {
+      return false;
+    }
+    CsrElement other = (CsrElement) object;
+    return other.graph == graph && other.index == index;
+  }
+
+  @Override
+  public int hashCode() {
+    return getId().hashCode();
+  }
+}
@@ -0,0 +1,515 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+import com.tinkerpop.blueprints.util.wrappers.readonly.ReadOnlyTokens;
+
+/**
+ * An immutable Blueprints graph stored in compressed sparse row form. Vertices and edges are numbered densely from 0;
+ * the out-edges of vertex v are the edges numbered from getOutStart(v) (inclusive) to getOutEnd(v) (exclusive), so the
+ * whole topology is a handful of int arrays instead of one object per element. Properties are stored per key in
+ * columns, unboxed where the values allow it.
+ * <p>
+ * Vertex and Edge objects handed out through the Blueprints API are created on demand and only hold an index, so they
+ * are cheap but not identical across calls (they are equal, though). Analytics should use the index-based accessors
+ * instead. Every mutating method throws an UnsupportedOperationException; build instances with {@link #freeze(Graph)}
+ * or a {@link CsrGraphBuilder}.
+ * <p>
+ * The Blueprints API and the Vertex and Edge objects only read the graph through the public index accessors, which
+ * lets {@link MappedCsrGraph} serve the same graph from memory-mapped files.
+ */
+public class CsrGraph implements Graph {
+
+  private static final Features FEATURES = new Features();
+
+  static {
+    FEATURES.supportsDuplicateEdges = true;
+    FEATURES.supportsSelfLoops = true;
+    FEATURES.supportsSerializableObjectProperty = true;
+    FEATURES.supportsBooleanProperty = true;
+    FEATURES.supportsDoubleProperty = true;
+    FEATURES.supportsFloatProperty = true;
+    FEATURES.supportsIntegerProperty = true;
+    FEATURES.supportsPrimitiveArrayProperty = true;
+    FEATURES.supportsUniformListProperty = true;
+    FEATURES.supportsMixedListProperty = true;
+    FEATURES.supportsLongProperty = true;
+    FEATURES.supportsMapProperty = true;
+    FEATURES.supportsStringProperty = true;
+    FEATURES.hasImplicitElements = false;
+    FEATURES.ignoresSuppliedIds = false;
+    FEATURES.isPersistent = false;
+    FEATURES.isWrapper = false;
+    FEATURES.supportsIndices = false;
+    FEATURES.supportsVertexIndex = false;
+    FEATURES.supportsEdgeIndex = false;
+    FEATURES.supportsKeyIndices = false;
+    FEATURES.supportsVertexKeyIndex = false;
+    FEATURES.supportsEdgeKeyIndex = false;
+    FEATURES.supportsEdgeIteration = true;
+    FEATURES.supportsVertexIteration = true;
+    FEATURES.supportsEdgeRetrieval = true;
+    FEATURES.supportsVertexProperties = true;
+    FEATURES.supportsEdgeProperties = true;
+    FEATURES.supportsTransactions = false;
+    FEATURES.supportsThreadedTransactions = false;
+    FEATURES.supportsThreadIsolatedTransactions = false;
+  }
+
+  private final Object[] vertexIds;
+  private final Map<Object, Integer> vertexIndex;
+
+  // Edges are numbered in out-vertex order, so edge e is also slot e of the out adjacency
+  private final int[] outOffsets;
+  private final int[] targets;
+  private final int[] sources;
+  private final int[] edgeLabels;
+  private final String[] labels;
+  private final Object[] edgeIds;
+
+  // in-edges of v are inEdges[inOffsets[v]] .. inEdges[inOffsets[v + 1] - 1]
+  private final int[] inOffsets;
+  private final int[] inEdges;
+
+  private final Map<String, CsrColumn> vertexProperties;
+  private final Map<String, CsrColumn> edgeProperties;
+
+  private Map<Object, Integer> edgeIndex;
+
+  CsrGraph( Object[] vertexIds, Map<Object, Integer> vertexIndex, int[] outOffsets, int[] targets, int[] sources,
+      int[] edgeLabels, String[] labels, Object[] edgeIds, int[] inOffsets, int[] inEdges,
+      Map<String, CsrColumn> vertexProperties, Map<String, CsrColumn> edgeProperties ) {
+    this.vertexIds = vertexIds;
+    this.vertexIndex = vertexIndex;
+    this.outOffsets = outOffsets;
+    this.targets = targets;
+    this.sources = sources;
+    this.edgeLabels = edgeLabels;
+    this.labels = labels;
+    this.edgeIds = edgeIds;
+    this.inOffsets = inOffsets;
+    this.inEdges = inEdges;
+    this.vertexProperties = vertexProperties;
+    this.edgeProperties = edgeProperties;
+  }
+
+  /**
+   * Copies the given graph, with all element ids, labels and properties, into a new CsrGraph. A CsrGraph is returned
+   * as is.
+   */
+  public static CsrGraph freeze( Graph graph ) {
+    if ( graph instanceof CsrGraph ) {
+      return (CsrGraph) graph;
+    }
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( Vertex vertex : graph.getVertices() ) {
+      int v = builder.addVertex( vertex.getId() );
+      for ( String key : vertex.getPropertyKeys() ) {
+        builder.setVertexProperty( v, key, vertex.getProperty( key ) );
+      }
+    }
+    for ( Edge edge : graph.getEdges() ) {
+      int e =
+          builder.addEdge( edge.getId(), builder.indexOf( edge.getVertex( Direction.OUT ).getId() ), builder
+              .indexOf( edge.getVertex( Direction.IN ).getId() ), edge.getLabel() );
+      for ( String key : edge.getPropertyKeys() ) {
+        builder.setEdgeProperty( e, key, edge.getProperty( key ) );
+      }
+    }
+    return builder.build();
+  }
+
+  public int getVertexCount() {
+    return vertexIds.length;
+  }
+
+  public int getEdgeCount() {
+    return targets.length;
+  }
+
+  /**
+   * @return the index of the vertex with the given id, or -1 if there is none. As in TinkerGraph, an id that is not
+   *         found as given is also tried in its String form.
+   */
+  public int indexOf( Object vertexId ) {
+    if ( vertexId == null ) {
+      return -1;
+    }
+    Integer index = vertexIndex.get( vertexId );
+    if ( index == null && !( vertexId instanceof String ) ) {
+      index = vertexIndex.get( vertexId.toString() );
+    }
+    return index == null ? -1 : index.intValue();
+  }
+
+  public Object getVertexId( int vertex ) {
+    return vertexIds[vertex];
+  }
+
+  public CsrVertex vertex( int vertex ) {
+    return new CsrVertex( this, vertex );
+  }
+
+  public CsrEdge edge( int edge ) {
+    return new CsrEdge( this, edge );
+  }
+
+  public int getOutStart( int vertex ) {
+    return outOffsets[vertex];
+  }
+
+  public int getOutEnd( int vertex ) {
+    return outOffsets[vertex + 1];
+  }
+
+  public int getOutDegree( int vertex ) {
+    return outOffsets[vertex + 1] - outOffsets[vertex];
+  }
+
+  public int getInStart( int vertex ) {
+    return inOffsets[vertex];
+  }
+
+  public int getInEnd( int vertex ) {
+    return inOffsets[vertex + 1];
+  }
+
+  public int getInDegree( int vertex ) {
+    return inOffsets[vertex + 1] - inOffsets[vertex];
+  }
+
+  /**
+   * @return the edge in the given slot of the in adjacency, between getInStart(v) and getInEnd(v)
+   */
+  public int getInEdge( int slot ) {
+    return inEdges[slot];
+  }
+
+  public int getSource( int edge ) {
+    return sources[edge];
+  }
+
+  public int getTarget( int edge ) {
+    return targets[edge];
+  }
+
+  public int getLabelIndex( int edge ) {
+    return edgeLabels[edge];
+  }
+
+  public int getLabelCount() {
+    return labels.length;
+  }
+
+  public String getLabel( int labelIndex ) {
+    return labels[labelIndex];
+  }
+
+  /**
+   * @return the index of the given label, or -1 if no edge carries it
+   */
+  public int indexOfLabel( String label ) {
+    for ( int i = 0; i < labels.length; i++ ) {
+      if ( labels[i].equals( label ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return true if any edge was given an id of its own, instead of being identified by its index
+   */
+  boolean hasEdgeIds() {
+    return edgeIds != null;
+  }
+
+  public Object getEdgeId( int edge ) {
+    Object id = edgeIds == null ? null : edgeIds[edge];
+    return id != null ? id : Integer.valueOf( edge );
+  }
+
+  /**
+   * @return the index of the edge with the given id, or -1 if there is none
+   */
+  public int indexOfEdge( Object edgeId ) {
+    if ( edgeId == null ) {
+      return -1;
+    }
+    Integer index = getEdgeIndex().get( edgeId );
+    if ( index == null && !( edgeId instanceof String ) ) {
+      index = getEdgeIndex().get( edgeId.toString() );
+    }
+    return index == null ? -1 : index.intValue();
+  }
+
+  public Object getVertexProperty( int vertex, String key ) {
+    CsrColumn column = vertexProperties.get( key );
+    return column == null ? null : column.get( vertex );
+  }
+
+  public Object getEdgeProperty( int edge, String key ) {
+    CsrColumn column = edgeProperties.get( key );
+    return column == null ? null : column.get( edge );
+  }
+
+  /**
+   * @return the numeric edge property as a double, or the default value if the edge has none
+   */
+  public double getEdgeDouble( int edge, String key, double defaultValue ) {
+    CsrColumn column = edgeProperties.get( key );
+    if ( column instanceof CsrColumn.DoubleColumn ) {
+      return ( (CsrColumn.DoubleColumn) column ).getDouble( edge, defaultValue );
+    }
+    Object value = column == null ? null : column.get( edge );
+    return value instanceof Number ? ( (Number) value ).doubleValue() : defaultValue;
+  }
+
+  /**
+   * @return the numeric vertex property as a double, or the default value if the vertex has none
+   */
+  public double getVertexDouble( int vertex, String key, double defaultValue ) {
+    CsrColumn column = vertexProperties.get( key );
+    if ( column instanceof CsrColumn.DoubleColumn ) {
+      return ( (CsrColumn.DoubleColumn) column ).getDouble( vertex, defaultValue );
+    }
+    Object value = column == null ? null : column.get( vertex );
+    return value instanceof Number ? ( (Number) value ).doubleValue() : defaultValue;
+  }
+
+  public Set<String> getVertexPropertyKeys() {
+    return Collections.unmodifiableSet( vertexProperties.keySet() );
+  }
+
+  public Set<String> getEdgePropertyKeys() {
+    return Collections.unmodifiableSet( edgeProperties.keySet() );
+  }
+
+  Set<String> getVertexPropertyKeys( int vertex ) {
+    return keysOf( vertexProperties, vertex );
+  }
+
+  Set<String> getEdgePropertyKeys( int edge ) {
+    return keysOf( edgeProperties, edge );
+  }
+
+  private static Set<String> keysOf( Map<String, CsrColumn> columns, int index ) {
+    Set<String> keys = new HashSet<String>();
+    for ( Map.Entry<String, CsrColumn> entry : columns.entrySet() ) {
+      if ( entry.getValue().isSet( index ) ) {
+        keys.add( entry.getKey() );
+      }
+    }
+    return keys;
+  }
+
+  private synchronized Map<Object, Integer> getEdgeIndex() {
+    // Only built when edges are looked up by id, since it costs an object per edge
+    if ( edgeIndex == null ) {
+      Map<Object, Integer> index = new HashMap<Object, Integer>( getEdgeCount() * 4 / 3 + 1 );
+      for ( int e = getEdgeCount() - 1; e >= 0; e-- ) {
+        index.put( getEdgeId( e ), Integer.valueOf( e ) );
+      }
+      edgeIndex = index;
+    }
+    return edgeIndex;
+  }
+
+  /**
+   * @return the label indexes to match, an empty array if none of the labels exist, or null to match every edge
+   */
+  int[] labelFilter( String... edgeLabels ) {
+    if ( edgeLabels == null || edgeLabels.length == 0 ) {
+      return null;
+    }
+    int[] filter = new int[edgeLabels.length];
+    int n = 0;
+    for ( String label : edgeLabels ) {
+      int index = indexOfLabel( label );
+      if ( index >= 0 ) {
+        filter[n++] = index;
+      }
+    }
+    int[] result = new int[n];
+    System.arraycopy( filter, 0, result, 0, n );
+    return result;
+  }
+
+  // Blueprints API
+
+  public Features getFeatures() {
+    return FEATURES;
+  }
+
+  public Vertex addVertex( Object id ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public Vertex getVertex( Object id ) {
+    int index = indexOf( id );
+    return index < 0 ? null : vertex( index );
+  }
+
+  public void removeVertex( Vertex vertex ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public Iterable<Vertex> getVertices() {
+    return new IndexIterable<Vertex>( getVertexCount() ) {
+      Vertex get( int index ) {
+        return vertex( index );
+      }
+    };
+  }
+
+  public Iterable<Vertex> getVertices( String key, final Object value ) {
+    final CsrColumn column = vertexProperties.get( key );
+    if ( column == null ) {
+      return Collections.emptyList();
+    }
+    return new IndexIterable<Vertex>( getVertexCount() ) {
+      boolean accept( int index ) {
+        return value.equals( column.get( index ) );
+      }
+
+      Vertex get( int index ) {
+        return vertex( index );
+      }
+    };
+  }
+
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public Edge getEdge( Object id ) {
+    int index = indexOfEdge( id );
+    return index < 0 ? null : edge( index );
+  }
+
+  public void removeEdge( Edge edge ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  public Iterable<Edge> getEdges() {
+    return new IndexIterable<Edge>( getEdgeCount() ) {
+      Edge get( int index ) {
+        return edge( index );
+      }
+    };
+  }
+
+  public Iterable<Edge> getEdges( String key, final Object value ) {
+    final CsrColumn column = edgeProperties.get( key );
+    if ( column == null ) {
+      return Collections.emptyList();
+    }
+    return new IndexIterable<Edge>( getEdgeCount() ) {
+      boolean accept( int index ) {
+        return value.equals( column.get( index ) );
+      }
+
+      Edge get( int index ) {
+        return edge( index );
+      }
+    };
+  }
+
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  public void shutdown() {
+    // nothing to release
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, "vertices:" + getVertexCount() + " edges:" + getEdgeCount() );
+  }
+
+  /**
+   * Lazily maps the indexes 0..size-1 that pass accept() to elements.
+   */
+  abstract static class IndexIterable<T> implements Iterable<T> {
+    private final int size;
+
+    IndexIterable( int size ) {
+      this.size = size;
+    }
+
+    boolean accept( int index ) {
+      return true;
+    }
+
+    abstract T get( int index );
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int next = advance( 0 );
+
+        private int advance( int from ) {
+          int i = from;
+          while ( i < size && !accept( i ) ) {
+            i++;
+          }
+          return i;
+        }
+
+        public boolean hasNext() {
+          return next < size;
+        }
+
+        public T next() {
+          if ( next >= size ) {
+            throw new NoSuchElementException();
+          }
+          T element = get( next );
+          next = advance( next + 1 );
+          return element;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+        }
+      };
+    }
+  }
+}
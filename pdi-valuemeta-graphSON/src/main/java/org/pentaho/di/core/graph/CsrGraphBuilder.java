@@ -0,0 +1,266 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+
+/**
+ * Collects vertices, edges and properties and turns them into a {@link CsrGraph}. Vertices are referred to by the index
+ * addVertex() returned; edges may be added in any order and are sorted by out-vertex in build(). Edge ids are not
+ * checked for uniqueness, and edges added with a null id are identified by their index in the built graph.
+ * <p>
+ * A builder can only be built once.
+ */
+public class CsrGraphBuilder {
+
+  private List<Object> vertexIds;
+  private Map<Object, Integer> vertexIndex;
+  private Map<String, CsrColumn.Builder> vertexProperties = new HashMap<String, CsrColumn.Builder>();
+
+  private int nrEdges;
+  private int[] sources;
+  private int[] targets;
+  private int[] edgeLabels;
+  private Object[] edgeIds;
+  private boolean hasEdgeIds;
+  private Map<String, CsrColumn.Builder> edgeProperties = new HashMap<String, CsrColumn.Builder>();
+
+  private List<String> labels = new ArrayList<String>();
+  private Map<String, Integer> labelIndex = new HashMap<String, Integer>();
+
+  private boolean built;
+
+  public CsrGraphBuilder() {
+    this( 16, 16 );
+  }
+
+  public CsrGraphBuilder( int expectedVertices, int expectedEdges ) {
+    vertexIds = new ArrayList<Object>( expectedVertices );
+    vertexIndex = new HashMap<Object, Integer>( expectedVertices * 4 / 3 + 1 );
+    int capacity = Math.max( 16, expectedEdges );
+    sources = new int[capacity];
+    targets = new int[capacity];
+    edgeLabels = new int[capacity];
+  }
+
+  /**
+   * @return the index of the new vertex
+   * @throws IllegalArgumentException
+   *           if the id is null or already used
+   */
+  public int addVertex( Object id ) {
+    checkNotBuilt();
+    if ( id == null ) {
+      throw ExceptionFactory.vertexIdCanNotBeNull();
+    }
+    if ( vertexIndex.containsKey( id ) ) {
+      throw ExceptionFactory.vertexWithIdAlreadyExists( id );
+    }
+    Integer index = Integer.valueOf( vertexIds.size() );
+    vertexIndex.put( id, index );
+    vertexIds.add( id );
+    return index.intValue();
+  }
+
+  /**
+   * Looks up the vertex with the given id and adds it if it is new, so that edge lists can be loaded without a
+   * separate vertex pass.
+   *
+   * @return the index of the (possibly new) vertex
+   */
+  public int getOrAddVertex( Object id ) {
+    Integer index = vertexIndex.get( id );
+    return index == null ? addVertex( id ) : index.intValue();
+  }
+
+  /**
+   * @return the index of the vertex with the given id, or -1
+   */
+  public int indexOf( Object id ) {
+    Integer index = vertexIndex.get( id );
+    return index == null ? -1 : index.intValue();
+  }
+
+  public int getVertexCount() {
+    return vertexIds.size();
+  }
+
+  public int getEdgeCount() {
+    return nrEdges;
+  }
+
+  public void setVertexProperty( int vertex, String key, Object value ) {
+    checkNotBuilt();
+    checkVertex( vertex );
+    column( vertexProperties, key ).set( vertex, value );
+  }
+
+  /**
+   * @return the index of the edge in this builder; edge indexes in the built graph are different
+   */
+  public int addEdge( Object id, int outVertex, int inVertex, String label ) {
+    checkNotBuilt();
+    checkVertex( outVertex );
+    checkVertex( inVertex );
+    if ( label == null ) {
+      throw ExceptionFactory.edgeLabelCanNotBeNull();
+    }
+    if ( nrEdges == sources.length ) {
+      int capacity = nrEdges + ( nrEdges >> 1 ) + 1;
+      sources = grow( sources, capacity );
+      targets = grow( targets, capacity );
+      edgeLabels = grow( edgeLabels, capacity );
+    }
+    if ( id != null ) {
+      if ( edgeIds == null || edgeIds.length < sources.length ) {
+        Object[] grown = new Object[sources.length];
+        if ( edgeIds != null ) {
+          System.arraycopy( edgeIds, 0, grown, 0, edgeIds.length );
+        }
+        edgeIds = grown;
+      }
+      edgeIds[nrEdges] = id;
+      hasEdgeIds = true;
+    }
+    Integer labelNr = labelIndex.get( label );
+    if ( labelNr == null ) {
+      labelNr = Integer.valueOf( labels.size() );
+      labelIndex.put( label, labelNr );
+      labels.add( label );
+    }
+    sources[nrEdges] = outVertex;
+    targets[nrEdges] = inVertex;
+    edgeLabels[nrEdges] = labelNr.intValue();
+    return nrEdges++;
+  }
+
+  public void setEdgeProperty( int edge, String key, Object value ) {
+    checkNotBuilt();
+    if ( edge < 0 || edge >= nrEdges ) {
+      throw new IllegalArgumentException( "No edge with index " + edge );
+    }
+    column( edgeProperties, key ).set( edge, value );
+  }
+
+  public CsrGraph build() {
+    checkNotBuilt();
+    built = true;
+
+    int n = vertexIds.size();
+    int m = nrEdges;
+
+    // Counting sort of the edges by out-vertex; the order among the edges of one vertex is kept
+    int[] outOffsets = new int[n + 1];
+    for ( int e = 0; e < m; e++ ) {
+      outOffsets[sources[e] + 1]++;
+    }
+    for ( int v = 0; v < n; v++ ) {
+      outOffsets[v + 1] += outOffsets[v];
+    }
+    int[] cursor = new int[n];
+    System.arraycopy( outOffsets, 0, cursor, 0, n );
+    int[] permutation = new int[m];
+    int[] finalSources = new int[m];
+    int[] finalTargets = new int[m];
+    int[] finalLabels = new int[m];
+    Object[] finalIds = hasEdgeIds ? new Object[m] : null;
+    for ( int e = 0; e < m; e++ ) {
+      int position = cursor[sources[e]]++;
+      permutation[e] = position;
+      finalSources[position] = sources[e];
+      finalTargets[position] = targets[e];
+      finalLabels[position] = edgeLabels[e];
+      if ( finalIds != null && e < edgeIds.length ) {
+        finalIds[position] = edgeIds[e];
+      }
+    }
+    sources = null;
+    targets = null;
+    edgeLabels = null;
+    edgeIds = null;
+
+    // The in adjacency lists the (already sorted) edge numbers grouped by in-vertex
+    int[] inOffsets = new int[n + 1];
+    for ( int e = 0; e < m; e++ ) {
+      inOffsets[finalTargets[e] + 1]++;
+    }
+    for ( int v = 0; v < n; v++ ) {
+      inOffsets[v + 1] += inOffsets[v];
+    }
+    System.arraycopy( inOffsets, 0, cursor, 0, n );
+    int[] inEdges = new int[m];
+    for ( int e = 0; e < m; e++ ) {
+      inEdges[cursor[finalTargets[e]]++] = e;
+    }
+
+    Map<String, CsrColumn> vertexColumns = new HashMap<String, CsrColumn>();
+    for ( Map.Entry<String, CsrColumn.Builder> entry : vertexProperties.entrySet() ) {
+      vertexColumns.put( entry.getKey(), entry.getValue().build( n, null ) );
+    }
+    Map<String, CsrColumn> edgeColumns = new HashMap<String, CsrColumn>();
+    for ( Map.Entry<String, CsrColumn.Builder> entry : edgeProperties.entrySet() ) {
+      edgeColumns.put( entry.getKey(), entry.getValue().build( m, permutation ) );
+    }
+    vertexProperties = null;
+    edgeProperties = null;
+
+    return new CsrGraph( vertexIds.toArray(), vertexIndex, outOffsets, finalTargets, finalSources, finalLabels, labels
+        .toArray( new String[labels.size()] ), finalIds, inOffsets, inEdges, vertexColumns, edgeColumns );
+  }
+
+  private void checkNotBuilt() {
+    if ( built ) {
+      throw new IllegalStateException( "This graph has already been built" );
+    }
+  }
+
+  private void checkVertex( int vertex ) {
+    if ( vertex < 0 || vertex >= vertexIds.size() ) {
+      throw new IllegalArgumentException( "No vertex with index " + vertex );
+    }
+  }
+
+  private static CsrColumn.Builder column( Map<String, CsrColumn.Builder> columns, String key ) {
+    if ( key == null ) {
+      throw ExceptionFactory.propertyKeyCanNotBeNull();
+    }
+    CsrColumn.Builder column = columns.get( key );
+    if ( column == null ) {
+      column = new CsrColumn.Builder();
+      columns.put( key, column );
+    }
+    return column;
+  }
+
+  private static int[] grow( int[] array, int capacity ) {
+    int[] grown = new int[capacity];
+    System.arraycopy( array, 0, grown, 0, array.length );
+    return grown;
+  }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+import com.tinkerpop.blueprints.util.wrappers.readonly.ReadOnlyTokens;
+
+/**
+ * A vertex of a {@link CsrGraph}. Adjacent edges and vertices are read straight from the graph's offset arrays.
+ */
+public class CsrVertex extends CsrElement implements Vertex {
+
+  CsrVertex( CsrGraph graph, int index ) {
+    super( graph, index );
+  }
+
+  public Object getId() {
+    return graph.getVertexId( index );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  public <T> T getProperty( String key ) {
+    return (T) graph.getVertexProperty( index, key );
+  }
+
+  public Set<String> getPropertyKeys() {
+    return graph.getVertexPropertyKeys( index );
+  }
+
+  public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+    return new Adjacency<Edge>( direction, graph.labelFilter( labels ), false );
+  }
+
+  public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+    return new Adjacency<Vertex>( direction, graph.labelFilter( labels ), true );
+  }
+
+  public VertexQuery query() {
+    return new DefaultVertexQuery( this );
+  }
+
+  public Edge addEdge( String label, Vertex inVertex ) {
+    throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.vertexString( this );
+  }
+
+  /**
+   * Walks the out slots and then the in slots of this vertex, as the direction asks, returning either the edges or the
+   * vertices at their other end.
+   */
+  private class Adjacency<T> implements Iterable<T> {
+    private final Direction direction;
+    private final int[] labelFilter;
+    private final boolean vertices;
+
+    Adjacency( Direction direction, int[] labelFilter, boolean vertices ) {
+      this.direction = direction;
+      this.labelFilter = labelFilter;
+      this.vertices = vertices;
+    }
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        // phase 0 walks the out slots, phase 1 the in slots, phase 2 is done
+        private int phase = direction == Direction.IN ? 1 : 0;
+        private int slot = phase == 0 ? graph.getOutStart( index ) : graph.getInStart( index );
+        private int edge = advance();
+
+        private int advance() {
+          while ( phase < 2 ) {
+            int end = phase == 0 ? graph.getOutEnd( index ) : graph.getInEnd( index );
+            while ( slot < end ) {
+              int e = phase == 0 ? slot : graph.getInEdge( slot );
+              slot++;
+              if ( accept( e ) ) {
+                return e;
+              }
+            }
+            if ( phase == 0 && direction == Direction.BOTH ) {
+              phase = 1;
+              slot = graph.getInStart( index );
+            } else {
+              phase = 2;
+            }
+          }
+          return -1;
+        }
+
+        private boolean accept( int e ) {
+          if ( labelFilter == null ) {
+            return true;
+          }
+          int label = graph.getLabelIndex( e );
+          for ( int i = 0; i < labelFilter.length; i++ ) {
+            if ( labelFilter[i] == label ) {
+              return true;
+            }
+          }
+          return false;
+        }
+
+        public boolean hasNext() {
+          return edge >= 0;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        public T next() {
+          if ( edge < 0 ) {
+            throw new NoSuchElementException();
+          }
+          Object element;
+          if ( vertices ) {
+            element = graph.vertex( phase == 0 ? graph.getTarget( edge ) : graph.getSource( edge ) );
+          } else {
+            element = graph.edge( edge );
+          }
+          edge = advance();
+          return (T) element;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException( ReadOnlyTokens.MUTATE_ERROR_MESSAGE );
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.Map;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Applies vertex and edge changes, as they come out of a change data capture feed, to an existing mutable graph.
+ * Inserts and updates are both treated as upserts: the element is created when it does not exist yet, and otherwise
+ * gets the given properties, where a null value removes the property. Deleting a vertex also deletes its edges.
+ * <p>
+ * Edges are found by id when one is given, otherwise by their out-vertex, in-vertex and label. Vertices an edge refers
+ * to are created when missing. On a {@link TransactionalGraph} the changes become visible on {@link #commit()}.
+ */
+public class GraphChangeApplier {
+
+  public static final int OP_INSERT = 0;
+  public static final int OP_UPDATE = 1;
+  public static final int OP_DELETE = 2;
+
+  public static final int STATUS_INSERTED = 0;
+  public static final int STATUS_UPDATED = 1;
+  public static final int STATUS_DELETED = 2;
+  public static final int STATUS_NOT_FOUND = 3;
+
+  private final Graph graph;
+
+  private long inserted;
+  private long updated;
+  private long deleted;
+  private long notFound;
+  private int commits;
+
+  public GraphChangeApplier( Graph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * @return one of the STATUS_ constants
+   */
+  public int applyVertex( int op, Object id, Map<String, Object> properties ) {
+    Vertex vertex = id == null ? null : graph.getVertex( id );
+    if ( op == OP_DELETE ) {
+      if ( vertex == null ) {
+        return count( STATUS_NOT_FOUND );
+      }
+      graph.removeVertex( vertex );
+      GraphStatistics.invalidate( graph );
+      return count( STATUS_DELETED );
+    }
+    checkOp( op );
+    int status = STATUS_UPDATED;
+    if ( vertex == null ) {
+      vertex = graph.addVertex( id );
+      GraphStatistics.vertexAdded( graph );
+      status = STATUS_INSERTED;
+    }
+    setProperties( vertex, properties );
+    return count( status );
+  }
+
+  /**
+   * @return one of the STATUS_ constants
+   */
+  public int applyEdge( int op, Object id, Object outId, Object inId, String label, Map<String, Object> properties ) {
+    Edge edge = findEdge( id, outId, inId, label );
+    if ( op == OP_DELETE ) {
+      if ( edge == null ) {
+        return count( STATUS_NOT_FOUND );
+      }
+      graph.removeEdge( edge );
+      GraphStatistics.invalidate( graph );
+      return count( STATUS_DELETED );
+    }
+    checkOp( op );
+    int status = STATUS_UPDATED;
+    if ( edge == null ) {
+      edge = graph.addEdge( id, vertex( outId ), vertex( inId ), label );
+      GraphStatistics.invalidate( graph );
+      status = STATUS_INSERTED;
+    }
+    setProperties( edge, properties );
+    return count( status );
+  }
+
+  /**
+   * Makes the changes applied so far permanent. Graphs without transactions apply every change right away, so this
+   * only counts the batch for them.
+   */
+  public void commit() {
+    if ( graph instanceof TransactionalGraph ) {
+      ( (TransactionalGraph) graph ).commit();
+    }
+    commits++;
+  }
+
+  /**
+   * Undoes the changes since the last commit, if the graph supports transactions.
+   */
+  public void rollback() {
+    if ( graph instanceof TransactionalGraph ) {
+      ( (TransactionalGraph) graph ).rollback();
+    }
+  }
+
+  private Edge findEdge( Object id, Object outId, Object inId, String label ) {
+    if ( id != null ) {
+      return graph.getEdge( id );
+    }
+    Vertex out = outId == null ? null : graph.getVertex( outId );
+    if ( out == null || inId == null ) {
+      return null;
+    }
+    for ( Edge edge : out.getEdges( Direction.OUT, label ) ) {
+      if ( inId.equals( edge.getVertex( Direction.IN ).getId() ) ) {
+        return edge;
+      }
+    }
+    return null;
+  }
+
+  private Vertex vertex( Object id ) {
+    if ( id == null ) {
+      throw new IllegalArgumentException( "An edge needs both an out and an in vertex id" );
+    }
+    Vertex vertex = graph.getVertex( id );
+    return vertex == null ? graph.addVertex( id ) : vertex;
+  }
+
+  private static void setProperties( Element element, Map<String, Object> properties ) {
+    if ( properties == null ) {
+      return;
+    }
+    for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+      if ( property.getValue() == null ) {
+        element.removeProperty( property.getKey() );
+      } else {
+        element.setProperty( property.getKey(), property.getValue() );
+      }
+    }
+  }
+
+  private static void checkOp( int op ) {
+    if ( op != OP_INSERT && op != OP_UPDATE ) {
+      throw new IllegalArgumentException( "Unknown change operation " + op );
+    }
+  }
+
+  private int count( int status ) {
+    switch ( status ) {
+      case STATUS_INSERTED:
+        inserted++;
+        break;
+      case STATUS_UPDATED:
+        updated++;
+        break;
+      case STATUS_DELETED:
+        deleted++;
+        break;
+      default:
+        notFound++;
+        break;
+    }
+    return status;
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public long getInserted() {
+    return inserted;
+  }
+
+  public long getUpdated() {
+    return updated;
+  }
+
+  public long getDeleted() {
+    return deleted;
+  }
+
+  /**
+   * @return the number of deletes of elements that were not in the graph
+   */
+  public long getNotFound() {
+    return notFound;
+  }
+
+  public int getCommits() {
+    return commits;
+  }
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+/**
+ * Unions any number of graphs into one target graph. Vertices are the same if they have the same id or, when a key
+ * property is given, the same value for it; edges are the same if they have the same id and connect the same vertices
+ * with the same label, which is what the subgraphs of a partitioned graph have in common along their borders.
+ * Properties of merged elements are combined, with a {@link PropertyConflictPolicy} deciding between differing values.
+ * <p>
+ * When a ghost property is given, vertices carrying it are ghost copies made by the {@link
+ * org.pentaho.di.core.graph.algorithms.GraphPartitioner}: they only contribute their properties (without the marker)
+ * until the partition owning the vertex is merged, whose properties then replace them.
+ * <p>
+ * The vertex lookup map is sized up front from the expected number of vertices, so merging large graphs does not keep
+ * rehashing it.
+ */
+public class GraphMerger {
+
+  private final Graph target;
+  private final String keyProperty;
+  private final String ghostProperty;
+  private final PropertyConflictPolicy policy;
+  private final Map<Object, Vertex> vertices;
+  private final Map<Object, Vertex> unkeyedVertices;
+  private final Set<Vertex> ghostOnly = new HashSet<Vertex>();
+
+  private int vertexCount;
+  private int mergedVertices;
+  private int mergedEdges;
+
+  /**
+   * @param target
+   *          the graph to merge into, usually an empty TinkerGraph
+   * @param keyProperty
+   *          the vertex property identifying vertices across graphs, or null to use the vertex ids. Vertices without
+   *          the property fall back to their ids.
+   * @param policy
+   *          how to resolve properties the merged elements disagree on
+   * @param expectedVertices
+   *          the number of distinct vertices expected, used to size the lookup map
+   */
+  public GraphMerger( Graph target, String keyProperty, PropertyConflictPolicy policy, int expectedVertices ) {
+    this( target, keyProperty, null, policy, expectedVertices );
+  }
+
+  /**
+   * @param target
+   *          the graph to merge into, usually an empty TinkerGraph
+   * @param keyProperty
+   *          the vertex property identifying vertices across graphs, or null to use the vertex ids. Vertices without
+   *          the property fall back to their ids.
+   * @param ghostProperty
+   *          the vertex property marking ghost copies of vertices owned by another graph, or null if there are none
+   * @param policy
+   *          how to resolve properties the merged elements disagree on
+   * @param expectedVertices
+   *          the number of distinct vertices expected, used to size the lookup map
+   */
+  public GraphMerger( Graph target, String keyProperty, String ghostProperty, PropertyConflictPolicy policy,
+      int expectedVertices ) {
+    this.target = target;
+    this.keyProperty = keyProperty;
+    this.ghostProperty = ghostProperty;
+    this.policy = policy;
+    this.vertices = new HashMap<Object, Vertex>( capacity( expectedVertices ) );
+    this.unkeyedVertices = new HashMap<Object, Vertex>();
+  }
+
+  /**
+   * @return the initial capacity for a hash map to hold this many entries without resizing
+   */
+  static int capacity( int expected ) {
+    return Math.max( 16, (int) ( expected / 0.75f ) + 1 );
+  }
+
+  /**
+   * @return the number of vertices in the graph, counted without materializing them when it is a CsrGraph
+   */
+  public static int countVertices( Graph graph ) {
+    if ( graph instanceof CsrGraph ) {
+      return ( (CsrGraph) graph ).getVertexCount();
+    }
+    int count = 0;
+    for ( Iterator<Vertex> it = graph.getVertices().iterator(); it.hasNext(); it.next() ) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Merges all vertices and edges of the source graph into the target graph.
+   * 
+   * @throws IllegalArgumentException
+   *           if the conflict policy refuses a property conflict
+   */
+  public void merge( Graph source ) {
+    for ( Vertex vertex : source.getVertices() ) {
+      Map<Object, Vertex> map = vertices;
+      Object key = keyProperty == null ? vertex.getId() : vertex.getProperty( keyProperty );
+      if ( key == null ) {
+        map = unkeyedVertices;
+        key = vertex.getId();
+      }
+      boolean ghost = ghostProperty != null && vertex.getProperty( ghostProperty ) != null;
+      Vertex merged = map.get( key );
+      if ( merged == null ) {
+        merged = target.addVertex( freeVertexId( vertex.getId() ) );
+        ElementHelper.copyProperties( vertex, merged );
+        if ( ghost ) {
+          merged.removeProperty( ghostProperty );
+          ghostOnly.add( merged );
+        }
+        map.put( key, merged );
+        vertexCount++;
+      } else {
+        if ( !ghost ) {
+          if ( ghostOnly.remove( merged ) ) {
+            ElementHelper.copyProperties( vertex, merged );
+          } else {
+            mergeProperties( vertex, merged );
+          }
+        }
+        mergedVertices++;
+      }
+    }
+    for ( Edge edge : source.getEdges() ) {
+      Vertex out = lookup( edge.getVertex( Direction.OUT ) );
+      Vertex in = lookup( edge.getVertex( Direction.IN ) );
+      String label = edge.getLabel();
+      Edge existing = edge.getId() == null ? null : target.getEdge( edge.getId() );
+      if ( existing != null && label.equals( existing.getLabel() ) && out.equals( existing.getVertex( Direction.OUT ) )
+          && in.equals( existing.getVertex( Direction.IN ) ) ) {
+        mergeProperties( edge, existing );
+        mergedEdges++;
+      } else {
+        Edge merged = target.addEdge( existing == null ? edge.getId() : null, out, in, label );
+        ElementHelper.copyProperties( edge, merged );
+      }
+    }
+  }
+
+  private Vertex lookup( Vertex vertex ) {
+    if ( keyProperty != null ) {
+      Object key = vertex.getProperty( keyProperty );
+      if ( key != null ) {
+        return vertices.get( key );
+      }
+      return unkeyedVertices.get( vertex.getId() );
+    }
+    return vertices.get( vertex.getId() );
+  }
+
+  /**
+   * Keeps the source id unless the target already has a vertex with it, which happens when vertices are matched on a
+   * key property instead of their ids.
+   */
+  private Object freeVertexId( Object id ) {
+    return id == null || target.getVertex( id ) != null ? null : id;
+  }
+
+  private void mergeProperties( Element from, Element to ) {
+    for ( String key : from.getPropertyKeys() ) {
+      Object incoming = from.getProperty( key );
+      Object existing = to.getProperty( key );
+      if ( existing == null ) {
+        to.setProperty( key, incoming );
+      } else if ( !existing.equals( incoming ) ) {
+        Object resolved = policy.resolve( key, existing, incoming );
+        if ( resolved != existing ) {
+          to.setProperty( key, resolved );
+        }
+      }
+    }
+  }
+
+  public Graph getTarget() {
+    return target;
+  }
+
+  /**
+   * @return the number of distinct vertices merged so far
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * @return the number of vertices that matched one merged before
+   */
+  public int getMergedVertices() {
+    return mergedVertices;
+  }
+
+  /**
+   * @return the number of edges that matched one merged before
+   */
+  public int getMergedEdges() {
+    return mergedEdges;
+  }
+}
@@ -0,0 +1,340 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.graph.io.BinaryGraphFormat;
+import org.pentaho.di.core.graph.io.CountingOutputStream;
+
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Writes graphs to, and opens them from, snapshot directories. A snapshot holds a CsrGraph as flat files that can be
+ * memory-mapped as they are: the topology arrays as big-endian ints, and every id and property column as a data file of
+ * {@link BinaryGraphFormat} values plus an index file of long offsets into it. {@link #open(File)} therefore maps a
+ * snapshot of any size without deserializing anything.
+ * <p>
+ * The meta file is written last, so a directory whose write failed halfway is not mistaken for a snapshot. A snapshot
+ * is written to a temporary sibling directory and renamed into place, so rewriting one never truncates files that may
+ * still be mapped, and a failed rewrite leaves the previous snapshot as it was.
+ */
+public class GraphSnapshot {
+
+  public static final int MAGIC = 0x50444953; // "PDIS"
+  public static final int VERSION = 1;
+
+  public static final String META_FILE = "graph.meta";
+  static final String TOPOLOGY_FILE = "topology";
+  static final String VERTEX_IDS = "vertex_ids";
+  static final String EDGE_IDS = "edge_ids";
+  static final String VERTEX_PROPERTY_PREFIX = "vertex_";
+  static final String EDGE_PROPERTY_PREFIX = "edge_";
+  static final String INDEX_EXTENSION = ".idx";
+  static final String DATA_EXTENSION = ".dat";
+
+  private GraphSnapshot() {
+  }
+
+  /**
+   * @return true if the given directory holds a complete snapshot
+   */
+  public static boolean isSnapshot( File directory ) {
+    return new File( directory, META_FILE ).isFile();
+  }
+
+  /**
+   * Writes the graph, frozen into a CsrGraph first if needed, as a snapshot into the given directory. The directory is
+   * created if it does not exist, and replaced if it holds a snapshot already; any other existing directory must be
+   * empty.
+   */
+  public static void write( Graph graph, File directory ) throws IOException {
+    CsrGraph csr = CsrGraph.freeze( graph );
+    directory = directory.getAbsoluteFile();
+    if ( directory.exists() && !isSnapshot( directory ) ) {
+      String[] children = directory.list();
+      if ( children == null || children.length > 0 ) {
+        throw new IOException( directory + " exists and is not a graph snapshot" );
+      }
+    }
+    File parent = directory.getParentFile();
+    if ( !parent.isDirectory() && !parent.mkdirs() ) {
+      throw new IOException( "Unable to create snapshot directory " + parent );
+    }
+    File written = freeSibling( directory, ".writing" );
+    boolean complete = false;
+    try {
+      if ( !written.mkdir() ) {
+        throw new IOException( "Unable to create snapshot directory " + written );
+      }
+      writeFiles( csr, written );
+      replace( written, directory );
+      complete = true;
+    } finally {
+      if ( !complete ) {
+        delete( written );
+      }
+    }
+  }
+
+  private static void writeFiles( final CsrGraph csr, File directory ) throws IOException {
+    int n = csr.getVertexCount();
+    int m = csr.getEdgeCount();
+
+    DataOutputStream topology = open( directory, TOPOLOGY_FILE );
+    try {
+      for ( int v = 0; v < n; v++ ) {
+        topology.writeInt( csr.getOutStart( v ) );
+      }
+      topology.writeInt( m );
+      for ( int e = 0; e < m; e++ ) {
+        topology.writeInt( csr.getTarget( e ) );
+      }
+      for ( int e = 0; e < m; e++ ) {
+        topology.writeInt( csr.getSource( e ) );
+      }
+      for ( int e = 0; e < m; e++ ) {
+        topology.writeInt( csr.getLabelIndex( e ) );
+      }
+      for ( int v = 0; v < n; v++ ) {
+        topology.writeInt( csr.getInStart( v ) );
+      }
+      topology.writeInt( m );
+      for ( int slot = 0; slot < m; slot++ ) {
+        topology.writeInt( csr.getInEdge( slot ) );
+      }
+    } finally {
+      topology.close();
+    }
+
+    writeColumn( directory, VERTEX_IDS, new Values( n ) {
+      Object get( int index ) {
+        return csr.getVertexId( index );
+      }
+    } );
+    if ( csr.hasEdgeIds() ) {
+      writeColumn( directory, EDGE_IDS, new Values( m ) {
+        Object get( int index ) {
+          return csr.getEdgeId( index );
+        }
+      } );
+    }
+    List<String> vertexKeys = sortedKeys( csr.getVertexPropertyKeys() );
+    for ( int k = 0; k < vertexKeys.size(); k++ ) {
+      final String key = vertexKeys.get( k );
+      writeColumn( directory, VERTEX_PROPERTY_PREFIX + k, new Values( n ) {
+        Object get( int index ) {
+          return csr.getVertexProperty( index, key );
+        }
+      } );
+    }
+    List<String> edgeKeys = sortedKeys( csr.getEdgePropertyKeys() );
+    for ( int k = 0; k < edgeKeys.size(); k++ ) {
+      final String key = edgeKeys.get( k );
+      writeColumn( directory, EDGE_PROPERTY_PREFIX + k, new Values( m ) {
+        Object get( int index ) {
+          return csr.getEdgeProperty( index, key );
+        }
+      } );
+    }
+
+    DataOutputStream meta = open( directory, META_FILE );
+    try {
+      meta.writeInt( MAGIC );
+      meta.writeInt( VERSION );
+      meta.writeInt( n );
+      meta.writeInt( m );
+      meta.writeInt( csr.getLabelCount() );
+      for ( int l = 0; l < csr.getLabelCount(); l++ ) {
+        BinaryGraphFormat.writeString( meta, csr.getLabel( l ) );
+      }
+      meta.writeBoolean( csr.hasEdgeIds() );
+      writeKeys( meta, vertexKeys );
+      writeKeys( meta, edgeKeys );
+    } finally {
+      meta.close();
+    }
+  }
+
+  /**
+   * Renames the written directory to the snapshot directory, moving a previous snapshot aside first. The previous files
+   * are deleted afterwards; graphs still mapping them keep reading them until they are unmapped.
+   */
+  private static void replace( File written, File directory ) throws IOException {
+    File previous = null;
+    if ( directory.exists() ) {
+      previous = freeSibling( directory, ".old" );
+      if ( !directory.renameTo( previous ) ) {
+        throw new IOException( "Unable to move snapshot " + directory + " aside" );
+      }
+    }
+    if ( !written.renameTo( directory ) ) {
+      if ( previous != null ) {
+        previous.renameTo( directory );
+      }
+      throw new IOException( "Unable to rename " + written + " to " + directory );
+    }
+    if ( previous != null ) {
+      delete( previous );
+    }
+  }
+
+  /**
+   * @return a file that does not exist yet next to the given one
+   */
+  private static File freeSibling( File file, String suffix ) throws IOException {
+    File sibling = File.createTempFile( "." + file.getName() + "-", suffix, file.getParentFile() );
+    if ( !sibling.delete() ) {
+      throw new IOException( "Unable to delete " + sibling );
+    }
+    return sibling;
+  }
+
+  private static void delete( File file ) {
+    File[] children = file.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        delete( child );
+      }
+    }
+    if ( file.exists() && !file.delete() ) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Maps the snapshot in the given directory as a read-only graph.
+   */
+  public static MappedCsrGraph open( File directory ) throws IOException {
+    File metaFile = new File( directory, META_FILE );
+    if ( !metaFile.isFile() ) {
+      throw new IOException( "No graph snapshot found in " + directory );
+    }
+    DataInputStream meta = new DataInputStream( new BufferedInputStream( new FileInputStream( metaFile ) ) );
+    try {
+      if ( meta.readInt() != MAGIC ) {
+        throw new IOException( "Not a graph snapshot: " + directory );
+      }
+      int version = meta.readInt();
+      if ( version != VERSION ) {
+        throw new IOException( "Unsupported graph snapshot version " + version + " in " + directory );
+      }
+      int n = meta.readInt();
+      int m = meta.readInt();
+      String[] labels = new String[meta.readInt()];
+      for ( int l = 0; l < labels.length; l++ ) {
+        labels[l] = BinaryGraphFormat.readString( meta );
+      }
+      boolean hasEdgeIds = meta.readBoolean();
+      Map<String, CsrColumn> vertexProperties = new HashMap<String, CsrColumn>();
+      int nrVertexKeys = meta.readInt();
+      for ( int k = 0; k < nrVertexKeys; k++ ) {
+        String key = BinaryGraphFormat.readString( meta );
+        vertexProperties.put( key, mapColumn( directory, VERTEX_PROPERTY_PREFIX + k ) );
+      }
+      Map<String, CsrColumn> edgeProperties = new HashMap<String, CsrColumn>();
+      int nrEdgeKeys = meta.readInt();
+      for ( int k = 0; k < nrEdgeKeys; k++ ) {
+        String key = BinaryGraphFormat.readString( meta );
+        edgeProperties.put( key, mapColumn( directory, EDGE_PROPERTY_PREFIX + k ) );
+      }
+      return new MappedCsrGraph( directory, n, m, labels, new MappedFile( new File( directory, TOPOLOGY_FILE ) ),
+          mapColumn( directory, VERTEX_IDS ), hasEdgeIds ? mapColumn( directory, EDGE_IDS ) : null, vertexProperties,
+          edgeProperties );
+    } finally {
+      meta.close();
+    }
+  }
+
+  private abstract static class Values {
+    private final int size;
+
+    Values( int size ) {
+      this.size = size;
+    }
+
+    abstract Object get( int index );
+  }
+
+  private static void writeColumn( File directory, String name, Values values ) throws IOException {
+    DataOutputStream index = open( directory, name + INDEX_EXTENSION );
+    try {
+      // counted above the buffer, so the offsets are right without flushing
+      CountingOutputStream counter =
+          new CountingOutputStream( new BufferedOutputStream( new FileOutputStream( new File( directory, name
+              + DATA_EXTENSION ) ) ) );
+      DataOutputStream data = new DataOutputStream( counter );
+      try {
+        for ( int i = 0; i < values.size; i++ ) {
+          index.writeLong( counter.getCount() );
+          Object value = values.get( i );
+          if ( value != null ) {
+            BinaryGraphFormat.writeValue( data, value );
+          }
+        }
+        index.writeLong( counter.getCount() );
+      } finally {
+        data.close();
+      }
+    } finally {
+      index.close();
+    }
+  }
+
+  private static MappedColumn mapColumn( File directory, String name ) throws IOException {
+    return new MappedColumn( new MappedFile( new File( directory, name + INDEX_EXTENSION ) ), new MappedFile(
+        new File( directory, name + DATA_EXTENSION ) ) );
+  }
+
+  private static DataOutputStream open( File directory, String name ) throws IOException {
+    return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( new File( directory, name ) ) ) );
+  }
+
+  private static List<String> sortedKeys( Iterable<String> keys ) {
+    List<String> list = new ArrayList<String>();
+    for ( String key : keys ) {
+      list.add( key );
+    }
+    Collections.sort( list );
+    return list;
+  }
+
+  private static void writeKeys( DataOutputStream out, List<String> keys ) throws IOException {
+    out.writeInt( keys.size() );
+    for ( String key : keys ) {
+      BinaryGraphFormat.writeString( out, key );
+    }
+  }
+}
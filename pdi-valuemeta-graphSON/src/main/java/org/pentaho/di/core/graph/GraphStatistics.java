@@ -0,0 +1,218 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Summary statistics of a graph: vertex and edge counts, the number of edges per label and the distribution of vertex
+ * degrees (in plus out edges, so a self loop counts twice).
+ * <p>
+ * Statistics are computed with one pass over the graph and cached per graph instance, so asking again for the same
+ * graph value is free. Code that adds vertices through {@link #vertexAdded(Graph)} keeps the cached statistics
+ * current; code that otherwise changes the structure of a graph calls {@link #invalidate(Graph)} so they are computed
+ * again on the next request. The cache holds graphs weakly and does not keep them alive.
+ * <p>
+ * Degrees are counted in power-of-two buckets: bucket 0 holds the vertices without edges and bucket b the vertices
+ * with a degree from 2^(b-1) up to 2^b - 1. The last bucket also holds any higher degree.
+ */
+public class GraphStatistics {
+
+  public static final int DEGREE_BUCKETS = 33;
+
+  private static final Map<Graph, GraphStatistics> CACHE = new WeakHashMap<Graph, GraphStatistics>();
+
+  private long vertexCount;
+  private long edgeCount;
+  private final Map<String, Long> labelCounts = new TreeMap<String, Long>();
+  private final long[] degreeHistogram = new long[DEGREE_BUCKETS];
+  private long minDegree;
+  private long maxDegree;
+
+  private GraphStatistics() {
+  }
+
+  /**
+   * @return the cached statistics of the graph, computing them first if there are none
+   */
+  public static GraphStatistics of( Graph graph ) {
+    synchronized ( CACHE ) {
+      GraphStatistics statistics = CACHE.get( graph );
+      if ( statistics == null ) {
+        statistics = compute( graph );
+        CACHE.put( graph, statistics );
+      }
+      return statistics;
+    }
+  }
+
+  /**
+   * Computes the statistics of the graph without looking at or updating the cache.
+   */
+  public static GraphStatistics compute( Graph graph ) {
+    GraphStatistics statistics = new GraphStatistics();
+    if ( graph instanceof CsrGraph ) {
+      statistics.count( (CsrGraph) graph );
+    } else {
+      statistics.count( graph );
+    }
+    return statistics;
+  }
+
+  /**
+   * Drops the cached statistics of a graph whose vertices or edges have changed.
+   */
+  public static void invalidate( Graph graph ) {
+    synchronized ( CACHE ) {
+      CACHE.remove( graph );
+    }
+  }
+
+  /**
+   * Records a vertex that was just added to the graph, without edges yet. This only updates statistics that are
+   * cached already; nothing is computed.
+   */
+  public static void vertexAdded( Graph graph ) {
+    GraphStatistics statistics;
+    synchronized ( CACHE ) {
+      statistics = CACHE.get( graph );
+    }
+    if ( statistics != null ) {
+      statistics.addVertex( 0 );
+    }
+  }
+
+  private void count( CsrGraph graph ) {
+    for ( int v = 0; v < graph.getVertexCount(); v++ ) {
+      addVertex( graph.getOutDegree( v ) + graph.getInDegree( v ) );
+    }
+    long[] perLabel = new long[graph.getLabelCount()];
+    for ( int e = 0; e < graph.getEdgeCount(); e++ ) {
+      perLabel[graph.getLabelIndex( e )]++;
+    }
+    for ( int l = 0; l < perLabel.length; l++ ) {
+      if ( perLabel[l] > 0 ) {
+        labelCounts.put( graph.getLabel( l ), perLabel[l] );
+      }
+    }
+    edgeCount = graph.getEdgeCount();
+  }
+
+  private void count( Graph graph ) {
+    Map<Object, int[]> degrees = new HashMap<Object, int[]>();
+    for ( Edge edge : graph.getEdges() ) {
+      edgeCount++;
+      Long count = labelCounts.get( edge.getLabel() );
+      labelCounts.put( edge.getLabel(), count == null ? 1L : count + 1 );
+      increment( degrees, edge.getVertex( Direction.OUT ).getId() );
+      increment( degrees, edge.getVertex( Direction.IN ).getId() );
+    }
+    for ( Vertex vertex : graph.getVertices() ) {
+      int[] degree = degrees.get( vertex.getId() );
+      addVertex( degree == null ? 0 : degree[0] );
+    }
+  }
+
+  private static void increment( Map<Object, int[]> degrees, Object id ) {
+    int[] degree = degrees.get( id );
+    if ( degree == null ) {
+      degrees.put( id, new int[] { 1 } );
+    } else {
+      degree[0]++;
+    }
+  }
+
+  private synchronized void addVertex( long degree ) {
+    minDegree = vertexCount == 0 ? degree : Math.min( minDegree, degree );
+    maxDegree = Math.max( maxDegree, degree );
+    degreeHistogram[bucketOf( degree )]++;
+    vertexCount++;
+  }
+
+  /**
+   * @return the degree histogram bucket a degree falls in
+   */
+  public static int bucketOf( long degree ) {
+    return degree == 0 ? 0 : Math.min( DEGREE_BUCKETS - 1, 64 - Long.numberOfLeadingZeros( degree ) );
+  }
+
+  /**
+   * @return the lowest degree counted in the given bucket
+   */
+  public static long bucketStart( int bucket ) {
+    return bucket == 0 ? 0 : 1L << ( bucket - 1 );
+  }
+
+  public synchronized long getVertexCount() {
+    return vertexCount;
+  }
+
+  public synchronized long getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return a copy of the number of edges per label, sorted by label
+   */
+  public synchronized Map<String, Long> getLabelCounts() {
+    return new TreeMap<String, Long>( labelCounts );
+  }
+
+  /**
+   * @return a copy of the degree histogram, indexed by bucket
+   */
+  public synchronized long[] getDegreeHistogram() {
+    return degreeHistogram.clone();
+  }
+
+  public synchronized long getMinDegree() {
+    return minDegree;
+  }
+
+  public synchronized long getMaxDegree() {
+    return maxDegree;
+  }
+
+  /**
+   * @return the average number of edges per vertex, 0 for an empty graph
+   */
+  public synchronized double getMeanDegree() {
+    return vertexCount == 0 ? 0.0 : 2.0 * edgeCount / vertexCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "vertices:" + vertexCount + " edges:" + edgeCount + " labels:" + labelCounts.size() + " degree:"
+        + minDegree + ".." + maxDegree;
+  }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.pentaho.di.core.graph.io.BinaryGraphFormat;
+
+/**
+ * A column of arbitrary values in a graph snapshot. The values are encoded one after the other in a data file, and an
+ * index file holds the start of every value as a long, plus the end of the last one. An element without a value has an
+ * empty span. Values are only decoded when they are asked for.
+ */
+class MappedColumn extends CsrColumn {
+
+  private final MappedFile index;
+  private final MappedFile data;
+
+  MappedColumn( MappedFile index, MappedFile data ) {
+    this.index = index;
+    this.data = data;
+  }
+
+  Object get( int element ) {
+    long start = index.getLong( (long) element << 3 );
+    long end = index.getLong( (long) ( element + 1 ) << 3 );
+    if ( start == end ) {
+      return null;
+    }
+    try {
+      return BinaryGraphFormat.readValue( new DataInputStream( new ByteArrayInputStream( data.getBytes( start,
+          (int) ( end - start ) ) ) ) );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Corrupt value for element " + element, e );
+    }
+  }
+
+  boolean isSet( int element ) {
+    return index.getLong( (long) element << 3 ) != index.getLong( (long) ( element + 1 ) << 3 );
+  }
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A CsrGraph served straight from a snapshot directory written by {@link GraphSnapshot}. The topology arrays and
+ * property columns are memory-mapped rather than read, so opening a snapshot costs next to nothing no matter how big
+ * the graph is, and the operating system pages in only the parts an algorithm actually touches.
+ * <p>
+ * The vertex id lookup needed by {@link #indexOf(Object)} is only built the first time a vertex is looked up by id.
+ */
+public class MappedCsrGraph extends CsrGraph {
+
+  private final File directory;
+  private final int vertexCount;
+  private final int edgeCount;
+
+  // byte positions of the arrays in the topology file, which starts with the out offsets
+  private final MappedFile topology;
+  private final long targetsStart;
+  private final long sourcesStart;
+  private final long labelsStart;
+  private final long inOffsetsStart;
+  private final long inEdgesStart;
+
+  private final MappedColumn vertexIds;
+  private final MappedColumn edgeIds;
+
+  private Map<Object, Integer> vertexIndex;
+
+  MappedCsrGraph( File directory, int vertexCount, int edgeCount, String[] labels, MappedFile topology,
+      MappedColumn vertexIds, MappedColumn edgeIds, Map<String, CsrColumn> vertexProperties,
+      Map<String, CsrColumn> edgeProperties ) {
+    super( new Object[0], null, new int[1], new int[0], new int[0], new int[0], labels, null, new int[1], new int[0],
+        vertexProperties, edgeProperties );
+    this.directory = directory;
+    this.vertexCount = vertexCount;
+    this.edgeCount = edgeCount;
+    this.topology = topology;
+    this.targetsStart = 4L * ( vertexCount + 1 );
+    this.sourcesStart = targetsStart + 4L * edgeCount;
+    this.labelsStart = sourcesStart + 4L * edgeCount;
+    this.inOffsetsStart = labelsStart + 4L * edgeCount;
+    this.inEdgesStart = inOffsetsStart + 4L * ( vertexCount + 1 );
+    this.vertexIds = vertexIds;
+    this.edgeIds = edgeIds;
+  }
+
+  /**
+   * @return the snapshot directory this graph is mapped from
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  @Override
+  public int indexOf( Object vertexId ) {
+    if ( vertexId == null ) {
+      return -1;
+    }
+    Map<Object, Integer> index = getVertexIndex();
+    Integer vertex = index.get( vertexId );
+    if ( vertex == null && !( vertexId instanceof String ) ) {
+      vertex = index.get( vertexId.toString() );
+    }
+    return vertex == null ? -1 : vertex.intValue();
+  }
+
+  private synchronized Map<Object, Integer> getVertexIndex() {
+    if ( vertexIndex == null ) {
+      Map<Object, Integer> index = new HashMap<Object, Integer>( vertexCount * 4 / 3 + 1 );
+      for ( int v = 0; v < vertexCount; v++ ) {
+        index.put( vertexIds.get( v ), Integer.valueOf( v ) );
+      }
+      vertexIndex = index;
+    }
+    return vertexIndex;
+  }
+
+  @Override
+  public Object getVertexId( int vertex ) {
+    return vertexIds.get( vertex );
+  }
+
+  @Override
+  public int getOutStart( int vertex ) {
+    return topology.getInt( 4L * vertex );
+  }
+
+  @Override
+  public int getOutEnd( int vertex ) {
+    return topology.getInt( 4L * ( vertex + 1 ) );
+  }
+
+  @Override
+  public int getOutDegree( int vertex ) {
+    return getOutEnd( vertex ) - getOutStart( vertex );
+  }
+
+  @Override
+  public int getInStart( int vertex ) {
+    return topology.getInt( inOffsetsStart + 4L * vertex );
+  }
+
+  @Override
+  public int getInEnd( int vertex ) {
+    return topology.getInt( inOffsetsStart + 4L * ( vertex + 1 ) );
+  }
+
+  @Override
+  public int getInDegree( int vertex ) {
+    return getInEnd( vertex ) - getInStart( vertex );
+  }
+
+  @Override
+  public int getInEdge( int slot ) {
+    return topology.getInt( inEdgesStart + 4L * slot );
+  }
+
+  @Override
+  public int getSource( int edge ) {
+    return topology.getInt( sourcesStart + 4L * edge );
+  }
+
+  @Override
+  public int getTarget( int edge ) {
+    return topology.getInt( targetsStart + 4L * edge );
+  }
+
+  @Override
+  public int getLabelIndex( int edge ) {
+    return topology.getInt( labelsStart + 4L * edge );
+  }
+
+  @Override
+  boolean hasEdgeIds() {
+    return edgeIds != null;
+  }
+
+  @Override
+  public Object getEdgeId( int edge ) {
+    Object id = edgeIds == null ? null : edgeIds.get( edge );
+    return id != null ? id : Integer.valueOf( edge );
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[" + directory + "]";
+  }
+}
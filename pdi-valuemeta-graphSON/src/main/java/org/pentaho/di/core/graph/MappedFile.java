@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only file mapped into memory. A single mapping cannot exceed 2 GB, so larger files are mapped in chunks of 1
+ * GB; since the chunk size is a multiple of 8, ints and longs written at aligned positions never straddle two chunks.
+ */
+class MappedFile {
+
+  private static final int CHUNK_SHIFT = 30;
+  private static final long CHUNK_MASK = ( 1L << CHUNK_SHIFT ) - 1;
+
+  private final MappedByteBuffer[] chunks;
+  private final long length;
+
+  MappedFile( File file ) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile( file, "r" );
+    try {
+      FileChannel channel = raf.getChannel();
+      length = channel.size();
+      int nrChunks = (int) ( ( length + CHUNK_MASK ) >>> CHUNK_SHIFT );
+      chunks = new MappedByteBuffer[nrChunks];
+      for ( int i = 0; i < nrChunks; i++ ) {
+        long position = (long) i << CHUNK_SHIFT;
+        long size = Math.min( CHUNK_MASK + 1, length - position );
+        chunks[i] = channel.map( FileChannel.MapMode.READ_ONLY, position, size );
+      }
+    } finally {
+      // the mappings stay valid after the file is closed
+      raf.close();
+    }
+  }
+
+  long length() {
+    return length;
+  }
+
+  int getInt( long position ) {
+    return chunks[(int) ( position >>> CHUNK_SHIFT )].getInt( (int) ( position & CHUNK_MASK ) );
+  }
+
+  long getLong( long position ) {
+    return chunks[(int) ( position >>> CHUNK_SHIFT )].getLong( (int) ( position & CHUNK_MASK ) );
+  }
+
+  /**
+   * Copies length bytes starting at the given position, which may cross chunk boundaries.
+   */
+  byte[] getBytes( long position, int length ) {
+    byte[] bytes = new byte[length];
+    int copied = 0;
+    while ( copied < length ) {
+      long from = position + copied;
+      MappedByteBuffer chunk = chunks[(int) ( from >>> CHUNK_SHIFT )];
+      int offset = (int) ( from & CHUNK_MASK );
+      int n = Math.min( length - copied, chunk.capacity() - offset );
+      // duplicate() so concurrent readers do not share the buffer position
+      ByteBuffer view = chunk.duplicate();
+      view.position( offset );
+      view.get( bytes, copied, n );
+      copied += n;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+/**
+ * Decides which value a property ends up with when two merged vertices or edges both carry it with different values.
+ */
+public interface PropertyConflictPolicy {
+
+  /** Keeps the value of the element merged first */
+  PropertyConflictPolicy KEEP_FIRST = new PropertyConflictPolicy() {
+    public Object resolve( String key, Object existing, Object incoming ) {
+      return existing;
+    }
+  };
+
+  /** Overwrites the value with the one from the element merged last */
+  PropertyConflictPolicy KEEP_LAST = new PropertyConflictPolicy() {
+    public Object resolve( String key, Object existing, Object incoming ) {
+      return incoming;
+    }
+  };
+
+  /** Refuses to merge elements that disagree on a property */
+  PropertyConflictPolicy FAIL = new PropertyConflictPolicy() {
+    public Object resolve( String key, Object existing, Object incoming ) {
+      throw new IllegalArgumentException( "Conflicting values for property [" + key + "]: " + existing + " and "
+          + incoming );
+    }
+  };
+
+  /**
+   * @param key
+   *          the property key
+   * @param existing
+   *          the value already in the merged graph, never null
+   * @param incoming
+   *          the differing value of the element being merged in, never null
+   * @return the value to keep
+   */
+  Object resolve( String key, Object existing, Object incoming );
+}
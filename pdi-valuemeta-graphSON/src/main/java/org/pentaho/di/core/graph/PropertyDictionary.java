@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Shares one String instance between all elements that have the same value for a property key, so a graph with
+ * low-cardinality properties (labels, country codes, categories) keeps each distinct value in the heap only once
+ * instead of once per element.
+ * <p>
+ * Each key gets its own dictionary. Once a key has seen more than the maximum cardinality of distinct values it is
+ * considered high-cardinality: its dictionary is dropped and its values are passed through unchanged from then on, so
+ * unique values such as names do not end up held by the dictionary as well as by the graph.
+ */
+public class PropertyDictionary {
+
+  public static final int DEFAULT_MAX_CARDINALITY = 1024;
+
+  private final int maxCardinality;
+  private final Map<String, Map<String, String>> dictionaries = new HashMap<String, Map<String, String>>();
+
+  public PropertyDictionary() {
+    this( DEFAULT_MAX_CARDINALITY );
+  }
+
+  /**
+   * @param maxCardinality
+   *          the number of distinct values a key may have before its values are no longer shared
+   */
+  public PropertyDictionary( int maxCardinality ) {
+    this.maxCardinality = maxCardinality;
+  }
+
+  /**
+   * @return the shared instance of the value if it is a String of a low-cardinality key, the value itself otherwise
+   */
+  public Object encode( String key, Object value ) {
+    if ( !( value instanceof String ) ) {
+      return value;
+    }
+    Map<String, String> dictionary = dictionaries.get( key );
+    if ( dictionary == null ) {
+      if ( dictionaries.containsKey( key ) ) {
+        return value; // high-cardinality key
+      }
+      dictionary = new HashMap<String, String>();
+      dictionaries.put( key, dictionary );
+    }
+    String shared = dictionary.get( value );
+    if ( shared == null ) {
+      if ( dictionary.size() >= maxCardinality ) {
+        dictionaries.put( key, null );
+        return value;
+      }
+      shared = (String) value;
+      dictionary.put( shared, shared );
+    }
+    return shared;
+  }
+
+  /**
+   * Replaces the String property values of all vertices and edges of a graph with their shared instances. This is for
+   * graphs that were filled by code that cannot go through {@link #encode(String, Object)}, such as the GraphSON
+   * reader.
+   * 
+   * @return the number of property values that were replaced by an instance shared with another element
+   */
+  public int apply( Graph graph ) {
+    int replaced = 0;
+    for ( Vertex vertex : graph.getVertices() ) {
+      replaced += apply( vertex );
+    }
+    for ( Edge edge : graph.getEdges() ) {
+      replaced += apply( edge );
+    }
+    return replaced;
+  }
+
+  private int apply( Element element ) {
+    int replaced = 0;
+    for ( String key : element.getPropertyKeys() ) {
+      Object value = element.getProperty( key );
+      Object shared = encode( key, value );
+      if ( shared != value ) {
+        element.setProperty( key, shared );
+        replaced++;
+      }
+    }
+    return replaced;
+  }
+
+  /**
+   * @return true if the key has had too many distinct values to be dictionary encoded
+   */
+  public boolean isHighCardinality( String key ) {
+    return dictionaries.containsKey( key ) && dictionaries.get( key ) == null;
+  }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import com.tinkerpop.blueprints.Element;
+
+/**
+ * Base class for the vertices and edges of a {@link SpillGraph}. An element only holds its id, and reads and writes
+ * its data through the graph, which may have spilled it to disk in the meantime.
+ */
+public abstract class SpillElement implements Element {
+
+  protected final SpillGraph graph;
+  protected final String id;
+
+  protected SpillElement( SpillGraph graph, String id ) {
+    this.graph = graph;
+    this.id = id;
+  }
+
+  public Object getId() {
+    return id;
+  }
+
+  public SpillGraph getGraph() {
+    return graph;
+  }
+
+  @Override
+  public boolean equals( Object object ) {
+    if ( this == object ) {
+      return true;
+    }
+    if ( object == null || object.getClass() != getClass() ) {
+      return false;
+    }
+    SpillElement other = (SpillElement) object;
+    return other.graph == graph && other.id.equals( id );
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.util.Arrays;
+
+/**
+ * The index of the elements of one kind in a {@link SpillGraph}, kept in primitive arrays so that it takes a few dozen
+ * bytes per element instead of a map entry with a boxed position.
+ * <p>
+ * Every element gets a slot, which holds the position of its record in the spill file and a generation that changes
+ * when the slot is freed. Slots of removed elements are reused. Ids are found through an open addressing table of
+ * hashes and slots; the ids themselves are not kept here, a hash match is confirmed with {@link #idOf(int)}.
+ */
+abstract class SpillElementTable {
+
+  /** Position of a slot that holds no element */
+  static final long FREE = -2L;
+
+  /** Position of an element that has not been written to the spill file yet, or whose record is out of date there */
+  static final long NOT_SPILLED = -1L;
+
+  private static final long EMPTY = 0L;
+  private static final long TOMBSTONE = -1L;
+  private static final int INITIAL_SLOTS = 16;
+
+  private long[] positions = new long[INITIAL_SLOTS];
+  private int[] generations = new int[INITIAL_SLOTS];
+  private int slotCount;
+  private int[] freeSlots = new int[INITIAL_SLOTS];
+  private int freeCount;
+  private int size;
+
+  // entries are the hash of the id in the high half and the slot plus one in the low half
+  private long[] table = new long[INITIAL_SLOTS * 2];
+  private int usedEntries;
+
+  /**
+   * @return the id of the element in the slot
+   */
+  abstract String idOf( int slot );
+
+  /**
+   * @return the slot of the element, or -1 if there is none with this id
+   */
+  int find( String id ) {
+    int hash = hash( id );
+    int mask = table.length - 1;
+    for ( int i = hash & mask;; i = ( i + 1 ) & mask ) {
+      long entry = table[i];
+      if ( entry == EMPTY ) {
+        return -1;
+      }
+      if ( entry != TOMBSTONE && (int) ( entry >>> 32 ) == hash ) {
+        int slot = slotOf( entry );
+        if ( id.equals( idOf( slot ) ) ) {
+          return slot;
+        }
+      }
+    }
+  }
+
+  /**
+   * Gives a new element a slot. The caller makes sure no element with this id exists yet.
+   *
+   * @return the slot, with position {@link #NOT_SPILLED}
+   */
+  int add( String id ) {
+    int slot;
+    if ( freeCount > 0 ) {
+      slot = freeSlots[--freeCount];
+    } else {
+      if ( slotCount == positions.length ) {
+        positions = Arrays.copyOf( positions, slotCount * 2 );
+        generations = Arrays.copyOf( generations, slotCount * 2 );
+      }
+      slot = slotCount++;
+    }
+    positions[slot] = NOT_SPILLED;
+    size++;
+    if ( ( usedEntries + 1 ) * 2 > table.length ) {
+      rehash();
+    }
+    int hash = hash( id );
+    int mask = table.length - 1;
+    int i = hash & mask;
+    while ( table[i] != EMPTY && table[i] != TOMBSTONE ) {
+      i = ( i + 1 ) & mask;
+    }
+    if ( table[i] == EMPTY ) {
+      usedEntries++;
+    }
+    table[i] = entry( hash, slot );
+    return slot;
+  }
+
+  /**
+   * Frees the slot of an element. Its generation changes, so references to the element by slot and generation no
+   * longer match.
+   */
+  void remove( String id, int slot ) {
+    long entry = entry( hash( id ), slot );
+    int mask = table.length - 1;
+    for ( int i = hash( id ) & mask; table[i] != EMPTY; i = ( i + 1 ) & mask ) {
+      if ( table[i] == entry ) {
+        table[i] = TOMBSTONE;
+        break;
+      }
+    }
+    positions[slot] = FREE;
+    generations[slot]++;
+    if ( freeCount == freeSlots.length ) {
+      freeSlots = Arrays.copyOf( freeSlots, freeCount * 2 );
+    }
+    freeSlots[freeCount++] = slot;
+    size--;
+  }
+
+  boolean isLive( int slot ) {
+    return slot >= 0 && slot < slotCount && positions[slot] != FREE;
+  }
+
+  long getPosition( int slot ) {
+    return positions[slot];
+  }
+
+  void setPosition( int slot, long position ) {
+    positions[slot] = position;
+  }
+
+  int getGeneration( int slot ) {
+    return generations[slot];
+  }
+
+  /**
+   * @return the number of slots ever used; live slots are below this number
+   */
+  int getSlotCount() {
+    return slotCount;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    positions = new long[INITIAL_SLOTS];
+    generations = new int[INITIAL_SLOTS];
+    freeSlots = new int[INITIAL_SLOTS];
+    table = new long[INITIAL_SLOTS * 2];
+    slotCount = 0;
+    freeCount = 0;
+    size = 0;
+    usedEntries = 0;
+  }
+
+  private void rehash() {
+    // sized for the live entries only, tombstones are dropped
+    int capacity = INITIAL_SLOTS * 2;
+    while ( capacity < ( size + 1 ) * 4 ) {
+      capacity *= 2;
+    }
+    long[] old = table;
+    table = new long[capacity];
+    usedEntries = 0;
+    int mask = capacity - 1;
+    for ( long entry : old ) {
+      if ( entry != EMPTY && entry != TOMBSTONE ) {
+        int i = (int) ( entry >>> 32 ) & mask;
+        while ( table[i] != EMPTY ) {
+          i = ( i + 1 ) & mask;
+        }
+        table[i] = entry;
+        usedEntries++;
+      }
+    }
+  }
+
+  private static int hash( String id ) {
+    int h = id.hashCode();
+    // spread the bits, as HashMap does, since the table is indexed with the low bits
+    return h ^ ( h >>> 16 ) ^ ( h >>> 7 );
+  }
+
+  private static long entry( int hash, int slot ) {
+    // the slot plus one is never 0, so an entry is never EMPTY, and its low half is never all ones, as in TOMBSTONE
+    return ( (long) hash << 32 ) | ( ( slot + 1 ) & 0xffffffffL );
+  }
+
+  private static int slotOf( long entry ) {
+    return (int) entry - 1;
+  }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only file of length-prefixed records, read and written through memory-mapped pages of a fixed size. Only
+ * the most recently used pages stay mapped, so the address space taken is bounded no matter how much is spilled; the
+ * operating system decides which of those pages are actually in memory.
+ */
+class SpillFile {
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final int pageSize;
+  private final Map<Integer, MappedByteBuffer> pages;
+  private long end;
+
+  SpillFile( File file, int pageSize, final int maxMappedPages ) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile( file, "rw" );
+    this.channel = raf.getChannel();
+    this.pageSize = pageSize;
+    this.pages = new LinkedHashMap<Integer, MappedByteBuffer>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<Integer, MappedByteBuffer> eldest ) {
+        // Java cannot unmap explicitly; the page is released when the buffer is collected, its data stays in the file
+        return size() > maxMappedPages;
+      }
+    };
+  }
+
+  /**
+   * @return the position of the record, to read it back with
+   */
+  long append( byte[] record ) throws IOException {
+    long position = end;
+    ByteBuffer length = ByteBuffer.allocate( 4 );
+    length.putInt( record.length );
+    copy( position, length.array(), true );
+    copy( position + 4, record, true );
+    end = position + 4 + record.length;
+    return position;
+  }
+
+  byte[] read( long position ) throws IOException {
+    return read( position, 0, recordLength( position ) - 4 );
+  }
+
+  /**
+   * Reads part of a record, for instance a header, without reading the rest of it.
+   */
+  byte[] read( long position, int offset, int length ) throws IOException {
+    byte[] bytes = new byte[length];
+    copy( position + 4 + offset, bytes, false );
+    return bytes;
+  }
+
+  /**
+   * @return the number of bytes the record takes in the file, its length prefix included
+   */
+  int recordLength( long position ) throws IOException {
+    byte[] length = new byte[4];
+    copy( position, length, false );
+    return 4 + ByteBuffer.wrap( length ).getInt();
+  }
+
+  /**
+   * @return the number of bytes appended so far
+   */
+  long length() {
+    return end;
+  }
+
+  private void copy( long position, byte[] bytes, boolean write ) throws IOException {
+    int done = 0;
+    while ( done < bytes.length ) {
+      long from = position + done;
+      int offset = (int) ( from % pageSize );
+      int n = Math.min( bytes.length - done, pageSize - offset );
+      ByteBuffer view = page( (int) ( from / pageSize ) ).duplicate();
+      view.position( offset );
+      if ( write ) {
+        view.put( bytes, done, n );
+      } else {
+        view.get( bytes, done, n );
+      }
+      done += n;
+    }
+  }
+
+  private MappedByteBuffer page( int pageNr ) throws IOException {
+    MappedByteBuffer page = pages.get( pageNr );
+    if ( page == null ) {
+      // mapping past the end grows the file
+      page = channel.map( FileChannel.MapMode.READ_WRITE, (long) pageNr * pageSize, pageSize );
+      pages.put( pageNr, page );
+    }
+    return page;
+  }
+
+  /**
+   * Closes and deletes the file; spilled records do not outlive the graph.
+   */
+  void close() throws IOException {
+    pages.clear();
+    try {
+      raf.close();
+    } finally {
+      if ( !file.delete() ) {
+        file.deleteOnExit();
+      }
+    }
+  }
+}
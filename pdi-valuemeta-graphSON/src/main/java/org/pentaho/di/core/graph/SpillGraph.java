@@ -0,0 +1,1065 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.configuration.Configuration;
+import org.pentaho.di.core.graph.io.BinaryGraphFormat;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * A mutable Blueprints graph for graphs that do not fit in the heap. Only the most recently used vertices and edges are
+ * kept as objects, up to a configured number of each; the others are serialized to a spill file on local disk, which
+ * is read and written through a bounded set of memory-mapped pages. What stays on the heap for every element is a slot
+ * in a {@link SpillElementTable}: the position of its latest version in the spill file, in primitive arrays.
+ * <p>
+ * As in TinkerGraph, ids are stored in their String form and generated when none is supplied. Vertex and Edge objects
+ * only hold an id and fetch their data on every call, so holding on to them does not pin anything in memory.
+ * <p>
+ * A vertex record holds the properties of the vertex and the positions of its newest out and in adjacency chunks. New
+ * adjacency entries are collected with the cached vertex and appended as a chunk, linked to the previous one, when
+ * there are {@link #CHUNK_ENTRIES} of them or when the vertex is evicted, so the adjacency of a vertex is never
+ * rewritten as it grows. An entry refers to its edge by slot and generation and is skipped once the edge is removed.
+ * <p>
+ * The spill file is append-only: a changed element is written again when it is evicted, and the file is deleted on
+ * shutdown. Outdated records, chunks of removed vertices and entries of removed edges are counted as dead; when they
+ * take more than half of the file, the live records are copied to a new file and the old one is deleted.
+ * <p>
+ * All access is synchronized on the graph, since even reads reorder the caches.
+ */
+public class SpillGraph implements Graph {
+
+  /** Directory for the spill file, the temporary directory if not set */
+  public static final String CONFIG_DIRECTORY = "blueprints.spill.directory";
+
+  /** Maximum number of vertices, and of edges, kept on the heap */
+  public static final String CONFIG_CACHE_SIZE = "blueprints.spill.cache-size";
+
+  /** Maximum number of spill file pages mapped at the same time */
+  public static final String CONFIG_MAPPED_PAGES = "blueprints.spill.mapped-pages";
+
+  public static final int DEFAULT_CACHE_SIZE = 100000;
+
+  public static final int DEFAULT_MAPPED_PAGES = 16;
+
+  static final int PAGE_SIZE = 64 * 1024 * 1024;
+
+  /** Number of adjacency entries in a full chunk */
+  static final int CHUNK_ENTRIES = 256;
+
+  private static final long NO_CHUNK = -1L;
+
+  // an adjacency entry is the edge slot, the edge generation, the label and the slot of the vertex at the other end
+  private static final int ENTRY_INTS = 4;
+  private static final int ENTRY_BYTES = ENTRY_INTS * 4;
+
+  // a chunk is the position of the previous chunk and the number of entries, followed by the entries
+  private static final int CHUNK_HEADER_BYTES = 12;
+
+  private static final Features FEATURES = new Features();
+
+  static {
+    FEATURES.supportsDuplicateEdges = true;
+    FEATURES.supportsSelfLoops = true;
+    FEATURES.supportsSerializableObjectProperty = false;
+    FEATURES.supportsBooleanProperty = true;
+    FEATURES.supportsDoubleProperty = true;
+    FEATURES.supportsFloatProperty = true;
+    FEATURES.supportsIntegerProperty = true;
+    FEATURES.supportsPrimitiveArrayProperty = false;
+    FEATURES.supportsUniformListProperty = true;
+    FEATURES.supportsMixedListProperty = true;
+    FEATURES.supportsLongProperty = true;
+    FEATURES.supportsMapProperty = true;
+    FEATURES.supportsStringProperty = true;
+    FEATURES.hasImplicitElements = false;
+    FEATURES.ignoresSuppliedIds = false;
+    FEATURES.isPersistent = false;
+    FEATURES.isWrapper = false;
+    FEATURES.supportsIndices = false;
+    FEATURES.supportsVertexIndex = false;
+    FEATURES.supportsEdgeIndex = false;
+    FEATURES.supportsKeyIndices = false;
+    FEATURES.supportsVertexKeyIndex = false;
+    FEATURES.supportsEdgeKeyIndex = false;
+    FEATURES.supportsEdgeIteration = true;
+    FEATURES.supportsVertexIteration = true;
+    FEATURES.supportsEdgeRetrieval = true;
+    FEATURES.supportsVertexProperties = true;
+    FEATURES.supportsEdgeProperties = true;
+    FEATURES.supportsTransactions = false;
+    FEATURES.supportsThreadedTransactions = false;
+    FEATURES.supportsThreadIsolatedTransactions = false;
+  }
+
+  private final File directory;
+  private final int pageSize;
+  private final int mappedPages;
+  private SpillFile file;
+
+  private final SpillElementTable vertexTable = new SpillElementTable() {
+    String idOf( int slot ) {
+      return vertexId( slot );
+    }
+  };
+
+  private final SpillElementTable edgeTable = new SpillElementTable() {
+    String idOf( int slot ) {
+      return edgeId( slot );
+    }
+  };
+
+  private final RecordCache<VertexRecord> vertices;
+  private final RecordCache<EdgeRecord> edges;
+
+  // edge labels are few, so they are stored as their number in this list
+  private final List<String> labels = new ArrayList<String>();
+  private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+
+  private long nextId;
+  private long spilledRecords;
+  private long deadBytes;
+  private int compactions;
+  private boolean open = true;
+
+  public SpillGraph() throws IOException {
+    this( null, DEFAULT_CACHE_SIZE );
+  }
+
+  public SpillGraph( File directory, int cacheSize ) throws IOException {
+    this( directory, cacheSize, DEFAULT_MAPPED_PAGES );
+  }
+
+  /**
+   * @param directory
+   *          the directory to create the spill file in, or null for the temporary directory
+   * @param cacheSize
+   *          the maximum number of vertices, and of edges, kept on the heap
+   * @param mappedPages
+   *          the maximum number of spill file pages mapped at the same time
+   */
+  public SpillGraph( File directory, int cacheSize, int mappedPages ) throws IOException {
+    this( directory, cacheSize, mappedPages, PAGE_SIZE );
+  }
+
+  SpillGraph( File directory, int cacheSize, int mappedPages, int pageSize ) throws IOException {
+    if ( directory != null && !directory.isDirectory() && !directory.mkdirs() ) {
+      throw new IOException( "Unable to create spill directory " + directory );
+    }
+    this.directory = directory;
+    this.pageSize = pageSize;
+    this.mappedPages = Math.max( 1, mappedPages );
+    file = newSpillFile();
+    vertices = new RecordCache<VertexRecord>( Math.max( 1, cacheSize ), vertexTable );
+    edges = new RecordCache<EdgeRecord>( Math.max( 1, cacheSize ), edgeTable );
+  }
+
+  /**
+   * Creates a graph as configured with the CONFIG_* keys, so a spill graph can be described in a Blueprints
+   * GraphFactory properties file with blueprints.graph set to this class.
+   */
+  public SpillGraph( Configuration configuration ) throws IOException {
+    this( configuration.containsKey( CONFIG_DIRECTORY ) ? new File( configuration.getString( CONFIG_DIRECTORY ) )
+        : null, configuration.getInt( CONFIG_CACHE_SIZE, DEFAULT_CACHE_SIZE ), configuration.getInt(
+        CONFIG_MAPPED_PAGES, DEFAULT_MAPPED_PAGES ) );
+  }
+
+  public Features getFeatures() {
+    return FEATURES;
+  }
+
+  public synchronized Vertex addVertex( Object id ) {
+    String vertexId = id == null ? nextId( vertexTable ) : id.toString();
+    if ( vertexTable.find( vertexId ) >= 0 ) {
+      throw ExceptionFactory.vertexWithIdAlreadyExists( vertexId );
+    }
+    int slot = vertexTable.add( vertexId );
+    vertices.put( slot, new VertexRecord( vertexId ) );
+    maybeCompact();
+    return new SpillVertex( this, vertexId );
+  }
+
+  public synchronized Vertex getVertex( Object id ) {
+    if ( id == null ) {
+      throw ExceptionFactory.vertexIdCanNotBeNull();
+    }
+    String vertexId = id.toString();
+    return vertexTable.find( vertexId ) >= 0 ? new SpillVertex( this, vertexId ) : null;
+  }
+
+  public synchronized void removeVertex( Vertex vertex ) {
+    String vertexId = vertex.getId().toString();
+    int slot = slot( vertexTable, vertexId );
+    for ( boolean out : new boolean[] { true, false } ) {
+      int[] incident = adjacency( slot, out, null );
+      for ( int i = 0; i < incident.length; i += 3 ) {
+        // a self-loop is in both lists, and gone by the time it is met again
+        if ( isLiveEdge( incident[i], incident[i + 1] ) ) {
+          removeEdge( incident[i] );
+        }
+      }
+    }
+    VertexRecord record = vertex( slot );
+    deadBytes += chainBytes( record.outHead ) + chainBytes( record.inHead );
+    vertices.remove( slot );
+    free( vertexTable, slot, vertexId );
+    maybeCompact();
+  }
+
+  public Iterable<Vertex> getVertices() {
+    return new SlotIterable<Vertex>( vertexTable ) {
+      Vertex element( String id ) {
+        return new SpillVertex( SpillGraph.this, id );
+      }
+    };
+  }
+
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    return new DefaultGraphQuery( this ).has( key, value ).vertices();
+  }
+
+  public synchronized Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    if ( label == null ) {
+      throw ExceptionFactory.edgeLabelCanNotBeNull();
+    }
+    String edgeId = id == null ? nextId( edgeTable ) : id.toString();
+    if ( edgeTable.find( edgeId ) >= 0 ) {
+      throw ExceptionFactory.edgeWithIdAlreadyExist( edgeId );
+    }
+    String outId = outVertex.getId().toString();
+    String inId = inVertex.getId().toString();
+    int outSlot = vertexTable.find( outId );
+    if ( outSlot < 0 ) {
+      throw ExceptionFactory.vertexWithIdDoesNotExist( outId );
+    }
+    int inSlot = vertexTable.find( inId );
+    if ( inSlot < 0 ) {
+      throw ExceptionFactory.vertexWithIdDoesNotExist( inId );
+    }
+    int labelId = labelId( label );
+    int slot = edgeTable.add( edgeId );
+    int generation = edgeTable.getGeneration( slot );
+    edges.put( slot, new EdgeRecord( edgeId, outSlot, inSlot, labelId ) );
+    // A record may be evicted by the next lookup, so each one is changed right after it is fetched
+    addEntry( vertex( outSlot ), true, slot, generation, labelId, inSlot );
+    addEntry( vertex( inSlot ), false, slot, generation, labelId, outSlot );
+    maybeCompact();
+    return new SpillEdge( this, edgeId );
+  }
+
+  public synchronized Edge getEdge( Object id ) {
+    if ( id == null ) {
+      throw ExceptionFactory.edgeIdCanNotBeNull();
+    }
+    String edgeId = id.toString();
+    return edgeTable.find( edgeId ) >= 0 ? new SpillEdge( this, edgeId ) : null;
+  }
+
+  public synchronized void removeEdge( Edge edge ) {
+    removeEdge( slot( edgeTable, edge.getId().toString() ) );
+    maybeCompact();
+  }
+
+  private void removeEdge( int slot ) {
+    String edgeId = edge( slot ).id;
+    edges.remove( slot );
+    // the adjacency entries stay where they are, the new generation of the slot marks them as dead
+    free( edgeTable, slot, edgeId );
+    deadBytes += 2 * ENTRY_BYTES;
+  }
+
+  public Iterable<Edge> getEdges() {
+    return new SlotIterable<Edge>( edgeTable ) {
+      Edge element( String id ) {
+        return new SpillEdge( SpillGraph.this, id );
+      }
+    };
+  }
+
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    return new DefaultGraphQuery( this ).has( key, value ).edges();
+  }
+
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  /**
+   * Deletes the spill file. The graph cannot be used afterwards.
+   */
+  public synchronized void shutdown() {
+    if ( !open ) {
+      return;
+    }
+    open = false;
+    vertices.clear();
+    edges.clear();
+    vertexTable.clear();
+    edgeTable.clear();
+    try {
+      file.close();
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to delete the spill file", e );
+    }
+  }
+
+  public synchronized int getVertexCount() {
+    return vertexTable.size();
+  }
+
+  public synchronized int getEdgeCount() {
+    return edgeTable.size();
+  }
+
+  /**
+   * @return the number of element versions written to the spill file so far
+   */
+  public synchronized long getSpilledRecords() {
+    return spilledRecords;
+  }
+
+  /**
+   * @return the size of the spill file
+   */
+  public synchronized long getSpilledBytes() {
+    return file.length();
+  }
+
+  /**
+   * @return the number of times the live records were copied to a new spill file
+   */
+  synchronized int getCompactions() {
+    return compactions;
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString( this, "vertices:" + getVertexCount() + " edges:" + getEdgeCount() );
+  }
+
+  private String nextId( SpillElementTable table ) {
+    String id;
+    do {
+      id = Long.toString( nextId++ );
+    } while ( table.find( id ) >= 0 );
+    return id;
+  }
+
+  private int labelId( String label ) {
+    Integer labelId = labelIds.get( label );
+    if ( labelId == null ) {
+      labelId = labels.size();
+      labels.add( label );
+      labelIds.put( label, labelId );
+    }
+    return labelId;
+  }
+
+  // Element access for SpillVertex and SpillEdge
+
+  synchronized Object getVertexProperty( String id, String key ) {
+    return vertex( slot( vertexTable, id ) ).properties.get( key );
+  }
+
+  synchronized Set<String> getVertexPropertyKeys( String id ) {
+    return new HashSet<String>( vertex( slot( vertexTable, id ) ).properties.keySet() );
+  }
+
+  synchronized void setVertexProperty( String id, String key, Object value ) {
+    VertexRecord record = vertex( slot( vertexTable, id ) );
+    record.properties.put( key, value );
+    record.dirty = true;
+    maybeCompact();
+  }
+
+  synchronized Object removeVertexProperty( String id, String key ) {
+    VertexRecord record = vertex( slot( vertexTable, id ) );
+    record.dirty = true;
+    Object value = record.properties.remove( key );
+    maybeCompact();
+    return value;
+  }
+
+  synchronized Object getEdgeProperty( String id, String key ) {
+    return edge( slot( edgeTable, id ) ).properties.get( key );
+  }
+
+  synchronized Set<String> getEdgePropertyKeys( String id ) {
+    return new HashSet<String>( edge( slot( edgeTable, id ) ).properties.keySet() );
+  }
+
+  synchronized void setEdgeProperty( String id, String key, Object value ) {
+    EdgeRecord record = edge( slot( edgeTable, id ) );
+    record.properties.put( key, value );
+    record.dirty = true;
+    maybeCompact();
+  }
+
+  synchronized Object removeEdgeProperty( String id, String key ) {
+    EdgeRecord record = edge( slot( edgeTable, id ) );
+    record.dirty = true;
+    Object value = record.properties.remove( key );
+    maybeCompact();
+    return value;
+  }
+
+  synchronized String getEdgeLabel( String id ) {
+    return labels.get( edge( slot( edgeTable, id ) ).label );
+  }
+
+  synchronized String getEdgeVertexId( String id, boolean out ) {
+    EdgeRecord record = edge( slot( edgeTable, id ) );
+    return vertexId( out ? record.outSlot : record.inSlot );
+  }
+
+  /**
+   * @return the edges of the vertex with one of the labels, or with any label if none are given
+   */
+  synchronized Iterable<Edge> getAdjacentEdges( String id, Direction direction, String... labels ) {
+    return new AdjacencyIterable<Edge>( adjacency( id, direction, labels ) ) {
+      Edge element( int edgeSlot, int vertexSlot ) {
+        return new SpillEdge( SpillGraph.this, edgeId( edgeSlot ) );
+      }
+    };
+  }
+
+  /**
+   * @return the vertices at the other end of the edges of the vertex with one of the labels, or with any label if none
+   *         are given
+   */
+  synchronized Iterable<Vertex> getAdjacentVertices( String id, Direction direction, String... labels ) {
+    return new AdjacencyIterable<Vertex>( adjacency( id, direction, labels ) ) {
+      Vertex element( int edgeSlot, int vertexSlot ) {
+        return new SpillVertex( SpillGraph.this, vertexId( vertexSlot ) );
+      }
+    };
+  }
+
+  private int[] adjacency( String id, Direction direction, String... labels ) {
+    int slot = slot( vertexTable, id );
+    int[] labelFilter = null;
+    if ( labels != null && labels.length > 0 ) {
+      // labels that no edge has match nothing
+      labelFilter = new int[labels.length];
+      Arrays.fill( labelFilter, -1 );
+      for ( int i = 0; i < labels.length; i++ ) {
+        Integer labelId = labelIds.get( labels[i] );
+        if ( labelId != null ) {
+          labelFilter[i] = labelId;
+        }
+      }
+    }
+    int[] out = direction == Direction.IN ? new int[0] : adjacency( slot, true, labelFilter );
+    int[] in = direction == Direction.OUT ? new int[0] : adjacency( slot, false, labelFilter );
+    int[] both = Arrays.copyOf( out, out.length + in.length );
+    System.arraycopy( in, 0, both, out.length, in.length );
+    return both;
+  }
+
+  /**
+   * Collects the live adjacency entries of a vertex, oldest first.
+   *
+   * @return the edge slot, edge generation and other vertex slot of each entry
+   */
+  private int[] adjacency( int slot, boolean out, int[] labelFilter ) {
+    VertexRecord record = vertex( slot );
+    List<int[]> chunks;
+    try {
+      chunks = readChain( out ? record.outHead : record.inHead );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to read the edges of the vertex with id [" + record.id
+          + "] from the spill file", e );
+    }
+    Adjacency matches = new Adjacency();
+    for ( int c = chunks.size() - 1; c >= 0; c-- ) {
+      int[] entries = chunks.get( c );
+      for ( int i = 0; i < entries.length; i += ENTRY_INTS ) {
+        collect( entries, i, labelFilter, matches );
+      }
+    }
+    Adjacency tail = out ? record.outTail : record.inTail;
+    for ( int i = 0; i < tail.count; i++ ) {
+      collect( tail.entries, i * ENTRY_INTS, labelFilter, matches );
+    }
+    return Arrays.copyOf( matches.entries, matches.count * 3 );
+  }
+
+  /**
+   * @return the entries of each chunk of a chain, newest chunk first
+   */
+  private List<int[]> readChain( long chunk ) throws IOException {
+    List<int[]> chunks = new ArrayList<int[]>();
+    while ( chunk != NO_CHUNK ) {
+      ByteBuffer bytes = ByteBuffer.wrap( file.read( chunk ) );
+      int[] entries = new int[bytes.getInt( 8 ) * ENTRY_INTS];
+      bytes.position( CHUNK_HEADER_BYTES );
+      bytes.asIntBuffer().get( entries );
+      chunks.add( entries );
+      chunk = bytes.getLong( 0 );
+    }
+    return chunks;
+  }
+
+  private void collect( int[] entries, int offset, int[] labelFilter, Adjacency matches ) {
+    if ( !isLiveEdge( entries[offset], entries[offset + 1] ) ) {
+      return;
+    }
+    if ( labelFilter != null ) {
+      boolean match = false;
+      for ( int labelId : labelFilter ) {
+        match |= labelId == entries[offset + 2];
+      }
+      if ( !match ) {
+        return;
+      }
+    }
+    matches.ensureCapacity( ( matches.count + 1 ) * 3 );
+    matches.entries[matches.count * 3] = entries[offset];
+    matches.entries[matches.count * 3 + 1] = entries[offset + 1];
+    matches.entries[matches.count * 3 + 2] = entries[offset + 3];
+    matches.count++;
+  }
+
+  private boolean isLiveEdge( int slot, int generation ) {
+    return edgeTable.isLive( slot ) && edgeTable.getGeneration( slot ) == generation;
+  }
+
+  private void addEntry( VertexRecord record, boolean out, int edgeSlot, int generation, int labelId, int otherSlot ) {
+    Adjacency tail = out ? record.outTail : record.inTail;
+    tail.add( edgeSlot, generation, labelId, otherSlot );
+    record.dirty = true;
+    if ( tail.count == CHUNK_ENTRIES ) {
+      flush( record, out );
+    }
+  }
+
+  /**
+   * Appends the new adjacency entries of the vertex to the spill file as a chunk.
+   */
+  private void flush( VertexRecord record, boolean out ) {
+    Adjacency tail = out ? record.outTail : record.inTail;
+    int live = 0;
+    for ( int i = 0; i < tail.count; i++ ) {
+      int offset = i * ENTRY_INTS;
+      if ( isLiveEdge( tail.entries[offset], tail.entries[offset + 1] ) ) {
+        System.arraycopy( tail.entries, offset, tail.entries, live * ENTRY_INTS, ENTRY_INTS );
+        live++;
+      }
+    }
+    tail.count = 0;
+    if ( live == 0 ) {
+      return;
+    }
+    try {
+      long head = appendChunk( file, out ? record.outHead : record.inHead, tail.entries, live );
+      if ( out ) {
+        record.outHead = head;
+      } else {
+        record.inHead = head;
+      }
+      record.dirty = true;
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to spill the edges of the vertex with id [" + record.id + "]", e );
+    }
+  }
+
+  private static long appendChunk( SpillFile target, long previous, int[] entries, int count ) throws IOException {
+    ByteBuffer chunk = ByteBuffer.allocate( CHUNK_HEADER_BYTES + count * ENTRY_BYTES );
+    chunk.putLong( previous );
+    chunk.putInt( count );
+    chunk.asIntBuffer().put( entries, 0, count * ENTRY_INTS );
+    return target.append( chunk.array() );
+  }
+
+  /**
+   * @return the number of bytes taken by the chunks of a chain
+   */
+  private long chainBytes( long chunk ) {
+    long bytes = 0;
+    try {
+      while ( chunk != NO_CHUNK ) {
+        bytes += file.recordLength( chunk );
+        chunk = ByteBuffer.wrap( file.read( chunk, 0, 8 ) ).getLong();
+      }
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to read an adjacency chunk from the spill file", e );
+    }
+    return bytes;
+  }
+
+  private void maybeCompact() {
+    // not for small files, and the copy has to free at least as much as it writes
+    if ( deadBytes < pageSize || deadBytes * 2 < file.length() ) {
+      return;
+    }
+    try {
+      compact();
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to compact the spill file", e );
+    }
+  }
+
+  /**
+   * Copies the live records and adjacency entries to a new spill file. Records in the caches get new chunk chains and
+   * are written again when they are evicted.
+   */
+  private void compact() throws IOException {
+    SpillFile target = newSpillFile();
+    for ( Map.Entry<Integer, VertexRecord> entry : vertices.entrySet() ) {
+      VertexRecord record = entry.getValue();
+      record.outHead = copyChain( record.outHead, target );
+      record.inHead = copyChain( record.inHead, target );
+      record.dirty = true;
+      vertexTable.setPosition( entry.getKey(), SpillElementTable.NOT_SPILLED );
+    }
+    for ( int slot = 0; slot < vertexTable.getSlotCount(); slot++ ) {
+      long position = vertexTable.getPosition( slot );
+      if ( position >= 0 && !vertices.containsKey( slot ) ) {
+        // the chunk positions follow the id, the rest of the record is copied as it is
+        ByteBuffer record = ByteBuffer.wrap( file.read( position ) );
+        int heads = 4 + record.getInt( 0 );
+        record.putLong( heads, copyChain( record.getLong( heads ), target ) );
+        record.putLong( heads + 8, copyChain( record.getLong( heads + 8 ), target ) );
+        vertexTable.setPosition( slot, target.append( record.array() ) );
+      }
+    }
+    for ( Map.Entry<Integer, EdgeRecord> entry : edges.entrySet() ) {
+      entry.getValue().dirty = true;
+      edgeTable.setPosition( entry.getKey(), SpillElementTable.NOT_SPILLED );
+    }
+    for ( int slot = 0; slot < edgeTable.getSlotCount(); slot++ ) {
+      long position = edgeTable.getPosition( slot );
+      if ( position >= 0 && !edges.containsKey( slot ) ) {
+        edgeTable.setPosition( slot, target.append( file.read( position ) ) );
+      }
+    }
+    file.close();
+    file = target;
+    deadBytes = 0;
+    compactions++;
+  }
+
+  /**
+   * @return the head of a chain in the target file with the live entries of the chain in the spill file
+   */
+  private long copyChain( long chunk, SpillFile target ) throws IOException {
+    List<int[]> chunks = readChain( chunk );
+    // oldest first, so the order of the entries stays the same
+    long head = NO_CHUNK;
+    int[] buffer = new int[CHUNK_ENTRIES * ENTRY_INTS];
+    int count = 0;
+    for ( int c = chunks.size() - 1; c >= 0; c-- ) {
+      int[] entries = chunks.get( c );
+      for ( int i = 0; i < entries.length; i += ENTRY_INTS ) {
+        if ( isLiveEdge( entries[i], entries[i + 1] ) ) {
+          System.arraycopy( entries, i, buffer, count * ENTRY_INTS, ENTRY_INTS );
+          if ( ++count == CHUNK_ENTRIES ) {
+            head = appendChunk( target, head, buffer, count );
+            count = 0;
+          }
+        }
+      }
+    }
+    if ( count > 0 ) {
+      head = appendChunk( target, head, buffer, count );
+    }
+    return head;
+  }
+
+  private SpillFile newSpillFile() throws IOException {
+    return new SpillFile( File.createTempFile( "spillgraph", ".pages", directory ), pageSize, mappedPages );
+  }
+
+  private int slot( SpillElementTable table, String id ) {
+    checkOpen();
+    int slot = table.find( id );
+    if ( slot < 0 ) {
+      throw new IllegalStateException( "The element with id [" + id + "] does not exist" );
+    }
+    return slot;
+  }
+
+  private void free( SpillElementTable table, int slot, String id ) {
+    long position = table.getPosition( slot );
+    if ( position >= 0 ) {
+      try {
+        deadBytes += file.recordLength( position );
+      } catch ( IOException e ) {
+        throw new IllegalStateException( "Unable to read the element with id [" + id + "] from the spill file", e );
+      }
+    }
+    table.remove( id, slot );
+  }
+
+  private String vertexId( int slot ) {
+    VertexRecord record = vertices.get( slot );
+    return record != null ? record.id : readId( vertexTable, slot );
+  }
+
+  private String edgeId( int slot ) {
+    EdgeRecord record = edges.get( slot );
+    return record != null ? record.id : readId( edgeTable, slot );
+  }
+
+  private String readId( SpillElementTable table, int slot ) {
+    // records start with their id, so only that part is read
+    long position = position( table, slot );
+    try {
+      int length = ByteBuffer.wrap( file.read( position, 0, 4 ) ).getInt();
+      return new String( file.read( position, 4, length ), "UTF-8" );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to read an element id from the spill file", e );
+    }
+  }
+
+  private VertexRecord vertex( int slot ) {
+    VertexRecord record = vertices.get( slot );
+    if ( record == null ) {
+      record = new VertexRecord( null );
+      record.read( load( vertexTable, slot ) );
+      vertices.put( slot, record );
+    }
+    return record;
+  }
+
+  private EdgeRecord edge( int slot ) {
+    EdgeRecord record = edges.get( slot );
+    if ( record == null ) {
+      record = new EdgeRecord( null, 0, 0, 0 );
+      record.read( load( edgeTable, slot ) );
+      edges.put( slot, record );
+    }
+    return record;
+  }
+
+  private DataInput load( SpillElementTable table, int slot ) {
+    try {
+      return new DataInputStream( new ByteArrayInputStream( file.read( position( table, slot ) ) ) );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( "Unable to read the element in slot " + slot + " from the spill file", e );
+    }
+  }
+
+  private long position( SpillElementTable table, int slot ) {
+    checkOpen();
+    long position = table.getPosition( slot );
+    if ( position < 0 ) {
+      throw new IllegalStateException( "The element in slot " + slot + " is neither cached nor spilled" );
+    }
+    return position;
+  }
+
+  private void checkOpen() {
+    if ( !open ) {
+      throw new IllegalStateException( "The graph has been shut down" );
+    }
+  }
+
+  /**
+   * Adjacency entries in a growing int array.
+   */
+  private static final class Adjacency {
+    int[] entries = new int[0];
+    int count;
+
+    void add( int edgeSlot, int generation, int labelId, int otherSlot ) {
+      ensureCapacity( ( count + 1 ) * ENTRY_INTS );
+      int offset = count * ENTRY_INTS;
+      entries[offset] = edgeSlot;
+      entries[offset + 1] = generation;
+      entries[offset + 2] = labelId;
+      entries[offset + 3] = otherSlot;
+      count++;
+    }
+
+    void ensureCapacity( int length ) {
+      if ( entries.length < length ) {
+        entries = Arrays.copyOf( entries, Math.max( length, entries.length * 2 ) );
+      }
+    }
+  }
+
+  /**
+   * A vertex or edge as kept on the heap. It is written to the spill file when it is evicted after a change, starting
+   * with its id.
+   */
+  private abstract static class Record {
+    String id;
+    boolean dirty = true;
+    Map<String, Object> properties = new HashMap<String, Object>();
+
+    Record( String id ) {
+      this.id = id;
+    }
+
+    abstract void write( DataOutput out ) throws IOException;
+
+    abstract void read( DataInput in );
+  }
+
+  private static final class VertexRecord extends Record {
+    long outHead = NO_CHUNK;
+    long inHead = NO_CHUNK;
+    // entries not in a chunk yet
+    Adjacency outTail = new Adjacency();
+    Adjacency inTail = new Adjacency();
+
+    VertexRecord( String id ) {
+      super( id );
+    }
+
+    void write( DataOutput out ) throws IOException {
+      BinaryGraphFormat.writeString( out, id );
+      out.writeLong( outHead );
+      out.writeLong( inHead );
+      BinaryGraphFormat.writeProperties( out, properties );
+    }
+
+    void read( DataInput in ) {
+      try {
+        id = BinaryGraphFormat.readString( in );
+        outHead = in.readLong();
+        inHead = in.readLong();
+        properties = BinaryGraphFormat.readProperties( in );
+        dirty = false;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( "Corrupt vertex in the spill file", e );
+      }
+    }
+  }
+
+  private static final class EdgeRecord extends Record {
+    int outSlot;
+    int inSlot;
+    int label;
+
+    EdgeRecord( String id, int outSlot, int inSlot, int label ) {
+      super( id );
+      this.outSlot = outSlot;
+      this.inSlot = inSlot;
+      this.label = label;
+    }
+
+    void write( DataOutput out ) throws IOException {
+      BinaryGraphFormat.writeString( out, id );
+      out.writeInt( outSlot );
+      out.writeInt( inSlot );
+      out.writeInt( label );
+      BinaryGraphFormat.writeProperties( out, properties );
+    }
+
+    void read( DataInput in ) {
+      try {
+        id = BinaryGraphFormat.readString( in );
+        outSlot = in.readInt();
+        inSlot = in.readInt();
+        label = in.readInt();
+        properties = BinaryGraphFormat.readProperties( in );
+        dirty = false;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( "Corrupt edge in the spill file", e );
+      }
+    }
+  }
+
+  /**
+   * Least recently used records by slot, spilling a changed record when it is evicted.
+   */
+  private final class RecordCache<R extends Record> extends LinkedHashMap<Integer, R> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+    private final SpillElementTable table;
+
+    RecordCache( int maxSize, SpillElementTable table ) {
+      super( 16, 0.75f, true );
+      this.maxSize = maxSize;
+      this.table = table;
+    }
+
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<Integer, R> eldest ) {
+      if ( size() <= maxSize ) {
+        return false;
+      }
+      R record = eldest.getValue();
+      if ( record instanceof VertexRecord ) {
+        flush( (VertexRecord) record, true );
+        flush( (VertexRecord) record, false );
+      }
+      if ( record.dirty ) {
+        int slot = eldest.getKey();
+        try {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          record.write( new DataOutputStream( bytes ) );
+          long previous = table.getPosition( slot );
+          if ( previous >= 0 ) {
+            deadBytes += file.recordLength( previous );
+          }
+          table.setPosition( slot, file.append( bytes.toByteArray() ) );
+          spilledRecords++;
+        } catch ( IOException e ) {
+          throw new IllegalStateException( "Unable to spill the element with id [" + record.id + "]", e );
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Iterates over the slots of a table, one at a time, so elements can be added and removed while iterating. Elements
+   * added to free slots behind the iterator are not met.
+   */
+  private abstract class SlotIterable<T> implements Iterable<T> {
+    private final SpillElementTable table;
+
+    SlotIterable( SpillElementTable table ) {
+      this.table = table;
+    }
+
+    abstract T element( String id );
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int next = 0;
+        // found on hasNext, so elements removed before then are skipped
+        private T element;
+
+        private T advance() {
+          synchronized ( SpillGraph.this ) {
+            while ( open && next < table.getSlotCount() ) {
+              int slot = next++;
+              if ( table.isLive( slot ) ) {
+                return element( table.idOf( slot ) );
+              }
+            }
+            return null;
+          }
+        }
+
+        public boolean hasNext() {
+          if ( element == null ) {
+            element = advance();
+          }
+          return element != null;
+        }
+
+        public T next() {
+          if ( !hasNext() ) {
+            throw new NoSuchElementException();
+          }
+          T current = element;
+          element = null;
+          return current;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
+  /**
+   * Iterates over collected adjacency entries, skipping the edges that were removed in the meantime.
+   */
+  private abstract class AdjacencyIterable<T> implements Iterable<T> {
+    // edge slot, edge generation and other vertex slot of each entry
+    private final int[] entries;
+
+    AdjacencyIterable( int[] entries ) {
+      this.entries = entries;
+    }
+
+    abstract T element( int edgeSlot, int vertexSlot );
+
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int next = 0;
+        // found on hasNext, so elements removed before then are skipped
+        private T element;
+
+        private T advance() {
+          synchronized ( SpillGraph.this ) {
+            while ( open && next < entries.length ) {
+              int offset = next;
+              next += 3;
+              if ( isLiveEdge( entries[offset], entries[offset + 1] ) ) {
+                return element( entries[offset], entries[offset + 2] );
+              }
+            }
+            return null;
+          }
+        }
+
+        public boolean hasNext() {
+          if ( element == null ) {
+            element = advance();
+          }
+          return element != null;
+        }
+
+        public T next() {
+          if ( !hasNext() ) {
+            throw new NoSuchElementException();
+          }
+          T current = element;
+          element = null;
+          return current;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import java.util.Set;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+/**
+ * A vertex of a {@link SpillGraph}.
+ */
+public class SpillVertex extends SpillElement implements Vertex {
+
+  SpillVertex( SpillGraph graph, String id ) {
+    super( graph, id );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  public <T> T getProperty( String key ) {
+    return (T) graph.getVertexProperty( id, key );
+  }
+
+  public Set<String> getPropertyKeys() {
+    return graph.getVertexPropertyKeys( id );
+  }
+
+  public void setProperty( String key, Object value ) {
+    ElementHelper.validateProperty( this, key, value );
+    graph.setVertexProperty( id, key, value );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  public <T> T removeProperty( String key ) {
+    return (T) graph.removeVertexProperty( id, key );
+  }
+
+  public void remove() {
+    graph.removeVertex( this );
+  }
+
+  public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+    return graph.getAdjacentEdges( id, direction, labels );
+  }
+
+  public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+    return graph.getAdjacentVertices( id, direction, labels );
+  }
+
+  public VertexQuery query() {
+    return new DefaultVertexQuery( this );
+  }
+
+  public Edge addEdge( String label, Vertex inVertex ) {
+    return graph.addEdge( null, this, inVertex, label );
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.vertexString( this );
+  }
+}
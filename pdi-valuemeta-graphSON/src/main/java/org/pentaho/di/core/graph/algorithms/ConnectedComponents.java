@@ -0,0 +1,134 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+/**
+ * Finds the weakly connected components of a {@link CsrGraph} with a concurrent union-find. Every vertex range unions
+ * the endpoints of its out-edges without locking: a root is only ever linked to a smaller root with a compare-and-set,
+ * and finds halve their path as they go. The root of a component is therefore its smallest vertex index, which makes
+ * the result independent of the number of threads and of the order in which edges were visited.
+ */
+public class ConnectedComponents {
+
+  private final CsrGraph graph;
+
+  private int componentCount;
+
+  public ConnectedComponents( CsrGraph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * @param executor
+   *          the executor to spread the edges over, or null to run on the calling thread
+   * @param parallelism
+   *          the number of threads of the executor
+   * @return for every vertex index, the index of the smallest vertex in its component
+   */
+  public int[] compute( ExecutorService executor, int parallelism ) {
+    final int n = graph.getVertexCount();
+    final AtomicIntegerArray parent = new AtomicIntegerArray( n );
+    for ( int v = 0; v < n; v++ ) {
+      parent.set( v, v );
+    }
+
+    VertexRanges ranges = new VertexRanges( graph, executor, parallelism );
+    ranges.run( new VertexRanges.RangeTask() {
+      public void run( int range, int from, int to ) {
+        for ( int v = from; v < to; v++ ) {
+          for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+            union( parent, v, graph.getTarget( e ) );
+          }
+        }
+      }
+    } );
+
+    final int[] components = new int[n];
+    final int[] roots = new int[ranges.getRangeCount()];
+    ranges.run( new VertexRanges.RangeTask() {
+      public void run( int range, int from, int to ) {
+        int count = 0;
+        for ( int v = from; v < to; v++ ) {
+          components[v] = find( parent, v );
+          if ( components[v] == v ) {
+            count++;
+          }
+        }
+        roots[range] = count;
+      }
+    } );
+
+    componentCount = 0;
+    for ( int count : roots ) {
+      componentCount += count;
+    }
+    return components;
+  }
+
+  /**
+   * @return the number of components found by the last call to compute()
+   */
+  public int getComponentCount() {
+    return componentCount;
+  }
+
+  static int find( AtomicIntegerArray parent, int v ) {
+    while ( true ) {
+      int p = parent.get( v );
+      if ( p == v ) {
+        return v;
+      }
+      int grandParent = parent.get( p );
+      if ( grandParent != p ) {
+        // Path halving; losing the race only means the path stays a little longer
+        parent.compareAndSet( v, p, grandParent );
+      }
+      v = grandParent;
+    }
+  }
+
+  static void union( AtomicIntegerArray parent, int a, int b ) {
+    while ( true ) {
+      a = find( parent, a );
+      b = find( parent, b );
+      if ( a == b ) {
+        return;
+      }
+      if ( a < b ) {
+        int swap = a;
+        a = b;
+        b = swap;
+      }
+      // a is the larger root; it may have been linked elsewhere since find(), in which case try again
+      if ( parent.compareAndSet( a, a, b ) ) {
+        return;
+      }
+    }
+  }
+}
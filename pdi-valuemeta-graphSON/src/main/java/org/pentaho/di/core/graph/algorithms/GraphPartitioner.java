@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+/**
+ * Assigns the vertices of a {@link CsrGraph} to a number of partitions, for splitting one graph into subgraphs that can
+ * be processed independently.
+ */
+public class GraphPartitioner {
+
+  public static final int DEFAULT_ITERATIONS = 10;
+
+  /** How far above the average size a partition may grow while label propagation moves vertices into it */
+  public static final double DEFAULT_IMBALANCE = 0.05;
+
+  /**
+   * One partition of a split graph
+   */
+  public static class Subgraph {
+    private final Graph graph;
+    private int ghosts;
+    private int cutEdges;
+
+    Subgraph( Graph graph ) {
+      this.graph = graph;
+    }
+
+    public Graph getGraph() {
+      return graph;
+    }
+
+    /**
+     * @return the number of vertices copied in from other partitions as endpoints of cut edges
+     */
+    public int getGhosts() {
+      return ghosts;
+    }
+
+    /**
+     * @return the number of edges between this partition and the others
+     */
+    public int getCutEdges() {
+      return cutEdges;
+    }
+  }
+
+  private GraphPartitioner() {
+  }
+
+  /**
+   * Assigns vertices by the hash code of their id, so a vertex lands in the same partition every time the same graph
+   * is partitioned into the same number of parts.
+   */
+  public static int[] hash( CsrGraph graph, int partitions ) {
+    int[] assignment = new int[graph.getVertexCount()];
+    for ( int v = 0; v < assignment.length; v++ ) {
+      assignment[v] = ( graph.getVertexId( v ).hashCode() & Integer.MAX_VALUE ) % partitions;
+    }
+    return assignment;
+  }
+
+  /**
+   * Assigns contiguous runs of vertices, in the order the graph was built, so that every partition holds about the
+   * same number of vertices plus edge endpoints.
+   */
+  public static int[] range( CsrGraph graph, int partitions ) {
+    int n = graph.getVertexCount();
+    int[] assignment = new int[n];
+    long totalWork = (long) n + 2L * graph.getEdgeCount();
+    long work = 0;
+    int partition = 0;
+    for ( int v = 0; v < n; v++ ) {
+      assignment[v] = partition;
+      work += 1 + graph.getOutDegree( v ) + graph.getInDegree( v );
+      while ( partition < partitions - 1 && work * partitions >= totalWork * ( partition + 1 ) ) {
+        partition++;
+      }
+    }
+    return assignment;
+  }
+
+  /**
+   * Starts from the range assignment and repeatedly moves every vertex to the partition most of its neighbors are in,
+   * which keeps densely connected groups together and so cuts fewer edges. A vertex only moves into a partition that
+   * holds fewer than (1 + imbalance) times the average number of vertices.
+   * 
+   * @param iterations
+   *          the maximum number of sweeps over all vertices; stops early when a sweep moves nothing
+   */
+  public static int[] labelPropagation( CsrGraph graph, int partitions, int iterations, double imbalance ) {
+    int n = graph.getVertexCount();
+    int[] assignment = range( graph, partitions );
+    int[] sizes = new int[partitions];
+    for ( int v = 0; v < n; v++ ) {
+      sizes[assignment[v]]++;
+    }
+    int capacity = (int) Math.ceil( (double) n / partitions * ( 1.0 + imbalance ) );
+
+    int[] neighborCounts = new int[partitions];
+    int[] seenPartitions = new int[partitions];
+    for ( int iteration = 0; iteration < iterations; iteration++ ) {
+      int moved = 0;
+      for ( int v = 0; v < n; v++ ) {
+        int seen = 0;
+        for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+          seen = count( assignment[graph.getTarget( e )], neighborCounts, seenPartitions, seen );
+        }
+        for ( int slot = graph.getInStart( v ); slot < graph.getInEnd( v ); slot++ ) {
+          seen = count( assignment[graph.getSource( graph.getInEdge( slot ) )], neighborCounts, seenPartitions, seen );
+        }
+
+        int current = assignment[v];
+        int best = current;
+        for ( int i = 0; i < seen; i++ ) {
+          int p = seenPartitions[i];
+          if ( neighborCounts[p] > neighborCounts[best] && sizes[p] < capacity ) {
+            best = p;
+          }
+        }
+        for ( int i = 0; i < seen; i++ ) {
+          neighborCounts[seenPartitions[i]] = 0;
+        }
+
+        if ( best != current ) {
+          sizes[current]--;
+          sizes[best]++;
+          assignment[v] = best;
+          moved++;
+        }
+      }
+      if ( moved == 0 ) {
+        break;
+      }
+    }
+    return assignment;
+  }
+
+  private static int count( int partition, int[] counts, int[] seenPartitions, int seen ) {
+    if ( counts[partition]++ == 0 ) {
+      seenPartitions[seen++] = partition;
+    }
+    return seen;
+  }
+
+  /**
+   * @return the number of edges whose endpoints are in different partitions
+   */
+  public static int countCutEdges( CsrGraph graph, int[] assignment ) {
+    int cut = 0;
+    for ( int e = 0; e < graph.getEdgeCount(); e++ ) {
+      if ( assignment[graph.getSource( e )] != assignment[graph.getTarget( e )] ) {
+        cut++;
+      }
+    }
+    return cut;
+  }
+
+  /**
+   * Copies the graph into one new graph per partition. A subgraph holds the vertices assigned to it and every edge
+   * touching them, so an edge that crosses partitions is copied into both. The endpoint that belongs elsewhere is added
+   * as a ghost vertex: a copy with the same id and properties, plus the ghost property holding the partition that owns
+   * it.
+   * 
+   * @param ghostProperty
+   *          the vertex property marking ghosts, or null to leave them unmarked
+   */
+  public static Subgraph[] split( CsrGraph graph, int[] assignment, int partitions, String ghostProperty ) {
+    Subgraph[] subgraphs = new Subgraph[partitions];
+    for ( int p = 0; p < partitions; p++ ) {
+      subgraphs[p] = new Subgraph( new TinkerGraph() );
+    }
+    for ( int v = 0; v < graph.getVertexCount(); v++ ) {
+      Vertex vertex = subgraphs[assignment[v]].graph.addVertex( graph.getVertexId( v ) );
+      ElementHelper.copyProperties( graph.vertex( v ), vertex );
+    }
+    for ( int e = 0; e < graph.getEdgeCount(); e++ ) {
+      int source = graph.getSource( e );
+      int target = graph.getTarget( e );
+      int sourcePartition = assignment[source];
+      int targetPartition = assignment[target];
+      addEdge( graph, e, subgraphs[sourcePartition], target, targetPartition, ghostProperty );
+      if ( targetPartition != sourcePartition ) {
+        addEdge( graph, e, subgraphs[targetPartition], source, sourcePartition, ghostProperty );
+        subgraphs[sourcePartition].cutEdges++;
+        subgraphs[targetPartition].cutEdges++;
+      }
+    }
+    return subgraphs;
+  }
+
+  private static void addEdge( CsrGraph graph, int edge, Subgraph subgraph, int other, int otherPartition,
+      String ghostProperty ) {
+    Graph g = subgraph.graph;
+    Object otherId = graph.getVertexId( other );
+    Vertex otherVertex = g.getVertex( otherId );
+    if ( otherVertex == null ) {
+      otherVertex = g.addVertex( otherId );
+      ElementHelper.copyProperties( graph.vertex( other ), otherVertex );
+      if ( ghostProperty != null ) {
+        otherVertex.setProperty( ghostProperty, Integer.valueOf( otherPartition ) );
+      }
+      subgraph.ghosts++;
+    }
+    Vertex out = g.getVertex( graph.getVertexId( graph.getSource( edge ) ) );
+    Vertex in = g.getVertex( graph.getVertexId( graph.getTarget( edge ) ) );
+    Edge e = g.addEdge( graph.getEdgeId( edge ), out, in, graph.getLabel( graph.getLabelIndex( edge ) ) );
+    ElementHelper.copyProperties( graph.edge( edge ), e );
+  }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of the ints 0 to capacity - 1 keyed by double priorities, with a position index so a key can be
+ * lowered in place. The arrays are allocated once; clear() only visits the entries still in the heap, so reusing an
+ * instance for many small searches over a large graph costs nothing per search beyond what the search touched.
+ */
+public class IndexedMinHeap {
+
+  private final int[] heap;
+  private final double[] priorities;
+
+  /** Position of each item in the heap, or -1 if it is not in the heap */
+  private final int[] positions;
+
+  private int size;
+
+  public IndexedMinHeap( int capacity ) {
+    heap = new int[capacity];
+    priorities = new double[capacity];
+    positions = new int[capacity];
+    Arrays.fill( positions, -1 );
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean contains( int item ) {
+    return positions[item] >= 0;
+  }
+
+  /**
+   * Adds the item, or lowers its priority if it is already in the heap with a higher one.
+   */
+  public void insertOrDecrease( int item, double priority ) {
+    int position = positions[item];
+    if ( position < 0 ) {
+      position = size++;
+      heap[position] = item;
+      positions[item] = position;
+    } else if ( priority >= priorities[item] ) {
+      return;
+    }
+    priorities[item] = priority;
+    siftUp( position );
+  }
+
+  public double peekPriority() {
+    return priorities[heap[0]];
+  }
+
+  /**
+   * @return the item with the lowest priority, which is removed from the heap
+   */
+  public int poll() {
+    int top = heap[0];
+    positions[top] = -1;
+    size--;
+    if ( size > 0 ) {
+      int last = heap[size];
+      heap[0] = last;
+      positions[last] = 0;
+      siftDown( 0 );
+    }
+    return top;
+  }
+
+  public void clear() {
+    for ( int i = 0; i < size; i++ ) {
+      positions[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void siftUp( int position ) {
+    int item = heap[position];
+    double priority = priorities[item];
+    while ( position > 0 ) {
+      int parent = ( position - 1 ) >>> 1;
+      int parentItem = heap[parent];
+      if ( priorities[parentItem] <= priority ) {
+        break;
+      }
+      heap[position] = parentItem;
+      positions[parentItem] = position;
+      position = parent;
+    }
+    heap[position] = item;
+    positions[item] = position;
+  }
+
+  private void siftDown( int position ) {
+    int item = heap[position];
+    double priority = priorities[item];
+    int half = size >>> 1;
+    while ( position < half ) {
+      int child = 2 * position + 1;
+      int right = child + 1;
+      if ( right < size && priorities[heap[right]] < priorities[heap[child]] ) {
+        child = right;
+      }
+      int childItem = heap[child];
+      if ( priority <= priorities[childItem] ) {
+        break;
+      }
+      heap[position] = childItem;
+      positions[childItem] = position;
+      position = child;
+    }
+    heap[position] = item;
+    positions[item] = position;
+  }
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Direction;
+
+/**
+ * Breadth-first search from up to 64 source vertices at once, after Then et al., "The More the Merrier: Efficient
+ * Multi-Source Graph Traversal". Every vertex carries one bit per source in a long; a level expands each frontier
+ * vertex once for all sources that reached it, so sources in the same neighborhood share the work of visiting it.
+ * <p>
+ * Only the vertices reached are touched, which keeps a shallow search on a large graph cheap. The working arrays are
+ * sized to the graph once and cleared after every run, so an instance can be reused for many batches but is not
+ * thread safe.
+ */
+public class MultiSourceBfs {
+
+  /** The number of sources one run can search from, one per bit of a long */
+  public static final int MAX_SOURCES = 64;
+
+  public interface Visitor {
+    /**
+     * Called once for every source and vertex first reached from it, level by level
+     */
+    void visit( int source, int vertex, int distance );
+  }
+
+  private final CsrGraph graph;
+  private final Direction direction;
+  private final boolean[] labelMask;
+
+  private final long[] seen;
+  private final long[] visit;
+  private final long[] visitNext;
+  private int[] frontier;
+  private int[] nextFrontier;
+
+  /** Every vertex put on a frontier during a run, so the arrays can be cleared without a full scan */
+  private int[] touched;
+
+  /**
+   * @param graph
+   *          the graph to search
+   * @param direction
+   *          the direction of the edges to follow
+   * @param edgeLabels
+   *          the labels of the edges to follow, or none to follow every edge
+   */
+  public MultiSourceBfs( CsrGraph graph, Direction direction, String... edgeLabels ) {
+    this.graph = graph;
+    this.direction = direction;
+    if ( edgeLabels == null || edgeLabels.length == 0 ) {
+      labelMask = null;
+    } else {
+      labelMask = new boolean[graph.getLabelCount()];
+      for ( String label : edgeLabels ) {
+        int index = graph.indexOfLabel( label );
+        if ( index >= 0 ) {
+          labelMask[index] = true;
+        }
+      }
+    }
+    int n = graph.getVertexCount();
+    seen = new long[n];
+    visit = new long[n];
+    visitNext = new long[n];
+    frontier = new int[16];
+    nextFrontier = new int[16];
+    touched = new int[16];
+  }
+
+  /**
+   * Searches from the given source vertices up to the given depth. Source i is reported to the visitor as i. A vertex
+   * may be given more than once; negative vertex indexes are skipped.
+   * 
+   * @param sources
+   *          vertex indexes to start from, at most {@link #MAX_SOURCES}
+   * @param count
+   *          the number of entries of sources to use
+   * @param maxDepth
+   *          the number of hops to expand
+   * @param includeSources
+   *          whether to report every source at distance 0
+   */
+  public void run( int[] sources, int count, int maxDepth, boolean includeSources, Visitor visitor ) {
+    if ( count > MAX_SOURCES ) {
+      throw new IllegalArgumentException( "At most " + MAX_SOURCES + " sources can be searched at once, got " + count );
+    }
+    int frontierSize = 0;
+    int touchedSize = 0;
+    for ( int i = 0; i < count; i++ ) {
+      int v = sources[i];
+      if ( v < 0 ) {
+        continue;
+      }
+      if ( visit[v] == 0 ) {
+        frontier = add( frontier, frontierSize++, v );
+        touched = add( touched, touchedSize++, v );
+      }
+      long bit = 1L << i;
+      visit[v] |= bit;
+      seen[v] |= bit;
+      if ( includeSources ) {
+        visitor.visit( i, v, 0 );
+      }
+    }
+
+    for ( int depth = 1; depth <= maxDepth && frontierSize > 0; depth++ ) {
+      int nextSize = 0;
+      for ( int f = 0; f < frontierSize; f++ ) {
+        int v = frontier[f];
+        long bits = visit[v];
+        if ( direction != Direction.IN ) {
+          for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+            if ( labelMask == null || labelMask[graph.getLabelIndex( e )] ) {
+              nextSize = expand( bits, graph.getTarget( e ), nextSize );
+            }
+          }
+        }
+        if ( direction != Direction.OUT ) {
+          for ( int slot = graph.getInStart( v ); slot < graph.getInEnd( v ); slot++ ) {
+            int e = graph.getInEdge( slot );
+            if ( labelMask == null || labelMask[graph.getLabelIndex( e )] ) {
+              nextSize = expand( bits, graph.getSource( e ), nextSize );
+            }
+          }
+        }
+      }
+
+      for ( int f = 0; f < frontierSize; f++ ) {
+        visit[frontier[f]] = 0;
+      }
+      for ( int f = 0; f < nextSize; f++ ) {
+        int u = nextFrontier[f];
+        long reached = visitNext[u];
+        seen[u] |= reached;
+        visit[u] = reached;
+        visitNext[u] = 0;
+        touched = add( touched, touchedSize++, u );
+        while ( reached != 0 ) {
+          int source = Long.numberOfTrailingZeros( reached );
+          reached &= reached - 1;
+          visitor.visit( source, u, depth );
+        }
+      }
+
+      int[] swap = frontier;
+      frontier = nextFrontier;
+      nextFrontier = swap;
+      frontierSize = nextSize;
+    }
+
+    for ( int t = 0; t < touchedSize; t++ ) {
+      int v = touched[t];
+      seen[v] = 0;
+      visit[v] = 0;
+    }
+  }
+
+  private int expand( long bits, int u, int nextSize ) {
+    long reached = bits & ~seen[u] & ~visitNext[u];
+    if ( reached != 0 ) {
+      if ( visitNext[u] == 0 ) {
+        nextFrontier = add( nextFrontier, nextSize++, u );
+      }
+      visitNext[u] |= reached;
+    }
+    return nextSize;
+  }
+
+  private static int[] add( int[] array, int size, int value ) {
+    if ( size == array.length ) {
+      int[] grown = new int[array.length * 2];
+      System.arraycopy( array, 0, grown, 0, size );
+      array = grown;
+    }
+    array[size] = value;
+    return array;
+  }
+}
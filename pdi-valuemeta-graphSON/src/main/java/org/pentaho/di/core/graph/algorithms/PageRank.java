@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+/**
+ * Iterative PageRank over a {@link CsrGraph}. Each iteration pulls the contributions of a vertex's in-neighbours, so
+ * every thread only writes the ranks of its own vertex range and no synchronization is needed beyond the barrier
+ * between the two phases of an iteration. The rank of dangling vertices (no out-edges) is spread evenly over all
+ * vertices, and ranks always sum to 1.
+ */
+public class PageRank {
+
+  public static final double DEFAULT_DAMPING_FACTOR = 0.85;
+  public static final double DEFAULT_TOLERANCE = 1.0E-6;
+  public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+  private final CsrGraph graph;
+
+  private double dampingFactor = DEFAULT_DAMPING_FACTOR;
+  private double tolerance = DEFAULT_TOLERANCE;
+  private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+  private int iterations;
+  private boolean converged;
+
+  public PageRank( CsrGraph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * @param executor
+   *          the executor to spread vertex ranges over, or null to compute on the calling thread
+   * @param parallelism
+   *          the number of threads of the executor
+   * @return the rank of every vertex, by vertex index
+   */
+  public double[] compute( ExecutorService executor, int parallelism ) {
+    final int n = graph.getVertexCount();
+    iterations = 0;
+    converged = false;
+    if ( n == 0 ) {
+      converged = true;
+      return new double[0];
+    }
+
+    final double d = dampingFactor;
+    final double[] rank = new double[n];
+    final double[] next = new double[n];
+    final double[] contribution = new double[n];
+    Arrays.fill( rank, 1.0 / n );
+
+    VertexRanges ranges = new VertexRanges( graph, executor, parallelism );
+    final double[] danglingSums = new double[ranges.getRangeCount()];
+    final double[] deltas = new double[ranges.getRangeCount()];
+
+    final double[][] current = { rank, next };
+    while ( iterations < maxIterations && !converged ) {
+      final double[] from = current[0];
+      final double[] to = current[1];
+
+      ranges.run( new VertexRanges.RangeTask() {
+        public void run( int range, int start, int end ) {
+          double dangling = 0.0;
+          for ( int v = start; v < end; v++ ) {
+            int degree = graph.getOutDegree( v );
+            if ( degree == 0 ) {
+              dangling += from[v];
+              contribution[v] = 0.0;
+            } else {
+              contribution[v] = from[v] / degree;
+            }
+          }
+          danglingSums[range] = dangling;
+        }
+      } );
+
+      double dangling = 0.0;
+      for ( double sum : danglingSums ) {
+        dangling += sum;
+      }
+      final double base = ( 1.0 - d ) / n + d * dangling / n;
+
+      ranges.run( new VertexRanges.RangeTask() {
+        public void run( int range, int start, int end ) {
+          double delta = 0.0;
+          for ( int v = start; v < end; v++ ) {
+            double sum = 0.0;
+            for ( int slot = graph.getInStart( v ), stop = graph.getInEnd( v ); slot < stop; slot++ ) {
+              sum += contribution[graph.getSource( graph.getInEdge( slot ) )];
+            }
+            double value = base + d * sum;
+            delta += Math.abs( value - from[v] );
+            to[v] = value;
+          }
+          deltas[range] = delta;
+        }
+      } );
+
+      double delta = 0.0;
+      for ( double rangeDelta : deltas ) {
+        delta += rangeDelta;
+      }
+      iterations++;
+      converged = delta < tolerance;
+      current[0] = to;
+      current[1] = from;
+    }
+    return current[0];
+  }
+
+  public double getDampingFactor() {
+    return dampingFactor;
+  }
+
+  public void setDampingFactor( double dampingFactor ) {
+    if ( dampingFactor < 0.0 || dampingFactor >= 1.0 ) {
+      throw new IllegalArgumentException( "The damping factor must be at least 0 and less than 1" );
+    }
+    this.dampingFactor = dampingFactor;
+  }
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * @param tolerance
+   *          iteration stops once the ranks change by less than this in total (L1 norm)
+   */
+  public void setTolerance( double tolerance ) {
+    this.tolerance = tolerance;
+  }
+
+  public int getMaxIterations() {
+    return maxIterations;
+  }
+
+  public void setMaxIterations( int maxIterations ) {
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * @return the number of iterations the last compute() call ran
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * @return true if the last compute() call met the tolerance before running out of iterations
+   */
+  public boolean isConverged() {
+    return converged;
+  }
+}
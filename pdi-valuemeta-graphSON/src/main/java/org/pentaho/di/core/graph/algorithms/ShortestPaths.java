@@ -0,0 +1,214 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Direction;
+
+/**
+ * Answers single-pair shortest path queries on a {@link CsrGraph} with Dijkstra's algorithm, or A* when vertex
+ * coordinates are given. All working state lives in arrays sized to the graph that are allocated once: distances and
+ * predecessors are only valid for vertices stamped with the current query number, so nothing is cleared or allocated
+ * between queries. An instance is therefore meant to serve many queries, one at a time.
+ */
+public class ShortestPaths {
+
+  private final CsrGraph graph;
+  private final Direction direction;
+
+  /** Edge weights by edge index, or null when every edge counts as 1 */
+  private final double[] weights;
+
+  private double[] xs;
+  private double[] ys;
+  private double heuristicScale;
+
+  private final double[] distances;
+  private final int[] predecessors;
+  private final int[] reachedIn;
+  private final int[] settledIn;
+  private final IndexedMinHeap heap;
+  private int query;
+
+  private int source = -1;
+  private int settledCount;
+
+  /**
+   * @param graph
+   *          the graph to search
+   * @param direction
+   *          the direction in which edges may be followed
+   * @param weightProperty
+   *          the numeric edge property holding the edge weights, or null to count hops. Edges without it weigh 1.
+   * @throws IllegalArgumentException
+   *           if an edge has a negative or NaN weight
+   */
+  public ShortestPaths( CsrGraph graph, Direction direction, String weightProperty ) {
+    this.graph = graph;
+    this.direction = direction;
+    if ( Const.isEmpty( weightProperty ) ) {
+      weights = null;
+    } else {
+      weights = new double[graph.getEdgeCount()];
+      for ( int e = 0; e < weights.length; e++ ) {
+        double weight = graph.getEdgeDouble( e, weightProperty, 1.0 );
+        if ( !( weight >= 0.0 ) ) {
+          throw new IllegalArgumentException( "Edge " + graph.getEdgeId( e ) + " has a negative or undefined "
+              + weightProperty + ": " + weight );
+        }
+        weights[e] = weight;
+      }
+    }
+    int n = graph.getVertexCount();
+    distances = new double[n];
+    predecessors = new int[n];
+    reachedIn = new int[n];
+    settledIn = new int[n];
+    heap = new IndexedMinHeap( n );
+  }
+
+  /**
+   * Turns the search into A*, estimating the remaining distance as the straight-line distance between the vertex
+   * coordinates times the scale. The estimate must never exceed the real remaining distance, or the paths found may
+   * not be the shortest. Vertices without coordinates get an estimate of 0.
+   */
+  public void setHeuristic( String xProperty, String yProperty, double scale ) {
+    int n = graph.getVertexCount();
+    xs = new double[n];
+    ys = new double[n];
+    for ( int v = 0; v < n; v++ ) {
+      xs[v] = graph.getVertexDouble( v, xProperty, Double.NaN );
+      ys[v] = graph.getVertexDouble( v, yProperty, Double.NaN );
+    }
+    heuristicScale = scale;
+  }
+
+  /**
+   * Finds the shortest path between two vertex indexes. The path itself can be read with getPath() until the next
+   * search.
+   * 
+   * @return the length of the shortest path, or positive infinity if the target can not be reached
+   */
+  public double search( int from, int to ) {
+    nextQuery();
+    source = from;
+    settledCount = 0;
+    reach( from, -1, 0.0 );
+    heap.insertOrDecrease( from, estimate( from, to ) );
+
+    while ( !heap.isEmpty() ) {
+      int v = heap.poll();
+      settledIn[v] = query;
+      settledCount++;
+      if ( v == to ) {
+        heap.clear();
+        return distances[v];
+      }
+      double distance = distances[v];
+      if ( direction != Direction.IN ) {
+        for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+          relax( v, graph.getTarget( e ), distance + weight( e ), to );
+        }
+      }
+      if ( direction != Direction.OUT ) {
+        for ( int slot = graph.getInStart( v ); slot < graph.getInEnd( v ); slot++ ) {
+          int e = graph.getInEdge( slot );
+          relax( v, graph.getSource( e ), distance + weight( e ), to );
+        }
+      }
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * @return the vertex indexes on the shortest path found by the last search, from source to target, or null if the
+   *         target was not reached
+   */
+  public int[] getPath( int to ) {
+    if ( source < 0 || settledIn[to] != query ) {
+      return null;
+    }
+    int length = 1;
+    for ( int v = to; v != source; v = predecessors[v] ) {
+      length++;
+    }
+    int[] path = new int[length];
+    for ( int v = to, i = length - 1; i >= 0; v = predecessors[v], i-- ) {
+      path[i] = v;
+    }
+    return path;
+  }
+
+  /**
+   * @return how many vertices the last search settled, a measure of the work it did
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+
+  private void relax( int from, int to, double distance, int target ) {
+    if ( settledIn[to] == query ) {
+      return;
+    }
+    if ( reachedIn[to] != query || distance < distances[to] ) {
+      reach( to, from, distance );
+      heap.insertOrDecrease( to, distance + estimate( to, target ) );
+    }
+  }
+
+  private void reach( int vertex, int predecessor, double distance ) {
+    reachedIn[vertex] = query;
+    distances[vertex] = distance;
+    predecessors[vertex] = predecessor;
+  }
+
+  private double weight( int edge ) {
+    return weights == null ? 1.0 : weights[edge];
+  }
+
+  private double estimate( int vertex, int target ) {
+    if ( xs == null ) {
+      return 0.0;
+    }
+    double dx = xs[vertex] - xs[target];
+    double dy = ys[vertex] - ys[target];
+    double estimate = heuristicScale * Math.sqrt( dx * dx + dy * dy );
+    // NaN when either vertex has no coordinates
+    return estimate >= 0.0 ? estimate : 0.0;
+  }
+
+  private void nextQuery() {
+    query++;
+    if ( query == Integer.MAX_VALUE ) {
+      // The stamps would wrap around; start over with clean arrays
+      Arrays.fill( reachedIn, 0 );
+      Arrays.fill( settledIn, 0 );
+      query = 1;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+/**
+ * Counts the triangles each vertex takes part in and derives its local clustering coefficient. Edge direction, labels,
+ * parallel edges and self loops are ignored: two vertices are neighbors if any edge joins them.
+ * <p>
+ * The neighbors of every vertex are first gathered into a sorted, duplicate-free array. Each vertex then keeps only the
+ * neighbors that rank above it, ranking by degree and then by index, so every triangle is found exactly once, from its
+ * lowest ranked corner, by intersecting two of these short sorted arrays. Hubs, which would make the intersections
+ * expensive, end up with the shortest arrays.
+ */
+public class TriangleCount {
+
+  private final CsrGraph graph;
+
+  private int[] degrees;
+  private AtomicLongArray triangles;
+  private long triangleCount;
+
+  public TriangleCount( CsrGraph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * @param executor
+   *          the executor to spread the vertices over, or null to run on the calling thread
+   * @param parallelism
+   *          the number of threads of the executor
+   */
+  public void compute( ExecutorService executor, int parallelism ) {
+    final int n = graph.getVertexCount();
+    VertexRanges ranges = new VertexRanges( graph, executor, parallelism );
+
+    // Every vertex gets room for all its raw neighbors; the distinct ones fill the start of it
+    final int[] offsets = new int[n + 1];
+    for ( int v = 0; v < n; v++ ) {
+      int rawDegree = graph.getOutDegree( v ) + graph.getInDegree( v );
+      offsets[v + 1] = offsets[v] + rawDegree;
+    }
+    final int[] neighbors = new int[offsets[n]];
+    final int[] degree = new int[n];
+    ranges.run( new VertexRanges.RangeTask() {
+      public void run( int range, int from, int to ) {
+        for ( int v = from; v < to; v++ ) {
+          degree[v] = gatherNeighbors( v, neighbors, offsets[v] );
+        }
+      }
+    } );
+
+    // Keep only the neighbors ranked above each vertex, still sorted by index
+    final int[] forwardDegree = new int[n];
+    ranges.run( new VertexRanges.RangeTask() {
+      public void run( int range, int from, int to ) {
+        for ( int v = from; v < to; v++ ) {
+          int start = offsets[v];
+          int kept = 0;
+          for ( int i = 0; i < degree[v]; i++ ) {
+            int u = neighbors[start + i];
+            if ( degree[u] > degree[v] || ( degree[u] == degree[v] && u > v ) ) {
+              neighbors[start + kept++] = u;
+            }
+          }
+          forwardDegree[v] = kept;
+        }
+      }
+    } );
+
+    final AtomicLongArray counts = new AtomicLongArray( n );
+    ranges.run( new VertexRanges.RangeTask() {
+      public void run( int range, int from, int to ) {
+        for ( int v = from; v < to; v++ ) {
+          int vStart = offsets[v];
+          int vEnd = vStart + forwardDegree[v];
+          long found = 0;
+          for ( int i = vStart; i < vEnd; i++ ) {
+            int u = neighbors[i];
+            int a = vStart;
+            int b = offsets[u];
+            int bEnd = b + forwardDegree[u];
+            long foundWithU = 0;
+            // A common w ranks above u, so the triangle is counted once: from v, through the middle ranked u
+            while ( a < vEnd && b < bEnd ) {
+              int wa = neighbors[a];
+              int wb = neighbors[b];
+              if ( wa < wb ) {
+                a++;
+              } else if ( wa > wb ) {
+                b++;
+              } else {
+                counts.incrementAndGet( wa );
+                foundWithU++;
+                a++;
+                b++;
+              }
+            }
+            if ( foundWithU > 0 ) {
+              counts.addAndGet( u, foundWithU );
+              found += foundWithU;
+            }
+          }
+          if ( found > 0 ) {
+            counts.addAndGet( v, found );
+          }
+        }
+      }
+    } );
+
+    long total = 0;
+    for ( int v = 0; v < n; v++ ) {
+      total += counts.get( v );
+    }
+    degrees = degree;
+    triangles = counts;
+    triangleCount = total / 3;
+  }
+
+  /**
+   * Writes the distinct neighbors of v, other than v itself, sorted by index to the array at the given offset.
+   * 
+   * @return how many there are
+   */
+  private int gatherNeighbors( int v, int[] into, int offset ) {
+    int size = 0;
+    for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+      into[offset + size++] = graph.getTarget( e );
+    }
+    for ( int slot = graph.getInStart( v ); slot < graph.getInEnd( v ); slot++ ) {
+      into[offset + size++] = graph.getSource( graph.getInEdge( slot ) );
+    }
+    Arrays.sort( into, offset, offset + size );
+    int distinct = 0;
+    for ( int i = 0; i < size; i++ ) {
+      int u = into[offset + i];
+      if ( u != v && ( distinct == 0 || into[offset + distinct - 1] != u ) ) {
+        into[offset + distinct++] = u;
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * @return the number of triangles the vertex is a corner of
+   */
+  public long getTriangles( int vertex ) {
+    return triangles.get( vertex );
+  }
+
+  /**
+   * @return the number of distinct neighbors of the vertex, in either direction
+   */
+  public int getDegree( int vertex ) {
+    return degrees[vertex];
+  }
+
+  /**
+   * @return the fraction of the pairs of neighbors of the vertex that are neighbors themselves, 0 for vertices with
+   *         fewer than two neighbors
+   */
+  public double getClusteringCoefficient( int vertex ) {
+    long d = degrees[vertex];
+    if ( d < 2 ) {
+      return 0.0;
+    }
+    return 2.0 * triangles.get( vertex ) / ( d * ( d - 1 ) );
+  }
+
+  /**
+   * @return the number of triangles in the graph
+   */
+  public long getTriangleCount() {
+    return triangleCount;
+  }
+}
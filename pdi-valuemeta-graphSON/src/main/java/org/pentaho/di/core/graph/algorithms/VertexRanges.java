@@ -0,0 +1,161 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+/**
+ * Splits the vertices of a {@link CsrGraph} into contiguous ranges of roughly equal work and runs a task over every
+ * range, in parallel when an executor is given. The work of a vertex is taken to be its degree plus one, so ranges
+ * holding hubs are shorter.
+ */
+public class VertexRanges {
+
+  /** Ranges per worker thread; more ranges than threads evens out skew the degree estimate misses */
+  private static final int RANGES_PER_THREAD = 4;
+
+  /** Below this many vertices plus edges a graph is not worth splitting */
+  private static final int MIN_PARALLEL_SIZE = 10000;
+
+  public interface RangeTask {
+    /**
+     * Processes the vertices from (inclusive) to (exclusive). Ranges are numbered from 0 to getRangeCount() - 1 so a
+     * task can keep per-range partial results without locking.
+     */
+    void run( int range, int from, int to );
+  }
+
+  private final int[] bounds;
+
+  private final ExecutorService executor;
+
+  /**
+   * @param graph
+   *          the graph whose vertices to split
+   * @param executor
+   *          the executor to run ranges on, or null to run everything on the calling thread
+   * @param parallelism
+   *          the number of threads of the executor
+   */
+  public VertexRanges( CsrGraph graph, ExecutorService executor, int parallelism ) {
+    int n = graph.getVertexCount();
+    int nrRanges = 1;
+    if ( executor != null && parallelism > 1 && n + graph.getEdgeCount() >= MIN_PARALLEL_SIZE ) {
+      nrRanges = Math.min( n, parallelism * RANGES_PER_THREAD );
+    }
+    this.executor = nrRanges > 1 ? executor : null;
+
+    bounds = new int[nrRanges + 1];
+    long totalWork = (long) n + 2L * graph.getEdgeCount();
+    long workPerRange = totalWork / nrRanges + 1;
+    int range = 1;
+    long work = 0;
+    for ( int v = 0; v < n && range < nrRanges; v++ ) {
+      work += 1 + graph.getOutDegree( v ) + graph.getInDegree( v );
+      if ( work >= workPerRange * range ) {
+        bounds[range++] = v + 1;
+      }
+    }
+    while ( range <= nrRanges ) {
+      bounds[range++] = n;
+    }
+  }
+
+  /**
+   * @return the configured number of threads, or the number of available processors when it is 0 or less
+   */
+  public static int resolveParallelism( int parallelism ) {
+    return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Creates a pool of daemon threads named after the given prefix.
+   * 
+   * @return the executor, or null when the parallelism is 1 or less and everything should run on the caller's thread
+   */
+  public static ExecutorService newExecutor( final String namePrefix, int parallelism ) {
+    if ( parallelism <= 1 ) {
+      return null;
+    }
+    return Executors.newFixedThreadPool( parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, namePrefix + "-" + count.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+  }
+
+  public int getRangeCount() {
+    return bounds.length - 1;
+  }
+
+  /**
+   * Runs the task over all ranges and returns when every range is done. A RuntimeException thrown by the task is
+   * rethrown here.
+   */
+  public void run( final RangeTask task ) {
+    if ( executor == null ) {
+      for ( int r = 0; r < getRangeCount(); r++ ) {
+        task.run( r, bounds[r], bounds[r + 1] );
+      }
+      return;
+    }
+    List<Callable<Object>> calls = new ArrayList<Callable<Object>>( getRangeCount() );
+    for ( int r = 0; r < getRangeCount(); r++ ) {
+      final int range = r;
+      calls.add( new Callable<Object>() {
+        public Object call() {
+          task.run( range, bounds[range], bounds[range + 1] );
+          return null;
+        }
+      } );
+    }
+    try {
+      for ( Future<Object> future : executor.invokeAll( calls ) ) {
+        future.get();
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted while waiting for a parallel graph computation", e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Reads elements in the {@link BinaryGraphFormat}.
+ */
+public class BinaryElementReader implements GraphElementReader {
+
+  private final DataInputStream in;
+  private boolean done;
+
+  private boolean vertex;
+  private Object id;
+  private Object outId;
+  private Object inId;
+  private String label;
+  private Map<String, Object> properties;
+
+  public BinaryElementReader( InputStream in ) throws IOException {
+    this.in = new DataInputStream( in instanceof BufferedInputStream ? in : new BufferedInputStream( in ) );
+    if ( this.in.readInt() != BinaryGraphFormat.MAGIC ) {
+      throw new IOException( "Not a binary graph file" );
+    }
+    int version = this.in.readInt();
+    if ( version != BinaryGraphFormat.VERSION ) {
+      throw new IOException( "Unsupported binary graph file version " + version );
+    }
+  }
+
+  public boolean next() throws IOException {
+    if ( done ) {
+      return false;
+    }
+    byte record = in.readByte();
+    if ( record == BinaryGraphFormat.RECORD_END ) {
+      done = true;
+      return false;
+    }
+    vertex = record == BinaryGraphFormat.RECORD_VERTEX;
+    if ( !vertex && record != BinaryGraphFormat.RECORD_EDGE ) {
+      throw new IOException( "Unknown record type " + record );
+    }
+    id = BinaryGraphFormat.readValue( in );
+    if ( vertex ) {
+      outId = null;
+      inId = null;
+      label = null;
+    } else {
+      outId = BinaryGraphFormat.readValue( in );
+      inId = BinaryGraphFormat.readValue( in );
+      label = BinaryGraphFormat.readString( in );
+    }
+    properties = BinaryGraphFormat.readProperties( in );
+    return true;
+  }
+
+  public boolean isVertex() {
+    return vertex;
+  }
+
+  public Object getId() {
+    return id;
+  }
+
+  public Object getOutId() {
+    return outId;
+  }
+
+  public Object getInId() {
+    return inId;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public Map<String, Object> getProperties() {
+    return properties;
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes elements in the {@link BinaryGraphFormat}.
+ */
+public class BinaryElementWriter implements GraphElementWriter {
+
+  private final DataOutputStream out;
+
+  public BinaryElementWriter( OutputStream out ) throws IOException {
+    this.out = new DataOutputStream( out );
+    this.out.writeInt( BinaryGraphFormat.MAGIC );
+    this.out.writeInt( BinaryGraphFormat.VERSION );
+  }
+
+  public void writeVertex( Object id, Map<String, Object> properties ) throws IOException {
+    out.writeByte( BinaryGraphFormat.RECORD_VERTEX );
+    BinaryGraphFormat.writeValue( out, id );
+    BinaryGraphFormat.writeProperties( out, properties );
+  }
+
+  public void writeEdge( Object id, Object outId, Object inId, String label, Map<String, Object> properties )
+    throws IOException {
+    out.writeByte( BinaryGraphFormat.RECORD_EDGE );
+    BinaryGraphFormat.writeValue( out, id );
+    BinaryGraphFormat.writeValue( out, outId );
+    BinaryGraphFormat.writeValue( out, inId );
+    BinaryGraphFormat.writeString( out, label );
+    BinaryGraphFormat.writeProperties( out, properties );
+  }
+
+  public void close() throws IOException {
+    out.writeByte( BinaryGraphFormat.RECORD_END );
+    out.close();
+  }
+}
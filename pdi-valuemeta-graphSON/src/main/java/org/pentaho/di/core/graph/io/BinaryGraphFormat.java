@@ -0,0 +1,193 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary graph file format: a magic number and version, followed by one record per element and an end marker.
+ * <p>
+ * A vertex record is the byte {@link #RECORD_VERTEX}, the vertex id and its properties; an edge record is the byte
+ * {@link #RECORD_EDGE}, the edge id, out-vertex id, in-vertex id, label and properties. Ids and property values are
+ * tagged values (a type byte followed by the value), properties an int count followed by key/value pairs. Strings are
+ * an int byte count followed by UTF-8, so there is no 64K limit as with DataOutput.writeUTF().
+ */
+public class BinaryGraphFormat {
+
+  public static final int MAGIC = 0x50444947; // "PDIG"
+  public static final int VERSION = 1;
+
+  public static final byte RECORD_END = 0;
+  public static final byte RECORD_VERTEX = 1;
+  public static final byte RECORD_EDGE = 2;
+
+  static final byte TYPE_NULL = 0;
+  static final byte TYPE_STRING = 1;
+  static final byte TYPE_INTEGER = 2;
+  static final byte TYPE_LONG = 3;
+  static final byte TYPE_DOUBLE = 4;
+  static final byte TYPE_FLOAT = 5;
+  static final byte TYPE_BOOLEAN = 6;
+  static final byte TYPE_SHORT = 7;
+  static final byte TYPE_BYTE = 8;
+  static final byte TYPE_LIST = 9;
+  static final byte TYPE_MAP = 10;
+
+  // Dictionary encoded strings, only written by DictionaryGraphCodec
+  static final byte TYPE_DICTIONARY_DEFINE = 11;
+  static final byte TYPE_DICTIONARY_REFERENCE = 12;
+
+  private static final String CHARSET = "UTF-8";
+
+  private BinaryGraphFormat() {
+  }
+
+  public static void writeString( DataOutput out, String value ) throws IOException {
+    byte[] bytes = value.getBytes( CHARSET );
+    out.writeInt( bytes.length );
+    out.write( bytes );
+  }
+
+  public static String readString( DataInput in ) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully( bytes );
+    return new String( bytes, CHARSET );
+  }
+
+  /**
+   * Writes a tagged value. Values of types without a tag of their own are written as their string form.
+   */
+  public static void writeValue( DataOutput out, Object value ) throws IOException {
+    if ( value == null ) {
+      out.writeByte( TYPE_NULL );
+    } else if ( value instanceof String ) {
+      out.writeByte( TYPE_STRING );
+      writeString( out, (String) value );
+    } else if ( value instanceof Integer ) {
+      out.writeByte( TYPE_INTEGER );
+      out.writeInt( (Integer) value );
+    } else if ( value instanceof Long ) {
+      out.writeByte( TYPE_LONG );
+      out.writeLong( (Long) value );
+    } else if ( value instanceof Double ) {
+      out.writeByte( TYPE_DOUBLE );
+      out.writeDouble( (Double) value );
+    } else if ( value instanceof Float ) {
+      out.writeByte( TYPE_FLOAT );
+      out.writeFloat( (Float) value );
+    } else if ( value instanceof Boolean ) {
+      out.writeByte( TYPE_BOOLEAN );
+      out.writeBoolean( (Boolean) value );
+    } else if ( value instanceof Short ) {
+      out.writeByte( TYPE_SHORT );
+      out.writeShort( (Short) value );
+    } else if ( value instanceof Byte ) {
+      out.writeByte( TYPE_BYTE );
+      out.writeByte( (Byte) value );
+    } else if ( value instanceof List ) {
+      List<?> list = (List<?>) value;
+      out.writeByte( TYPE_LIST );
+      out.writeInt( list.size() );
+      for ( Object item : list ) {
+        writeValue( out, item );
+      }
+    } else if ( value instanceof Map ) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeByte( TYPE_MAP );
+      out.writeInt( map.size() );
+      for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+        writeString( out, String.valueOf( entry.getKey() ) );
+        writeValue( out, entry.getValue() );
+      }
+    } else {
+      out.writeByte( TYPE_STRING );
+      writeString( out, value.toString() );
+    }
+  }
+
+  public static Object readValue( DataInput in ) throws IOException {
+    return readValue( in, in.readByte() );
+  }
+
+  /**
+   * Reads the rest of a tagged value whose type byte has already been read.
+   */
+  static Object readValue( DataInput in, byte type ) throws IOException {
+    switch ( type ) {
+      case TYPE_NULL:
+        return null;
+      case TYPE_STRING:
+        return readString( in );
+      case TYPE_INTEGER:
+        return Integer.valueOf( in.readInt() );
+      case TYPE_LONG:
+        return Long.valueOf( in.readLong() );
+      case TYPE_DOUBLE:
+        return Double.valueOf( in.readDouble() );
+      case TYPE_FLOAT:
+        return Float.valueOf( in.readFloat() );
+      case TYPE_BOOLEAN:
+        return Boolean.valueOf( in.readBoolean() );
+      case TYPE_SHORT:
+        return Short.valueOf( in.readShort() );
+      case TYPE_BYTE:
+        return Byte.valueOf( in.readByte() );
+      case TYPE_LIST:
+        int size = in.readInt();
+        List<Object> list = new ArrayList<Object>( size );
+        for ( int i = 0; i < size; i++ ) {
+          list.add( readValue( in ) );
+        }
+        return list;
+      case TYPE_MAP:
+        return readProperties( in );
+      default:
+        throw new IOException( "Unknown value type " + type );
+    }
+  }
+
+  public static void writeProperties( DataOutput out, Map<String, Object> properties ) throws IOException {
+    out.writeInt( properties.size() );
+    for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+      writeString( out, property.getKey() );
+      writeValue( out, property.getValue() );
+    }
+  }
+
+  public static Map<String, Object> readProperties( DataInput in ) throws IOException {
+    int size = in.readInt();
+    Map<String, Object> properties = new LinkedHashMap<String, Object>( size * 4 / 3 + 1 );
+    for ( int i = 0; i < size; i++ ) {
+      String key = readString( in );
+      properties.put( key, readValue( in ) );
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written through it, so output can be split into files of a given size.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+  private long count;
+
+  public CountingOutputStream( OutputStream out ) {
+    super( out );
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    out.write( b );
+    count++;
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    out.write( b, off, len );
+    count += len;
+  }
+
+  public long getCount() {
+    return count;
+  }
+}
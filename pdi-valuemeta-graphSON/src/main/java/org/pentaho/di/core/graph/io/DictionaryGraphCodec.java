@@ -0,0 +1,189 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.di.core.graph.PropertyDictionary;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * A compact binary encoding of a whole graph, used to pass graph values between steps. It is the
+ * {@link BinaryGraphFormat} record layout (all vertices, then all edges, then an end marker) without the magic number,
+ * with repeated strings dictionary encoded.
+ * <p>
+ * The dictionary is built while writing: the first occurrence of a string is written in full and defines the next
+ * code, later occurrences are written as that code. Property keys, edge labels and the values of each property key are
+ * encoded this way until that key has had more than the maximum cardinality of distinct values; after that, its
+ * values are written as plain strings so unique values do not fill the dictionary. Reading rebuilds the dictionary in
+ * the same order, so all elements of the read graph share one instance of each encoded string.
+ */
+public class DictionaryGraphCodec {
+
+  public static final int VERSION = 1;
+
+  // Slots for strings that are not property values; property keys cannot be empty, so these never clash
+  private static final String KEY_SLOT = "";
+  private static final String LABEL_SLOT = "\u0000label";
+
+  private DictionaryGraphCodec() {
+  }
+
+  public static void write( Graph graph, DataOutput out ) throws IOException {
+    write( graph, out, PropertyDictionary.DEFAULT_MAX_CARDINALITY );
+  }
+
+  public static void write( Graph graph, DataOutput out, int maxCardinality ) throws IOException {
+    Encoder encoder = new Encoder( out, maxCardinality );
+    out.writeInt( VERSION );
+    for ( Vertex vertex : graph.getVertices() ) {
+      out.writeByte( BinaryGraphFormat.RECORD_VERTEX );
+      BinaryGraphFormat.writeValue( out, vertex.getId() );
+      encoder.writeProperties( vertex );
+    }
+    for ( Edge edge : graph.getEdges() ) {
+      out.writeByte( BinaryGraphFormat.RECORD_EDGE );
+      BinaryGraphFormat.writeValue( out, edge.getId() );
+      BinaryGraphFormat.writeValue( out, edge.getVertex( Direction.OUT ).getId() );
+      BinaryGraphFormat.writeValue( out, edge.getVertex( Direction.IN ).getId() );
+      encoder.writeString( LABEL_SLOT, edge.getLabel() );
+      encoder.writeProperties( edge );
+    }
+    out.writeByte( BinaryGraphFormat.RECORD_END );
+  }
+
+  /**
+   * Reads a graph written by {@link #write(Graph, DataOutput)} into the given (usually empty) graph.
+   */
+  public static void read( DataInput in, Graph graph ) throws IOException {
+    int version = in.readInt();
+    if ( version != VERSION ) {
+      throw new IOException( "Unsupported dictionary encoded graph version " + version );
+    }
+    List<String> dictionary = new ArrayList<String>();
+    for ( byte record = in.readByte(); record != BinaryGraphFormat.RECORD_END; record = in.readByte() ) {
+      if ( record == BinaryGraphFormat.RECORD_VERTEX ) {
+        Vertex vertex = graph.addVertex( BinaryGraphFormat.readValue( in ) );
+        readProperties( in, dictionary, vertex );
+      } else if ( record == BinaryGraphFormat.RECORD_EDGE ) {
+        Object id = BinaryGraphFormat.readValue( in );
+        Vertex out = vertex( graph, BinaryGraphFormat.readValue( in ) );
+        Vertex inVertex = vertex( graph, BinaryGraphFormat.readValue( in ) );
+        Edge edge = graph.addEdge( id, out, inVertex, (String) readValue( in, dictionary ) );
+        readProperties( in, dictionary, edge );
+      } else {
+        throw new IOException( "Unknown record type " + record );
+      }
+    }
+  }
+
+  private static Vertex vertex( Graph graph, Object id ) throws IOException {
+    Vertex vertex = graph.getVertex( id );
+    if ( vertex == null ) {
+      throw new IOException( "Edge refers to unknown vertex " + id );
+    }
+    return vertex;
+  }
+
+  private static void readProperties( DataInput in, List<String> dictionary, Element element ) throws IOException {
+    int size = in.readInt();
+    for ( int i = 0; i < size; i++ ) {
+      String key = (String) readValue( in, dictionary );
+      element.setProperty( key, readValue( in, dictionary ) );
+    }
+  }
+
+  private static Object readValue( DataInput in, List<String> dictionary ) throws IOException {
+    byte type = in.readByte();
+    if ( type == BinaryGraphFormat.TYPE_DICTIONARY_DEFINE ) {
+      String value = BinaryGraphFormat.readString( in );
+      dictionary.add( value );
+      return value;
+    }
+    if ( type == BinaryGraphFormat.TYPE_DICTIONARY_REFERENCE ) {
+      return dictionary.get( in.readInt() );
+    }
+    return BinaryGraphFormat.readValue( in, type );
+  }
+
+  private static class Encoder {
+    private final DataOutput out;
+    private final int maxCardinality;
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    // distinct values defined per slot, or null once a slot has gone over the maximum cardinality
+    private final Map<String, Integer> definitions = new HashMap<String, Integer>();
+
+    Encoder( DataOutput out, int maxCardinality ) {
+      this.out = out;
+      this.maxCardinality = maxCardinality;
+    }
+
+    void writeProperties( Element element ) throws IOException {
+      Set<String> keys = element.getPropertyKeys();
+      out.writeInt( keys.size() );
+      for ( String key : keys ) {
+        writeString( KEY_SLOT, key );
+        Object value = element.getProperty( key );
+        if ( value instanceof String ) {
+          writeString( key, (String) value );
+        } else {
+          BinaryGraphFormat.writeValue( out, value );
+        }
+      }
+    }
+
+    void writeString( String slot, String value ) throws IOException {
+      Integer code = codes.get( value );
+      if ( code != null ) {
+        out.writeByte( BinaryGraphFormat.TYPE_DICTIONARY_REFERENCE );
+        out.writeInt( code.intValue() );
+        return;
+      }
+      Integer defined = definitions.get( slot );
+      if ( defined == null ? definitions.containsKey( slot ) : defined.intValue() >= maxCardinality ) {
+        definitions.put( slot, null );
+        out.writeByte( BinaryGraphFormat.TYPE_STRING );
+        BinaryGraphFormat.writeString( out, value );
+        return;
+      }
+      definitions.put( slot, defined == null ? 1 : defined.intValue() + 1 );
+      codes.put( value, codes.size() );
+      out.writeByte( BinaryGraphFormat.TYPE_DICTIONARY_DEFINE );
+      BinaryGraphFormat.writeString( out, value );
+    }
+  }
+}
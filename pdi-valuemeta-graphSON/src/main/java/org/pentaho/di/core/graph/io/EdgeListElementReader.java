@@ -0,0 +1,136 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reads plain text graph files with one record per line, fields separated by whitespace or commas, and lines starting
+ * with '#' or '%' treated as comments. Two layouts are understood:
+ * <ul>
+ * <li>an edge list, with the out-vertex id, the in-vertex id and an optional label on each line</li>
+ * <li>an adjacency list, with a vertex id followed by the ids of the vertices its out-edges lead to</li>
+ * </ul>
+ * Neither layout has edge ids or properties. Vertices are only reported for the first column of an adjacency list;
+ * every other vertex is implied by the edges that refer to it.
+ */
+public class EdgeListElementReader implements GraphElementReader {
+
+  private static final Pattern SEPARATOR = Pattern.compile( "[\\s,]+" );
+
+  private final BufferedReader reader;
+  private final boolean adjacency;
+  private final String defaultLabel;
+
+  private String[] tokens;
+  private int position;
+
+  private boolean vertex;
+  private Object outId;
+  private Object inId;
+  private String label;
+
+  /**
+   * @param adjacency
+   *          true to read an adjacency list, false for an edge list
+   * @param defaultLabel
+   *          the label of edges that don't have one
+   */
+  public EdgeListElementReader( Reader reader, boolean adjacency, String defaultLabel ) {
+    this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader( reader );
+    this.adjacency = adjacency;
+    this.defaultLabel = defaultLabel;
+  }
+
+  public boolean next() throws IOException {
+    if ( tokens != null && position < tokens.length ) {
+      // the remaining neighbours on the current adjacency line
+      vertex = false;
+      outId = tokens[0];
+      inId = tokens[position++];
+      label = defaultLabel;
+      return true;
+    }
+    String line;
+    while ( ( line = reader.readLine() ) != null ) {
+      line = line.trim();
+      if ( line.length() == 0 || line.charAt( 0 ) == '#' || line.charAt( 0 ) == '%' ) {
+        continue;
+      }
+      tokens = SEPARATOR.split( line );
+      if ( adjacency ) {
+        vertex = true;
+        outId = null;
+        inId = null;
+        label = null;
+        position = 1;
+        return true;
+      }
+      if ( tokens.length < 2 ) {
+        throw new IOException( "Expected an out-vertex and an in-vertex id on line [" + line + "]" );
+      }
+      vertex = false;
+      outId = tokens[0];
+      inId = tokens[1];
+      label = tokens.length > 2 ? tokens[2] : defaultLabel;
+      position = tokens.length;
+      return true;
+    }
+    tokens = null;
+    return false;
+  }
+
+  public boolean isVertex() {
+    return vertex;
+  }
+
+  public Object getId() {
+    return vertex ? tokens[0] : null;
+  }
+
+  public Object getOutId() {
+    return outId;
+  }
+
+  public Object getInId() {
+    return inId;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public Map<String, Object> getProperties() {
+    return Collections.emptyMap();
+  }
+
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes edges as tab separated out-vertex id, in-vertex id and label lines, as read by {@link EdgeListElementReader}.
+ * Edge ids and properties are dropped, as are vertices: only vertices with at least one edge survive the round trip.
+ */
+public class EdgeListElementWriter implements GraphElementWriter {
+
+  private final Writer writer;
+
+  public EdgeListElementWriter( Writer writer ) {
+    this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter( writer );
+  }
+
+  public void writeVertex( Object id, Map<String, Object> properties ) {
+    // vertices are implied by the edges
+  }
+
+  public void writeEdge( Object id, Object outId, Object inId, String label, Map<String, Object> properties )
+    throws IOException {
+    writer.write( String.valueOf( outId ) );
+    writer.write( '\t' );
+    writer.write( String.valueOf( inId ) );
+    writer.write( '\t' );
+    writer.write( label );
+    writer.write( '\n' );
+  }
+
+  public void close() throws IOException {
+    writer.close();
+  }
+}
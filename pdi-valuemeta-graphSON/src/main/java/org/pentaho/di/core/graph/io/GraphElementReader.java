@@ -0,0 +1,73 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads the vertices and edges of a serialized graph one at a time, so that a graph file can be processed without
+ * holding the whole file, or the whole graph, in memory. The reader is positioned on no element until next() is
+ * called; the accessors describe the current element.
+ */
+public interface GraphElementReader extends Closeable {
+
+  /**
+   * Moves to the next element.
+   * 
+   * @return false when there are no more elements
+   */
+  boolean next() throws IOException;
+
+  /**
+   * @return true if the current element is a vertex, false if it is an edge
+   */
+  boolean isVertex();
+
+  /**
+   * @return the id of the current element, which may be null for edges
+   */
+  Object getId();
+
+  /**
+   * @return the id of the out-vertex of the current edge
+   */
+  Object getOutId();
+
+  /**
+   * @return the id of the in-vertex of the current edge
+   */
+  Object getInId();
+
+  /**
+   * @return the label of the current edge
+   */
+  String getLabel();
+
+  /**
+   * @return the properties of the current element, never null
+   */
+  Map<String, Object> getProperties();
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes the vertices and edges of a graph one at a time, the counterpart of {@link GraphElementReader}. Writers may
+ * expect all vertices before the edges that refer to them; close() completes the document and closes the underlying
+ * stream.
+ */
+public interface GraphElementWriter extends Closeable {
+
+  void writeVertex( Object id, Map<String, Object> properties ) throws IOException;
+
+  void writeEdge( Object id, Object outId, Object inId, String label, Map<String, Object> properties )
+    throws IOException;
+}
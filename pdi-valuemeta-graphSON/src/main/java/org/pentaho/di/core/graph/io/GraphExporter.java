@@ -0,0 +1,88 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+/**
+ * Writes whole graphs through a {@link GraphElementWriter}, all vertices first, so the graph is never turned into one
+ * big string or byte array.
+ */
+public class GraphExporter {
+
+  private GraphExporter() {
+  }
+
+  public static void export( Graph graph, GraphElementWriter writer ) throws IOException {
+    if ( graph instanceof CsrGraph ) {
+      export( (CsrGraph) graph, writer );
+      return;
+    }
+    for ( Vertex vertex : graph.getVertices() ) {
+      writer.writeVertex( vertex.getId(), ElementHelper.getProperties( vertex ) );
+    }
+    for ( Edge edge : graph.getEdges() ) {
+      writer.writeEdge( edge.getId(), edge.getVertex( Direction.OUT ).getId(), edge.getVertex( Direction.IN ).getId(),
+          edge.getLabel(), ElementHelper.getProperties( edge ) );
+    }
+  }
+
+  /**
+   * Walks the arrays of a CsrGraph directly instead of creating Vertex and Edge objects for it.
+   */
+  private static void export( CsrGraph graph, GraphElementWriter writer ) throws IOException {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    for ( int v = 0; v < graph.getVertexCount(); v++ ) {
+      properties.clear();
+      for ( String key : graph.getVertexPropertyKeys() ) {
+        Object value = graph.getVertexProperty( v, key );
+        if ( value != null ) {
+          properties.put( key, value );
+        }
+      }
+      writer.writeVertex( graph.getVertexId( v ), properties );
+    }
+    for ( int e = 0; e < graph.getEdgeCount(); e++ ) {
+      properties.clear();
+      for ( String key : graph.getEdgePropertyKeys() ) {
+        Object value = graph.getEdgeProperty( e, key );
+        if ( value != null ) {
+          properties.put( key, value );
+        }
+      }
+      writer.writeEdge( graph.getEdgeId( e ), graph.getVertexId( graph.getSource( e ) ), graph.getVertexId( graph
+          .getTarget( e ) ), graph.getLabel( graph.getLabelIndex( e ) ), properties );
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+import org.pentaho.di.core.graph.PropertyDictionary;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Builds graphs from the elements of a {@link GraphElementReader}. Edges may come before the vertices they refer to;
+ * such vertices are created without properties and get them when their own element comes along.
+ */
+public class GraphLoader {
+
+  private GraphLoader() {
+  }
+
+  /**
+   * Reads all remaining elements into a compact, read-only graph.
+   */
+  public static CsrGraph loadCsr( GraphElementReader reader ) throws IOException {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    while ( reader.next() ) {
+      if ( reader.isVertex() ) {
+        int vertex = builder.getOrAddVertex( reader.getId() );
+        for ( Map.Entry<String, Object> property : reader.getProperties().entrySet() ) {
+          builder.setVertexProperty( vertex, property.getKey(), property.getValue() );
+        }
+      } else {
+        int edge =
+            builder.addEdge( reader.getId(), builder.getOrAddVertex( reader.getOutId() ), builder.getOrAddVertex( reader
+                .getInId() ), reader.getLabel() );
+        for ( Map.Entry<String, Object> property : reader.getProperties().entrySet() ) {
+          builder.setEdgeProperty( edge, property.getKey(), property.getValue() );
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Reads all remaining elements into the given (mutable) graph. String values of low-cardinality property keys are
+   * shared between elements through a {@link PropertyDictionary}.
+   */
+  public static void load( GraphElementReader reader, Graph graph ) throws IOException {
+    PropertyDictionary dictionary = new PropertyDictionary();
+    while ( reader.next() ) {
+      if ( reader.isVertex() ) {
+        Vertex vertex = vertex( graph, reader.getId() );
+        for ( Map.Entry<String, Object> property : reader.getProperties().entrySet() ) {
+          vertex.setProperty( property.getKey(), dictionary.encode( property.getKey(), property.getValue() ) );
+        }
+      } else {
+        Vertex out = vertex( graph, reader.getOutId() );
+        Vertex in = vertex( graph, reader.getInId() );
+        Edge edge = graph.addEdge( reader.getId(), out, in, reader.getLabel() );
+        for ( Map.Entry<String, Object> property : reader.getProperties().entrySet() ) {
+          edge.setProperty( property.getKey(), dictionary.encode( property.getKey(), property.getValue() ) );
+        }
+      }
+    }
+  }
+
+  private static Vertex vertex( Graph graph, Object id ) {
+    Vertex vertex = graph.getVertex( id );
+    return vertex == null ? graph.addVertex( id ) : vertex;
+  }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
+
+/**
+ * Streams the elements of a GraphSON document as written by the Blueprints GraphSONWriter. The document is walked
+ * with a streaming parser and only the element being read is turned into a tree, so memory use does not depend on the
+ * size of the file. Properties are read as in NORMAL and COMPACT mode unless the document declares EXTENDED mode
+ * before its elements, in which case the embedded types are honoured.
+ */
+public class GraphSONElementReader implements GraphElementReader {
+
+  private static final int NONE = 0;
+  private static final int VERTICES = 1;
+  private static final int EDGES = 2;
+
+  private final JsonParser parser;
+  private boolean extended;
+  private int section = NONE;
+  private boolean done;
+
+  private boolean vertex;
+  private Object id;
+  private Object outId;
+  private Object inId;
+  private String label;
+  private Map<String, Object> properties = Collections.emptyMap();
+
+  public GraphSONElementReader( InputStream in ) throws IOException {
+    parser = new MappingJsonFactory().createParser( in );
+    if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+      throw new IOException( "A GraphSON document must be a JSON object" );
+    }
+  }
+
+  public boolean next() throws IOException {
+    while ( !done ) {
+      JsonToken token = parser.nextToken();
+      if ( section != NONE ) {
+        if ( token == JsonToken.START_OBJECT ) {
+          readElement( parser.<JsonNode> readValueAsTree(), section == VERTICES );
+          return true;
+        }
+        if ( token != JsonToken.END_ARRAY ) {
+          throw new IOException( "Expected a GraphSON element but found " + token );
+        }
+        section = NONE;
+      } else if ( token == null || token == JsonToken.END_OBJECT ) {
+        done = true;
+      } else {
+        String name = parser.getCurrentName();
+        token = parser.nextToken();
+        if ( GraphSONTokens.MODE.equals( name ) ) {
+          extended = GraphSONMode.EXTENDED.name().equals( parser.getText() );
+        } else if ( token == JsonToken.START_ARRAY && GraphSONTokens.VERTICES.equals( name ) ) {
+          section = VERTICES;
+        } else if ( token == JsonToken.START_ARRAY && GraphSONTokens.EDGES.equals( name ) ) {
+          section = EDGES;
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return false;
+  }
+
+  private void readElement( JsonNode node, boolean isVertex ) {
+    vertex = isVertex;
+    id = readValue( node.get( GraphSONTokens._ID ), false );
+    outId = isVertex ? null : readValue( node.get( GraphSONTokens._OUT_V ), false );
+    inId = isVertex ? null : readValue( node.get( GraphSONTokens._IN_V ), false );
+    label = isVertex ? null : node.path( GraphSONTokens._LABEL ).asText();
+    properties = readProperties( node, extended );
+  }
+
+  /**
+   * @return the properties of a GraphSON element, that is all of its fields except the reserved ones. Null values are
+   *         left out, as Blueprints graphs do not accept them and the GraphSONReader skips them too.
+   */
+  static Map<String, Object> readProperties( JsonNode node, boolean typed ) {
+    Map<String, Object> properties = new LinkedHashMap<String, Object>();
+    for ( Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+      Map.Entry<String, JsonNode> field = it.next();
+      String key = field.getKey();
+      if ( !key.equals( GraphSONTokens._ID ) && !key.equals( GraphSONTokens._TYPE )
+          && !key.equals( GraphSONTokens._OUT_V ) && !key.equals( GraphSONTokens._IN_V )
+          && !key.equals( GraphSONTokens._LABEL ) ) {
+        Object value = readValue( field.getValue(), typed );
+        if ( value != null ) {
+          properties.put( key, value );
+        }
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Converts a JSON value to the Java value the Blueprints GraphSONReader would have set as property.
+   */
+  static Object readValue( JsonNode node, boolean typed ) {
+    if ( node == null || node.isNull() ) {
+      return null;
+    }
+    if ( typed && node.isObject() && node.has( GraphSONTokens.TYPE ) ) {
+      return readTypedValue( node.get( GraphSONTokens.TYPE ).asText(), node.get( GraphSONTokens.VALUE ) );
+    }
+    if ( node.isTextual() ) {
+      return node.textValue();
+    }
+    if ( node.isInt() ) {
+      return Integer.valueOf( node.intValue() );
+    }
+    if ( node.isIntegralNumber() ) {
+      return Long.valueOf( node.longValue() );
+    }
+    if ( node.isNumber() ) {
+      return Double.valueOf( node.doubleValue() );
+    }
+    if ( node.isBoolean() ) {
+      return Boolean.valueOf( node.booleanValue() );
+    }
+    if ( node.isArray() ) {
+      List<Object> list = new ArrayList<Object>( node.size() );
+      for ( JsonNode item : node ) {
+        list.add( readValue( item, typed ) );
+      }
+      return list;
+    }
+    if ( node.isObject() ) {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      for ( Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = it.next();
+        map.put( field.getKey(), readValue( field.getValue(), typed ) );
+      }
+      return map;
+    }
+    return node.asText();
+  }
+
+  private static Object readTypedValue( String type, JsonNode value ) {
+    if ( value == null || value.isNull() ) {
+      return null;
+    }
+    if ( GraphSONTokens.TYPE_STRING.equals( type ) ) {
+      return value.asText();
+    } else if ( GraphSONTokens.TYPE_INTEGER.equals( type ) ) {
+      return Integer.valueOf( value.asInt() );
+    } else if ( GraphSONTokens.TYPE_LONG.equals( type ) ) {
+      return Long.valueOf( value.asLong() );
+    } else if ( GraphSONTokens.TYPE_SHORT.equals( type ) ) {
+      return Short.valueOf( (short) value.asInt() );
+    } else if ( GraphSONTokens.TYPE_BYTE.equals( type ) ) {
+      return Byte.valueOf( (byte) value.asInt() );
+    } else if ( GraphSONTokens.TYPE_FLOAT.equals( type ) ) {
+      return Float.valueOf( (float) value.asDouble() );
+    } else if ( GraphSONTokens.TYPE_DOUBLE.equals( type ) ) {
+      return Double.valueOf( value.asDouble() );
+    } else if ( GraphSONTokens.TYPE_BOOLEAN.equals( type ) ) {
+      return Boolean.valueOf( value.asBoolean() );
+    }
+    // lists, maps and unknown types hold (typed) JSON values
+    return readValue( value, true );
+  }
+
+  public boolean isVertex() {
+    return vertex;
+  }
+
+  public Object getId() {
+    return id;
+  }
+
+  public Object getOutId() {
+    return outId;
+  }
+
+  public Object getInId() {
+    return inId;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public Map<String, Object> getProperties() {
+    return properties;
+  }
+
+  public void close() throws IOException {
+    parser.close();
+  }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
+
+/**
+ * Writes a GraphSON document the Blueprints GraphSONReader can read, one element at a time through a streaming JSON
+ * generator. Vertices should be written before edges; a vertex written after the first edge starts another "vertices"
+ * list, which streaming readers such as {@link GraphSONElementReader} accept.
+ */
+public class GraphSONElementWriter implements GraphElementWriter {
+
+  private static final int NONE = 0;
+  private static final int VERTICES = 1;
+  private static final int EDGES = 2;
+
+  private final JsonGenerator generator;
+  private final boolean extended;
+  private int section = NONE;
+
+  /**
+   * @param mode
+   *          NORMAL writes plain JSON values, EXTENDED adds the type of each property value
+   */
+  public GraphSONElementWriter( OutputStream out, GraphSONMode mode ) throws IOException {
+    generator = new MappingJsonFactory().createGenerator( out, JsonEncoding.UTF8 );
+    extended = mode == GraphSONMode.EXTENDED;
+    generator.writeStartObject();
+    generator.writeStringField( GraphSONTokens.MODE, extended ? GraphSONMode.EXTENDED.name() : GraphSONMode.NORMAL
+        .name() );
+  }
+
+  private void section( int wanted ) throws IOException {
+    if ( section != wanted ) {
+      if ( section != NONE ) {
+        generator.writeEndArray();
+      }
+      generator.writeArrayFieldStart( wanted == VERTICES ? GraphSONTokens.VERTICES : GraphSONTokens.EDGES );
+      section = wanted;
+    }
+  }
+
+  public void writeVertex( Object id, Map<String, Object> properties ) throws IOException {
+    section( VERTICES );
+    generator.writeStartObject();
+    writeProperties( properties );
+    generator.writeObjectField( GraphSONTokens._ID, id );
+    generator.writeStringField( GraphSONTokens._TYPE, GraphSONTokens.VERTEX );
+    generator.writeEndObject();
+  }
+
+  public void writeEdge( Object id, Object outId, Object inId, String label, Map<String, Object> properties )
+    throws IOException {
+    section( EDGES );
+    generator.writeStartObject();
+    writeProperties( properties );
+    if ( id != null ) {
+      generator.writeObjectField( GraphSONTokens._ID, id );
+    }
+    generator.writeStringField( GraphSONTokens._TYPE, GraphSONTokens.EDGE );
+    generator.writeObjectField( GraphSONTokens._OUT_V, outId );
+    generator.writeObjectField( GraphSONTokens._IN_V, inId );
+    generator.writeStringField( GraphSONTokens._LABEL, label );
+    generator.writeEndObject();
+  }
+
+  private void writeProperties( Map<String, Object> properties ) throws IOException {
+    for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+      if ( property.getValue() != null ) {
+        generator.writeFieldName( property.getKey() );
+        writeValue( property.getValue() );
+      }
+    }
+  }
+
+  private void writeValue( Object value ) throws IOException {
+    if ( !extended ) {
+      generator.writeObject( value );
+      return;
+    }
+    generator.writeStartObject();
+    generator.writeStringField( GraphSONTokens.TYPE, typeOf( value ) );
+    generator.writeFieldName( GraphSONTokens.VALUE );
+    if ( value instanceof List ) {
+      generator.writeStartArray();
+      for ( Object item : (List<?>) value ) {
+        writeValue( item );
+      }
+      generator.writeEndArray();
+    } else if ( value instanceof Map ) {
+      generator.writeStartObject();
+      for ( Map.Entry<?, ?> entry : ( (Map<?, ?>) value ).entrySet() ) {
+        generator.writeFieldName( String.valueOf( entry.getKey() ) );
+        writeValue( entry.getValue() );
+      }
+      generator.writeEndObject();
+    } else if ( value instanceof String || value instanceof Number || value instanceof Boolean ) {
+      generator.writeObject( value );
+    } else {
+      generator.writeString( String.valueOf( value ) );
+    }
+    generator.writeEndObject();
+  }
+
+  private static String typeOf( Object value ) {
+    if ( value == null ) {
+      return GraphSONTokens.TYPE_UNKNOWN;
+    } else if ( value instanceof String ) {
+      return GraphSONTokens.TYPE_STRING;
+    } else if ( value instanceof Integer ) {
+      return GraphSONTokens.TYPE_INTEGER;
+    } else if ( value instanceof Long ) {
+      return GraphSONTokens.TYPE_LONG;
+    } else if ( value instanceof Double ) {
+      return GraphSONTokens.TYPE_DOUBLE;
+    } else if ( value instanceof Float ) {
+      return GraphSONTokens.TYPE_FLOAT;
+    } else if ( value instanceof Boolean ) {
+      return GraphSONTokens.TYPE_BOOLEAN;
+    } else if ( value instanceof Short ) {
+      return GraphSONTokens.TYPE_SHORT;
+    } else if ( value instanceof Byte ) {
+      return GraphSONTokens.TYPE_BYTE;
+    } else if ( value instanceof List ) {
+      return GraphSONTokens.TYPE_LIST;
+    } else if ( value instanceof Map ) {
+      return GraphSONTokens.TYPE_MAP;
+    }
+    return GraphSONTokens.TYPE_UNKNOWN;
+  }
+
+  public void close() throws IOException {
+    if ( section != NONE ) {
+      generator.writeEndArray();
+    }
+    generator.writeEndObject();
+    generator.close();
+  }
+}
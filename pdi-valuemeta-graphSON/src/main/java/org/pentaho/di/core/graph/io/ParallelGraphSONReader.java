@@ -0,0 +1,453 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
+
+/**
+ * Reads the same elements as {@link GraphSONElementReader}, in the same order, but parses them on several threads.
+ * <p>
+ * The calling thread only scans the raw bytes of the document for the boundaries of the elements in the vertices and
+ * edges arrays, which is much cheaper than tokenizing them, and cuts the elements into chunks of about
+ * {@link #DEFAULT_CHUNK_SIZE} bytes. The chunks are parsed into elements by the executor while the caller scans ahead
+ * and consumes the elements of earlier chunks, such as {@link GraphLoader} adding them to a graph on a single thread.
+ * At most two chunks per thread are in flight, so memory use does not depend on the size of the document.
+ */
+public class ParallelGraphSONReader implements GraphElementReader {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private static final int NONE = 0;
+  private static final int VERTICES = 1;
+  private static final int EDGES = 2;
+
+  private static final MappingJsonFactory FACTORY = new MappingJsonFactory();
+
+  private final InputStream in;
+  private final ExecutorService executor;
+  private final int maxPending;
+  private final int chunkSize;
+
+  private final byte[] buffer = new byte[64 * 1024];
+  private int position;
+  private int limit;
+
+  private byte[] chunk = new byte[1024];
+  private int chunkLength;
+
+  private boolean extended;
+  private int section = NONE;
+  private boolean done;
+
+  private final LinkedList<Future<List<Element>>> pending = new LinkedList<Future<List<Element>>>();
+  private List<Element> elements = Collections.emptyList();
+  private int next;
+  private Element current;
+
+  /**
+   * @param executor
+   *          the threads to parse on, or null to parse on the caller's thread
+   * @param parallelism
+   *          the number of threads of the executor
+   */
+  public ParallelGraphSONReader( InputStream in, ExecutorService executor, int parallelism ) throws IOException {
+    this( in, executor, parallelism, DEFAULT_CHUNK_SIZE );
+  }
+
+  public ParallelGraphSONReader( InputStream in, ExecutorService executor, int parallelism, int chunkSize )
+    throws IOException {
+    this.in = in;
+    this.executor = executor;
+    this.maxPending = executor == null ? 1 : 2 * Math.max( 1, parallelism );
+    this.chunkSize = chunkSize;
+    if ( skipWhitespace() != '{' ) {
+      throw new IOException( "A GraphSON document must be a JSON object" );
+    }
+  }
+
+  public boolean next() throws IOException {
+    while ( next >= elements.size() ) {
+      while ( pending.size() < maxPending && cutChunk() ) {
+        submit();
+      }
+      if ( pending.isEmpty() ) {
+        current = null;
+        return false;
+      }
+      elements = take( pending.removeFirst() );
+      next = 0;
+    }
+    current = elements.get( next );
+    elements.set( next++, null ); // consumed elements can be collected before the rest of the chunk
+    return true;
+  }
+
+  private void submit() {
+    final byte[] bytes = Arrays.copyOf( chunk, chunkLength );
+    final boolean vertices = chunk[0] == 'v';
+    final boolean typed = extended;
+    Callable<List<Element>> parse = new Callable<List<Element>>() {
+      public List<Element> call() throws IOException {
+        return parse( bytes, vertices, typed );
+      }
+    };
+    if ( executor == null ) {
+      pending.add( new ImmediateFuture( parse ) );
+    } else {
+      pending.add( executor.submit( parse ) );
+    }
+  }
+
+  private static List<Element> take( Future<List<Element>> future ) throws IOException {
+    try {
+      return future.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while parsing GraphSON" );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException( "Unable to parse GraphSON", e.getCause() );
+    }
+  }
+
+  /**
+   * Parses a chunk: a section marker byte ('v' or 'e') followed by a JSON array of elements.
+   */
+  static List<Element> parse( byte[] bytes, boolean vertices, boolean typed ) throws IOException {
+    List<Element> parsed = new ArrayList<Element>();
+    JsonParser parser = FACTORY.createParser( bytes, 1, bytes.length - 1 );
+    try {
+      if ( parser.nextToken() != JsonToken.START_ARRAY ) {
+        throw new IOException( "Expected an array of GraphSON elements" );
+      }
+      for ( JsonToken token = parser.nextToken(); token == JsonToken.START_OBJECT; token = parser.nextToken() ) {
+        JsonNode node = parser.readValueAsTree();
+        Element element = new Element();
+        element.vertex = vertices;
+        element.id = GraphSONElementReader.readValue( node.get( GraphSONTokens._ID ), false );
+        if ( !vertices ) {
+          element.outId = GraphSONElementReader.readValue( node.get( GraphSONTokens._OUT_V ), false );
+          element.inId = GraphSONElementReader.readValue( node.get( GraphSONTokens._IN_V ), false );
+          element.label = node.path( GraphSONTokens._LABEL ).asText();
+        }
+        element.properties = GraphSONElementReader.readProperties( node, typed );
+        parsed.add( element );
+      }
+    } finally {
+      parser.close();
+    }
+    return parsed;
+  }
+
+  /**
+   * Copies the next elements of the current array, or of the next vertices or edges array, into the chunk buffer. A
+   * chunk never spans two arrays, so all of its elements are of one kind.
+   * 
+   * @return false at the end of the document
+   */
+  private boolean cutChunk() throws IOException {
+    chunkLength = 0;
+    int count = 0;
+    while ( count == 0 || chunkLength < chunkSize ) {
+      if ( section == NONE && !nextSection() ) {
+        break;
+      }
+      if ( count == 0 ) {
+        append( section == VERTICES ? 'v' : 'e' );
+        append( '[' );
+      }
+      int c = skipWhitespace();
+      if ( c == ',' ) {
+        c = skipWhitespace();
+      }
+      if ( c == ']' ) {
+        if ( count > 0 ) {
+          section = NONE;
+          break;
+        }
+        // an empty array
+        section = NONE;
+        chunkLength = 0;
+        continue;
+      }
+      if ( c != '{' ) {
+        throw new IOException( "Expected a GraphSON element but found " + describe( c ) );
+      }
+      if ( count > 0 ) {
+        append( ',' );
+      }
+      append( '{' );
+      scanNested( true );
+      count++;
+    }
+    if ( count == 0 ) {
+      return false;
+    }
+    append( ']' );
+    return true;
+  }
+
+  /**
+   * Skips the members of the top level object up to the next vertices or edges array, remembering the mode on the way.
+   * 
+   * @return false at the end of the document
+   */
+  private boolean nextSection() throws IOException {
+    while ( !done ) {
+      int c = skipWhitespace();
+      if ( c == ',' ) {
+        c = skipWhitespace();
+      }
+      if ( c == '}' || c < 0 ) {
+        done = true;
+        break;
+      }
+      if ( c != '"' ) {
+        throw new IOException( "Expected a member name but found " + describe( c ) );
+      }
+      String name = readString();
+      if ( skipWhitespace() != ':' ) {
+        throw new IOException( "Expected ':' after member " + name );
+      }
+      c = skipWhitespace();
+      if ( c == '[' && GraphSONTokens.VERTICES.equals( name ) ) {
+        section = VERTICES;
+        return true;
+      } else if ( c == '[' && GraphSONTokens.EDGES.equals( name ) ) {
+        section = EDGES;
+        return true;
+      } else if ( c == '"' ) {
+        String value = readString();
+        if ( GraphSONTokens.MODE.equals( name ) ) {
+          extended = GraphSONMode.EXTENDED.name().equals( value );
+        }
+      } else if ( c == '{' || c == '[' ) {
+        scanNested( false );
+      } else {
+        // a number, boolean or null runs up to the next separator
+        while ( c >= 0 && c != ',' && c != '}' ) {
+          c = read();
+        }
+        if ( c >= 0 ) {
+          position--;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads up to the end of the object or array whose opening bracket has just been read, copying the bytes to the
+   * chunk if asked to.
+   */
+  private void scanNested( boolean copy ) throws IOException {
+    int depth = 1;
+    boolean inString = false;
+    boolean escaped = false;
+    while ( depth > 0 ) {
+      int c = read();
+      if ( c < 0 ) {
+        throw new IOException( "Unexpected end of GraphSON document" );
+      }
+      if ( copy ) {
+        append( c );
+      }
+      if ( inString ) {
+        if ( escaped ) {
+          escaped = false;
+        } else if ( c == '\\' ) {
+          escaped = true;
+        } else if ( c == '"' ) {
+          inString = false;
+        }
+      } else if ( c == '"' ) {
+        inString = true;
+      } else if ( c == '{' || c == '[' ) {
+        depth++;
+      } else if ( c == '}' || c == ']' ) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Reads the rest of a string whose opening quote has just been read. Escapes are kept as they are, which is enough
+   * for the member names and mode values this is used for.
+   */
+  private String readString() throws IOException {
+    int start = chunkLength;
+    boolean escaped = false;
+    for ( int c = read();; c = read() ) {
+      if ( c < 0 ) {
+        throw new IOException( "Unexpected end of GraphSON document" );
+      }
+      if ( !escaped && c == '"' ) {
+        break;
+      }
+      escaped = !escaped && c == '\\';
+      append( c );
+    }
+    String value = new String( chunk, start, chunkLength - start, "UTF-8" );
+    chunkLength = start;
+    return value;
+  }
+
+  private int skipWhitespace() throws IOException {
+    int c = read();
+    while ( c == ' ' || c == '\n' || c == '\r' || c == '\t' ) {
+      c = read();
+    }
+    return c;
+  }
+
+  private int read() throws IOException {
+    if ( position == limit ) {
+      limit = in.read( buffer, 0, buffer.length );
+      position = 0;
+      if ( limit <= 0 ) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  private void append( int c ) {
+    if ( chunkLength == chunk.length ) {
+      chunk = Arrays.copyOf( chunk, chunk.length * 2 );
+    }
+    chunk[chunkLength++] = (byte) c;
+  }
+
+  private static String describe( int c ) {
+    return c < 0 ? "the end of the document" : "'" + (char) c + "'";
+  }
+
+  public boolean isVertex() {
+    return current.vertex;
+  }
+
+  public Object getId() {
+    return current.id;
+  }
+
+  public Object getOutId() {
+    return current.outId;
+  }
+
+  public Object getInId() {
+    return current.inId;
+  }
+
+  public String getLabel() {
+    return current.label;
+  }
+
+  public Map<String, Object> getProperties() {
+    return current.properties;
+  }
+
+  /**
+   * Stops parsing the chunks that are still pending and closes the input. The executor belongs to the caller and is
+   * left running.
+   */
+  public void close() throws IOException {
+    for ( Future<List<Element>> future : pending ) {
+      future.cancel( true );
+    }
+    pending.clear();
+    in.close();
+  }
+
+  static class Element {
+    boolean vertex;
+    Object id;
+    Object outId;
+    Object inId;
+    String label;
+    Map<String, Object> properties;
+  }
+
+  /**
+   * Runs a parse on the caller's thread when there is no executor.
+   */
+  private static class ImmediateFuture implements Future<List<Element>> {
+    private List<Element> result;
+    private ExecutionException failure;
+
+    ImmediateFuture( Callable<List<Element>> callable ) {
+      try {
+        result = callable.call();
+      } catch ( Exception e ) {
+        failure = new ExecutionException( e );
+      }
+    }
+
+    public List<Element> get() throws ExecutionException {
+      if ( failure != null ) {
+        throw failure;
+      }
+      return result;
+    }
+
+    public List<Element> get( long timeout, TimeUnit unit ) throws ExecutionException {
+      return get();
+    }
+
+    public boolean cancel( boolean mayInterruptIfRunning ) {
+      return false;
+    }
+
+    public boolean isCancelled() {
+      return false;
+    }
+
+    public boolean isDone() {
+      return true;
+    }
+  }
+}
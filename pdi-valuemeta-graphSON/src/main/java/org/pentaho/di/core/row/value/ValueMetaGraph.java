@@ -5,16 +5,27 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.PushbackInputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.net.SocketTimeoutException;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleEOFException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.graph.GraphSnapshot;
+import org.pentaho.di.core.graph.GraphStatistics;
+import org.pentaho.di.core.graph.MappedCsrGraph;
+import org.pentaho.di.core.graph.algorithms.VertexRanges;
+import org.pentaho.di.core.graph.io.DictionaryGraphCodec;
+import org.pentaho.di.core.graph.io.GraphLoader;
+import org.pentaho.di.core.graph.io.GraphSONElementReader;
+import org.pentaho.di.core.graph.io.ParallelGraphSONReader;
 import org.pentaho.di.core.row.ValueMetaInterface;
 
 import com.tinkerpop.blueprints.Graph;
@@ -27,6 +38,27 @@ public class ValueMetaGraph extends ValueMetaBase {
 
   public static final int TYPE_GRAPH = 47274; // Value is "GRAPH" on a phone keypad
 
+  /**
+   * Marks a serialized value that only refers to a graph snapshot directory. GraphSON never starts with this byte, so
+   * data written before snapshots existed is still read as GraphSON.
+   */
+  private static final int SNAPSHOT_REFERENCE = 1;
+
+  /**
+   * Marks a serialized value holding the whole graph with its repeated strings dictionary encoded (see
+   * {@link DictionaryGraphCodec}).
+   */
+  private static final int DICTIONARY_ENCODED = 2;
+
+  /**
+   * GraphSON strings of at least this many characters are parsed on all processors; for smaller ones starting the
+   * threads costs more than it saves.
+   */
+  static final int PARALLEL_PARSE_THRESHOLD = 8 * 1024 * 1024;
+
+  /** GraphSON strings are converted to and from the bytes Jackson reads and writes in this encoding */
+  private static final String GRAPHSON_CHARSET = "UTF-8";
+
   public ValueMetaGraph() {
     this( null );
   }
@@ -111,7 +143,12 @@ public class ValueMetaGraph extends ValueMetaBase {
             case STORAGE_TYPE_NORMAL:
               return convertStringToGraph( (String) object );
             case STORAGE_TYPE_BINARY_STRING:
-              return convertStringToGraph( (String) convertBinaryStringToNativeType( (byte[]) object ) );
+              // The native conversion goes through convertData(), which may already have built the graph
+              Object nativeValue = convertBinaryStringToNativeType( (byte[]) object );
+              if ( nativeValue instanceof Graph ) {
+                return (Graph) nativeValue;
+              }
+              return convertStringToGraph( (String) nativeValue );
             case STORAGE_TYPE_INDEXED:
               return convertStringToGraph( (String) index[( (Integer) object ).intValue()] );
             default:
@@ -139,6 +176,14 @@ public class ValueMetaGraph extends ValueMetaBase {
     }
   }
 
+  /**
+   * @return the (cached) statistics of the graph value, or null for a null value
+   */
+  public GraphStatistics getStatistics( Object object ) throws KettleValueException {
+    Graph graph = getGraph( object );
+    return graph == null ? null : GraphStatistics.of( graph );
+  }
+
   protected Graph convertStringToGraph( String graphString ) throws KettleValueException {
     if ( graphString == null ) {
       return null;
@@ -151,8 +196,19 @@ public class ValueMetaGraph extends ValueMetaBase {
       // Graph implementation is the TinkerGraph
       baseGraph = (Graph) new TinkerGraph();
 
-      if ( !Const.isEmpty( graphString ) ) {
-        GraphSONReader.inputGraph( baseGraph, new ByteArrayInputStream( graphString.getBytes() ) );
+      int parallelism = VertexRanges.resolveParallelism( 0 );
+      if ( graphString.length() >= PARALLEL_PARSE_THRESHOLD && parallelism > 1 ) {
+        ExecutorService executor = VertexRanges.newExecutor( "GraphSON", parallelism );
+        try {
+          GraphLoader.load( new ParallelGraphSONReader( new ByteArrayInputStream( graphString
+              .getBytes( GRAPHSON_CHARSET ) ), executor, parallelism ), baseGraph );
+        } finally {
+          executor.shutdownNow();
+        }
+      } else if ( !Const.isEmpty( graphString ) ) {
+        // The loader shares the String values of low-cardinality keys as it goes, without a second pass
+        GraphLoader.load( new GraphSONElementReader( new ByteArrayInputStream( graphString
+            .getBytes( GRAPHSON_CHARSET ) ) ), baseGraph );
       }
       return baseGraph;
     } catch ( UnsupportedEncodingException uee ) {
@@ -166,7 +222,7 @@ public class ValueMetaGraph extends ValueMetaBase {
     try {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       GraphSONWriter.outputGraph( graph, baos );
-      return baos.toString();
+      return baos.toString( GRAPHSON_CHARSET );
     } catch ( Exception e ) {
       throw new KettleValueException( e );
     }
@@ -184,8 +240,24 @@ public class ValueMetaGraph extends ValueMetaBase {
       switch ( storageType ) {
         case STORAGE_TYPE_NORMAL:
           // Handle Content -- only when not NULL
+          PushbackInputStream content = new PushbackInputStream( inputStream );
+          int first = content.read();
+          if ( first == SNAPSHOT_REFERENCE ) {
+            // the graph is on disk already, so just map it again
+            return GraphSnapshot.open( new File( new DataInputStream( content ).readUTF() ) );
+          }
+          if ( first == DICTIONARY_ENCODED ) {
+            Graph graph = new TinkerGraph();
+            DictionaryGraphCodec.read( new DataInputStream( content ), graph );
+            return graph;
+          }
+          if ( first < 0 ) {
+            throw new EOFException();
+          }
+          // values written before dictionary encoding are GraphSON
+          content.unread( first );
           Graph graph = new TinkerGraph();
-          GraphSONReader.inputGraph( graph, inputStream );
+          GraphSONReader.inputGraph( graph, content );
           return graph;
 
         case STORAGE_TYPE_BINARY_STRING:
@@ -216,7 +288,14 @@ public class ValueMetaGraph extends ValueMetaBase {
         switch ( storageType ) {
           case STORAGE_TYPE_NORMAL:
             // Handle Content -- only when not NULL
-            GraphSONWriter.outputGraph( (Graph) object, outputStream );
+            if ( object instanceof MappedCsrGraph ) {
+              // A snapshot can be reopened from its directory, so there is no need to copy the whole graph
+              outputStream.writeByte( SNAPSHOT_REFERENCE );
+              outputStream.writeUTF( ( (MappedCsrGraph) object ).getDirectory().getAbsolutePath() );
+            } else {
+              outputStream.writeByte( DICTIONARY_ENCODED );
+              DictionaryGraphCodec.write( (Graph) object, outputStream );
+            }
             break;
 
           case STORAGE_TYPE_BINARY_STRING:
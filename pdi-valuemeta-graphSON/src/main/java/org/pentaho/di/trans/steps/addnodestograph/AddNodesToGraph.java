@@ -22,13 +22,19 @@
 
 package org.pentaho.di.trans.steps.addnodestograph;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Map;
 
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.GraphStatistics;
+import org.pentaho.di.core.graph.SpillGraph;
 import org.pentaho.di.core.row.value.ValueMetaGraph;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransAdapter;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -97,6 +103,12 @@ public class AddNodesToGraph extends BaseStep implements StepInterface {
 
     ValueMetaGraph vmg = (ValueMetaGraph) data.outputRowMeta.getValueMeta( graphFieldIndex );
     Graph g = vmg.getGraph( r[graphFieldIndex] );
+    if ( g == null ) {
+      if ( !meta.isCreatingGraph() ) {
+        throw new KettleException( BaseMessages.getString( PKG, "AddNodesToGraph.Error.NullGraph" ) );
+      }
+      g = getSpillGraph();
+    }
 
     // Need to use reflection here, Kettle plugins are isolated
     Method findPluginWithName = null;
@@ -125,6 +137,7 @@ public class AddNodesToGraph extends BaseStep implements StepInterface {
       @SuppressWarnings( "unchecked" )
       Map<Object, Object> map = (Map<Object, Object>) getMap.invoke( vmm, r[mapFieldIndex] );
       Vertex v = g.addVertex( null );
+      GraphStatistics.vertexAdded( g );
       for ( Map.Entry<Object, Object> entry : map.entrySet() ) {
         v.setProperty( entry.getKey().toString(), entry.getValue() );
       }
@@ -144,4 +157,32 @@ public class AddNodesToGraph extends BaseStep implements StepInterface {
 
     return true;
   }
+
+  /**
+   * Returns the spill-to-disk graph that collects the nodes of rows without a graph, starting it on first use. Its
+   * working file lives until the transformation finishes, as rows carrying the graph may still be waiting for later
+   * steps when this step is disposed.
+   */
+  private SpillGraph getSpillGraph() throws KettleException {
+    if ( data.spillGraph == null ) {
+      String directory = environmentSubstitute( meta.getSpillDirectory() );
+      int cacheSize = Const.toInt( environmentSubstitute( meta.getCacheSize() ), SpillGraph.DEFAULT_CACHE_SIZE );
+      try {
+        data.spillGraph = new SpillGraph( Const.isEmpty( directory ) ? null : new File( directory ), cacheSize );
+      } catch ( IOException ioe ) {
+        throw new KettleException( BaseMessages.getString( PKG, "AddNodesToGraph.Error.CouldNotCreateGraph" ), ioe );
+      }
+      final SpillGraph spillGraph = data.spillGraph;
+      getTrans().addTransListener( new TransAdapter() {
+        @Override
+        public void transFinished( Trans trans ) {
+          spillGraph.shutdown();
+        }
+      } );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "AddNodesToGraph.Log.CreatedGraph", String.valueOf( cacheSize ) ) );
+      }
+    }
+    return data.spillGraph;
+  }
 }
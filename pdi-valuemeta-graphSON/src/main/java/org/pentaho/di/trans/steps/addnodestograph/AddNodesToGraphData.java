@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.addnodestograph;
 
+import org.pentaho.di.core.graph.SpillGraph;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -35,6 +36,9 @@ public class AddNodesToGraphData extends BaseStepData implements StepDataInterfa
 {
 
   public RowMetaInterface outputRowMeta;
+
+  /** Graph started by this step for rows whose graph field is empty, shared by all such rows */
+  public SpillGraph spillGraph;
   
 	/**
 	 * 
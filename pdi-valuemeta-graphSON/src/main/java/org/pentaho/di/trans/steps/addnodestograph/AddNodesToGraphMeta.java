@@ -59,6 +59,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
 
   private String graphFieldName;
   private String mapFieldName;
+  private boolean creatingGraph;
+  private String spillDirectory;
+  private String cacheSize;
 
   public AddNodesToGraphMeta() {
     super(); // allocate BaseStepMeta
@@ -72,6 +75,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     AddNodesToGraphMeta retval = (AddNodesToGraphMeta) super.clone();
     retval.setGraphFieldName( this.getGraphFieldName() );
     retval.setMapFieldName( this.getMapFieldName() );
+    retval.setCreatingGraph( this.isCreatingGraph() );
+    retval.setSpillDirectory( this.getSpillDirectory() );
+    retval.setCacheSize( this.getCacheSize() );
     return retval;
   }
 
@@ -79,6 +85,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     try {
       this.setGraphFieldName( XMLHandler.getTagValue( stepnode, "graphfield" ) );
       this.setMapFieldName( XMLHandler.getTagValue( stepnode, "mapfield" ) );
+      this.setCreatingGraph( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "create_graph" ) ) );
+      this.setSpillDirectory( XMLHandler.getTagValue( stepnode, "spill_directory" ) );
+      this.setCacheSize( XMLHandler.getTagValue( stepnode, "cache_size" ) );
     } catch ( Exception e ) {
       throw new KettleXMLException(
           BaseMessages.getString( PKG, "AddNodesToGraphMeta.Exception.UnableToReadStepInfo" ), e );
@@ -88,6 +97,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
   public void setDefault() {
     this.setGraphFieldName( null );
     this.setMapFieldName( null );
+    this.setCreatingGraph( false );
+    this.setSpillDirectory( null );
+    this.setCacheSize( "100000" );
   }
 
   public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
@@ -95,6 +107,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     try {
       this.setGraphFieldName( rep.getStepAttributeString( id_step, "graphfield" ) );
       this.setMapFieldName( rep.getStepAttributeString( id_step, "mapfield" ) );
+      this.setCreatingGraph( rep.getStepAttributeBoolean( id_step, "create_graph" ) );
+      this.setSpillDirectory( rep.getStepAttributeString( id_step, "spill_directory" ) );
+      this.setCacheSize( rep.getStepAttributeString( id_step, "cache_size" ) );
 
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString( PKG,
@@ -107,6 +122,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     try {
       rep.saveStepAttribute( id_transformation, id_step, "graphfield", this.getGraphFieldName() );
       rep.saveStepAttribute( id_transformation, id_step, "mapfield", this.getMapFieldName() );
+      rep.saveStepAttribute( id_transformation, id_step, "create_graph", this.isCreatingGraph() );
+      rep.saveStepAttribute( id_transformation, id_step, "spill_directory", this.getSpillDirectory() );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_size", this.getCacheSize() );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString( PKG,
           "AddNodesToGraphMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
@@ -180,6 +198,9 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     StringBuffer retval = new StringBuffer();
     retval.append( "    " + XMLHandler.addTagValue( "graphfield", this.getGraphFieldName() ) );
     retval.append( "    " + XMLHandler.addTagValue( "mapfield", this.getMapFieldName() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "create_graph", this.isCreatingGraph() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "spill_directory", this.getSpillDirectory() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "cache_size", this.getCacheSize() ) );
     return retval.toString();
   }
 
@@ -191,4 +212,31 @@ public class AddNodesToGraphMeta extends BaseStepMeta implements StepMetaInterfa
     this.graphFieldName = graphFieldName;
   }
 
+  /**
+   * @return true if a spill-to-disk graph is started for rows whose graph field is empty
+   */
+  public boolean isCreatingGraph() {
+    return creatingGraph;
+  }
+
+  public void setCreatingGraph( boolean creatingGraph ) {
+    this.creatingGraph = creatingGraph;
+  }
+
+  public String getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  public void setSpillDirectory( String spillDirectory ) {
+    this.spillDirectory = spillDirectory;
+  }
+
+  public String getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize( String cacheSize ) {
+    this.cacheSize = cacheSize;
+  }
+
 }
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphapplychanges;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.GraphChangeApplier;
+import org.pentaho.di.core.graph.GraphMerger;
+import org.pentaho.di.core.graph.PropertyConflictPolicy;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.steps.graphfileinput.GraphFileInputMeta;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * Applies the change rows to the graph read from the info step, in place. The rows are collected in batches; each batch
+ * is applied and committed as a whole (or rolled back when a change fails on a transactional graph) before its rows go
+ * to the change log. A compact read-only graph is copied into a TinkerGraph once, since it cannot be changed.
+ */
+public class ApplyGraphChanges extends BaseStep implements StepInterface {
+  private static Class<?> PKG = ApplyGraphChangesMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private ApplyGraphChangesMeta meta;
+  private ApplyGraphChangesData data;
+
+  public ApplyGraphChanges( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (ApplyGraphChangesMeta) smi;
+    data = (ApplyGraphChangesData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    if ( meta.getStepIOMeta().getInfoStreams().get( 0 ).getStepMeta() == null ) {
+      logError( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.NoGraphStep" ) );
+      return false;
+    }
+    if ( meta.getStepIOMeta().getTargetStreams().get( 0 ).getStepMeta() == null ) {
+      logError( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.NoGraphTarget" ) );
+      return false;
+    }
+    data.batchSize = Math.max( 1, Const.toInt( environmentSubstitute( meta.getBatchSize() ), 1000 ) );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (ApplyGraphChangesMeta) smi;
+    data = (ApplyGraphChangesData) sdi;
+
+    if ( data.applier == null ) {
+      data.applier = new GraphChangeApplier( readGraph() );
+    }
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      applyBatch();
+      putGraph();
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.opIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getOpFieldName() ) );
+      if ( data.opIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.NotFound.OpField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+      data.typeIndex = indexOf( meta.getTypeFieldName() );
+      data.idIndex = indexOf( meta.getIdFieldName() );
+      data.outIdIndex = indexOf( meta.getOutIdFieldName() );
+      data.inIdIndex = indexOf( meta.getInIdFieldName() );
+      data.labelIndex = indexOf( meta.getLabelFieldName() );
+      data.propertiesIndex = indexOf( meta.getPropertiesFieldName() );
+
+      StepMeta changeLogStep = meta.getStepIOMeta().getTargetStreams().get( 1 ).getStepMeta();
+      if ( changeLogStep != null ) {
+        data.changeLogRowSet = findTargetRowSet( changeLogStep );
+        data.changeLogRowMeta = getInputRowMeta().clone();
+        meta.getFields( data.changeLogRowMeta, getStepname(), null, changeLogStep, this, repository, metaStore );
+      }
+    }
+
+    data.batch.add( r );
+    if ( data.batch.size() >= data.batchSize ) {
+      applyBatch();
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "ApplyGraphChanges.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Reads all rows of the graph step and returns the graph of the first one, copied if it cannot be changed.
+   */
+  private Graph readGraph() throws KettleException {
+    StreamInterface infoStream = meta.getStepIOMeta().getInfoStreams().get( 0 );
+    RowSet rowSet = findInputRowSet( infoStream.getStepname() );
+    if ( rowSet == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.GraphRowSetNotFound",
+          infoStream.getStepname() ) );
+    }
+    Graph graph = null;
+    long extraRows = 0;
+    Object[] infoRow = getRowFrom( rowSet );
+    while ( infoRow != null ) {
+      if ( graph == null ) {
+        RowMetaInterface infoRowMeta = rowSet.getRowMeta();
+        int graphIndex = infoRowMeta.indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+        if ( graphIndex < 0 ) {
+          throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.NotFound.GraphField" ) );
+        }
+        ValueMetaGraph vmg = (ValueMetaGraph) infoRowMeta.getValueMeta( graphIndex );
+        graph = vmg.getGraph( infoRow[graphIndex] );
+      } else {
+        extraRows++;
+      }
+      infoRow = getRowFrom( rowSet );
+    }
+    if ( extraRows > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "ApplyGraphChanges.Log.ExtraGraphRows", String.valueOf( extraRows ) ) );
+    }
+
+    if ( graph == null ) {
+      return new TinkerGraph();
+    }
+    if ( graph instanceof CsrGraph ) {
+      logBasic( BaseMessages.getString( PKG, "ApplyGraphChanges.Log.CopyingReadOnlyGraph" ) );
+      GraphMerger copier =
+          new GraphMerger( new TinkerGraph(), null, PropertyConflictPolicy.KEEP_FIRST, ( (CsrGraph) graph )
+              .getVertexCount() );
+      copier.merge( graph );
+      return copier.getTarget();
+    }
+    return graph;
+  }
+
+  private RowSet findTargetRowSet( StepMeta targetStep ) throws KettleException {
+    RowSet rowSet = findOutputRowSet( targetStep.getName() );
+    if ( rowSet == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.TargetRowSetNotFound",
+          targetStep.getName() ) );
+    }
+    return rowSet;
+  }
+
+  private int indexOf( String fieldName ) {
+    if ( Const.isEmpty( fieldName ) ) {
+      return -1;
+    }
+    return getInputRowMeta().indexOfValue( environmentSubstitute( fieldName ) );
+  }
+
+  /**
+   * Applies and commits the collected change rows, then sends them to the change log.
+   */
+  private void applyBatch() throws KettleException {
+    if ( data.batch.isEmpty() ) {
+      return;
+    }
+    int[] statuses = new int[data.batch.size()];
+    try {
+      for ( int i = 0; i < statuses.length; i++ ) {
+        statuses[i] = applyChange( data.batch.get( i ) );
+      }
+    } catch ( KettleException e ) {
+      data.applier.rollback();
+      throw e;
+    } catch ( RuntimeException e ) {
+      data.applier.rollback();
+      throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.UnableToApply", e
+          .getMessage() ), e );
+    }
+    data.applier.commit();
+    data.batchNr++;
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "ApplyGraphChanges.Log.Committed", String.valueOf( data.batchNr ),
+          String.valueOf( statuses.length ) ) );
+    }
+
+    if ( data.changeLogRowSet != null ) {
+      int inputSize = getInputRowMeta().size();
+      for ( int i = 0; i < statuses.length; i++ ) {
+        Object[] row =
+            RowDataUtil.addValueData( RowDataUtil.createResizedCopy( data.batch.get( i ), data.changeLogRowMeta
+                .size() ), inputSize, ApplyGraphChangesMeta.STATUS_CODES[statuses[i]] );
+        putRowTo( data.changeLogRowMeta, row, data.changeLogRowSet );
+      }
+    }
+    data.batch.clear();
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private int applyChange( Object[] r ) throws KettleException {
+    String opValue = getString( r, data.opIndex );
+    int op = meta.getOperation( opValue );
+    if ( op < 0 ) {
+      throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.UnknownOperation", opValue ) );
+    }
+    Map<String, Object> properties = null;
+    String json = getString( r, data.propertiesIndex );
+    if ( !Const.isEmpty( json ) ) {
+      try {
+        properties = data.mapper.readValue( json, Map.class );
+      } catch ( IOException e ) {
+        throw new KettleException( BaseMessages.getString( PKG, "ApplyGraphChanges.Error.InvalidProperties", json ),
+            e );
+      }
+    }
+    String id = getString( r, data.idIndex );
+    String outId = getString( r, data.outIdIndex );
+    String type = getString( r, data.typeIndex );
+    boolean vertex = type == null ? outId == null : !GraphFileInputMeta.TYPE_EDGE.equalsIgnoreCase( type );
+    if ( vertex ) {
+      return data.applier.applyVertex( op, id, properties );
+    }
+    String label = Const.NVL( getString( r, data.labelIndex ), "edge" );
+    return data.applier.applyEdge( op, id, outId, getString( r, data.inIdIndex ), label, properties );
+  }
+
+  private String getString( Object[] r, int index ) throws KettleException {
+    return index < 0 ? null : getInputRowMeta().getString( r, index );
+  }
+
+  private void putGraph() throws KettleException {
+    StepMeta graphStep = meta.getStepIOMeta().getTargetStreams().get( 0 ).getStepMeta();
+    data.graphRowSet = findTargetRowSet( graphStep );
+    data.graphRowMeta = new RowMeta();
+    meta.getFields( data.graphRowMeta, getStepname(), null, graphStep, this, repository, metaStore );
+    putRowTo( data.graphRowMeta, new Object[] { data.applier.getGraph() }, data.graphRowSet );
+
+    logBasic( BaseMessages.getString( PKG, "ApplyGraphChanges.Log.Summary", String.valueOf( data.applier
+        .getInserted() ), String.valueOf( data.applier.getUpdated() ), String.valueOf( data.applier.getDeleted() ),
+        String.valueOf( data.applier.getNotFound() ), String.valueOf( data.applier.getCommits() ) ) );
+  }
+}
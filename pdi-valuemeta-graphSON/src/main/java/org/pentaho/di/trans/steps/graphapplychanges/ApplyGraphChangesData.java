@@ -0,0 +1,66 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphapplychanges;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.graph.GraphChangeApplier;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ApplyGraphChangesData extends BaseStepData implements StepDataInterface {
+
+  public GraphChangeApplier applier;
+  public int batchSize;
+
+  /** The change rows read since the last commit */
+  public List<Object[]> batch = new ArrayList<Object[]>();
+  public int batchNr;
+
+  public int opIndex;
+  public int typeIndex;
+  public int idIndex;
+  public int outIdIndex;
+  public int inIdIndex;
+  public int labelIndex;
+  public int propertiesIndex;
+  public ObjectMapper mapper = new ObjectMapper();
+
+  public RowSet graphRowSet;
+  public RowMetaInterface graphRowMeta;
+
+  /** The row set and layout of the change log, null if no change log target step is set */
+  public RowSet changeLogRowSet;
+  public RowMetaInterface changeLogRowMeta;
+
+  public ApplyGraphChangesData() {
+    super();
+  }
+}
@@ -0,0 +1,471 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphapplychanges;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.graph.GraphChangeApplier;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepIOMeta;
+import org.pentaho.di.trans.step.StepIOMetaInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.errorhandling.Stream;
+import org.pentaho.di.trans.step.errorhandling.StreamIcon;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface.StreamType;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Apply Graph Changes step reads a graph from an info step and applies the insert, update and delete rows of its
+ * main input to it, instead of rebuilding the graph from scratch. The change rows describe vertices and edges the same
+ * way the Graph File Input and Output steps do, plus an operation field. The changed graph goes to one target step and,
+ * optionally, every change row with the outcome of its change goes to a second one as a change log.
+ */
+@Step( id = "ApplyGraphChanges", image = "addnodes.png", name = "Apply Graph Changes",
+    description = "Applies insert, update and delete rows to a graph", categoryDescription = "Graph" )
+public class ApplyGraphChangesMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = ApplyGraphChangesMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** The change log values, indexed by the GraphChangeApplier status */
+  public static final String[] STATUS_CODES = new String[] { "inserted", "updated", "deleted", "not found", };
+
+  private String graphFieldName;
+  private String opFieldName;
+  private String insertCode;
+  private String updateCode;
+  private String deleteCode;
+  private String typeFieldName;
+  private String idFieldName;
+  private String outIdFieldName;
+  private String inIdFieldName;
+  private String labelFieldName;
+  private String propertiesFieldName;
+  private String batchSize;
+  private String statusFieldName;
+
+  public ApplyGraphChangesMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      opFieldName = XMLHandler.getTagValue( stepnode, "op_field" );
+      insertCode = XMLHandler.getTagValue( stepnode, "insert_code" );
+      updateCode = XMLHandler.getTagValue( stepnode, "update_code" );
+      deleteCode = XMLHandler.getTagValue( stepnode, "delete_code" );
+      typeFieldName = XMLHandler.getTagValue( stepnode, "type_field" );
+      idFieldName = XMLHandler.getTagValue( stepnode, "id_field" );
+      outIdFieldName = XMLHandler.getTagValue( stepnode, "out_id_field" );
+      inIdFieldName = XMLHandler.getTagValue( stepnode, "in_id_field" );
+      labelFieldName = XMLHandler.getTagValue( stepnode, "label_field" );
+      propertiesFieldName = XMLHandler.getTagValue( stepnode, "properties_field" );
+      batchSize = XMLHandler.getTagValue( stepnode, "batch_size" );
+      statusFieldName = XMLHandler.getTagValue( stepnode, "status_field" );
+
+      getStepIOMeta().getInfoStreams().get( 0 ).setSubject( XMLHandler.getTagValue( stepnode, "graph_step" ) );
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      targetStreams.get( 0 ).setSubject( XMLHandler.getTagValue( stepnode, "graph_target" ) );
+      targetStreams.get( 1 ).setSubject( XMLHandler.getTagValue( stepnode, "changelog_target" ) );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public void searchInfoAndTargetSteps( List<StepMeta> steps ) {
+    for ( StreamInterface stream : getStepIOMeta().getInfoStreams() ) {
+      stream.setStepMeta( StepMeta.findStep( steps, (String) stream.getSubject() ) );
+    }
+    for ( StreamInterface stream : getStepIOMeta().getTargetStreams() ) {
+      stream.setStepMeta( StepMeta.findStep( steps, (String) stream.getSubject() ) );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = "graph";
+    opFieldName = null;
+    insertCode = "I";
+    updateCode = "U";
+    deleteCode = "D";
+    typeFieldName = null;
+    idFieldName = null;
+    outIdFieldName = null;
+    inIdFieldName = null;
+    labelFieldName = null;
+    propertiesFieldName = null;
+    batchSize = "1000";
+    statusFieldName = "change_status";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      opFieldName = rep.getStepAttributeString( id_step, "op_field" );
+      insertCode = rep.getStepAttributeString( id_step, "insert_code" );
+      updateCode = rep.getStepAttributeString( id_step, "update_code" );
+      deleteCode = rep.getStepAttributeString( id_step, "delete_code" );
+      typeFieldName = rep.getStepAttributeString( id_step, "type_field" );
+      idFieldName = rep.getStepAttributeString( id_step, "id_field" );
+      outIdFieldName = rep.getStepAttributeString( id_step, "out_id_field" );
+      inIdFieldName = rep.getStepAttributeString( id_step, "in_id_field" );
+      labelFieldName = rep.getStepAttributeString( id_step, "label_field" );
+      propertiesFieldName = rep.getStepAttributeString( id_step, "properties_field" );
+      batchSize = rep.getStepAttributeString( id_step, "batch_size" );
+      statusFieldName = rep.getStepAttributeString( id_step, "status_field" );
+
+      getStepIOMeta().getInfoStreams().get( 0 ).setSubject( rep.getStepAttributeString( id_step, "graph_step" ) );
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      targetStreams.get( 0 ).setSubject( rep.getStepAttributeString( id_step, "graph_target" ) );
+      targetStreams.get( 1 ).setSubject( rep.getStepAttributeString( id_step, "changelog_target" ) );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "op_field", opFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "insert_code", insertCode );
+      rep.saveStepAttribute( id_transformation, id_step, "update_code", updateCode );
+      rep.saveStepAttribute( id_transformation, id_step, "delete_code", deleteCode );
+      rep.saveStepAttribute( id_transformation, id_step, "type_field", typeFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "id_field", idFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "out_id_field", outIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "in_id_field", inIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "label_field", labelFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "properties_field", propertiesFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "batch_size", batchSize );
+      rep.saveStepAttribute( id_transformation, id_step, "status_field", statusFieldName );
+
+      rep.saveStepAttribute( id_transformation, id_step, "graph_step", getStepIOMeta().getInfoStreams().get( 0 )
+          .getStepname() );
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      rep.saveStepAttribute( id_transformation, id_step, "graph_target", targetStreams.get( 0 ).getStepname() );
+      rep.saveStepAttribute( id_transformation, id_step, "changelog_target", targetStreams.get( 1 ).getStepname() );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "op_field", opFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "insert_code", insertCode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "update_code", updateCode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "delete_code", deleteCode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "type_field", typeFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "id_field", idFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "out_id_field", outIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "in_id_field", inIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "label_field", labelFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "properties_field", propertiesFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "batch_size", batchSize ) );
+    retval.append( "    " + XMLHandler.addTagValue( "status_field", statusFieldName ) );
+
+    retval.append( "    " + XMLHandler.addTagValue( "graph_step", getStepIOMeta().getInfoStreams().get( 0 )
+        .getStepname() ) );
+    List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+    retval.append( "    " + XMLHandler.addTagValue( "graph_target", targetStreams.get( 0 ).getStepname() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "changelog_target", targetStreams.get( 1 ).getStepname() ) );
+    return retval.toString();
+  }
+
+  /**
+   * The change log target receives the change rows with their status; all other targets get the changed graph.
+   */
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    if ( isChangeLogTarget( nextStep ) ) {
+      ValueMetaInterface statusMeta = new ValueMetaString( space.environmentSubstitute( statusFieldName ) );
+      statusMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( statusMeta );
+    } else {
+      inputRowMeta.clear();
+      ValueMetaInterface graphMeta = new ValueMetaGraph( space.environmentSubstitute( graphFieldName ) );
+      graphMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( graphMeta );
+    }
+  }
+
+  private boolean isChangeLogTarget( StepMeta nextStep ) {
+    if ( nextStep == null ) {
+      return false;
+    }
+    StreamInterface changeLogStream = getStepIOMeta().getTargetStreams().get( 1 );
+    String changeLogTarget = changeLogStream.getStepMeta() != null ? changeLogStream.getStepMeta().getName()
+        : (String) changeLogStream.getSubject();
+    return nextStep.getName().equalsIgnoreCase( changeLogTarget );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( opFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.OpFieldNotFound", opFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( getStepIOMeta().getInfoStreams().get( 0 ).getStepMeta() == null ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.NoGraphStep" ), stepMeta );
+      remarks.add( cr );
+    }
+    if ( getStepIOMeta().getTargetStreams().get( 0 ).getStepMeta() == null ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.NoGraphTarget" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ApplyGraphChangesMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new ApplyGraphChanges( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new ApplyGraphChangesData();
+  }
+
+  /**
+   * Returns the Input/Output metadata for this step: the step reading the graph, the step receiving the changed graph
+   * and the step receiving the change log.
+   */
+  public StepIOMetaInterface getStepIOMeta() {
+    if ( ioMeta == null ) {
+
+      ioMeta = new StepIOMeta( true, true, false, false, false, false );
+
+      ioMeta.addStream( new Stream( StreamType.INFO, null, BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.InfoStream.Description" ), StreamIcon.INFO, null ) );
+      ioMeta.addStream( new Stream( StreamType.TARGET, null, BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.TargetStream.Graph.Description" ), StreamIcon.TARGET, null ) );
+      ioMeta.addStream( new Stream( StreamType.TARGET, null, BaseMessages.getString( PKG,
+          "ApplyGraphChangesMeta.TargetStream.ChangeLog.Description" ), StreamIcon.TARGET, null ) );
+    }
+
+    return ioMeta;
+  }
+
+  public void resetStepIoMeta() {
+    // Do nothing, the graph step and the targets are kept as configured.
+  }
+
+  public boolean excludeFromRowLayoutVerification() {
+    return true;
+  }
+
+  /**
+   * @return the GraphChangeApplier operation for an operation field value, or -1 if it matches none of the codes
+   */
+  public int getOperation( String value ) {
+    if ( value == null ) {
+      return -1;
+    }
+    if ( value.equalsIgnoreCase( insertCode ) ) {
+      return GraphChangeApplier.OP_INSERT;
+    }
+    if ( value.equalsIgnoreCase( updateCode ) ) {
+      return GraphChangeApplier.OP_UPDATE;
+    }
+    if ( value.equalsIgnoreCase( deleteCode ) ) {
+      return GraphChangeApplier.OP_DELETE;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the field holding the graph in the rows of the graph step, also the name of the changed graph field
+   */
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  public String getOpFieldName() {
+    return opFieldName;
+  }
+
+  public void setOpFieldName( String opFieldName ) {
+    this.opFieldName = opFieldName;
+  }
+
+  public String getInsertCode() {
+    return insertCode;
+  }
+
+  public void setInsertCode( String insertCode ) {
+    this.insertCode = insertCode;
+  }
+
+  public String getUpdateCode() {
+    return updateCode;
+  }
+
+  public void setUpdateCode( String updateCode ) {
+    this.updateCode = updateCode;
+  }
+
+  public String getDeleteCode() {
+    return deleteCode;
+  }
+
+  public void setDeleteCode( String deleteCode ) {
+    this.deleteCode = deleteCode;
+  }
+
+  public String getTypeFieldName() {
+    return typeFieldName;
+  }
+
+  public void setTypeFieldName( String typeFieldName ) {
+    this.typeFieldName = typeFieldName;
+  }
+
+  public String getIdFieldName() {
+    return idFieldName;
+  }
+
+  public void setIdFieldName( String idFieldName ) {
+    this.idFieldName = idFieldName;
+  }
+
+  public String getOutIdFieldName() {
+    return outIdFieldName;
+  }
+
+  public void setOutIdFieldName( String outIdFieldName ) {
+    this.outIdFieldName = outIdFieldName;
+  }
+
+  public String getInIdFieldName() {
+    return inIdFieldName;
+  }
+
+  public void setInIdFieldName( String inIdFieldName ) {
+    this.inIdFieldName = inIdFieldName;
+  }
+
+  public String getLabelFieldName() {
+    return labelFieldName;
+  }
+
+  public void setLabelFieldName( String labelFieldName ) {
+    this.labelFieldName = labelFieldName;
+  }
+
+  /**
+   * @return the field holding the properties to set as a JSON object; a null property value removes the property
+   */
+  public String getPropertiesFieldName() {
+    return propertiesFieldName;
+  }
+
+  public void setPropertiesFieldName( String propertiesFieldName ) {
+    this.propertiesFieldName = propertiesFieldName;
+  }
+
+  /**
+   * @return the number of changes applied and committed together
+   */
+  public String getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( String batchSize ) {
+    this.batchSize = batchSize;
+  }
+
+  public String getStatusFieldName() {
+    return statusFieldName;
+  }
+
+  public void setStatusFieldName( String statusFieldName ) {
+    this.statusFieldName = statusFieldName;
+  }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphcomponents;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.ConnectedComponents;
+import org.pentaho.di.core.graph.algorithms.VertexRanges;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Labels every vertex of the graph in each incoming row with the id of its weakly connected component. The id of a
+ * component is the id of its first vertex in the graph's iteration order.
+ */
+public class GraphConnectedComponents extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphConnectedComponentsMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphConnectedComponentsMeta meta;
+  private GraphConnectedComponentsData data;
+
+  public GraphConnectedComponents( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr,
+      TransMeta transMeta, Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphConnectedComponentsMeta) smi;
+    data = (GraphConnectedComponentsData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.componentPropertyName = environmentSubstitute( meta.getComponentPropertyName() );
+    data.parallelism =
+        VertexRanges.resolveParallelism( Const.toInt( environmentSubstitute( meta.getParallelism() ), 0 ) );
+    data.executor = VertexRanges.newExecutor( getStepname(), data.parallelism );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphConnectedComponentsMeta) smi;
+    data = (GraphConnectedComponentsData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphConnectedComponents.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+
+    if ( g == null ) {
+      if ( !meta.isOutputRows() ) {
+        putRow( data.outputRowMeta, r );
+      }
+      return true;
+    }
+
+    long start = System.currentTimeMillis();
+    CsrGraph csr = CsrGraph.freeze( g );
+    ConnectedComponents connectedComponents = new ConnectedComponents( csr );
+    int[] components = connectedComponents.compute( data.executor, data.parallelism );
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphConnectedComponents.Log.Computed", String.valueOf( csr
+          .getVertexCount() ), String.valueOf( csr.getEdgeCount() ), String.valueOf( connectedComponents
+          .getComponentCount() ), String.valueOf( System.currentTimeMillis() - start ) ) );
+    }
+
+    if ( meta.isOutputRows() ) {
+      int inputSize = getInputRowMeta().size();
+      for ( int v = 0; v < components.length && !isStopped(); v++ ) {
+        Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+        outputRow[inputSize] = String.valueOf( csr.getVertexId( v ) );
+        outputRow[inputSize + 1] = String.valueOf( csr.getVertexId( components[v] ) );
+        putRow( data.outputRowMeta, outputRow );
+      }
+    } else {
+      if ( csr == g ) {
+        throw new KettleException( BaseMessages.getString( PKG, "GraphConnectedComponents.Error.ReadOnlyGraph" ) );
+      }
+      for ( int v = 0; v < components.length; v++ ) {
+        Vertex vertex = g.getVertex( csr.getVertexId( v ) );
+        vertex.setProperty( data.componentPropertyName, String.valueOf( csr.getVertexId( components[v] ) ) );
+      }
+      r[data.graphFieldIndex] = g;
+      putRow( data.outputRowMeta, r );
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphConnectedComponents.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphConnectedComponentsData) sdi;
+    if ( data.executor != null ) {
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphcomponents;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph Connected Components step finds the weakly connected components of the graph in a graph field. Each
+ * component is identified by the id of one of its vertices, which is either stored as a vertex property or emitted
+ * with every vertex id as a row.
+ */
+@Step( id = "GraphConnectedComponents", image = "addnodes.png", name = "Graph Connected Components",
+    description = "Finds the weakly connected components of a graph", categoryDescription = "Graph" )
+public class GraphConnectedComponentsMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphConnectedComponentsMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** Store the component id as a property on each vertex and pass the row on */
+  public static final String OUTPUT_MODE_PROPERTY = "property";
+
+  /** Emit the input row once per vertex, with the vertex id and component id appended */
+  public static final String OUTPUT_MODE_ROWS = "rows";
+
+  public static final String[] OUTPUT_MODE_CODES = new String[] { OUTPUT_MODE_PROPERTY, OUTPUT_MODE_ROWS, };
+
+  public static final String[] OUTPUT_MODE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphConnectedComponentsMeta.OutputMode.Property" ),
+    BaseMessages.getString( PKG, "GraphConnectedComponentsMeta.OutputMode.Rows" ), };
+
+  private String graphFieldName;
+  private String parallelism;
+  private String outputMode;
+  private String componentPropertyName;
+  private String vertexIdFieldName;
+  private String componentFieldName;
+
+  public GraphConnectedComponentsMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      parallelism = XMLHandler.getTagValue( stepnode, "parallelism" );
+      outputMode = getOutputModeCode( XMLHandler.getTagValue( stepnode, "output_mode" ) );
+      componentPropertyName = XMLHandler.getTagValue( stepnode, "component_property" );
+      vertexIdFieldName = XMLHandler.getTagValue( stepnode, "vertex_id_field" );
+      componentFieldName = XMLHandler.getTagValue( stepnode, "component_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "GraphConnectedComponentsMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    parallelism = "0";
+    outputMode = OUTPUT_MODE_PROPERTY;
+    componentPropertyName = "component";
+    vertexIdFieldName = "vertexId";
+    componentFieldName = "component";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      parallelism = rep.getStepAttributeString( id_step, "parallelism" );
+      outputMode = getOutputModeCode( rep.getStepAttributeString( id_step, "output_mode" ) );
+      componentPropertyName = rep.getStepAttributeString( id_step, "component_property" );
+      vertexIdFieldName = rep.getStepAttributeString( id_step, "vertex_id_field" );
+      componentFieldName = rep.getStepAttributeString( id_step, "component_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphConnectedComponentsMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "parallelism", parallelism );
+      rep.saveStepAttribute( id_transformation, id_step, "output_mode", outputMode );
+      rep.saveStepAttribute( id_transformation, id_step, "component_property", componentPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "vertex_id_field", vertexIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "component_field", componentFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphConnectedComponentsMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "parallelism", parallelism ) );
+    retval.append( "    " + XMLHandler.addTagValue( "output_mode", outputMode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "component_property", componentPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "vertex_id_field", vertexIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "component_field", componentFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    if ( isOutputRows() ) {
+      ValueMetaInterface idMeta = new ValueMetaString( space.environmentSubstitute( vertexIdFieldName ) );
+      idMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( idMeta );
+      ValueMetaInterface componentMeta = new ValueMetaString( space.environmentSubstitute( componentFieldName ) );
+      componentMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( componentMeta );
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( isOutputRows() && ( Const.isEmpty( vertexIdFieldName ) || Const.isEmpty( componentFieldName ) ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.NoOutputFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( !isOutputRows() && Const.isEmpty( componentPropertyName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphConnectedComponentsMeta.CheckResult.NoComponentProperty" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphConnectedComponents( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphConnectedComponentsData();
+  }
+
+  public boolean isOutputRows() {
+    return OUTPUT_MODE_ROWS.equals( outputMode );
+  }
+
+  public static String getOutputModeCode( String codeOrDesc ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || OUTPUT_MODE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return OUTPUT_MODE_CODES[i];
+      }
+    }
+    return OUTPUT_MODE_PROPERTY;
+  }
+
+  public static String getOutputModeDesc( String code ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( code ) ) {
+        return OUTPUT_MODE_DESCS[i];
+      }
+    }
+    return OUTPUT_MODE_DESCS[0];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return the number of threads to compute with; 0 or empty means one per available processor
+   */
+  public String getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism( String parallelism ) {
+    this.parallelism = parallelism;
+  }
+
+  public String getOutputMode() {
+    return outputMode;
+  }
+
+  public void setOutputMode( String outputMode ) {
+    this.outputMode = outputMode;
+  }
+
+  public String getComponentPropertyName() {
+    return componentPropertyName;
+  }
+
+  public void setComponentPropertyName( String componentPropertyName ) {
+    this.componentPropertyName = componentPropertyName;
+  }
+
+  public String getVertexIdFieldName() {
+    return vertexIdFieldName;
+  }
+
+  public void setVertexIdFieldName( String vertexIdFieldName ) {
+    this.vertexIdFieldName = vertexIdFieldName;
+  }
+
+  public String getComponentFieldName() {
+    return componentFieldName;
+  }
+
+  public void setComponentFieldName( String componentFieldName ) {
+    this.componentFieldName = componentFieldName;
+  }
+}
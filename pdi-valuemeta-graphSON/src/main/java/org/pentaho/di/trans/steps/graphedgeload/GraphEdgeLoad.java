@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphedgeload;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+/**
+ * Feeds the edge rows straight into a {@link CsrGraphBuilder}, which keeps the endpoints as vertex indexes in int
+ * arrays and maps every distinct vertex id to a dense index once. After the last row the builder counts the degrees
+ * and fills the adjacency arrays, so no per-element objects are created along the way.
+ */
+public class GraphEdgeLoad extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphEdgeLoadMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphEdgeLoadMeta meta;
+  private GraphEdgeLoadData data;
+
+  public GraphEdgeLoad( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphEdgeLoadMeta) smi;
+    data = (GraphEdgeLoadData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.weightPropertyName = Const.NVL( environmentSubstitute( meta.getWeightPropertyName() ), "weight" );
+    data.defaultLabel = Const.NVL( environmentSubstitute( meta.getDefaultLabel() ), "edge" );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphEdgeLoadMeta) smi;
+    data = (GraphEdgeLoadData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      if ( !first ) {
+        putGraph();
+      }
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.sourceFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceFieldName() ) );
+      data.targetFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getTargetFieldName() ) );
+      if ( data.sourceFieldIndex < 0 || data.targetFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphEdgeLoad.Error.NotFound.VertexFields" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+      data.sourceMeta = getInputRowMeta().getValueMeta( data.sourceFieldIndex );
+      data.targetMeta = getInputRowMeta().getValueMeta( data.targetFieldIndex );
+      data.weightFieldIndex = optionalFieldIndex( meta.getWeightFieldName() );
+      if ( data.weightFieldIndex >= 0 ) {
+        data.weightMeta = getInputRowMeta().getValueMeta( data.weightFieldIndex );
+      }
+      data.labelFieldIndex = optionalFieldIndex( meta.getLabelFieldName() );
+      if ( data.labelFieldIndex >= 0 ) {
+        data.labelMeta = getInputRowMeta().getValueMeta( data.labelFieldIndex );
+      }
+      data.builder = new CsrGraphBuilder( 1024, 4096 );
+    }
+
+    Object source = data.sourceMeta.convertToNormalStorageType( r[data.sourceFieldIndex] );
+    Object target = data.targetMeta.convertToNormalStorageType( r[data.targetFieldIndex] );
+    if ( source == null || target == null ) {
+      data.skippedRows++;
+    } else {
+      String label = null;
+      if ( data.labelFieldIndex >= 0 ) {
+        label = data.labelMeta.getString( r[data.labelFieldIndex] );
+      }
+      int edge =
+          data.builder.addEdge( null, data.builder.getOrAddVertex( source ), data.builder.getOrAddVertex( target ),
+              Const.isEmpty( label ) ? data.defaultLabel : label );
+      if ( data.weightFieldIndex >= 0 ) {
+        Double weight = data.weightMeta.getNumber( r[data.weightFieldIndex] );
+        if ( weight != null ) {
+          data.builder.setEdgeProperty( edge, data.weightPropertyName, weight );
+        }
+      }
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphEdgeLoad.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  private int optionalFieldIndex( String fieldName ) throws KettleException {
+    if ( Const.isEmpty( fieldName ) ) {
+      return -1;
+    }
+    int index = getInputRowMeta().indexOfValue( environmentSubstitute( fieldName ) );
+    if ( index < 0 ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphEdgeLoad.Error.FieldNotFound", fieldName ) );
+    }
+    return index;
+  }
+
+  private void putGraph() throws KettleException {
+    long start = System.currentTimeMillis();
+    CsrGraph graph = data.builder.build();
+    data.builder = null;
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphEdgeLoad.Log.Built", String.valueOf( graph.getVertexCount() ),
+          String.valueOf( graph.getEdgeCount() ), String.valueOf( System.currentTimeMillis() - start ) ) );
+    }
+    if ( data.skippedRows > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "GraphEdgeLoad.Log.SkippedRows", String.valueOf( data.skippedRows ) ) );
+    }
+    Object[] outputRow = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+    outputRow[0] = graph;
+    putRow( data.outputRowMeta, outputRow );
+  }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphedgeload;
+
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class GraphEdgeLoadData extends BaseStepData implements StepDataInterface {
+
+  public RowMetaInterface outputRowMeta;
+
+  public int sourceFieldIndex;
+  public int targetFieldIndex;
+  public int weightFieldIndex;
+  public int labelFieldIndex;
+  public ValueMetaInterface sourceMeta;
+  public ValueMetaInterface targetMeta;
+  public ValueMetaInterface weightMeta;
+  public ValueMetaInterface labelMeta;
+
+  public String weightPropertyName;
+  public String defaultLabel;
+
+  /** Holds the edges as int arrays until all rows are read */
+  public CsrGraphBuilder builder;
+  public long skippedRows;
+
+  public GraphEdgeLoadData() {
+    super();
+  }
+}
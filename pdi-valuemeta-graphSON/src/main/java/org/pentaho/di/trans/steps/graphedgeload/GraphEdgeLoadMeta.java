@@ -0,0 +1,273 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphedgeload;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Load Edge List step builds one compact, read-only graph from rows holding a source and a target vertex id, plus
+ * an optional weight and label. Vertices are created the first time one of their ids comes along. When the step runs
+ * in several copies, every copy builds the graph of the rows it received; Merge Graphs can combine them.
+ */
+@Step( id = "GraphEdgeLoad", image = "addnodes.png", name = "Load Edge List",
+    description = "Builds a compact graph from source and target vertex id rows", categoryDescription = "Graph" )
+public class GraphEdgeLoadMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphEdgeLoadMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private String sourceFieldName;
+  private String targetFieldName;
+  private String weightFieldName;
+  private String weightPropertyName;
+  private String labelFieldName;
+  private String defaultLabel;
+  private String graphFieldName;
+
+  public GraphEdgeLoadMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      sourceFieldName = XMLHandler.getTagValue( stepnode, "source_field" );
+      targetFieldName = XMLHandler.getTagValue( stepnode, "target_field" );
+      weightFieldName = XMLHandler.getTagValue( stepnode, "weight_field" );
+      weightPropertyName = XMLHandler.getTagValue( stepnode, "weight_property" );
+      labelFieldName = XMLHandler.getTagValue( stepnode, "label_field" );
+      defaultLabel = XMLHandler.getTagValue( stepnode, "default_label" );
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "GraphEdgeLoadMeta.Exception.UnableToReadStepInfo" ),
+          e );
+    }
+  }
+
+  public void setDefault() {
+    sourceFieldName = null;
+    targetFieldName = null;
+    weightFieldName = null;
+    weightPropertyName = "weight";
+    labelFieldName = null;
+    defaultLabel = "edge";
+    graphFieldName = "graph";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      sourceFieldName = rep.getStepAttributeString( id_step, "source_field" );
+      targetFieldName = rep.getStepAttributeString( id_step, "target_field" );
+      weightFieldName = rep.getStepAttributeString( id_step, "weight_field" );
+      weightPropertyName = rep.getStepAttributeString( id_step, "weight_property" );
+      labelFieldName = rep.getStepAttributeString( id_step, "label_field" );
+      defaultLabel = rep.getStepAttributeString( id_step, "default_label" );
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphEdgeLoadMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "source_field", sourceFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "target_field", targetFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "weight_field", weightFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "weight_property", weightPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "label_field", labelFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "default_label", defaultLabel );
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphEdgeLoadMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "source_field", sourceFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "target_field", targetFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "weight_field", weightFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "weight_property", weightPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "label_field", labelFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "default_label", defaultLabel ) );
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    return retval.toString();
+  }
+
+  /**
+   * The step sends out a single row holding the graph.
+   */
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    inputRowMeta.clear();
+    ValueMetaInterface graphMeta = new ValueMetaGraph( space.environmentSubstitute( graphFieldName ) );
+    graphMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( graphMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphEdgeLoadMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else {
+      String missing = "";
+      String[] required = new String[] { sourceFieldName, targetFieldName, weightFieldName, labelFieldName };
+      for ( String fieldName : required ) {
+        if ( !Const.isEmpty( fieldName ) && prev.indexOfValue( fieldName ) < 0 ) {
+          missing += "\t\t" + fieldName + Const.CR;
+        }
+      }
+      if ( missing.length() > 0 ) {
+        cr =
+            new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+                "GraphEdgeLoadMeta.CheckResult.FieldsNotFound" ) + Const.CR + missing, stepMeta );
+      } else {
+        cr =
+            new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+                "GraphEdgeLoadMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      }
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphEdgeLoadMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphEdgeLoad( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphEdgeLoadData();
+  }
+
+  public String getSourceFieldName() {
+    return sourceFieldName;
+  }
+
+  public void setSourceFieldName( String sourceFieldName ) {
+    this.sourceFieldName = sourceFieldName;
+  }
+
+  public String getTargetFieldName() {
+    return targetFieldName;
+  }
+
+  public void setTargetFieldName( String targetFieldName ) {
+    this.targetFieldName = targetFieldName;
+  }
+
+  /**
+   * @return the optional field holding the edge weight, stored as a numeric edge property
+   */
+  public String getWeightFieldName() {
+    return weightFieldName;
+  }
+
+  public void setWeightFieldName( String weightFieldName ) {
+    this.weightFieldName = weightFieldName;
+  }
+
+  public String getWeightPropertyName() {
+    return weightPropertyName;
+  }
+
+  public void setWeightPropertyName( String weightPropertyName ) {
+    this.weightPropertyName = weightPropertyName;
+  }
+
+  /**
+   * @return the optional field holding the edge label; rows without one get the default label
+   */
+  public String getLabelFieldName() {
+    return labelFieldName;
+  }
+
+  public void setLabelFieldName( String labelFieldName ) {
+    this.labelFieldName = labelFieldName;
+  }
+
+  public String getDefaultLabel() {
+    return defaultLabel;
+  }
+
+  public void setDefaultLabel( String defaultLabel ) {
+    this.defaultLabel = defaultLabel;
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+}
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphexplode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Walks the graph of each incoming row and writes a row per vertex and per edge straight to the target steps. The
+ * vertices and edges are read from the graph's own iterators (or by index for a CsrGraph), so no list of elements is
+ * built up front.
+ */
+public class ExplodeGraph extends BaseStep implements StepInterface {
+  private static Class<?> PKG = ExplodeGraphMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private ExplodeGraphMeta meta;
+  private ExplodeGraphData data;
+
+  public ExplodeGraph( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (ExplodeGraphMeta) smi;
+    data = (ExplodeGraphData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+
+    List<StreamInterface> targetStreams = meta.getStepIOMeta().getTargetStreams();
+    if ( targetStreams.get( 0 ).getStepMeta() == null && targetStreams.get( 1 ).getStepMeta() == null ) {
+      logError( BaseMessages.getString( PKG, "ExplodeGraph.Error.NoTargetSteps" ) );
+      return false;
+    }
+
+    List<String> vertexProperties = new ArrayList<String>();
+    List<Integer> vertexTypes = new ArrayList<Integer>();
+    List<String> edgeProperties = new ArrayList<String>();
+    List<Integer> edgeTypes = new ArrayList<Integer>();
+    for ( int i = 0; i < meta.getPropertyName().length; i++ ) {
+      String property = environmentSubstitute( meta.getPropertyName()[i] );
+      if ( ExplodeGraphMeta.ELEMENT_EDGE.equals( meta.getPropertyElement()[i] ) ) {
+        edgeProperties.add( property );
+        edgeTypes.add( meta.getPropertyType()[i] );
+      } else {
+        vertexProperties.add( property );
+        vertexTypes.add( meta.getPropertyType()[i] );
+      }
+    }
+    data.vertexProperties = vertexProperties.toArray( new String[vertexProperties.size()] );
+    data.vertexTypes = toIntArray( vertexTypes );
+    data.edgeProperties = edgeProperties.toArray( new String[edgeProperties.size()] );
+    data.edgeTypes = toIntArray( edgeTypes );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (ExplodeGraphMeta) smi;
+    data = (ExplodeGraphData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "ExplodeGraph.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+      data.inputSize = meta.isPassingInputFields() ? getInputRowMeta().size() : 0;
+
+      List<StreamInterface> targetStreams = meta.getStepIOMeta().getTargetStreams();
+      StepMeta vertexStep = targetStreams.get( 0 ).getStepMeta();
+      if ( vertexStep != null ) {
+        data.vertexRowSet = findTargetRowSet( vertexStep );
+        data.vertexRowMeta = getInputRowMeta().clone();
+        meta.getFields( data.vertexRowMeta, getStepname(), null, vertexStep, this, repository, metaStore );
+      }
+      StepMeta edgeStep = targetStreams.get( 1 ).getStepMeta();
+      if ( edgeStep != null ) {
+        data.edgeRowSet = findTargetRowSet( edgeStep );
+        data.edgeRowMeta = getInputRowMeta().clone();
+        meta.getFields( data.edgeRowMeta, getStepname(), null, edgeStep, this, repository, metaStore );
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+    if ( g != null ) {
+      if ( g instanceof CsrGraph ) {
+        explodeCsr( r, (CsrGraph) g );
+      } else {
+        explode( r, g );
+      }
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "ExplodeGraph.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  private RowSet findTargetRowSet( StepMeta targetStep ) throws KettleException {
+    RowSet rowSet = findOutputRowSet( targetStep.getName() );
+    if ( rowSet == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "ExplodeGraph.Error.TargetRowSetNotFound", targetStep
+          .getName() ) );
+    }
+    return rowSet;
+  }
+
+  private void explode( Object[] r, Graph g ) throws KettleException {
+    if ( data.vertexRowSet != null ) {
+      for ( Vertex v : g.getVertices() ) {
+        if ( isStopped() ) {
+          return;
+        }
+        Object[] row = newRow( r, data.vertexRowMeta );
+        int index = data.inputSize;
+        if ( !Const.isEmpty( meta.getVertexIdFieldName() ) ) {
+          row[index++] = toId( v.getId() );
+        }
+        for ( int i = 0; i < data.vertexProperties.length; i++ ) {
+          row[index++] = convertProperty( v.getProperty( data.vertexProperties[i] ), data.vertexTypes[i] );
+        }
+        putRowTo( data.vertexRowMeta, row, data.vertexRowSet );
+      }
+    }
+    if ( data.edgeRowSet != null ) {
+      for ( Edge e : g.getEdges() ) {
+        if ( isStopped() ) {
+          return;
+        }
+        Object[] row = newRow( r, data.edgeRowMeta );
+        int index =
+            putEdgeColumns( row, e.getId(), e.getVertex( Direction.OUT ).getId(), e.getVertex( Direction.IN ).getId(),
+                e.getLabel() );
+        for ( int i = 0; i < data.edgeProperties.length; i++ ) {
+          row[index++] = convertProperty( e.getProperty( data.edgeProperties[i] ), data.edgeTypes[i] );
+        }
+        putRowTo( data.edgeRowMeta, row, data.edgeRowSet );
+      }
+    }
+  }
+
+  /**
+   * Reads a frozen graph through its index accessors, which avoids creating a vertex or edge object per element.
+   */
+  private void explodeCsr( Object[] r, CsrGraph g ) throws KettleException {
+    if ( data.vertexRowSet != null ) {
+      for ( int v = 0; v < g.getVertexCount() && !isStopped(); v++ ) {
+        Object[] row = newRow( r, data.vertexRowMeta );
+        int index = data.inputSize;
+        if ( !Const.isEmpty( meta.getVertexIdFieldName() ) ) {
+          row[index++] = toId( g.getVertexId( v ) );
+        }
+        for ( int i = 0; i < data.vertexProperties.length; i++ ) {
+          row[index++] = convertProperty( g.getVertexProperty( v, data.vertexProperties[i] ), data.vertexTypes[i] );
+        }
+        putRowTo( data.vertexRowMeta, row, data.vertexRowSet );
+      }
+    }
+    if ( data.edgeRowSet != null ) {
+      for ( int e = 0; e < g.getEdgeCount() && !isStopped(); e++ ) {
+        Object[] row = newRow( r, data.edgeRowMeta );
+        int index =
+            putEdgeColumns( row, g.getEdgeId( e ), g.getVertexId( g.getSource( e ) ), g.getVertexId( g.getTarget( e ) ),
+                g.getLabel( g.getLabelIndex( e ) ) );
+        for ( int i = 0; i < data.edgeProperties.length; i++ ) {
+          row[index++] = convertProperty( g.getEdgeProperty( e, data.edgeProperties[i] ), data.edgeTypes[i] );
+        }
+        putRowTo( data.edgeRowMeta, row, data.edgeRowSet );
+      }
+    }
+  }
+
+  private Object[] newRow( Object[] r, RowMetaInterface rowMeta ) {
+    Object[] row = RowDataUtil.allocateRowData( rowMeta.size() );
+    if ( data.inputSize > 0 ) {
+      System.arraycopy( r, 0, row, 0, data.inputSize );
+    }
+    return row;
+  }
+
+  /**
+   * Fills the configured edge columns, in the order of the edge row layout.
+   *
+   * @return the index of the first property column
+   */
+  private int putEdgeColumns( Object[] row, Object id, Object outId, Object inId, String label ) {
+    int index = data.inputSize;
+    if ( !Const.isEmpty( meta.getEdgeIdFieldName() ) ) {
+      row[index++] = toId( id );
+    }
+    if ( !Const.isEmpty( meta.getOutIdFieldName() ) ) {
+      row[index++] = toId( outId );
+    }
+    if ( !Const.isEmpty( meta.getInIdFieldName() ) ) {
+      row[index++] = toId( inId );
+    }
+    if ( !Const.isEmpty( meta.getLabelFieldName() ) ) {
+      row[index++] = label;
+    }
+    return index;
+  }
+
+  private static String toId( Object id ) {
+    return id == null ? null : id.toString();
+  }
+
+  /**
+   * Converts a property value to the data type of its output column.
+   */
+  private static Object convertProperty( Object value, int type ) throws KettleValueException {
+    if ( value == null ) {
+      return null;
+    }
+    try {
+      switch ( type ) {
+        case ValueMetaInterface.TYPE_STRING:
+          return value.toString();
+        case ValueMetaInterface.TYPE_INTEGER:
+          return value instanceof Number ? ( (Number) value ).longValue() : Long.valueOf( value.toString().trim() );
+        case ValueMetaInterface.TYPE_NUMBER:
+          return value instanceof Number ? ( (Number) value ).doubleValue() : Double.valueOf( value.toString()
+              .trim() );
+        case ValueMetaInterface.TYPE_BIGNUMBER:
+          return value instanceof BigDecimal ? value : new BigDecimal( value.toString().trim() );
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          if ( value instanceof Boolean ) {
+            return value;
+          }
+          return "TRUE".equalsIgnoreCase( value.toString() ) || "Y".equalsIgnoreCase( value.toString() );
+        case ValueMetaInterface.TYPE_DATE:
+          if ( value instanceof Date ) {
+            return value;
+          }
+          if ( value instanceof Number ) {
+            return new Date( ( (Number) value ).longValue() );
+          }
+          break;
+        default:
+          break;
+      }
+    } catch ( NumberFormatException e ) {
+      throw new KettleValueException( BaseMessages.getString( PKG, "ExplodeGraph.Error.ConversionFailed", value
+          .toString(), ValueMeta.getTypeDesc( type ) ), e );
+    }
+    throw new KettleValueException( BaseMessages.getString( PKG, "ExplodeGraph.Error.ConversionFailed", value
+        .toString(), ValueMeta.getTypeDesc( type ) ) );
+  }
+
+  private static int[] toIntArray( List<Integer> values ) {
+    int[] result = new int[values.size()];
+    for ( int i = 0; i < result.length; i++ ) {
+      result[i] = values.get( i );
+    }
+    return result;
+  }
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphexplode;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class ExplodeGraphData extends BaseStepData implements StepDataInterface {
+
+  public int graphFieldIndex;
+  public int inputSize;
+
+  /** The row set and layout of the vertex rows, null if no vertex target step is set */
+  public RowSet vertexRowSet;
+  public RowMetaInterface vertexRowMeta;
+
+  /** The row set and layout of the edge rows, null if no edge target step is set */
+  public RowSet edgeRowSet;
+  public RowMetaInterface edgeRowMeta;
+
+  public String[] vertexProperties;
+  public int[] vertexTypes;
+  public String[] edgeProperties;
+  public int[] edgeTypes;
+
+  public ExplodeGraphData() {
+    super();
+  }
+}
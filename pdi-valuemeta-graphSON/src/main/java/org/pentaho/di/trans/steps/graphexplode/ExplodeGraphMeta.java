@@ -0,0 +1,501 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.steps.graphexplode;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepIOMeta;
+import org.pentaho.di.trans.step.StepIOMetaInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.errorhandling.Stream;
+import org.pentaho.di.trans.step.errorhandling.StreamIcon;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface.StreamType;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Explode Graph step turns the graph of each incoming row into one row per vertex and one row per edge, sent to
+ * two separate target steps. Selected vertex and edge properties are projected into typed columns so the rows can be
+ * sorted, grouped or stored by the regular PDI steps.
+ */
+@Step( id = "ExplodeGraph", image = "addnodes.png", name = "Explode Graph",
+    description = "Emits the vertices and edges of a graph as rows", categoryDescription = "Graph" )
+public class ExplodeGraphMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = ExplodeGraphMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** The property is read from the vertices */
+  public static final String ELEMENT_VERTEX = "vertex";
+
+  /** The property is read from the edges */
+  public static final String ELEMENT_EDGE = "edge";
+
+  public static final String[] ELEMENT_CODES = new String[] { ELEMENT_VERTEX, ELEMENT_EDGE, };
+
+  public static final String[] ELEMENT_DESCS = new String[] {
+    BaseMessages.getString( PKG, "ExplodeGraphMeta.Element.Vertex" ),
+    BaseMessages.getString( PKG, "ExplodeGraphMeta.Element.Edge" ), };
+
+  private String graphFieldName;
+  private boolean passingInputFields;
+
+  private String vertexIdFieldName;
+  private String edgeIdFieldName;
+  private String outIdFieldName;
+  private String inIdFieldName;
+  private String labelFieldName;
+
+  /** The element (vertex or edge) each projected property is read from */
+  private String[] propertyElement;
+  private String[] propertyName;
+  private String[] propertyField;
+  private int[] propertyType;
+
+  public ExplodeGraphMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public void allocate( int nrProperties ) {
+    propertyElement = new String[nrProperties];
+    propertyName = new String[nrProperties];
+    propertyField = new String[nrProperties];
+    propertyType = new int[nrProperties];
+  }
+
+  public Object clone() {
+    ExplodeGraphMeta retval = (ExplodeGraphMeta) super.clone();
+    int nrProperties = propertyName.length;
+    retval.allocate( nrProperties );
+    System.arraycopy( propertyElement, 0, retval.propertyElement, 0, nrProperties );
+    System.arraycopy( propertyName, 0, retval.propertyName, 0, nrProperties );
+    System.arraycopy( propertyField, 0, retval.propertyField, 0, nrProperties );
+    System.arraycopy( propertyType, 0, retval.propertyType, 0, nrProperties );
+    return retval;
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      passingInputFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "pass_input" ) );
+      vertexIdFieldName = XMLHandler.getTagValue( stepnode, "vertex_id_field" );
+      edgeIdFieldName = XMLHandler.getTagValue( stepnode, "edge_id_field" );
+      outIdFieldName = XMLHandler.getTagValue( stepnode, "out_id_field" );
+      inIdFieldName = XMLHandler.getTagValue( stepnode, "in_id_field" );
+      labelFieldName = XMLHandler.getTagValue( stepnode, "label_field" );
+
+      Node projections = XMLHandler.getSubNode( stepnode, "projections" );
+      int nrProperties = XMLHandler.countNodes( projections, "projection" );
+      allocate( nrProperties );
+      for ( int i = 0; i < nrProperties; i++ ) {
+        Node pnode = XMLHandler.getSubNodeByNr( projections, "projection", i );
+        propertyElement[i] = getElementCode( XMLHandler.getTagValue( pnode, "element" ) );
+        propertyName[i] = XMLHandler.getTagValue( pnode, "property" );
+        propertyField[i] = XMLHandler.getTagValue( pnode, "field" );
+        propertyType[i] = ValueMeta.getType( XMLHandler.getTagValue( pnode, "type" ) );
+      }
+
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      targetStreams.get( 0 ).setSubject( XMLHandler.getTagValue( stepnode, "vertex_target" ) );
+      targetStreams.get( 1 ).setSubject( XMLHandler.getTagValue( stepnode, "edge_target" ) );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "ExplodeGraphMeta.Exception.UnableToReadStepInfo" ),
+          e );
+    }
+  }
+
+  @Override
+  public void searchInfoAndTargetSteps( List<StepMeta> steps ) {
+    for ( StreamInterface stream : getStepIOMeta().getTargetStreams() ) {
+      stream.setStepMeta( StepMeta.findStep( steps, (String) stream.getSubject() ) );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    passingInputFields = false;
+    vertexIdFieldName = "id";
+    edgeIdFieldName = "id";
+    outIdFieldName = "outV";
+    inIdFieldName = "inV";
+    labelFieldName = "label";
+    allocate( 0 );
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      passingInputFields = rep.getStepAttributeBoolean( id_step, "pass_input" );
+      vertexIdFieldName = rep.getStepAttributeString( id_step, "vertex_id_field" );
+      edgeIdFieldName = rep.getStepAttributeString( id_step, "edge_id_field" );
+      outIdFieldName = rep.getStepAttributeString( id_step, "out_id_field" );
+      inIdFieldName = rep.getStepAttributeString( id_step, "in_id_field" );
+      labelFieldName = rep.getStepAttributeString( id_step, "label_field" );
+
+      int nrProperties = rep.countNrStepAttributes( id_step, "projection_property" );
+      allocate( nrProperties );
+      for ( int i = 0; i < nrProperties; i++ ) {
+        propertyElement[i] = getElementCode( rep.getStepAttributeString( id_step, i, "projection_element" ) );
+        propertyName[i] = rep.getStepAttributeString( id_step, i, "projection_property" );
+        propertyField[i] = rep.getStepAttributeString( id_step, i, "projection_field" );
+        propertyType[i] = ValueMeta.getType( rep.getStepAttributeString( id_step, i, "projection_type" ) );
+      }
+
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      targetStreams.get( 0 ).setSubject( rep.getStepAttributeString( id_step, "vertex_target" ) );
+      targetStreams.get( 1 ).setSubject( rep.getStepAttributeString( id_step, "edge_target" ) );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "ExplodeGraphMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "pass_input", passingInputFields );
+      rep.saveStepAttribute( id_transformation, id_step, "vertex_id_field", vertexIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "edge_id_field", edgeIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "out_id_field", outIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "in_id_field", inIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "label_field", labelFieldName );
+
+      for ( int i = 0; i < propertyName.length; i++ ) {
+        rep.saveStepAttribute( id_transformation, id_step, i, "projection_element", propertyElement[i] );
+        rep.saveStepAttribute( id_transformation, id_step, i, "projection_property", propertyName[i] );
+        rep.saveStepAttribute( id_transformation, id_step, i, "projection_field", propertyField[i] );
+        rep.saveStepAttribute( id_transformation, id_step, i, "projection_type", ValueMeta
+            .getTypeDesc( propertyType[i] ) );
+      }
+
+      List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+      rep.saveStepAttribute( id_transformation, id_step, "vertex_target", targetStreams.get( 0 ).getStepname() );
+      rep.saveStepAttribute( id_transformation, id_step, "edge_target", targetStreams.get( 1 ).getStepname() );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "ExplodeGraphMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "pass_input", passingInputFields ) );
+    retval.append( "    " + XMLHandler.addTagValue( "vertex_id_field", vertexIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "edge_id_field", edgeIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "out_id_field", outIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "in_id_field", inIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "label_field", labelFieldName ) );
+
+    retval.append( "    <projections>" + Const.CR );
+    for ( int i = 0; i < propertyName.length; i++ ) {
+      retval.append( "      <projection>" + Const.CR );
+      retval.append( "        " + XMLHandler.addTagValue( "element", propertyElement[i] ) );
+      retval.append( "        " + XMLHandler.addTagValue( "property", propertyName[i] ) );
+      retval.append( "        " + XMLHandler.addTagValue( "field", propertyField[i] ) );
+      retval.append( "        " + XMLHandler.addTagValue( "type", ValueMeta.getTypeDesc( propertyType[i] ) ) );
+      retval.append( "      </projection>" + Const.CR );
+    }
+    retval.append( "    </projections>" + Const.CR );
+
+    List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+    retval.append( "    " + XMLHandler.addTagValue( "vertex_target", targetStreams.get( 0 ).getStepname() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "edge_target", targetStreams.get( 1 ).getStepname() ) );
+    return retval.toString();
+  }
+
+  /**
+   * The rows sent to the edge target step carry the edge layout, all other rows the vertex layout. Both layouts start
+   * with the input fields when these are passed through.
+   */
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    if ( !passingInputFields ) {
+      inputRowMeta.clear();
+    }
+    if ( isEdgeTarget( nextStep ) ) {
+      addStringField( inputRowMeta, edgeIdFieldName, origin, space );
+      addStringField( inputRowMeta, outIdFieldName, origin, space );
+      addStringField( inputRowMeta, inIdFieldName, origin, space );
+      addStringField( inputRowMeta, labelFieldName, origin, space );
+      addPropertyFields( inputRowMeta, ELEMENT_EDGE, origin, space );
+    } else {
+      addStringField( inputRowMeta, vertexIdFieldName, origin, space );
+      addPropertyFields( inputRowMeta, ELEMENT_VERTEX, origin, space );
+    }
+  }
+
+  private boolean isEdgeTarget( StepMeta nextStep ) {
+    if ( nextStep == null ) {
+      return false;
+    }
+    StreamInterface edgeStream = getStepIOMeta().getTargetStreams().get( 1 );
+    String edgeTarget = edgeStream.getStepMeta() != null ? edgeStream.getStepMeta().getName()
+        : (String) edgeStream.getSubject();
+    return nextStep.getName().equalsIgnoreCase( edgeTarget );
+  }
+
+  private void addStringField( RowMetaInterface rowMeta, String fieldName, String origin, VariableSpace space ) {
+    if ( !Const.isEmpty( fieldName ) ) {
+      ValueMetaInterface v = new ValueMetaString( space.environmentSubstitute( fieldName ) );
+      v.setOrigin( origin );
+      rowMeta.addValueMeta( v );
+    }
+  }
+
+  private void addPropertyFields( RowMetaInterface rowMeta, String element, String origin, VariableSpace space )
+    throws KettleStepException {
+    for ( int i = 0; i < propertyName.length; i++ ) {
+      if ( element.equals( propertyElement[i] ) ) {
+        try {
+          ValueMetaInterface v =
+              ValueMetaFactory.createValueMeta( space.environmentSubstitute( getOutputFieldName( i ) ),
+                  propertyType[i] );
+          v.setOrigin( origin );
+          rowMeta.addValueMeta( v );
+        } catch ( Exception e ) {
+          throw new KettleStepException( e );
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the column a projected property is written to, which defaults to the property name
+   */
+  public String getOutputFieldName( int index ) {
+    return Const.isEmpty( propertyField[index] ) ? propertyName[index] : propertyField[index];
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "ExplodeGraphMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ExplodeGraphMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "ExplodeGraphMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    List<StreamInterface> targetStreams = getStepIOMeta().getTargetStreams();
+    if ( targetStreams.get( 0 ).getStepMeta() == null && targetStreams.get( 1 ).getStepMeta() == null ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ExplodeGraphMeta.CheckResult.NoTargetSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "ExplodeGraphMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new ExplodeGraph( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new ExplodeGraphData();
+  }
+
+  /**
+   * Returns the Input/Output metadata for this step: one target stream for the vertex rows and one for the edge rows.
+   */
+  public StepIOMetaInterface getStepIOMeta() {
+    if ( ioMeta == null ) {
+
+      ioMeta = new StepIOMeta( true, true, false, false, false, false );
+
+      ioMeta.addStream( new Stream( StreamType.TARGET, null, BaseMessages.getString( PKG,
+          "ExplodeGraphMeta.TargetStream.Vertices.Description" ), StreamIcon.TARGET, null ) );
+      ioMeta.addStream( new Stream( StreamType.TARGET, null, BaseMessages.getString( PKG,
+          "ExplodeGraphMeta.TargetStream.Edges.Description" ), StreamIcon.TARGET, null ) );
+    }
+
+    return ioMeta;
+  }
+
+  public void resetStepIoMeta() {
+    // Do nothing, the target streams are kept as configured.
+  }
+
+  public boolean excludeFromRowLayoutVerification() {
+    return true;
+  }
+
+  public static String getElementCode( String codeOrDesc ) {
+    for ( int i = 0; i < ELEMENT_CODES.length; i++ ) {
+      if ( ELEMENT_CODES[i].equalsIgnoreCase( codeOrDesc ) || ELEMENT_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return ELEMENT_CODES[i];
+      }
+    }
+    return ELEMENT_VERTEX;
+  }
+
+  public static String getElementDesc( String code ) {
+    for ( int i = 0; i < ELEMENT_CODES.length; i++ ) {
+      if ( ELEMENT_CODES[i].equalsIgnoreCase( code ) ) {
+        return ELEMENT_DESCS[i];
+      }
+    }
+    return ELEMENT_DESCS[0];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return true if the fields of the input row are copied in front of every vertex and edge row
+   */
+  public boolean isPassingInputFields() {
+    return passingInputFields;
+  }
+
+  public void setPassingInputFields( boolean passingInputFields ) {
+    this.passingInputFields = passingInputFields;
+  }
+
+  public String getVertexIdFieldName() {
+    return vertexIdFieldName;
+  }
+
+  public void setVertexIdFieldName( String vertexIdFieldName ) {
+    this.vertexIdFieldName = vertexIdFieldName;
+  }
+
+  public String getEdgeIdFieldName() {
+    return edgeIdFieldName;
+  }
+
+  public void setEdgeIdFieldName( String edgeIdFieldName ) {
+    this.edgeIdFieldName = edgeIdFieldName;
+  }
+
+  public String getOutIdFieldName() {
+    return outIdFieldName;
+  }
+
+  public void setOutIdFieldName( String outIdFieldName ) {
+    this.outIdFieldName = outIdFieldName;
+  }
+
+  public String getInIdFieldName() {
+    return inIdFieldName;
+  }
+
+  public void setInIdFieldName( String inIdFieldName ) {
+    this.inIdFieldName = inIdFieldName;
+  }
+
+  public String getLabelFieldName() {
+    return labelFieldName;
+  }
+
+  public void setLabelFieldName( String labelFieldName ) {
+    this.labelFieldName = labelFieldName;
+  }
+
+  public String[] getPropertyElement() {
+    return propertyElement;
+  }
+
+  public void setPropertyElement( String[] propertyElement ) {
+    this.propertyElement = propertyElement;
+  }
+
+  public String[] getPropertyName() {
+    return propertyName;
+  }
+
+  public void setPropertyName( String[] propertyName ) {
+    this.propertyName = propertyName;
+  }
+
+  public String[] getPropertyField() {
+    return propertyField;
+  }
+
+  public void setPropertyField( String[] propertyField ) {
+    this.propertyField = propertyField;
+  }
+
+  public int[] getPropertyType() {
+    return propertyType;
+  }
+
+  public void setPropertyType( int[] propertyType ) {
+    this.propertyType = propertyType;
+  }
+}
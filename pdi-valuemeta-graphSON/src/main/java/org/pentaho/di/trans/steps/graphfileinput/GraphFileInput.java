@@ -0,0 +1,230 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileinput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.GraphSnapshot;
+import org.pentaho.di.core.graph.algorithms.VertexRanges;
+import org.pentaho.di.core.graph.io.BinaryElementReader;
+import org.pentaho.di.core.graph.io.EdgeListElementReader;
+import org.pentaho.di.core.graph.io.GraphElementReader;
+import org.pentaho.di.core.graph.io.GraphLoader;
+import org.pentaho.di.core.graph.io.GraphSONElementReader;
+import org.pentaho.di.core.graph.io.ParallelGraphSONReader;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * Reads a graph file one element at a time. In row mode every call to processRow() reads and emits a single vertex or
+ * edge, so no more than one element is held in memory; in graph mode the elements go straight into the graph being
+ * built, without the file ever being held as one string.
+ */
+public class GraphFileInput extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphFileInputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphFileInputMeta meta;
+  private GraphFileInputData data;
+
+  public GraphFileInput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphFileInputMeta) smi;
+    data = (GraphFileInputData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.filename = environmentSubstitute( meta.getFilename() );
+    if ( Const.isEmpty( data.filename ) ) {
+      logError( BaseMessages.getString( PKG, "GraphFileInput.Error.NoFilename" ) );
+      return false;
+    }
+    data.graphMode = GraphFileInputMeta.OUTPUT_MODE_GRAPH.equals( meta.getOutputMode() );
+    data.snapshot = GraphFileInputMeta.FORMAT_SNAPSHOT.equals( GraphFileInputMeta.getFormatCode( meta.getFormat() ) );
+    if ( data.snapshot ) {
+      // a snapshot is a directory that is mapped, not a stream that is read
+      if ( !data.graphMode ) {
+        logError( BaseMessages.getString( PKG, "GraphFileInput.Error.SnapshotNeedsGraph" ) );
+        return false;
+      }
+      return true;
+    }
+    try {
+      data.reader = openReader( KettleVFS.getInputStream( data.filename, this ) );
+    } catch ( Exception e ) {
+      logError( BaseMessages.getString( PKG, "GraphFileInput.Error.UnableToOpenFile", data.filename ), e );
+      return false;
+    }
+    return true;
+  }
+
+  private GraphElementReader openReader( InputStream in ) throws IOException {
+    String format = GraphFileInputMeta.getFormatCode( meta.getFormat() );
+    if ( GraphFileInputMeta.FORMAT_GRAPHSON.equals( format ) ) {
+      int parallelism =
+          VertexRanges.resolveParallelism( Const.toInt( environmentSubstitute( meta.getParallelism() ), 0 ) );
+      if ( parallelism > 1 ) {
+        data.executor = VertexRanges.newExecutor( getStepname(), parallelism );
+        return new ParallelGraphSONReader( in, data.executor, parallelism );
+      }
+      return new GraphSONElementReader( in );
+    }
+    if ( GraphFileInputMeta.FORMAT_BINARY.equals( format ) ) {
+      return new BinaryElementReader( in );
+    }
+    String defaultLabel = environmentSubstitute( meta.getDefaultLabel() );
+    return new EdgeListElementReader( new InputStreamReader( in, Const.XML_ENCODING ),
+        GraphFileInputMeta.FORMAT_ADJACENCY_LIST.equals( format ), Const.NVL( defaultLabel, "edge" ) );
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphFileInputMeta) smi;
+    data = (GraphFileInputData) sdi;
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = new RowMeta();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+      data.typeIndex = indexOf( meta.getTypeFieldName() );
+      data.idIndex = indexOf( meta.getIdFieldName() );
+      data.outIdIndex = indexOf( meta.getOutIdFieldName() );
+      data.inIdIndex = indexOf( meta.getInIdFieldName() );
+      data.labelIndex = indexOf( meta.getLabelFieldName() );
+      data.propertiesIndex = indexOf( meta.getPropertiesFieldName() );
+      data.mapper = new ObjectMapper();
+    }
+
+    try {
+      if ( data.graphMode ) {
+        long start = System.currentTimeMillis();
+        Graph graph;
+        if ( data.snapshot ) {
+          graph = GraphSnapshot.open( new File( data.filename ) );
+        } else if ( meta.isReadOnly() ) {
+          graph = GraphLoader.loadCsr( data.reader );
+        } else {
+          graph = new TinkerGraph();
+          GraphLoader.load( data.reader, graph );
+        }
+        if ( log.isDetailed() ) {
+          long elapsed = System.currentTimeMillis() - start;
+          logDetailed( BaseMessages.getString( PKG, "GraphFileInput.Log.Loaded", data.filename, String
+              .valueOf( elapsed ) ) );
+        }
+        Object[] outputRow = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+        outputRow[0] = graph;
+        incrementLinesInput();
+        putRow( data.outputRowMeta, outputRow );
+        setOutputDone();
+        return false;
+      }
+
+      if ( !data.reader.next() ) {
+        setOutputDone();
+        return false;
+      }
+      Object[] outputRow = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+      boolean vertex = data.reader.isVertex();
+      set( outputRow, data.typeIndex, vertex ? GraphFileInputMeta.TYPE_VERTEX : GraphFileInputMeta.TYPE_EDGE );
+      set( outputRow, data.idIndex, data.reader.getId() );
+      if ( !vertex ) {
+        set( outputRow, data.outIdIndex, data.reader.getOutId() );
+        set( outputRow, data.inIdIndex, data.reader.getInId() );
+        set( outputRow, data.labelIndex, data.reader.getLabel() );
+      }
+      if ( data.propertiesIndex >= 0 ) {
+        outputRow[data.propertiesIndex] = data.mapper.writeValueAsString( data.reader.getProperties() );
+      }
+      incrementLinesInput();
+      putRow( data.outputRowMeta, outputRow );
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphFileInput.Error.UnableToRead", data.filename ), e );
+    } catch ( IllegalArgumentException e ) {
+      // duplicate vertex ids and the like
+      throw new KettleException( BaseMessages.getString( PKG, "GraphFileInput.Error.UnableToRead", data.filename ), e );
+    }
+
+    if ( checkFeedback( getLinesInput() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphFileInput.Log.LineNumber" ) + getLinesInput() );
+      }
+    }
+
+    return true;
+  }
+
+  private int indexOf( String fieldName ) {
+    if ( data.graphMode || Const.isEmpty( fieldName ) ) {
+      return -1;
+    }
+    return data.outputRowMeta.indexOfValue( environmentSubstitute( fieldName ) );
+  }
+
+  private static void set( Object[] row, int index, Object value ) {
+    if ( index >= 0 && value != null ) {
+      row[index] = value.toString();
+    }
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphFileInputData) sdi;
+    if ( data.reader != null ) {
+      try {
+        data.reader.close();
+      } catch ( IOException e ) {
+        logError( BaseMessages.getString( PKG, "GraphFileInput.Error.UnableToClose", data.filename ), e );
+      }
+      data.reader = null;
+    }
+    if ( data.executor != null ) {
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileinput;
+
+import java.util.concurrent.ExecutorService;
+
+import org.pentaho.di.core.graph.io.GraphElementReader;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GraphFileInputData extends BaseStepData implements StepDataInterface {
+
+  public RowMetaInterface outputRowMeta;
+
+  public String filename;
+  public GraphElementReader reader;
+  public boolean graphMode;
+  public boolean snapshot;
+
+  /** The threads GraphSON is parsed on, null to parse on the step thread */
+  public ExecutorService executor;
+
+  /** The position of each element field in the output row, -1 when it is left out */
+  public int typeIndex;
+  public int idIndex;
+  public int outIdIndex;
+  public int inIdIndex;
+  public int labelIndex;
+  public int propertiesIndex;
+
+  public ObjectMapper mapper;
+
+  public GraphFileInputData() {
+    super();
+  }
+}
@@ -0,0 +1,442 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileinput;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph File Input step reads a GraphSON, edge list, adjacency list or binary graph file element by element. It
+ * either emits a row per vertex and edge, or builds a single graph from the file.
+ */
+@Step( id = "GraphFileInput", image = "addnodes.png", name = "Graph File Input",
+    description = "Reads vertices and edges from a graph file", categoryDescription = "Graph" )
+public class GraphFileInputMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphFileInputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  public static final String FORMAT_GRAPHSON = "graphson";
+
+  public static final String FORMAT_EDGE_LIST = "edgelist";
+
+  public static final String FORMAT_ADJACENCY_LIST = "adjacency";
+
+  public static final String FORMAT_BINARY = "binary";
+
+  /** A snapshot directory written by Graph File Output, mapped into memory instead of read */
+  public static final String FORMAT_SNAPSHOT = "snapshot";
+
+  public static final String[] FORMAT_CODES = new String[] { FORMAT_GRAPHSON, FORMAT_EDGE_LIST,
+    FORMAT_ADJACENCY_LIST, FORMAT_BINARY, FORMAT_SNAPSHOT, };
+
+  public static final String[] FORMAT_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphFileInputMeta.Format.GraphSON" ),
+    BaseMessages.getString( PKG, "GraphFileInputMeta.Format.EdgeList" ),
+    BaseMessages.getString( PKG, "GraphFileInputMeta.Format.AdjacencyList" ),
+    BaseMessages.getString( PKG, "GraphFileInputMeta.Format.Binary" ),
+    BaseMessages.getString( PKG, "GraphFileInputMeta.Format.Snapshot" ), };
+
+  /** Emit a row for every vertex and edge in the file */
+  public static final String OUTPUT_MODE_ROWS = "rows";
+
+  /** Emit a single row holding the graph in the file */
+  public static final String OUTPUT_MODE_GRAPH = "graph";
+
+  public static final String[] OUTPUT_MODE_CODES = new String[] { OUTPUT_MODE_ROWS, OUTPUT_MODE_GRAPH, };
+
+  public static final String[] OUTPUT_MODE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphFileInputMeta.OutputMode.Rows" ),
+    BaseMessages.getString( PKG, "GraphFileInputMeta.OutputMode.Graph" ), };
+
+  public static final String TYPE_VERTEX = "vertex";
+
+  public static final String TYPE_EDGE = "edge";
+
+  private String filename;
+  private String format;
+  private String defaultLabel;
+  private String parallelism;
+  private String outputMode;
+  private boolean readOnly;
+  private String graphFieldName;
+  private String typeFieldName;
+  private String idFieldName;
+  private String outIdFieldName;
+  private String inIdFieldName;
+  private String labelFieldName;
+  private String propertiesFieldName;
+
+  public GraphFileInputMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      filename = XMLHandler.getTagValue( stepnode, "filename" );
+      format = getFormatCode( XMLHandler.getTagValue( stepnode, "format" ) );
+      defaultLabel = XMLHandler.getTagValue( stepnode, "default_label" );
+      parallelism = XMLHandler.getTagValue( stepnode, "parallelism" );
+      outputMode = getOutputModeCode( XMLHandler.getTagValue( stepnode, "output_mode" ) );
+      readOnly = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "read_only" ) );
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graph_field" );
+      typeFieldName = XMLHandler.getTagValue( stepnode, "type_field" );
+      idFieldName = XMLHandler.getTagValue( stepnode, "id_field" );
+      outIdFieldName = XMLHandler.getTagValue( stepnode, "out_id_field" );
+      inIdFieldName = XMLHandler.getTagValue( stepnode, "in_id_field" );
+      labelFieldName = XMLHandler.getTagValue( stepnode, "label_field" );
+      propertiesFieldName = XMLHandler.getTagValue( stepnode, "properties_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "GraphFileInputMeta.Exception.UnableToReadStepInfo" ),
+          e );
+    }
+  }
+
+  public void setDefault() {
+    filename = null;
+    format = FORMAT_GRAPHSON;
+    defaultLabel = "edge";
+    parallelism = "0";
+    outputMode = OUTPUT_MODE_ROWS;
+    readOnly = true;
+    graphFieldName = "graph";
+    typeFieldName = "type";
+    idFieldName = "id";
+    outIdFieldName = "outV";
+    inIdFieldName = "inV";
+    labelFieldName = "label";
+    propertiesFieldName = "properties";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      filename = rep.getStepAttributeString( id_step, "filename" );
+      format = getFormatCode( rep.getStepAttributeString( id_step, "format" ) );
+      defaultLabel = rep.getStepAttributeString( id_step, "default_label" );
+      parallelism = rep.getStepAttributeString( id_step, "parallelism" );
+      outputMode = getOutputModeCode( rep.getStepAttributeString( id_step, "output_mode" ) );
+      readOnly = rep.getStepAttributeBoolean( id_step, "read_only" );
+      graphFieldName = rep.getStepAttributeString( id_step, "graph_field" );
+      typeFieldName = rep.getStepAttributeString( id_step, "type_field" );
+      idFieldName = rep.getStepAttributeString( id_step, "id_field" );
+      outIdFieldName = rep.getStepAttributeString( id_step, "out_id_field" );
+      inIdFieldName = rep.getStepAttributeString( id_step, "in_id_field" );
+      labelFieldName = rep.getStepAttributeString( id_step, "label_field" );
+      propertiesFieldName = rep.getStepAttributeString( id_step, "properties_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphFileInputMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "filename", filename );
+      rep.saveStepAttribute( id_transformation, id_step, "format", format );
+      rep.saveStepAttribute( id_transformation, id_step, "default_label", defaultLabel );
+      rep.saveStepAttribute( id_transformation, id_step, "parallelism", parallelism );
+      rep.saveStepAttribute( id_transformation, id_step, "output_mode", outputMode );
+      rep.saveStepAttribute( id_transformation, id_step, "read_only", readOnly );
+      rep.saveStepAttribute( id_transformation, id_step, "graph_field", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "type_field", typeFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "id_field", idFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "out_id_field", outIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "in_id_field", inIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "label_field", labelFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "properties_field", propertiesFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphFileInputMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "filename", filename ) );
+    retval.append( "    " + XMLHandler.addTagValue( "format", format ) );
+    retval.append( "    " + XMLHandler.addTagValue( "default_label", defaultLabel ) );
+    retval.append( "    " + XMLHandler.addTagValue( "parallelism", parallelism ) );
+    retval.append( "    " + XMLHandler.addTagValue( "output_mode", outputMode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "read_only", readOnly ) );
+    retval.append( "    " + XMLHandler.addTagValue( "graph_field", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "type_field", typeFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "id_field", idFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "out_id_field", outIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "in_id_field", inIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "label_field", labelFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "properties_field", propertiesFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    if ( OUTPUT_MODE_GRAPH.equals( outputMode ) ) {
+      ValueMetaInterface graphMeta = new ValueMetaGraph( space.environmentSubstitute( graphFieldName ) );
+      graphMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( graphMeta );
+      return;
+    }
+    String[] names =
+        new String[] { typeFieldName, idFieldName, outIdFieldName, inIdFieldName, labelFieldName,
+          propertiesFieldName, };
+    for ( String name : names ) {
+      if ( !Const.isEmpty( name ) ) {
+        ValueMetaInterface valueMeta = new ValueMetaString( space.environmentSubstitute( name ) );
+        valueMeta.setOrigin( origin );
+        inputRowMeta.addValueMeta( valueMeta );
+      }
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( input.length > 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileInputMeta.CheckResult.NoInputExpected" ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphFileInputMeta.CheckResult.NoInput" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( filename ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileInputMeta.CheckResult.NoFilename" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( FORMAT_SNAPSHOT.equals( getFormatCode( format ) ) && !OUTPUT_MODE_GRAPH.equals( outputMode ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileInputMeta.CheckResult.SnapshotNeedsGraph" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphFileInput( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphFileInputData();
+  }
+
+  public static String getFormatCode( String codeOrDesc ) {
+    for ( int i = 0; i < FORMAT_CODES.length; i++ ) {
+      if ( FORMAT_CODES[i].equalsIgnoreCase( codeOrDesc ) || FORMAT_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return FORMAT_CODES[i];
+      }
+    }
+    return FORMAT_GRAPHSON;
+  }
+
+  public static String getFormatDesc( String code ) {
+    for ( int i = 0; i < FORMAT_CODES.length; i++ ) {
+      if ( FORMAT_CODES[i].equalsIgnoreCase( code ) ) {
+        return FORMAT_DESCS[i];
+      }
+    }
+    return FORMAT_DESCS[0];
+  }
+
+  public static String getOutputModeCode( String codeOrDesc ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || OUTPUT_MODE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return OUTPUT_MODE_CODES[i];
+      }
+    }
+    return OUTPUT_MODE_ROWS;
+  }
+
+  public static String getOutputModeDesc( String code ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( code ) ) {
+        return OUTPUT_MODE_DESCS[i];
+      }
+    }
+    return OUTPUT_MODE_DESCS[0];
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  public void setFilename( String filename ) {
+    this.filename = filename;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public void setFormat( String format ) {
+    this.format = format;
+  }
+
+  /**
+   * @return the label of edges in edge and adjacency lists that don't name one
+   */
+  public String getDefaultLabel() {
+    return defaultLabel;
+  }
+
+  public void setDefaultLabel( String defaultLabel ) {
+    this.defaultLabel = defaultLabel;
+  }
+
+  public String getOutputMode() {
+    return outputMode;
+  }
+
+  public void setOutputMode( String outputMode ) {
+    this.outputMode = outputMode;
+  }
+
+  /**
+   * @return the number of threads to parse GraphSON files with; 0 or empty means one per available processor
+   */
+  public String getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism( String parallelism ) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @return true to build a compact read-only graph, false for a TinkerGraph later steps can add to
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  public void setReadOnly( boolean readOnly ) {
+    this.readOnly = readOnly;
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return the field to hold "vertex" or "edge"; empty to leave it out
+   */
+  public String getTypeFieldName() {
+    return typeFieldName;
+  }
+
+  public void setTypeFieldName( String typeFieldName ) {
+    this.typeFieldName = typeFieldName;
+  }
+
+  public String getIdFieldName() {
+    return idFieldName;
+  }
+
+  public void setIdFieldName( String idFieldName ) {
+    this.idFieldName = idFieldName;
+  }
+
+  public String getOutIdFieldName() {
+    return outIdFieldName;
+  }
+
+  public void setOutIdFieldName( String outIdFieldName ) {
+    this.outIdFieldName = outIdFieldName;
+  }
+
+  public String getInIdFieldName() {
+    return inIdFieldName;
+  }
+
+  public void setInIdFieldName( String inIdFieldName ) {
+    this.inIdFieldName = inIdFieldName;
+  }
+
+  public String getLabelFieldName() {
+    return labelFieldName;
+  }
+
+  public void setLabelFieldName( String labelFieldName ) {
+    this.labelFieldName = labelFieldName;
+  }
+
+  /**
+   * @return the field to hold the properties of each element as a JSON object; empty to leave it out
+   */
+  public String getPropertiesFieldName() {
+    return propertiesFieldName;
+  }
+
+  public void setPropertiesFieldName( String propertiesFieldName ) {
+    this.propertiesFieldName = propertiesFieldName;
+  }
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileoutput;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.Map;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.GraphSnapshot;
+import org.pentaho.di.core.graph.io.BinaryElementWriter;
+import org.pentaho.di.core.graph.io.CountingOutputStream;
+import org.pentaho.di.core.graph.io.EdgeListElementWriter;
+import org.pentaho.di.core.graph.io.GraphElementWriter;
+import org.pentaho.di.core.graph.io.GraphExporter;
+import org.pentaho.di.core.graph.io.GraphSONElementWriter;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.graphfileinput.GraphFileInputMeta;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+
+/**
+ * Writes graphs element by element through a buffered stream, so a graph is never turned into a string on its way to
+ * disk. When a split size is set, a new file is started at the first element boundary after the current file reached
+ * that size; every file is a complete document of its format.
+ * <p>
+ * Snapshots are the exception: every graph is written to a directory of its own, the first one named after the file
+ * name and the next ones numbered, and the graph field is replaced by the mapped snapshot so that later steps only pass
+ * a reference to it along. Snapshots are mapped into memory and can therefore only be written to local files.
+ */
+public class GraphFileOutput extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphFileOutputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private GraphFileOutputMeta meta;
+  private GraphFileOutputData data;
+
+  private final GraphElementWriter splittingWriter = new SplittingWriter();
+
+  public GraphFileOutput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphFileOutputMeta) smi;
+    data = (GraphFileOutputData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.filename = environmentSubstitute( meta.getFilename() );
+    if ( Const.isEmpty( data.filename ) ) {
+      logError( BaseMessages.getString( PKG, "GraphFileOutput.Error.NoFilename" ) );
+      return false;
+    }
+    data.extension = environmentSubstitute( meta.getExtension() );
+    data.format = GraphFileOutputMeta.getFormatCode( meta.getFormat() );
+    data.typed = meta.isTyped();
+    data.splitBytes = Const.toLong( environmentSubstitute( meta.getSplitSize() ), 0L ) * 1024L * 1024L;
+    data.graphMode = !GraphFileOutputMeta.INPUT_MODE_ROWS.equals( meta.getInputMode() );
+    if ( GraphFileOutputMeta.FORMAT_SNAPSHOT.equals( data.format ) && !data.graphMode ) {
+      logError( BaseMessages.getString( PKG, "GraphFileOutput.Error.SnapshotNeedsGraph" ) );
+      return false;
+    }
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphFileOutputMeta) smi;
+    data = (GraphFileOutputData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      closeFile();
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      if ( data.graphMode ) {
+        data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+        if ( data.graphFieldIndex < 0 ) {
+          logError( BaseMessages.getString( PKG, "GraphFileOutput.Error.NotFound.GraphField" ) );
+          setErrors( 1L );
+          setOutputDone();
+          return false;
+        }
+      } else {
+        data.typeIndex = indexOf( meta.getTypeFieldName() );
+        data.idIndex = indexOf( meta.getIdFieldName() );
+        data.outIdIndex = indexOf( meta.getOutIdFieldName() );
+        data.inIdIndex = indexOf( meta.getInIdFieldName() );
+        data.labelIndex = indexOf( meta.getLabelFieldName() );
+        data.propertiesIndex = indexOf( meta.getPropertiesFieldName() );
+        if ( data.outIdIndex < 0 || data.inIdIndex < 0 ) {
+          logError( BaseMessages.getString( PKG, "GraphFileOutput.Error.NotFound.EdgeFields" ) );
+          setErrors( 1L );
+          setOutputDone();
+          return false;
+        }
+        data.mapper = new ObjectMapper();
+      }
+    }
+
+    try {
+      if ( data.graphMode ) {
+        ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+        Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+        if ( g != null && GraphFileOutputMeta.FORMAT_SNAPSHOT.equals( data.format ) ) {
+          Graph snapshot = writeSnapshot( g );
+          if ( vmg.getStorageType() == ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+            r[data.graphFieldIndex] = snapshot;
+          }
+        } else if ( g != null ) {
+          GraphExporter.export( g, splittingWriter );
+        }
+      } else {
+        writeElement( r );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphFileOutput.Error.UnableToWrite",
+          data.currentFilename ), e );
+    }
+
+    putRow( getInputRowMeta(), r ); // copy row to possible alternate rowset(s).
+    incrementLinesOutput();
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphFileOutput.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  private int indexOf( String fieldName ) {
+    if ( Const.isEmpty( fieldName ) ) {
+      return -1;
+    }
+    return getInputRowMeta().indexOfValue( environmentSubstitute( fieldName ) );
+  }
+
+  /**
+   * Writes the vertex or edge described by the fields of a row.
+   */
+  @SuppressWarnings( "unchecked" )
+  private void writeElement( Object[] r ) throws KettleException, IOException {
+    String id = getString( r, data.idIndex );
+    String outId = getString( r, data.outIdIndex );
+    String type = getString( r, data.typeIndex );
+    Map<String, Object> properties = Collections.emptyMap();
+    String json = getString( r, data.propertiesIndex );
+    if ( !Const.isEmpty( json ) ) {
+      properties = data.mapper.readValue( json, Map.class );
+    }
+    boolean vertex = type == null ? outId == null : !GraphFileInputMeta.TYPE_EDGE.equalsIgnoreCase( type );
+    if ( vertex ) {
+      splittingWriter.writeVertex( id, properties );
+    } else {
+      String label = Const.NVL( getString( r, data.labelIndex ), "edge" );
+      splittingWriter.writeEdge( id, outId, getString( r, data.inIdIndex ), label, properties );
+    }
+  }
+
+  private String getString( Object[] r, int index ) throws KettleException {
+    return index < 0 ? null : getInputRowMeta().getString( r, index );
+  }
+
+  private String buildFilename( boolean numbered ) {
+    StringBuilder name = new StringBuilder( data.filename );
+    if ( numbered ) {
+      name.append( '_' ).append( data.splitNr );
+    }
+    if ( !Const.isEmpty( data.extension ) ) {
+      name.append( '.' ).append( data.extension );
+    }
+    return name.toString();
+  }
+
+  private Graph writeSnapshot( Graph graph ) throws IOException {
+    data.currentFilename = buildFilename( data.splitNr > 0 );
+    data.splitNr++;
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphFileOutput.Log.OpenedFile", data.currentFilename ) );
+    }
+    File directory = new File( data.currentFilename );
+    GraphSnapshot.write( graph, directory );
+    return GraphSnapshot.open( directory );
+  }
+
+  private void openFile() throws KettleException {
+    data.currentFilename = buildFilename( data.splitBytes > 0 );
+    try {
+      data.counter =
+          new CountingOutputStream( new BufferedOutputStream( KettleVFS.getOutputStream( data.currentFilename, this,
+              false ), BUFFER_SIZE ) );
+      if ( GraphFileOutputMeta.FORMAT_BINARY.equals( data.format ) ) {
+        data.writer = new BinaryElementWriter( data.counter );
+      } else if ( GraphFileOutputMeta.FORMAT_EDGE_LIST.equals( data.format ) ) {
+        data.writer = new EdgeListElementWriter( new OutputStreamWriter( data.counter, Const.XML_ENCODING ) );
+      } else {
+        data.writer =
+            new GraphSONElementWriter( data.counter, data.typed ? GraphSONMode.EXTENDED : GraphSONMode.NORMAL );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphFileOutput.Error.UnableToOpenFile",
+          data.currentFilename ), e );
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphFileOutput.Log.OpenedFile", data.currentFilename ) );
+    }
+  }
+
+  private void closeFile() throws KettleException {
+    if ( data.writer != null ) {
+      try {
+        data.writer.close();
+      } catch ( IOException e ) {
+        throw new KettleException( BaseMessages.getString( PKG, "GraphFileOutput.Error.UnableToClose",
+            data.currentFilename ), e );
+      } finally {
+        data.writer = null;
+        data.counter = null;
+      }
+    }
+  }
+
+  /**
+   * Opens the first file on demand and moves on to the next file once the current one is full.
+   */
+  private class SplittingWriter implements GraphElementWriter {
+
+    private GraphElementWriter current() throws IOException {
+      try {
+        if ( data.writer != null && data.splitBytes > 0 && data.counter.getCount() >= data.splitBytes ) {
+          closeFile();
+          data.splitNr++;
+        }
+        if ( data.writer == null ) {
+          openFile();
+        }
+      } catch ( KettleException e ) {
+        throw new IOException( e.getMessage(), e );
+      }
+      return data.writer;
+    }
+
+    public void writeVertex( Object id, Map<String, Object> properties ) throws IOException {
+      current().writeVertex( id, properties );
+    }
+
+    public void writeEdge( Object id, Object outId, Object inId, String label, Map<String, Object> properties )
+      throws IOException {
+      current().writeEdge( id, outId, inId, label, properties );
+    }
+
+    public void close() {
+      // the file stays open for the next row
+    }
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphFileOutputData) sdi;
+    try {
+      closeFile();
+    } catch ( KettleException e ) {
+      logError( e.getMessage(), e );
+    }
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileoutput;
+
+import org.pentaho.di.core.graph.io.CountingOutputStream;
+import org.pentaho.di.core.graph.io.GraphElementWriter;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GraphFileOutputData extends BaseStepData implements StepDataInterface {
+
+  public String filename;
+  public String extension;
+  public String format;
+  public boolean typed;
+  public long splitBytes;
+  public boolean graphMode;
+
+  public int graphFieldIndex;
+  public int typeIndex;
+  public int idIndex;
+  public int outIdIndex;
+  public int inIdIndex;
+  public int labelIndex;
+  public int propertiesIndex;
+
+  /** The writer for the current file and the byte count of the stream under it, both null when no file is open */
+  public GraphElementWriter writer;
+  public CountingOutputStream counter;
+  public int splitNr;
+  public String currentFilename;
+
+  public ObjectMapper mapper;
+
+  public GraphFileOutputData() {
+    super();
+  }
+}
@@ -0,0 +1,423 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphfileoutput;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph File Output step writes the graphs in a graph field, or vertex and edge rows as produced by the Graph File
+ * Input step, to GraphSON, edge list or binary graph files. Rows are passed on unchanged.
+ */
+@Step( id = "GraphFileOutput", image = "addnodes.png", name = "Graph File Output",
+    description = "Writes graphs or vertex and edge rows to a graph file", categoryDescription = "Graph" )
+public class GraphFileOutputMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphFileOutputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  public static final String FORMAT_GRAPHSON = "graphson";
+
+  public static final String FORMAT_EDGE_LIST = "edgelist";
+
+  public static final String FORMAT_BINARY = "binary";
+
+  /** A directory of memory-mappable column files, see GraphSnapshot */
+  public static final String FORMAT_SNAPSHOT = "snapshot";
+
+  public static final String[] FORMAT_CODES = new String[] { FORMAT_GRAPHSON, FORMAT_EDGE_LIST, FORMAT_BINARY,
+    FORMAT_SNAPSHOT, };
+
+  public static final String[] FORMAT_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.Format.GraphSON" ),
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.Format.EdgeList" ),
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.Format.Binary" ),
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.Format.Snapshot" ), };
+
+  /** Write the graph in a graph field of each row */
+  public static final String INPUT_MODE_GRAPH = "graph";
+
+  /** Write a vertex or edge described by the fields of each row */
+  public static final String INPUT_MODE_ROWS = "rows";
+
+  public static final String[] INPUT_MODE_CODES = new String[] { INPUT_MODE_GRAPH, INPUT_MODE_ROWS, };
+
+  public static final String[] INPUT_MODE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.InputMode.Graph" ),
+    BaseMessages.getString( PKG, "GraphFileOutputMeta.InputMode.Rows" ), };
+
+  private String filename;
+  private String extension;
+  private String format;
+  private boolean typed;
+  private String splitSize;
+  private String inputMode;
+  private String graphFieldName;
+  private String typeFieldName;
+  private String idFieldName;
+  private String outIdFieldName;
+  private String inIdFieldName;
+  private String labelFieldName;
+  private String propertiesFieldName;
+
+  public GraphFileOutputMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      filename = XMLHandler.getTagValue( stepnode, "filename" );
+      extension = XMLHandler.getTagValue( stepnode, "extension" );
+      format = getFormatCode( XMLHandler.getTagValue( stepnode, "format" ) );
+      typed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "typed" ) );
+      splitSize = XMLHandler.getTagValue( stepnode, "split_size" );
+      inputMode = getInputModeCode( XMLHandler.getTagValue( stepnode, "input_mode" ) );
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graph_field" );
+      typeFieldName = XMLHandler.getTagValue( stepnode, "type_field" );
+      idFieldName = XMLHandler.getTagValue( stepnode, "id_field" );
+      outIdFieldName = XMLHandler.getTagValue( stepnode, "out_id_field" );
+      inIdFieldName = XMLHandler.getTagValue( stepnode, "in_id_field" );
+      labelFieldName = XMLHandler.getTagValue( stepnode, "label_field" );
+      propertiesFieldName = XMLHandler.getTagValue( stepnode, "properties_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "GraphFileOutputMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    filename = "graph";
+    extension = "json";
+    format = FORMAT_GRAPHSON;
+    typed = false;
+    splitSize = "0";
+    inputMode = INPUT_MODE_GRAPH;
+    graphFieldName = null;
+    typeFieldName = "type";
+    idFieldName = "id";
+    outIdFieldName = "outV";
+    inIdFieldName = "inV";
+    labelFieldName = "label";
+    propertiesFieldName = "properties";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      filename = rep.getStepAttributeString( id_step, "filename" );
+      extension = rep.getStepAttributeString( id_step, "extension" );
+      format = getFormatCode( rep.getStepAttributeString( id_step, "format" ) );
+      typed = rep.getStepAttributeBoolean( id_step, "typed" );
+      splitSize = rep.getStepAttributeString( id_step, "split_size" );
+      inputMode = getInputModeCode( rep.getStepAttributeString( id_step, "input_mode" ) );
+      graphFieldName = rep.getStepAttributeString( id_step, "graph_field" );
+      typeFieldName = rep.getStepAttributeString( id_step, "type_field" );
+      idFieldName = rep.getStepAttributeString( id_step, "id_field" );
+      outIdFieldName = rep.getStepAttributeString( id_step, "out_id_field" );
+      inIdFieldName = rep.getStepAttributeString( id_step, "in_id_field" );
+      labelFieldName = rep.getStepAttributeString( id_step, "label_field" );
+      propertiesFieldName = rep.getStepAttributeString( id_step, "properties_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphFileOutputMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "filename", filename );
+      rep.saveStepAttribute( id_transformation, id_step, "extension", extension );
+      rep.saveStepAttribute( id_transformation, id_step, "format", format );
+      rep.saveStepAttribute( id_transformation, id_step, "typed", typed );
+      rep.saveStepAttribute( id_transformation, id_step, "split_size", splitSize );
+      rep.saveStepAttribute( id_transformation, id_step, "input_mode", inputMode );
+      rep.saveStepAttribute( id_transformation, id_step, "graph_field", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "type_field", typeFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "id_field", idFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "out_id_field", outIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "in_id_field", inIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "label_field", labelFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "properties_field", propertiesFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphFileOutputMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "filename", filename ) );
+    retval.append( "    " + XMLHandler.addTagValue( "extension", extension ) );
+    retval.append( "    " + XMLHandler.addTagValue( "format", format ) );
+    retval.append( "    " + XMLHandler.addTagValue( "typed", typed ) );
+    retval.append( "    " + XMLHandler.addTagValue( "split_size", splitSize ) );
+    retval.append( "    " + XMLHandler.addTagValue( "input_mode", inputMode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "graph_field", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "type_field", typeFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "id_field", idFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "out_id_field", outIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "in_id_field", inIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "label_field", labelFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "properties_field", propertiesFieldName ) );
+    return retval.toString();
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( INPUT_MODE_GRAPH.equals( inputMode ) && prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( FORMAT_SNAPSHOT.equals( getFormatCode( format ) ) && INPUT_MODE_ROWS.equals( inputMode ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.SnapshotNeedsGraph" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( filename ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphFileOutputMeta.CheckResult.NoFilename" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphFileOutput( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphFileOutputData();
+  }
+
+  public static String getFormatCode( String codeOrDesc ) {
+    for ( int i = 0; i < FORMAT_CODES.length; i++ ) {
+      if ( FORMAT_CODES[i].equalsIgnoreCase( codeOrDesc ) || FORMAT_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return FORMAT_CODES[i];
+      }
+    }
+    return FORMAT_GRAPHSON;
+  }
+
+  public static String getFormatDesc( String code ) {
+    for ( int i = 0; i < FORMAT_CODES.length; i++ ) {
+      if ( FORMAT_CODES[i].equalsIgnoreCase( code ) ) {
+        return FORMAT_DESCS[i];
+      }
+    }
+    return FORMAT_DESCS[0];
+  }
+
+  public static String getInputModeCode( String codeOrDesc ) {
+    for ( int i = 0; i < INPUT_MODE_CODES.length; i++ ) {
+      if ( INPUT_MODE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || INPUT_MODE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return INPUT_MODE_CODES[i];
+      }
+    }
+    return INPUT_MODE_GRAPH;
+  }
+
+  public static String getInputModeDesc( String code ) {
+    for ( int i = 0; i < INPUT_MODE_CODES.length; i++ ) {
+      if ( INPUT_MODE_CODES[i].equalsIgnoreCase( code ) ) {
+        return INPUT_MODE_DESCS[i];
+      }
+    }
+    return INPUT_MODE_DESCS[0];
+  }
+
+  /**
+   * @return the name of the file to write, without extension and split number
+   */
+  public String getFilename() {
+    return filename;
+  }
+
+  public void setFilename( String filename ) {
+    this.filename = filename;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  public void setExtension( String extension ) {
+    this.extension = extension;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public void setFormat( String format ) {
+    this.format = format;
+  }
+
+  /**
+   * @return true to write GraphSON in EXTENDED mode, with the type of every property value
+   */
+  public boolean isTyped() {
+    return typed;
+  }
+
+  public void setTyped( boolean typed ) {
+    this.typed = typed;
+  }
+
+  /**
+   * @return the size in MB after which to start a new file, 0 to write a single file
+   */
+  public String getSplitSize() {
+    return splitSize;
+  }
+
+  public void setSplitSize( String splitSize ) {
+    this.splitSize = splitSize;
+  }
+
+  public String getInputMode() {
+    return inputMode;
+  }
+
+  public void setInputMode( String inputMode ) {
+    this.inputMode = inputMode;
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return the field telling vertex rows from edge rows; when empty, rows with an out-vertex id are edges
+   */
+  public String getTypeFieldName() {
+    return typeFieldName;
+  }
+
+  public void setTypeFieldName( String typeFieldName ) {
+    this.typeFieldName = typeFieldName;
+  }
+
+  public String getIdFieldName() {
+    return idFieldName;
+  }
+
+  public void setIdFieldName( String idFieldName ) {
+    this.idFieldName = idFieldName;
+  }
+
+  public String getOutIdFieldName() {
+    return outIdFieldName;
+  }
+
+  public void setOutIdFieldName( String outIdFieldName ) {
+    this.outIdFieldName = outIdFieldName;
+  }
+
+  public String getInIdFieldName() {
+    return inIdFieldName;
+  }
+
+  public void setInIdFieldName( String inIdFieldName ) {
+    this.inIdFieldName = inIdFieldName;
+  }
+
+  public String getLabelFieldName() {
+    return labelFieldName;
+  }
+
+  public void setLabelFieldName( String labelFieldName ) {
+    this.labelFieldName = labelFieldName;
+  }
+
+  /**
+   * @return the field holding the properties of each element as a JSON object; empty to write no properties
+   */
+  public String getPropertiesFieldName() {
+    return propertiesFieldName;
+  }
+
+  public void setPropertiesFieldName( String propertiesFieldName ) {
+    this.propertiesFieldName = propertiesFieldName;
+  }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphmerge;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.GraphMerger;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+
+/**
+ * Collects the graphs of each group of rows and merges them straight into one TinkerGraph, without a round trip
+ * through GraphSON. Only references to the incoming graphs are held until the group is complete, so the lookup map can
+ * be sized for all of their vertices before merging starts.
+ */
+public class GraphMerge extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphMergeMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphMergeMeta meta;
+  private GraphMergeData data;
+
+  public GraphMerge( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphMergeMeta) smi;
+    data = (GraphMergeData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.keyPropertyName = environmentSubstitute( meta.getKeyPropertyName() );
+    if ( Const.isEmpty( data.keyPropertyName ) ) {
+      data.keyPropertyName = null;
+    }
+    data.ghostPropertyName = environmentSubstitute( meta.getGhostPropertyName() );
+    if ( Const.isEmpty( data.ghostPropertyName ) ) {
+      data.ghostPropertyName = null;
+    }
+    data.policy = GraphMergeMeta.getConflictPolicy( GraphMergeMeta.getConflictCode( meta.getConflictPolicy() ) );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphMergeMeta) smi;
+    data = (GraphMergeData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      if ( !first ) {
+        flushGroup();
+      }
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphMerge.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+      data.groupFieldIndex = -1;
+      if ( !Const.isEmpty( meta.getGroupFieldName() ) ) {
+        data.groupFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGroupFieldName() ) );
+        data.groupMeta = getInputRowMeta().getValueMeta( data.groupFieldIndex );
+      }
+      data.groupValue = data.groupFieldIndex < 0 ? null : r[data.groupFieldIndex];
+    }
+
+    if ( data.groupFieldIndex >= 0 ) {
+      Object groupValue = r[data.groupFieldIndex];
+      if ( data.groupMeta.compare( data.groupValue, groupValue ) != 0 ) {
+        flushGroup();
+        data.groupValue = groupValue;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+    if ( g != null ) {
+      data.graphs.add( g );
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphMerge.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Merges the graphs collected for the current group and emits the result.
+   */
+  private void flushGroup() throws KettleException {
+    long start = System.currentTimeMillis();
+    int expectedVertices = 0;
+    for ( Graph g : data.graphs ) {
+      expectedVertices += GraphMerger.countVertices( g );
+    }
+    GraphMerger merger =
+        new GraphMerger( new TinkerGraph(), data.keyPropertyName, data.ghostPropertyName, data.policy,
+            expectedVertices );
+    try {
+      for ( Graph g : data.graphs ) {
+        merger.merge( g );
+      }
+    } catch ( IllegalArgumentException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphMerge.Error.Conflict", e.getMessage() ), e );
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphMerge.Log.Merged", String.valueOf( data.graphs.size() ), String
+          .valueOf( merger.getVertexCount() ), String.valueOf( merger.getMergedVertices() ), String.valueOf( merger
+          .getMergedEdges() ), String.valueOf( System.currentTimeMillis() - start ) ) );
+    }
+    data.graphs.clear();
+
+    Object[] outputRow = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+    int index = 0;
+    if ( data.groupFieldIndex >= 0 ) {
+      outputRow[index++] = data.groupValue;
+    }
+    outputRow[index] = merger.getTarget();
+    putRow( data.outputRowMeta, outputRow );
+  }
+}
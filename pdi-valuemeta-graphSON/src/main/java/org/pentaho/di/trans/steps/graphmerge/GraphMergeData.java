@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphmerge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.graph.PropertyConflictPolicy;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.tinkerpop.blueprints.Graph;
+
+public class GraphMergeData extends BaseStepData implements StepDataInterface {
+
+  public RowMetaInterface outputRowMeta;
+
+  public int graphFieldIndex;
+  public int groupFieldIndex;
+  public ValueMetaInterface groupMeta;
+
+  public String keyPropertyName;
+  public String ghostPropertyName;
+  public PropertyConflictPolicy policy;
+
+  /** The graphs of the current group, merged once the group is complete */
+  public List<Graph> graphs = new ArrayList<Graph>();
+  public Object groupValue;
+
+  public GraphMergeData() {
+    super();
+  }
+}
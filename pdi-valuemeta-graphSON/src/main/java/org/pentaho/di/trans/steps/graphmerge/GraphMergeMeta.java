@@ -0,0 +1,315 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphmerge;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.graph.PropertyConflictPolicy;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Merge Graphs step unions the graphs of all incoming rows, or of each group of rows with the same group field
+ * value, into one graph per group. Like the Group By step it expects the rows to be sorted on the group field.
+ */
+@Step( id = "MergeGraphs", image = "addnodes.png", name = "Merge Graphs",
+    description = "Unions the graphs of many rows into one graph", categoryDescription = "Graph" )
+public class GraphMergeMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphMergeMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** Keep the property value of the graph merged first */
+  public static final String CONFLICT_KEEP_FIRST = "first";
+
+  /** Keep the property value of the graph merged last */
+  public static final String CONFLICT_KEEP_LAST = "last";
+
+  /** Stop the transformation when merged elements disagree on a property */
+  public static final String CONFLICT_FAIL = "fail";
+
+  public static final String[] CONFLICT_CODES = new String[] { CONFLICT_KEEP_FIRST, CONFLICT_KEEP_LAST,
+    CONFLICT_FAIL, };
+
+  public static final String[] CONFLICT_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphMergeMeta.Conflict.KeepFirst" ),
+    BaseMessages.getString( PKG, "GraphMergeMeta.Conflict.KeepLast" ),
+    BaseMessages.getString( PKG, "GraphMergeMeta.Conflict.Fail" ), };
+
+  private String graphFieldName;
+  private String groupFieldName;
+  private String keyPropertyName;
+  private String ghostPropertyName;
+  private String conflictPolicy;
+  private String mergedFieldName;
+
+  public GraphMergeMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      groupFieldName = XMLHandler.getTagValue( stepnode, "group_field" );
+      keyPropertyName = XMLHandler.getTagValue( stepnode, "key_property" );
+      ghostPropertyName = XMLHandler.getTagValue( stepnode, "ghost_property" );
+      conflictPolicy = getConflictCode( XMLHandler.getTagValue( stepnode, "conflict_policy" ) );
+      mergedFieldName = XMLHandler.getTagValue( stepnode, "merged_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "GraphMergeMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    groupFieldName = null;
+    keyPropertyName = null;
+    ghostPropertyName = "_ghostOf";
+    conflictPolicy = CONFLICT_KEEP_FIRST;
+    mergedFieldName = "graph";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      groupFieldName = rep.getStepAttributeString( id_step, "group_field" );
+      keyPropertyName = rep.getStepAttributeString( id_step, "key_property" );
+      ghostPropertyName = rep.getStepAttributeString( id_step, "ghost_property" );
+      conflictPolicy = getConflictCode( rep.getStepAttributeString( id_step, "conflict_policy" ) );
+      mergedFieldName = rep.getStepAttributeString( id_step, "merged_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphMergeMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "group_field", groupFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "key_property", keyPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "ghost_property", ghostPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "conflict_policy", conflictPolicy );
+      rep.saveStepAttribute( id_transformation, id_step, "merged_field", mergedFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphMergeMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "group_field", groupFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "key_property", keyPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "ghost_property", ghostPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "conflict_policy", conflictPolicy ) );
+    retval.append( "    " + XMLHandler.addTagValue( "merged_field", mergedFieldName ) );
+    return retval.toString();
+  }
+
+  /**
+   * The output rows hold the group field, if any, followed by the merged graph.
+   */
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaInterface groupMeta = null;
+    if ( !Const.isEmpty( groupFieldName ) ) {
+      groupMeta = inputRowMeta.searchValueMeta( space.environmentSubstitute( groupFieldName ) );
+      if ( groupMeta == null ) {
+        throw new KettleStepException( BaseMessages.getString( PKG, "GraphMergeMeta.Exception.GroupFieldNotFound",
+            groupFieldName ) );
+      }
+      groupMeta = groupMeta.clone();
+    }
+    inputRowMeta.clear();
+    if ( groupMeta != null ) {
+      inputRowMeta.addValueMeta( groupMeta );
+    }
+    ValueMetaInterface mergedMeta = new ValueMetaGraph( space.environmentSubstitute( mergedFieldName ) );
+    mergedMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( mergedMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphMergeMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphMergeMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else if ( !Const.isEmpty( groupFieldName ) && prev.indexOfValue( groupFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphMergeMeta.CheckResult.GroupFieldNotFound", groupFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphMergeMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphMergeMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphMerge( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphMergeData();
+  }
+
+  public static String getConflictCode( String codeOrDesc ) {
+    for ( int i = 0; i < CONFLICT_CODES.length; i++ ) {
+      if ( CONFLICT_CODES[i].equalsIgnoreCase( codeOrDesc ) || CONFLICT_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return CONFLICT_CODES[i];
+      }
+    }
+    return CONFLICT_KEEP_FIRST;
+  }
+
+  public static String getConflictDesc( String code ) {
+    for ( int i = 0; i < CONFLICT_CODES.length; i++ ) {
+      if ( CONFLICT_CODES[i].equalsIgnoreCase( code ) ) {
+        return CONFLICT_DESCS[i];
+      }
+    }
+    return CONFLICT_DESCS[0];
+  }
+
+  public static PropertyConflictPolicy getConflictPolicy( String code ) {
+    if ( CONFLICT_KEEP_LAST.equals( code ) ) {
+      return PropertyConflictPolicy.KEEP_LAST;
+    }
+    if ( CONFLICT_FAIL.equals( code ) ) {
+      return PropertyConflictPolicy.FAIL;
+    }
+    return PropertyConflictPolicy.KEEP_FIRST;
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return the field whose value changes between groups of rows to merge separately; empty to merge all rows
+   */
+  public String getGroupFieldName() {
+    return groupFieldName;
+  }
+
+  public void setGroupFieldName( String groupFieldName ) {
+    this.groupFieldName = groupFieldName;
+  }
+
+  /**
+   * @return the vertex property that identifies the same vertex in different graphs; empty to match on vertex ids
+   */
+  public String getKeyPropertyName() {
+    return keyPropertyName;
+  }
+
+  public void setKeyPropertyName( String keyPropertyName ) {
+    this.keyPropertyName = keyPropertyName;
+  }
+
+  /**
+   * @return the vertex property marking the ghost vertices of Graph Partition subgraphs, whose properties give way to
+   *         the vertex owning them; empty if the graphs have no ghosts
+   */
+  public String getGhostPropertyName() {
+    return ghostPropertyName;
+  }
+
+  public void setGhostPropertyName( String ghostPropertyName ) {
+    this.ghostPropertyName = ghostPropertyName;
+  }
+
+  public String getConflictPolicy() {
+    return conflictPolicy;
+  }
+
+  public void setConflictPolicy( String conflictPolicy ) {
+    this.conflictPolicy = conflictPolicy;
+  }
+
+  public String getMergedFieldName() {
+    return mergedFieldName;
+  }
+
+  public void setMergedFieldName( String mergedFieldName ) {
+    this.mergedFieldName = mergedFieldName;
+  }
+}
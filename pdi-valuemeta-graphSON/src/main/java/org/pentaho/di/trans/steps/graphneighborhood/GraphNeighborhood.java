@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphneighborhood;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.MultiSourceBfs;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Expands the neighborhood of the seed vertex in each row. Consecutive rows that carry the same graph are collected
+ * into batches of up to {@link MultiSourceBfs#MAX_SOURCES} seeds that are searched together, and the graph is frozen
+ * once for all of them. The frozen copy is kept until a row arrives with a different graph, so a graph that is changed
+ * in place upstream while its rows flow through this step is searched as it was when its first row arrived.
+ */
+public class GraphNeighborhood extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphNeighborhoodMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphNeighborhoodMeta meta;
+  private GraphNeighborhoodData data;
+
+  private final MultiSourceBfs.Visitor collector = new MultiSourceBfs.Visitor() {
+    public void visit( int source, int vertex, int distance ) {
+      int n = data.foundCount[source];
+      if ( n == data.foundVertices[source].length ) {
+        data.foundVertices[source] = grow( data.foundVertices[source] );
+        data.foundDistances[source] = grow( data.foundDistances[source] );
+      }
+      data.foundVertices[source][n] = vertex;
+      data.foundDistances[source][n] = distance;
+      data.foundCount[source] = n + 1;
+    }
+  };
+
+  public GraphNeighborhood( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphNeighborhoodMeta) smi;
+    data = (GraphNeighborhoodData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.maxDepth = Const.toInt( environmentSubstitute( meta.getMaxDepth() ), -1 );
+    if ( data.maxDepth < 0 ) {
+      logError( BaseMessages.getString( PKG, "GraphNeighborhood.Error.InvalidMaxDepth", meta.getMaxDepth() ) );
+      return false;
+    }
+    data.direction = Direction.valueOf( GraphNeighborhoodMeta.getDirectionCode( meta.getDirection() ) );
+    String labels = environmentSubstitute( meta.getEdgeLabels() );
+    if ( Const.isEmpty( labels ) ) {
+      data.edgeLabels = new String[0];
+    } else {
+      data.edgeLabels = labels.split( "," );
+      for ( int i = 0; i < data.edgeLabels.length; i++ ) {
+        data.edgeLabels[i] = data.edgeLabels[i].trim();
+      }
+    }
+
+    int batch = MultiSourceBfs.MAX_SOURCES;
+    data.batchRows = new Object[batch][];
+    data.batchSeeds = new int[batch];
+    data.foundVertices = new int[batch][];
+    data.foundDistances = new int[batch][];
+    data.foundCount = new int[batch];
+    for ( int i = 0; i < batch; i++ ) {
+      data.foundVertices[i] = new int[16];
+      data.foundDistances[i] = new int[16];
+    }
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphNeighborhoodMeta) smi;
+    data = (GraphNeighborhoodData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      flushBatch();
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphNeighborhood.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+      data.seedFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSeedFieldName() ) );
+      if ( data.seedFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphNeighborhood.Error.NotFound.SeedField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+
+    if ( g != data.graph ) {
+      flushBatch();
+      data.graph = g;
+      data.csr = g == null ? null : CsrGraph.freeze( g );
+      data.bfs = g == null ? null : new MultiSourceBfs( data.csr, data.direction, data.edgeLabels );
+    }
+
+    Object seed =
+        getInputRowMeta().getValueMeta( data.seedFieldIndex ).convertToNormalStorageType( r[data.seedFieldIndex] );
+    int seedIndex = data.csr == null || seed == null ? -1 : data.csr.indexOf( seed );
+    if ( seedIndex < 0 && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphNeighborhood.Log.SeedNotFound", String.valueOf( seed ) ) );
+    }
+
+    data.batchRows[data.batchSize] = r;
+    data.batchSeeds[data.batchSize] = seedIndex;
+    data.batchSize++;
+    if ( data.batchSize == data.batchRows.length ) {
+      flushBatch();
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphNeighborhood.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Searches from all seeds of the batch at once, then emits the rows of the batch in the order they arrived.
+   */
+  private void flushBatch() throws KettleException {
+    if ( data.batchSize == 0 ) {
+      return;
+    }
+    if ( data.bfs != null ) {
+      for ( int i = 0; i < data.batchSize; i++ ) {
+        data.foundCount[i] = 0;
+      }
+      data.bfs.run( data.batchSeeds, data.batchSize, data.maxDepth, meta.isIncludeSeed(), collector );
+
+      int inputSize = getInputRowMeta().size();
+      for ( int i = 0; i < data.batchSize && !isStopped(); i++ ) {
+        Object[] r = data.batchRows[i];
+        for ( int j = 0; j < data.foundCount[i]; j++ ) {
+          Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+          outputRow[inputSize] = String.valueOf( data.csr.getVertexId( data.foundVertices[i][j] ) );
+          outputRow[inputSize + 1] = Long.valueOf( data.foundDistances[i][j] );
+          putRow( data.outputRowMeta, outputRow );
+        }
+      }
+    }
+    for ( int i = 0; i < data.batchSize; i++ ) {
+      data.batchRows[i] = null;
+    }
+    data.batchSize = 0;
+  }
+
+  private static int[] grow( int[] array ) {
+    int[] grown = new int[array.length * 2];
+    System.arraycopy( array, 0, grown, 0, array.length );
+    return grown;
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphNeighborhoodData) sdi;
+    data.graph = null;
+    data.csr = null;
+    data.bfs = null;
+    data.batchRows = null;
+    super.dispose( smi, sdi );
+  }
+}
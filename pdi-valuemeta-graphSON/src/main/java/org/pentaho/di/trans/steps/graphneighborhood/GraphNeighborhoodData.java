@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphneighborhood;
+
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.MultiSourceBfs;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+
+public class GraphNeighborhoodData extends BaseStepData implements StepDataInterface {
+
+  public RowMetaInterface outputRowMeta;
+
+  public int graphFieldIndex;
+  public int seedFieldIndex;
+
+  public int maxDepth;
+  public Direction direction;
+  public String[] edgeLabels;
+
+  /** The graph of the current batch, its frozen copy and the search over it */
+  public Graph graph;
+  public CsrGraph csr;
+  public MultiSourceBfs bfs;
+
+  /** Rows waiting for the batch to fill up, with the vertex index of their seed or -1 if it is not in the graph */
+  public Object[][] batchRows;
+  public int[] batchSeeds;
+  public int batchSize;
+
+  /** Per row of the batch, the vertex indexes found and their distances */
+  public int[][] foundVertices;
+  public int[][] foundDistances;
+  public int[] foundCount;
+
+  public GraphNeighborhoodData() {
+    super();
+  }
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphneighborhood;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+import com.tinkerpop.blueprints.Direction;
+
+/**
+ * The Graph Neighborhood step finds the vertices within a number of hops of the seed vertex named in each row, and
+ * emits the row once per vertex found, together with its distance from the seed.
+ */
+@Step( id = "GraphNeighborhood", image = "addnodes.png", name = "Graph Neighborhood",
+    description = "Emits the vertices within k hops of a seed vertex", categoryDescription = "Graph" )
+public class GraphNeighborhoodMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphNeighborhoodMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  public static final String DEFAULT_MAX_DEPTH = "2";
+
+  public static final String[] DIRECTION_CODES = new String[] {
+    Direction.OUT.name(), Direction.IN.name(), Direction.BOTH.name(), };
+
+  public static final String[] DIRECTION_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphNeighborhoodMeta.Direction.Out" ),
+    BaseMessages.getString( PKG, "GraphNeighborhoodMeta.Direction.In" ),
+    BaseMessages.getString( PKG, "GraphNeighborhoodMeta.Direction.Both" ), };
+
+  private String graphFieldName;
+  private String seedFieldName;
+  private String maxDepth;
+  private String direction;
+  private String edgeLabels;
+  private boolean includeSeed;
+  private String neighborFieldName;
+  private String distanceFieldName;
+
+  public GraphNeighborhoodMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      seedFieldName = XMLHandler.getTagValue( stepnode, "seed_field" );
+      maxDepth = XMLHandler.getTagValue( stepnode, "max_depth" );
+      direction = getDirectionCode( XMLHandler.getTagValue( stepnode, "direction" ) );
+      edgeLabels = XMLHandler.getTagValue( stepnode, "edge_labels" );
+      includeSeed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "include_seed" ) );
+      neighborFieldName = XMLHandler.getTagValue( stepnode, "neighbor_field" );
+      distanceFieldName = XMLHandler.getTagValue( stepnode, "distance_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "GraphNeighborhoodMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    seedFieldName = null;
+    maxDepth = DEFAULT_MAX_DEPTH;
+    direction = Direction.BOTH.name();
+    edgeLabels = null;
+    includeSeed = false;
+    neighborFieldName = "neighborId";
+    distanceFieldName = "distance";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      seedFieldName = rep.getStepAttributeString( id_step, "seed_field" );
+      maxDepth = rep.getStepAttributeString( id_step, "max_depth" );
+      direction = getDirectionCode( rep.getStepAttributeString( id_step, "direction" ) );
+      edgeLabels = rep.getStepAttributeString( id_step, "edge_labels" );
+      includeSeed = rep.getStepAttributeBoolean( id_step, "include_seed" );
+      neighborFieldName = rep.getStepAttributeString( id_step, "neighbor_field" );
+      distanceFieldName = rep.getStepAttributeString( id_step, "distance_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphNeighborhoodMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "seed_field", seedFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "max_depth", maxDepth );
+      rep.saveStepAttribute( id_transformation, id_step, "direction", direction );
+      rep.saveStepAttribute( id_transformation, id_step, "edge_labels", edgeLabels );
+      rep.saveStepAttribute( id_transformation, id_step, "include_seed", includeSeed );
+      rep.saveStepAttribute( id_transformation, id_step, "neighbor_field", neighborFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "distance_field", distanceFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphNeighborhoodMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "seed_field", seedFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "max_depth", maxDepth ) );
+    retval.append( "    " + XMLHandler.addTagValue( "direction", direction ) );
+    retval.append( "    " + XMLHandler.addTagValue( "edge_labels", edgeLabels ) );
+    retval.append( "    " + XMLHandler.addTagValue( "include_seed", includeSeed ) );
+    retval.append( "    " + XMLHandler.addTagValue( "neighbor_field", neighborFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "distance_field", distanceFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaInterface neighborMeta = new ValueMetaString( space.environmentSubstitute( neighborFieldName ) );
+    neighborMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( neighborMeta );
+    ValueMetaInterface distanceMeta = new ValueMetaInteger( space.environmentSubstitute( distanceFieldName ) );
+    distanceMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( distanceMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( seedFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.SeedFieldNotFound", seedFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( neighborFieldName ) || Const.isEmpty( distanceFieldName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphNeighborhoodMeta.CheckResult.NoOutputFields" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphNeighborhood( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphNeighborhoodData();
+  }
+
+  public static String getDirectionCode( String codeOrDesc ) {
+    for ( int i = 0; i < DIRECTION_CODES.length; i++ ) {
+      if ( DIRECTION_CODES[i].equalsIgnoreCase( codeOrDesc ) || DIRECTION_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return DIRECTION_CODES[i];
+      }
+    }
+    return Direction.BOTH.name();
+  }
+
+  public static String getDirectionDesc( String code ) {
+    for ( int i = 0; i < DIRECTION_CODES.length; i++ ) {
+      if ( DIRECTION_CODES[i].equalsIgnoreCase( code ) ) {
+        return DIRECTION_DESCS[i];
+      }
+    }
+    return DIRECTION_DESCS[DIRECTION_DESCS.length - 1];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  public String getSeedFieldName() {
+    return seedFieldName;
+  }
+
+  public void setSeedFieldName( String seedFieldName ) {
+    this.seedFieldName = seedFieldName;
+  }
+
+  public String getMaxDepth() {
+    return maxDepth;
+  }
+
+  public void setMaxDepth( String maxDepth ) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @return OUT, IN or BOTH
+   */
+  public String getDirection() {
+    return direction;
+  }
+
+  public void setDirection( String direction ) {
+    this.direction = direction;
+  }
+
+  /**
+   * @return a comma-separated list of the edge labels to follow; empty to follow every edge
+   */
+  public String getEdgeLabels() {
+    return edgeLabels;
+  }
+
+  public void setEdgeLabels( String edgeLabels ) {
+    this.edgeLabels = edgeLabels;
+  }
+
+  public boolean isIncludeSeed() {
+    return includeSeed;
+  }
+
+  public void setIncludeSeed( boolean includeSeed ) {
+    this.includeSeed = includeSeed;
+  }
+
+  public String getNeighborFieldName() {
+    return neighborFieldName;
+  }
+
+  public void setNeighborFieldName( String neighborFieldName ) {
+    this.neighborFieldName = neighborFieldName;
+  }
+
+  public String getDistanceFieldName() {
+    return distanceFieldName;
+  }
+
+  public void setDistanceFieldName( String distanceFieldName ) {
+    this.distanceFieldName = distanceFieldName;
+  }
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphpagerank;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.PageRank;
+import org.pentaho.di.core.graph.algorithms.VertexRanges;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+
+/**
+ * Computes PageRank for the graph in each incoming row. The graph is first frozen into a {@link CsrGraph} so the
+ * iterations run over primitive arrays, spread over a pool of threads that lives as long as the step.
+ */
+public class GraphPageRank extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphPageRankMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphPageRankMeta meta;
+  private GraphPageRankData data;
+
+  public GraphPageRank( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphPageRankMeta) smi;
+    data = (GraphPageRankData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.dampingFactor =
+        Const.toDouble( environmentSubstitute( meta.getDampingFactor() ), PageRank.DEFAULT_DAMPING_FACTOR );
+    data.tolerance = Const.toDouble( environmentSubstitute( meta.getTolerance() ), PageRank.DEFAULT_TOLERANCE );
+    data.maxIterations = Const.toInt( environmentSubstitute( meta.getMaxIterations() ), PageRank.DEFAULT_MAX_ITERATIONS );
+    if ( data.dampingFactor < 0.0 || data.dampingFactor >= 1.0 ) {
+      logError( BaseMessages.getString( PKG, "GraphPageRank.Error.InvalidDampingFactor", String
+          .valueOf( data.dampingFactor ) ) );
+      return false;
+    }
+    data.scorePropertyName = environmentSubstitute( meta.getScorePropertyName() );
+    data.parallelism = VertexRanges.resolveParallelism( Const.toInt( environmentSubstitute( meta.getParallelism() ), 0 ) );
+    data.executor = VertexRanges.newExecutor( getStepname(), data.parallelism );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphPageRankMeta) smi;
+    data = (GraphPageRankData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphPageRank.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+
+    if ( g == null ) {
+      if ( !meta.isOutputRows() ) {
+        putRow( data.outputRowMeta, r );
+      }
+      return true;
+    }
+
+    long start = System.currentTimeMillis();
+    CsrGraph csr = CsrGraph.freeze( g );
+    PageRank pageRank = new PageRank( csr );
+    pageRank.setDampingFactor( data.dampingFactor );
+    pageRank.setTolerance( data.tolerance );
+    pageRank.setMaxIterations( data.maxIterations );
+    double[] ranks = pageRank.compute( data.executor, data.parallelism );
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphPageRank.Log.Computed", String.valueOf( csr.getVertexCount() ),
+          String.valueOf( pageRank.getIterations() ), String.valueOf( pageRank.isConverged() ), String.valueOf( System
+              .currentTimeMillis()
+              - start ) ) );
+    }
+    if ( !pageRank.isConverged() ) {
+      logBasic( BaseMessages.getString( PKG, "GraphPageRank.Log.NotConverged", String.valueOf( pageRank
+          .getIterations() ) ) );
+    }
+
+    if ( meta.isOutputRows() ) {
+      int inputSize = getInputRowMeta().size();
+      for ( int v = 0; v < ranks.length && !isStopped(); v++ ) {
+        Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+        outputRow[inputSize] = String.valueOf( csr.getVertexId( v ) );
+        outputRow[inputSize + 1] = Double.valueOf( ranks[v] );
+        putRow( data.outputRowMeta, outputRow );
+      }
+    } else {
+      if ( csr == g ) {
+        throw new KettleException( BaseMessages.getString( PKG, "GraphPageRank.Error.ReadOnlyGraph" ) );
+      }
+      for ( int v = 0; v < ranks.length; v++ ) {
+        Vertex vertex = g.getVertex( csr.getVertexId( v ) );
+        vertex.setProperty( data.scorePropertyName, Double.valueOf( ranks[v] ) );
+      }
+      r[data.graphFieldIndex] = g;
+      putRow( data.outputRowMeta, r );
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphPageRank.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphPageRankData) sdi;
+    if ( data.executor != null ) {
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+    super.dispose( smi, sdi );
+  }
+}
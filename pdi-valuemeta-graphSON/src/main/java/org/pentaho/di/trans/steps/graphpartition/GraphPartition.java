@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphpartition;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.GraphPartitioner;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Splits the graph in each incoming row into subgraphs and emits one row per subgraph. Edges between subgraphs are
+ * copied into both, with the far endpoint as a ghost vertex, so each subgraph can be traversed one hop past its border.
+ */
+public class GraphPartition extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphPartitionMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphPartitionMeta meta;
+  private GraphPartitionData data;
+
+  public GraphPartition( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphPartitionMeta) smi;
+    data = (GraphPartitionData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.method = GraphPartitionMeta.getMethodCode( meta.getMethod() );
+    data.partitions = Const.toInt( environmentSubstitute( meta.getPartitions() ), -1 );
+    if ( data.partitions < 1 ) {
+      logError( BaseMessages.getString( PKG, "GraphPartition.Error.InvalidPartitions", meta.getPartitions() ) );
+      return false;
+    }
+    data.iterations =
+        Const.toInt( environmentSubstitute( meta.getIterations() ), GraphPartitioner.DEFAULT_ITERATIONS );
+    data.ghostPropertyName = environmentSubstitute( meta.getGhostPropertyName() );
+    if ( Const.isEmpty( data.ghostPropertyName ) ) {
+      data.ghostPropertyName = null;
+    }
+    data.outputGhostCount = !Const.isEmpty( meta.getGhostCountFieldName() );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphPartitionMeta) smi;
+    data = (GraphPartitionData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphPartition.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+    if ( g == null ) {
+      return true;
+    }
+
+    long start = System.currentTimeMillis();
+    CsrGraph csr = CsrGraph.freeze( g );
+    int[] assignment;
+    if ( GraphPartitionMeta.METHOD_RANGE.equals( data.method ) ) {
+      assignment = GraphPartitioner.range( csr, data.partitions );
+    } else if ( GraphPartitionMeta.METHOD_LABEL_PROPAGATION.equals( data.method ) ) {
+      assignment = GraphPartitioner.labelPropagation( csr, data.partitions, data.iterations,
+          GraphPartitioner.DEFAULT_IMBALANCE );
+    } else {
+      assignment = GraphPartitioner.hash( csr, data.partitions );
+    }
+    GraphPartitioner.Subgraph[] subgraphs =
+        GraphPartitioner.split( csr, assignment, data.partitions, data.ghostPropertyName );
+
+    if ( log.isDetailed() ) {
+      long cut = GraphPartitioner.countCutEdges( csr, assignment );
+      logDetailed( BaseMessages.getString( PKG, "GraphPartition.Log.Partitioned", String.valueOf( csr
+          .getVertexCount() ), String.valueOf( data.partitions ), String.valueOf( cut ), String.valueOf( csr
+          .getEdgeCount() ), String.valueOf( System.currentTimeMillis() - start ) ) );
+    }
+
+    int inputSize = getInputRowMeta().size();
+    for ( int p = 0; p < subgraphs.length && !isStopped(); p++ ) {
+      Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+      outputRow[inputSize] = Long.valueOf( p );
+      outputRow[inputSize + 1] = subgraphs[p].getGraph();
+      if ( data.outputGhostCount ) {
+        outputRow[inputSize + 2] = Long.valueOf( subgraphs[p].getGhosts() );
+      }
+      putRow( data.outputRowMeta, outputRow );
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphPartition.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphpartition;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.graph.algorithms.GraphPartitioner;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph Partition step splits the graph in a graph field into a number of subgraphs and emits the row once per
+ * subgraph, so downstream steps can work on the parts in parallel.
+ */
+@Step( id = "GraphPartition", image = "addnodes.png", name = "Graph Partition",
+    description = "Splits a graph into a number of subgraphs", categoryDescription = "Graph" )
+public class GraphPartitionMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphPartitionMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** Partition by the hash code of the vertex id */
+  public static final String METHOD_HASH = "hash";
+
+  /** Partition into runs of vertices of about equal size */
+  public static final String METHOD_RANGE = "range";
+
+  /** Refine the range partitions with label propagation to cut fewer edges */
+  public static final String METHOD_LABEL_PROPAGATION = "labelpropagation";
+
+  public static final String[] METHOD_CODES = new String[] { METHOD_HASH, METHOD_RANGE, METHOD_LABEL_PROPAGATION, };
+
+  public static final String[] METHOD_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphPartitionMeta.Method.Hash" ),
+    BaseMessages.getString( PKG, "GraphPartitionMeta.Method.Range" ),
+    BaseMessages.getString( PKG, "GraphPartitionMeta.Method.LabelPropagation" ), };
+
+  private String graphFieldName;
+  private String method;
+  private String partitions;
+  private String iterations;
+  private String ghostPropertyName;
+  private String partitionFieldName;
+  private String subgraphFieldName;
+  private String ghostCountFieldName;
+
+  public GraphPartitionMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      method = getMethodCode( XMLHandler.getTagValue( stepnode, "method" ) );
+      partitions = XMLHandler.getTagValue( stepnode, "partitions" );
+      iterations = XMLHandler.getTagValue( stepnode, "iterations" );
+      ghostPropertyName = XMLHandler.getTagValue( stepnode, "ghost_property" );
+      partitionFieldName = XMLHandler.getTagValue( stepnode, "partition_field" );
+      subgraphFieldName = XMLHandler.getTagValue( stepnode, "subgraph_field" );
+      ghostCountFieldName = XMLHandler.getTagValue( stepnode, "ghost_count_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "GraphPartitionMeta.Exception.UnableToReadStepInfo" ),
+          e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    method = METHOD_HASH;
+    partitions = "4";
+    iterations = String.valueOf( GraphPartitioner.DEFAULT_ITERATIONS );
+    ghostPropertyName = "_ghostOf";
+    partitionFieldName = "partition";
+    subgraphFieldName = "subgraph";
+    ghostCountFieldName = "ghosts";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      method = getMethodCode( rep.getStepAttributeString( id_step, "method" ) );
+      partitions = rep.getStepAttributeString( id_step, "partitions" );
+      iterations = rep.getStepAttributeString( id_step, "iterations" );
+      ghostPropertyName = rep.getStepAttributeString( id_step, "ghost_property" );
+      partitionFieldName = rep.getStepAttributeString( id_step, "partition_field" );
+      subgraphFieldName = rep.getStepAttributeString( id_step, "subgraph_field" );
+      ghostCountFieldName = rep.getStepAttributeString( id_step, "ghost_count_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphPartitionMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "method", method );
+      rep.saveStepAttribute( id_transformation, id_step, "partitions", partitions );
+      rep.saveStepAttribute( id_transformation, id_step, "iterations", iterations );
+      rep.saveStepAttribute( id_transformation, id_step, "ghost_property", ghostPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "partition_field", partitionFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "subgraph_field", subgraphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "ghost_count_field", ghostCountFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphPartitionMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "method", method ) );
+    retval.append( "    " + XMLHandler.addTagValue( "partitions", partitions ) );
+    retval.append( "    " + XMLHandler.addTagValue( "iterations", iterations ) );
+    retval.append( "    " + XMLHandler.addTagValue( "ghost_property", ghostPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "partition_field", partitionFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "subgraph_field", subgraphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "ghost_count_field", ghostCountFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaInterface partitionMeta = new ValueMetaInteger( space.environmentSubstitute( partitionFieldName ) );
+    partitionMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( partitionMeta );
+    ValueMetaInterface subgraphMeta = new ValueMetaGraph( space.environmentSubstitute( subgraphFieldName ) );
+    subgraphMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( subgraphMeta );
+    if ( !Const.isEmpty( ghostCountFieldName ) ) {
+      ValueMetaInterface ghostsMeta = new ValueMetaInteger( space.environmentSubstitute( ghostCountFieldName ) );
+      ghostsMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( ghostsMeta );
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphPartitionMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphPartitionMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphPartitionMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphPartitionMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( partitionFieldName ) || Const.isEmpty( subgraphFieldName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphPartitionMeta.CheckResult.NoOutputFields" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphPartition( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphPartitionData();
+  }
+
+  public static String getMethodCode( String codeOrDesc ) {
+    for ( int i = 0; i < METHOD_CODES.length; i++ ) {
+      if ( METHOD_CODES[i].equalsIgnoreCase( codeOrDesc ) || METHOD_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return METHOD_CODES[i];
+      }
+    }
+    return METHOD_HASH;
+  }
+
+  public static String getMethodDesc( String code ) {
+    for ( int i = 0; i < METHOD_CODES.length; i++ ) {
+      if ( METHOD_CODES[i].equalsIgnoreCase( code ) ) {
+        return METHOD_DESCS[i];
+      }
+    }
+    return METHOD_DESCS[0];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public void setMethod( String method ) {
+    this.method = method;
+  }
+
+  public String getPartitions() {
+    return partitions;
+  }
+
+  public void setPartitions( String partitions ) {
+    this.partitions = partitions;
+  }
+
+  /**
+   * @return the maximum number of label propagation sweeps
+   */
+  public String getIterations() {
+    return iterations;
+  }
+
+  public void setIterations( String iterations ) {
+    this.iterations = iterations;
+  }
+
+  /**
+   * @return the vertex property that marks ghost vertices with the partition owning them; empty to leave them unmarked
+   */
+  public String getGhostPropertyName() {
+    return ghostPropertyName;
+  }
+
+  public void setGhostPropertyName( String ghostPropertyName ) {
+    this.ghostPropertyName = ghostPropertyName;
+  }
+
+  public String getPartitionFieldName() {
+    return partitionFieldName;
+  }
+
+  public void setPartitionFieldName( String partitionFieldName ) {
+    this.partitionFieldName = partitionFieldName;
+  }
+
+  public String getSubgraphFieldName() {
+    return subgraphFieldName;
+  }
+
+  public void setSubgraphFieldName( String subgraphFieldName ) {
+    this.subgraphFieldName = subgraphFieldName;
+  }
+
+  /**
+   * @return the field to put the number of ghost vertices of each subgraph in; empty to leave it out
+   */
+  public String getGhostCountFieldName() {
+    return ghostCountFieldName;
+  }
+
+  public void setGhostCountFieldName( String ghostCountFieldName ) {
+    this.ghostCountFieldName = ghostCountFieldName;
+  }
+}
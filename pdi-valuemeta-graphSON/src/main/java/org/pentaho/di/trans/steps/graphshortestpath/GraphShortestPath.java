@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphshortestpath;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.ShortestPaths;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Finds the shortest path between the source and target vertex of each row. The graph is frozen when the first row
+ * carrying it arrives, and the frozen copy and its search arrays are reused until a row brings a different graph, so a
+ * long run of queries against one graph allocates nothing per row but the output.
+ */
+public class GraphShortestPath extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphShortestPathMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphShortestPathMeta meta;
+  private GraphShortestPathData data;
+
+  public GraphShortestPath( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (GraphShortestPathMeta) smi;
+    data = (GraphShortestPathData) sdi;
+
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+    data.direction = Direction.valueOf( GraphShortestPathMeta.getDirectionCode( meta.getDirection() ) );
+    data.weightProperty = environmentSubstitute( meta.getWeightProperty() );
+    data.heuristicXProperty = environmentSubstitute( meta.getHeuristicXProperty() );
+    data.heuristicYProperty = environmentSubstitute( meta.getHeuristicYProperty() );
+    data.heuristicScale = Const.toDouble( environmentSubstitute( meta.getHeuristicScale() ), 1.0 );
+    data.outputPath = !Const.isEmpty( meta.getPathFieldName() );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphShortestPathMeta) smi;
+    data = (GraphShortestPathData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      data.sourceFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceFieldName() ) );
+      data.targetFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getTargetFieldName() ) );
+      if ( data.graphFieldIndex < 0 || data.sourceFieldIndex < 0 || data.targetFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphShortestPath.Error.NotFound.Fields" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+    if ( g != data.graph ) {
+      prepare( g );
+    }
+
+    Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+    int inputSize = getInputRowMeta().size();
+
+    int source = indexOf( data.sourceFieldIndex, r );
+    int target = indexOf( data.targetFieldIndex, r );
+    if ( source >= 0 && target >= 0 ) {
+      double distance = data.shortestPaths.search( source, target );
+      if ( distance < Double.POSITIVE_INFINITY ) {
+        outputRow[inputSize] = Double.valueOf( distance );
+        if ( data.outputPath ) {
+          outputRow[inputSize + 1] = pathToString( data.shortestPaths.getPath( target ) );
+        }
+      }
+      if ( log.isRowLevel() ) {
+        logRowlevel( BaseMessages.getString( PKG, "GraphShortestPath.Log.Searched", String.valueOf( distance ), String
+            .valueOf( data.shortestPaths.getSettledCount() ) ) );
+      }
+    }
+
+    putRow( data.outputRowMeta, outputRow );
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphShortestPath.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  private void prepare( Graph g ) throws KettleException {
+    data.graph = g;
+    data.csr = null;
+    data.shortestPaths = null;
+    if ( g == null ) {
+      return;
+    }
+    data.csr = CsrGraph.freeze( g );
+    try {
+      data.shortestPaths = new ShortestPaths( data.csr, data.direction, data.weightProperty );
+    } catch ( IllegalArgumentException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GraphShortestPath.Error.InvalidWeight", e
+          .getMessage() ), e );
+    }
+    if ( !Const.isEmpty( data.heuristicXProperty ) && !Const.isEmpty( data.heuristicYProperty ) ) {
+      data.shortestPaths.setHeuristic( data.heuristicXProperty, data.heuristicYProperty, data.heuristicScale );
+    }
+  }
+
+  /**
+   * @return the vertex index of the id in the given field, or -1 if it is null or not in the graph
+   */
+  private int indexOf( int fieldIndex, Object[] r ) throws KettleException {
+    if ( data.csr == null ) {
+      return -1;
+    }
+    ValueMetaInterface valueMeta = getInputRowMeta().getValueMeta( fieldIndex );
+    Object id = valueMeta.convertToNormalStorageType( r[fieldIndex] );
+    int index = id == null ? -1 : data.csr.indexOf( id );
+    if ( index < 0 && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphShortestPath.Log.VertexNotFound", String.valueOf( id ) ) );
+    }
+    return index;
+  }
+
+  private String pathToString( int[] path ) {
+    StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < path.length; i++ ) {
+      if ( i > 0 ) {
+        sb.append( GraphShortestPathMeta.PATH_SEPARATOR );
+      }
+      sb.append( data.csr.getVertexId( path[i] ) );
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (GraphShortestPathData) sdi;
+    data.graph = null;
+    data.csr = null;
+    data.shortestPaths = null;
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphshortestpath;
+
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.algorithms.ShortestPaths;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+
+public class GraphShortestPathData extends BaseStepData implements StepDataInterface {
+
+  public RowMetaInterface outputRowMeta;
+
+  public int graphFieldIndex;
+  public int sourceFieldIndex;
+  public int targetFieldIndex;
+  public boolean outputPath;
+
+  public Direction direction;
+  public String weightProperty;
+  public String heuristicXProperty;
+  public String heuristicYProperty;
+  public double heuristicScale;
+
+  /** The graph of the last row, its frozen copy and the search state reused by every row carrying it */
+  public Graph graph;
+  public CsrGraph csr;
+  public ShortestPaths shortestPaths;
+
+  public GraphShortestPathData() {
+    super();
+  }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphshortestpath;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+import com.tinkerpop.blueprints.Direction;
+
+/**
+ * The Graph Shortest Path step finds the shortest path between the source and target vertex ids of each row, and
+ * appends its length and, optionally, the ids of the vertices along it.
+ */
+@Step( id = "GraphShortestPath", image = "addnodes.png", name = "Graph Shortest Path",
+    description = "Finds the shortest path between two vertices of a graph", categoryDescription = "Graph" )
+public class GraphShortestPathMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphShortestPathMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** Separates the vertex ids in the path field */
+  public static final String PATH_SEPARATOR = ",";
+
+  public static final String[] DIRECTION_CODES = new String[] {
+    Direction.OUT.name(), Direction.IN.name(), Direction.BOTH.name(), };
+
+  public static final String[] DIRECTION_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphShortestPathMeta.Direction.Out" ),
+    BaseMessages.getString( PKG, "GraphShortestPathMeta.Direction.In" ),
+    BaseMessages.getString( PKG, "GraphShortestPathMeta.Direction.Both" ), };
+
+  private String graphFieldName;
+  private String sourceFieldName;
+  private String targetFieldName;
+  private String direction;
+  private String weightProperty;
+  private String heuristicXProperty;
+  private String heuristicYProperty;
+  private String heuristicScale;
+  private String distanceFieldName;
+  private String pathFieldName;
+
+  public GraphShortestPathMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      sourceFieldName = XMLHandler.getTagValue( stepnode, "source_field" );
+      targetFieldName = XMLHandler.getTagValue( stepnode, "target_field" );
+      direction = getDirectionCode( XMLHandler.getTagValue( stepnode, "direction" ) );
+      weightProperty = XMLHandler.getTagValue( stepnode, "weight_property" );
+      heuristicXProperty = XMLHandler.getTagValue( stepnode, "heuristic_x_property" );
+      heuristicYProperty = XMLHandler.getTagValue( stepnode, "heuristic_y_property" );
+      heuristicScale = XMLHandler.getTagValue( stepnode, "heuristic_scale" );
+      distanceFieldName = XMLHandler.getTagValue( stepnode, "distance_field" );
+      pathFieldName = XMLHandler.getTagValue( stepnode, "path_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "GraphShortestPathMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    sourceFieldName = null;
+    targetFieldName = null;
+    direction = Direction.OUT.name();
+    weightProperty = null;
+    heuristicXProperty = null;
+    heuristicYProperty = null;
+    heuristicScale = "1";
+    distanceFieldName = "distance";
+    pathFieldName = "path";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      sourceFieldName = rep.getStepAttributeString( id_step, "source_field" );
+      targetFieldName = rep.getStepAttributeString( id_step, "target_field" );
+      direction = getDirectionCode( rep.getStepAttributeString( id_step, "direction" ) );
+      weightProperty = rep.getStepAttributeString( id_step, "weight_property" );
+      heuristicXProperty = rep.getStepAttributeString( id_step, "heuristic_x_property" );
+      heuristicYProperty = rep.getStepAttributeString( id_step, "heuristic_y_property" );
+      heuristicScale = rep.getStepAttributeString( id_step, "heuristic_scale" );
+      distanceFieldName = rep.getStepAttributeString( id_step, "distance_field" );
+      pathFieldName = rep.getStepAttributeString( id_step, "path_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphShortestPathMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "source_field", sourceFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "target_field", targetFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "direction", direction );
+      rep.saveStepAttribute( id_transformation, id_step, "weight_property", weightProperty );
+      rep.saveStepAttribute( id_transformation, id_step, "heuristic_x_property", heuristicXProperty );
+      rep.saveStepAttribute( id_transformation, id_step, "heuristic_y_property", heuristicYProperty );
+      rep.saveStepAttribute( id_transformation, id_step, "heuristic_scale", heuristicScale );
+      rep.saveStepAttribute( id_transformation, id_step, "distance_field", distanceFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "path_field", pathFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphShortestPathMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "source_field", sourceFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "target_field", targetFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "direction", direction ) );
+    retval.append( "    " + XMLHandler.addTagValue( "weight_property", weightProperty ) );
+    retval.append( "    " + XMLHandler.addTagValue( "heuristic_x_property", heuristicXProperty ) );
+    retval.append( "    " + XMLHandler.addTagValue( "heuristic_y_property", heuristicYProperty ) );
+    retval.append( "    " + XMLHandler.addTagValue( "heuristic_scale", heuristicScale ) );
+    retval.append( "    " + XMLHandler.addTagValue( "distance_field", distanceFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "path_field", pathFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaInterface distanceMeta = new ValueMetaNumber( space.environmentSubstitute( distanceFieldName ) );
+    distanceMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( distanceMeta );
+    if ( !Const.isEmpty( pathFieldName ) ) {
+      ValueMetaInterface pathMeta = new ValueMetaString( space.environmentSubstitute( pathFieldName ) );
+      pathMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( pathMeta );
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphShortestPathMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else {
+      String missing = null;
+      for ( String field : new String[] { graphFieldName, sourceFieldName, targetFieldName } ) {
+        if ( missing == null && prev.indexOfValue( field ) < 0 ) {
+          missing = field;
+        }
+      }
+      if ( missing != null ) {
+        cr =
+            new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+                "GraphShortestPathMeta.CheckResult.FieldNotFound", missing ), stepMeta );
+      } else {
+        cr =
+            new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+                "GraphShortestPathMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      }
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphShortestPathMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( distanceFieldName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphShortestPathMeta.CheckResult.NoDistanceField" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( heuristicXProperty ) != Const.isEmpty( heuristicYProperty ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphShortestPathMeta.CheckResult.IncompleteHeuristic" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphShortestPath( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphShortestPathData();
+  }
+
+  public static String getDirectionCode( String codeOrDesc ) {
+    for ( int i = 0; i < DIRECTION_CODES.length; i++ ) {
+      if ( DIRECTION_CODES[i].equalsIgnoreCase( codeOrDesc ) || DIRECTION_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return DIRECTION_CODES[i];
+      }
+    }
+    return Direction.OUT.name();
+  }
+
+  public static String getDirectionDesc( String code ) {
+    for ( int i = 0; i < DIRECTION_CODES.length; i++ ) {
+      if ( DIRECTION_CODES[i].equalsIgnoreCase( code ) ) {
+        return DIRECTION_DESCS[i];
+      }
+    }
+    return DIRECTION_DESCS[0];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  public String getSourceFieldName() {
+    return sourceFieldName;
+  }
+
+  public void setSourceFieldName( String sourceFieldName ) {
+    this.sourceFieldName = sourceFieldName;
+  }
+
+  public String getTargetFieldName() {
+    return targetFieldName;
+  }
+
+  public void setTargetFieldName( String targetFieldName ) {
+    this.targetFieldName = targetFieldName;
+  }
+
+  /**
+   * @return OUT, IN or BOTH
+   */
+  public String getDirection() {
+    return direction;
+  }
+
+  public void setDirection( String direction ) {
+    this.direction = direction;
+  }
+
+  /**
+   * @return the numeric edge property holding the weights; empty to count hops
+   */
+  public String getWeightProperty() {
+    return weightProperty;
+  }
+
+  public void setWeightProperty( String weightProperty ) {
+    this.weightProperty = weightProperty;
+  }
+
+  /**
+   * @return the numeric vertex property holding the x coordinate for the A* estimate; empty to run plain Dijkstra
+   */
+  public String getHeuristicXProperty() {
+    return heuristicXProperty;
+  }
+
+  public void setHeuristicXProperty( String heuristicXProperty ) {
+    this.heuristicXProperty = heuristicXProperty;
+  }
+
+  public String getHeuristicYProperty() {
+    return heuristicYProperty;
+  }
+
+  public void setHeuristicYProperty( String heuristicYProperty ) {
+    this.heuristicYProperty = heuristicYProperty;
+  }
+
+  /**
+   * @return the factor that turns the straight-line distance between coordinates into a lower bound on path length
+   */
+  public String getHeuristicScale() {
+    return heuristicScale;
+  }
+
+  public void setHeuristicScale( String heuristicScale ) {
+    this.heuristicScale = heuristicScale;
+  }
+
+  public String getDistanceFieldName() {
+    return distanceFieldName;
+  }
+
+  public void setDistanceFieldName( String distanceFieldName ) {
+    this.distanceFieldName = distanceFieldName;
+  }
+
+  /**
+   * @return the field to put the vertex ids along the path in; empty to leave the path out
+   */
+  public String getPathFieldName() {
+    return pathFieldName;
+  }
+
+  public void setPathFieldName( String pathFieldName ) {
+    this.pathFieldName = pathFieldName;
+  }
+}
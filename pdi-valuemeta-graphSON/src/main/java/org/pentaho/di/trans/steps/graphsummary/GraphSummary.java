@@ -0,0 +1,144 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.graphsummary;
+
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.graph.GraphStatistics;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.tinkerpop.blueprints.Graph;
+
+/**
+ * Emits the statistics of the graph in each incoming row, one output row per statistic. Rows with an empty graph
+ * produce no output.
+ */
+public class GraphSummary extends BaseStep implements StepInterface {
+  private static Class<?> PKG = GraphSummaryMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphSummaryMeta meta;
+  private GraphSummaryData data;
+
+  public GraphSummary( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (GraphSummaryMeta) smi;
+    data = (GraphSummaryData) sdi;
+
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected...
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.graphFieldIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getGraphFieldName() ) );
+      if ( data.graphFieldIndex < 0 ) {
+        logError( BaseMessages.getString( PKG, "GraphSummary.Error.NotFound.GraphField" ) );
+        setErrors( 1L );
+        setOutputDone();
+        return false;
+      }
+    }
+
+    ValueMetaGraph vmg = (ValueMetaGraph) getInputRowMeta().getValueMeta( data.graphFieldIndex );
+    Graph g = vmg.getGraph( r[data.graphFieldIndex] );
+    if ( g == null ) {
+      return true;
+    }
+
+    if ( !meta.isUsingCache() ) {
+      // the graph may have changed in ways the cache does not know about, count again
+      GraphStatistics.invalidate( g );
+    }
+    GraphStatistics statistics = GraphStatistics.of( g );
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "GraphSummary.Log.Statistics", statistics.toString() ) );
+    }
+
+    putStatistic( r, GraphSummaryMeta.STATISTIC_VERTICES, null, statistics.getVertexCount() );
+    putStatistic( r, GraphSummaryMeta.STATISTIC_EDGES, null, statistics.getEdgeCount() );
+    for ( Map.Entry<String, Long> label : statistics.getLabelCounts().entrySet() ) {
+      putStatistic( r, GraphSummaryMeta.STATISTIC_LABEL, label.getKey(), label.getValue() );
+    }
+    if ( statistics.getVertexCount() > 0 ) {
+      putStatistic( r, GraphSummaryMeta.STATISTIC_DEGREE_MIN, null, statistics.getMinDegree() );
+      putStatistic( r, GraphSummaryMeta.STATISTIC_DEGREE_MAX, null, statistics.getMaxDegree() );
+      putStatistic( r, GraphSummaryMeta.STATISTIC_DEGREE_MEAN, null, statistics.getMeanDegree() );
+      long[] histogram = statistics.getDegreeHistogram();
+      for ( int b = 0; b < histogram.length; b++ ) {
+        if ( histogram[b] > 0 ) {
+          putStatistic( r, GraphSummaryMeta.STATISTIC_DEGREE_HISTOGRAM, degreeRange( b ), histogram[b] );
+        }
+      }
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "GraphSummary.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+
+    return true;
+  }
+
+  private void putStatistic( Object[] r, String statistic, String key, double value ) throws KettleStepException {
+    int inputSize = getInputRowMeta().size();
+    Object[] outputRow = RowDataUtil.createResizedCopy( r, data.outputRowMeta.size() );
+    outputRow[inputSize] = statistic;
+    outputRow[inputSize + 1] = key;
+    outputRow[inputSize + 2] = Double.valueOf( value );
+    putRow( data.outputRowMeta, outputRow );
+  }
+
+  /**
+   * @return the degrees counted in a histogram bucket, such as "0", "1" or "4-7"
+   */
+  static String degreeRange( int bucket ) {
+    long start = GraphStatistics.bucketStart( bucket );
+    if ( bucket == GraphStatistics.DEGREE_BUCKETS - 1 ) {
+      return start + "+";
+    }
+    long end = GraphStatistics.bucketStart( bucket + 1 ) - 1;
+    return start == end ? String.valueOf( start ) : start + "-" + end;
+  }
+}
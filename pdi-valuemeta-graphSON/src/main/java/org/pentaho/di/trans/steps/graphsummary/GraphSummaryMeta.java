@@ -0,0 +1,251 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.graphsummary;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph Statistics step emits the statistics of the graph in a graph field (vertex and edge counts, edges per
+ * label and the degree distribution) as rows: the input row with the statistic name, a key such as the label or degree
+ * range, and the value appended.
+ */
+@Step( id = "GraphSummary", image = "addnodes.png", name = "Graph Statistics",
+    description = "Emits vertex, edge, label and degree statistics of a graph as rows", categoryDescription = "Graph" )
+public class GraphSummaryMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphSummaryMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  public static final String STATISTIC_VERTICES = "vertices";
+  public static final String STATISTIC_EDGES = "edges";
+  public static final String STATISTIC_LABEL = "label";
+  public static final String STATISTIC_DEGREE_MIN = "degree_min";
+  public static final String STATISTIC_DEGREE_MAX = "degree_max";
+  public static final String STATISTIC_DEGREE_MEAN = "degree_mean";
+  public static final String STATISTIC_DEGREE_HISTOGRAM = "degree_histogram";
+
+  private String graphFieldName;
+  private String statisticFieldName;
+  private String keyFieldName;
+  private String valueFieldName;
+  private boolean usingCache;
+
+  public GraphSummaryMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      statisticFieldName = XMLHandler.getTagValue( stepnode, "statistic_field" );
+      keyFieldName = XMLHandler.getTagValue( stepnode, "key_field" );
+      valueFieldName = XMLHandler.getTagValue( stepnode, "value_field" );
+      usingCache = !"N".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_cache" ) );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "GraphSummaryMeta.Exception.UnableToReadStepInfo" ),
+          e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    statisticFieldName = "statistic";
+    keyFieldName = "key";
+    valueFieldName = "value";
+    usingCache = true;
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      statisticFieldName = rep.getStepAttributeString( id_step, "statistic_field" );
+      keyFieldName = rep.getStepAttributeString( id_step, "key_field" );
+      valueFieldName = rep.getStepAttributeString( id_step, "value_field" );
+      usingCache = !"N".equalsIgnoreCase( rep.getStepAttributeString( id_step, "use_cache" ) );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphSummaryMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "statistic_field", statisticFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "key_field", keyFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "value_field", valueFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "use_cache", usingCache );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphSummaryMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "statistic_field", statisticFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "key_field", keyFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "value_field", valueFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "use_cache", usingCache ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaInterface statisticMeta = new ValueMetaString( space.environmentSubstitute( statisticFieldName ) );
+    statisticMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( statisticMeta );
+    ValueMetaInterface keyMeta = new ValueMetaString( space.environmentSubstitute( keyFieldName ) );
+    keyMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( keyMeta );
+    ValueMetaInterface valueMeta = new ValueMetaNumber( space.environmentSubstitute( valueFieldName ) );
+    valueMeta.setOrigin( origin );
+    inputRowMeta.addValueMeta( valueMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphSummaryMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphSummaryMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphSummaryMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphSummaryMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( Const.isEmpty( statisticFieldName ) || Const.isEmpty( keyFieldName ) || Const.isEmpty( valueFieldName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphSummaryMeta.CheckResult.NoOutputFields" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphSummary( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphSummaryData();
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  public String getStatisticFieldName() {
+    return statisticFieldName;
+  }
+
+  public void setStatisticFieldName( String statisticFieldName ) {
+    this.statisticFieldName = statisticFieldName;
+  }
+
+  public String getKeyFieldName() {
+    return keyFieldName;
+  }
+
+  public void setKeyFieldName( String keyFieldName ) {
+    this.keyFieldName = keyFieldName;
+  }
+
+  public String getValueFieldName() {
+    return valueFieldName;
+  }
+
+  public void setValueFieldName( String valueFieldName ) {
+    this.valueFieldName = valueFieldName;
+  }
+
+  /**
+   * @return true to use statistics cached for the graph value, false to always scan the graph (for graphs that were
+   *         changed by a script since their statistics were cached)
+   */
+  public boolean isUsingCache() {
+    return usingCache;
+  }
+
+  public void setUsingCache( boolean usingCache ) {
+    this.usingCache = usingCache;
+  }
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.graphtriangles;
+
+import java.util.List;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * The Graph Triangle Count step counts the triangles around every vertex of the graph in a graph field, along with its
+ * local clustering coefficient. Both are either stored as vertex properties or emitted as one row per vertex.
+ */
+@Step( id = "GraphTriangleCount", image = "addnodes.png", name = "Graph Triangle Count",
+    description = "Counts triangles and clustering coefficients of the vertices of a graph",
+    categoryDescription = "Graph" )
+public class GraphTriangleCountMeta extends BaseStepMeta implements StepMetaInterface {
+  private static Class<?> PKG = GraphTriangleCountMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  /** Store the results as properties on each vertex and pass the row on */
+  public static final String OUTPUT_MODE_PROPERTY = "property";
+
+  /** Emit the input row once per vertex, with the vertex id, triangle count and clustering coefficient appended */
+  public static final String OUTPUT_MODE_ROWS = "rows";
+
+  public static final String[] OUTPUT_MODE_CODES = new String[] { OUTPUT_MODE_PROPERTY, OUTPUT_MODE_ROWS, };
+
+  public static final String[] OUTPUT_MODE_DESCS = new String[] {
+    BaseMessages.getString( PKG, "GraphTriangleCountMeta.OutputMode.Property" ),
+    BaseMessages.getString( PKG, "GraphTriangleCountMeta.OutputMode.Rows" ), };
+
+  private String graphFieldName;
+  private String parallelism;
+  private String outputMode;
+  private String trianglesPropertyName;
+  private String clusteringPropertyName;
+  private String vertexIdFieldName;
+  private String trianglesFieldName;
+  private String clusteringFieldName;
+
+  public GraphTriangleCountMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  private void readData( Node stepnode ) throws KettleXMLException {
+    try {
+      graphFieldName = XMLHandler.getTagValue( stepnode, "graphfield" );
+      parallelism = XMLHandler.getTagValue( stepnode, "parallelism" );
+      outputMode = getOutputModeCode( XMLHandler.getTagValue( stepnode, "output_mode" ) );
+      trianglesPropertyName = XMLHandler.getTagValue( stepnode, "triangles_property" );
+      clusteringPropertyName = XMLHandler.getTagValue( stepnode, "clustering_property" );
+      vertexIdFieldName = XMLHandler.getTagValue( stepnode, "vertex_id_field" );
+      trianglesFieldName = XMLHandler.getTagValue( stepnode, "triangles_field" );
+      clusteringFieldName = XMLHandler.getTagValue( stepnode, "clustering_field" );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG,
+          "GraphTriangleCountMeta.Exception.UnableToReadStepInfo" ), e );
+    }
+  }
+
+  public void setDefault() {
+    graphFieldName = null;
+    parallelism = "0";
+    outputMode = OUTPUT_MODE_PROPERTY;
+    trianglesPropertyName = "triangles";
+    clusteringPropertyName = "clustering";
+    vertexIdFieldName = "vertexId";
+    trianglesFieldName = "triangles";
+    clusteringFieldName = "clustering";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+    throws KettleException {
+    try {
+      graphFieldName = rep.getStepAttributeString( id_step, "graphfield" );
+      parallelism = rep.getStepAttributeString( id_step, "parallelism" );
+      outputMode = getOutputModeCode( rep.getStepAttributeString( id_step, "output_mode" ) );
+      trianglesPropertyName = rep.getStepAttributeString( id_step, "triangles_property" );
+      clusteringPropertyName = rep.getStepAttributeString( id_step, "clustering_property" );
+      vertexIdFieldName = rep.getStepAttributeString( id_step, "vertex_id_field" );
+      trianglesFieldName = rep.getStepAttributeString( id_step, "triangles_field" );
+      clusteringFieldName = rep.getStepAttributeString( id_step, "clustering_field" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphTriangleCountMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "graphfield", graphFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "parallelism", parallelism );
+      rep.saveStepAttribute( id_transformation, id_step, "output_mode", outputMode );
+      rep.saveStepAttribute( id_transformation, id_step, "triangles_property", trianglesPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "clustering_property", clusteringPropertyName );
+      rep.saveStepAttribute( id_transformation, id_step, "vertex_id_field", vertexIdFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "triangles_field", trianglesFieldName );
+      rep.saveStepAttribute( id_transformation, id_step, "clustering_field", clusteringFieldName );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG,
+          "GraphTriangleCountMeta.Exception.UnexpectedErrorSavingStepInfo" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() throws KettleException {
+    StringBuffer retval = new StringBuffer();
+    retval.append( "    " + XMLHandler.addTagValue( "graphfield", graphFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "parallelism", parallelism ) );
+    retval.append( "    " + XMLHandler.addTagValue( "output_mode", outputMode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "triangles_property", trianglesPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "clustering_property", clusteringPropertyName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "vertex_id_field", vertexIdFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "triangles_field", trianglesFieldName ) );
+    retval.append( "    " + XMLHandler.addTagValue( "clustering_field", clusteringFieldName ) );
+    return retval.toString();
+  }
+
+  public void getFields( RowMetaInterface inputRowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    if ( isOutputRows() ) {
+      ValueMetaInterface idMeta = new ValueMetaString( space.environmentSubstitute( vertexIdFieldName ) );
+      idMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( idMeta );
+      ValueMetaInterface trianglesMeta = new ValueMetaInteger( space.environmentSubstitute( trianglesFieldName ) );
+      trianglesMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( trianglesMeta );
+      ValueMetaInterface clusteringMeta = new ValueMetaNumber( space.environmentSubstitute( clusteringFieldName ) );
+      clusteringMeta.setOrigin( origin );
+      inputRowMeta.addValueMeta( clusteringMeta );
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+      String input[], String output[], RowMetaInterface info, VariableSpace space, Repository repository,
+      IMetaStore metaStore ) {
+    CheckResult cr;
+    if ( prev == null || prev.size() == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.NotReceivingFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( prev.indexOfValue( graphFieldName ) < 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.GraphFieldNotFound", graphFieldName ), stepMeta );
+      remarks.add( cr );
+    } else {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.StepRecevingData", prev.size() + "" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( input.length == 0 ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.NoInputReceivedFromOtherSteps" ), stepMeta );
+      remarks.add( cr );
+    }
+
+    if ( isOutputRows()
+        && ( Const.isEmpty( vertexIdFieldName ) || Const.isEmpty( trianglesFieldName ) || Const
+            .isEmpty( clusteringFieldName ) ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.NoOutputFields" ), stepMeta );
+      remarks.add( cr );
+    } else if ( !isOutputRows() && Const.isEmpty( trianglesPropertyName ) && Const.isEmpty( clusteringPropertyName ) ) {
+      cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+              "GraphTriangleCountMeta.CheckResult.NoProperty" ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+      Trans trans ) {
+    return new GraphTriangleCount( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new GraphTriangleCountData();
+  }
+
+  public boolean isOutputRows() {
+    return OUTPUT_MODE_ROWS.equals( outputMode );
+  }
+
+  public static String getOutputModeCode( String codeOrDesc ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( codeOrDesc )
+          || OUTPUT_MODE_DESCS[i].equalsIgnoreCase( codeOrDesc ) ) {
+        return OUTPUT_MODE_CODES[i];
+      }
+    }
+    return OUTPUT_MODE_PROPERTY;
+  }
+
+  public static String getOutputModeDesc( String code ) {
+    for ( int i = 0; i < OUTPUT_MODE_CODES.length; i++ ) {
+      if ( OUTPUT_MODE_CODES[i].equalsIgnoreCase( code ) ) {
+        return OUTPUT_MODE_DESCS[i];
+      }
+    }
+    return OUTPUT_MODE_DESCS[0];
+  }
+
+  public String getGraphFieldName() {
+    return graphFieldName;
+  }
+
+  public void setGraphFieldName( String graphFieldName ) {
+    this.graphFieldName = graphFieldName;
+  }
+
+  /**
+   * @return the number of threads to compute with; 0 or empty means one per available processor
+   */
+  public String getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism( String parallelism ) {
+    this.parallelism = parallelism;
+  }
+
+  public String getOutputMode() {
+    return outputMode;
+  }
+
+  public void setOutputMode( String outputMode ) {
+    this.outputMode = outputMode;
+  }
+
+  /**
+   * @return the vertex property to store the triangle count in; empty to leave it out
+   */
+  public String getTrianglesPropertyName() {
+    return trianglesPropertyName;
+  }
+
+  public void setTrianglesPropertyName( String trianglesPropertyName ) {
+    this.trianglesPropertyName = trianglesPropertyName;
+  }
+
+  /**
+   * @return the vertex property to store the clustering coefficient in; empty to leave it out
+   */
+  public String getClusteringPropertyName() {
+    return clusteringPropertyName;
+  }
+
+  public void setClusteringPropertyName( String clusteringPropertyName ) {
+    this.clusteringPropertyName = clusteringPropertyName;
+  }
+
+  public String getVertexIdFieldName() {
+    return vertexIdFieldName;
+  }
+
+  public void setVertexIdFieldName( String vertexIdFieldName ) {
+    this.vertexIdFieldName = vertexIdFieldName;
+  }
+
+  public String getTrianglesFieldName() {
+    return trianglesFieldName;
+  }
+
+  public void setTrianglesFieldName( String trianglesFieldName ) {
+    this.trianglesFieldName = trianglesFieldName;
+  }
+
+  public String getClusteringFieldName() {
+    return clusteringFieldName;
+  }
+
+  public void setClusteringFieldName( String clusteringFieldName ) {
+    this.clusteringFieldName = clusteringFieldName;
+  }
+}
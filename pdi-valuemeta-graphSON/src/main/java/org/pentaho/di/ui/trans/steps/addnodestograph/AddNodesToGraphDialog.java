@@ -51,6 +51,7 @@ import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepDialogInterface;
 import org.pentaho.di.trans.steps.addnodestograph.AddNodesToGraphMeta;
 import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
 public class AddNodesToGraphDialog extends BaseStepDialog implements StepDialogInterface {
@@ -68,6 +69,18 @@ public class AddNodesToGraphDialog extends BaseStepDialog implements StepDialogI
   private CCombo wMapField;
   private FormData fdlMapField, fdMapField;
 
+  private Label wlCreateGraph;
+  private Button wCreateGraph;
+  private FormData fdlCreateGraph, fdCreateGraph;
+
+  private Label wlSpillDirectory;
+  private TextVar wSpillDirectory;
+  private FormData fdlSpillDirectory, fdSpillDirectory;
+
+  private Label wlCacheSize;
+  private TextVar wCacheSize;
+  private FormData fdlCacheSize, fdCacheSize;
+
   public AddNodesToGraphDialog( Shell parent, Object in, TransMeta tr, String sname ) {
     super( parent, (BaseStepMeta) in, tr, sname );
     input = (AddNodesToGraphMeta) in;
@@ -178,13 +191,74 @@ public class AddNodesToGraphDialog extends BaseStepDialog implements StepDialogI
       }
     } );
 
+    // Start a spill-to-disk graph when the graph field is empty
+    wlCreateGraph = new Label( shell, SWT.RIGHT );
+    wlCreateGraph.setText( BaseMessages.getString( PKG, "AddNodesToGraphDialog.CreateGraph.Label" ) );
+    wlCreateGraph.setToolTipText( BaseMessages.getString( PKG, "AddNodesToGraphDialog.CreateGraph.Tooltip" ) );
+    props.setLook( wlCreateGraph );
+    fdlCreateGraph = new FormData();
+    fdlCreateGraph.left = new FormAttachment( 0, 0 );
+    fdlCreateGraph.right = new FormAttachment( middle, -margin );
+    fdlCreateGraph.top = new FormAttachment( wMapField, margin );
+    wlCreateGraph.setLayoutData( fdlCreateGraph );
+    wCreateGraph = new Button( shell, SWT.CHECK );
+    props.setLook( wCreateGraph );
+    wCreateGraph.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+        setCreateGraphFlags();
+      }
+    } );
+    fdCreateGraph = new FormData();
+    fdCreateGraph.left = new FormAttachment( middle, 0 );
+    fdCreateGraph.top = new FormAttachment( wMapField, margin );
+    fdCreateGraph.right = new FormAttachment( 100, 0 );
+    wCreateGraph.setLayoutData( fdCreateGraph );
+
+    // Spill directory
+    wlSpillDirectory = new Label( shell, SWT.RIGHT );
+    wlSpillDirectory.setText( BaseMessages.getString( PKG, "AddNodesToGraphDialog.SpillDirectory.Label" ) );
+    props.setLook( wlSpillDirectory );
+    fdlSpillDirectory = new FormData();
+    fdlSpillDirectory.left = new FormAttachment( 0, 0 );
+    fdlSpillDirectory.right = new FormAttachment( middle, -margin );
+    fdlSpillDirectory.top = new FormAttachment( wCreateGraph, margin );
+    wlSpillDirectory.setLayoutData( fdlSpillDirectory );
+    wSpillDirectory = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wSpillDirectory.setToolTipText( BaseMessages.getString( PKG, "AddNodesToGraphDialog.SpillDirectory.Tooltip" ) );
+    props.setLook( wSpillDirectory );
+    wSpillDirectory.addModifyListener( lsMod );
+    fdSpillDirectory = new FormData();
+    fdSpillDirectory.left = new FormAttachment( middle, 0 );
+    fdSpillDirectory.top = new FormAttachment( wCreateGraph, margin );
+    fdSpillDirectory.right = new FormAttachment( 100, 0 );
+    wSpillDirectory.setLayoutData( fdSpillDirectory );
+
+    // Number of elements kept in memory
+    wlCacheSize = new Label( shell, SWT.RIGHT );
+    wlCacheSize.setText( BaseMessages.getString( PKG, "AddNodesToGraphDialog.CacheSize.Label" ) );
+    props.setLook( wlCacheSize );
+    fdlCacheSize = new FormData();
+    fdlCacheSize.left = new FormAttachment( 0, 0 );
+    fdlCacheSize.right = new FormAttachment( middle, -margin );
+    fdlCacheSize.top = new FormAttachment( wSpillDirectory, margin );
+    wlCacheSize.setLayoutData( fdlCacheSize );
+    wCacheSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheSize );
+    wCacheSize.addModifyListener( lsMod );
+    fdCacheSize = new FormData();
+    fdCacheSize.left = new FormAttachment( middle, 0 );
+    fdCacheSize.top = new FormAttachment( wSpillDirectory, margin );
+    fdCacheSize.right = new FormAttachment( 100, 0 );
+    wCacheSize.setLayoutData( fdCacheSize );
+
     // Some buttons
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
     wCancel = new Button( shell, SWT.PUSH );
     wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
 
-    setButtonPositions( new Button[] { wOK, wCancel }, margin, wMapField );
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wCacheSize );
 
     // Add listeners
     lsCancel = new Listener() {
@@ -240,11 +314,23 @@ public class AddNodesToGraphDialog extends BaseStepDialog implements StepDialogI
     if ( !Const.isEmpty( input.getMapFieldName() ) ) {
       wMapField.setText( input.getMapFieldName() );
     }
+    wCreateGraph.setSelection( input.isCreatingGraph() );
+    wSpillDirectory.setText( Const.NVL( input.getSpillDirectory(), "" ) );
+    wCacheSize.setText( Const.NVL( input.getCacheSize(), "" ) );
+    setCreateGraphFlags();
 
     wStepname.selectAll();
     wStepname.setFocus();
   }
 
+  private void setCreateGraphFlags() {
+    boolean creatingGraph = wCreateGraph.getSelection();
+    wlSpillDirectory.setEnabled( creatingGraph );
+    wSpillDirectory.setEnabled( creatingGraph );
+    wlCacheSize.setEnabled( creatingGraph );
+    wCacheSize.setEnabled( creatingGraph );
+  }
+
   private void cancel() {
     stepname = null;
     input.setChanged( changed );
@@ -258,6 +344,9 @@ public class AddNodesToGraphDialog extends BaseStepDialog implements StepDialogI
     stepname = wStepname.getText(); // return value
     input.setGraphFieldName( wGraphField.getText() );
     input.setMapFieldName( wMapField.getText() );
+    input.setCreatingGraph( wCreateGraph.getSelection() );
+    input.setSpillDirectory( wSpillDirectory.getText() );
+    input.setCacheSize( wCacheSize.getText() );
 
     dispose();
   }
@@ -0,0 +1,704 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphapplychanges;
+
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.steps.graphapplychanges.ApplyGraphChangesMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class ApplyGraphChangesDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = ApplyGraphChangesMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private ApplyGraphChangesMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphStep;
+  private CCombo wGraphStep;
+  private FormData fdlGraphStep, fdGraphStep;
+
+  private Label wlGraphField;
+  private Text wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlGraphTarget;
+  private CCombo wGraphTarget;
+  private FormData fdlGraphTarget, fdGraphTarget;
+
+  private Label wlChangeLogTarget;
+  private CCombo wChangeLogTarget;
+  private FormData fdlChangeLogTarget, fdChangeLogTarget;
+
+  private Label wlStatusField;
+  private Text wStatusField;
+  private FormData fdlStatusField, fdStatusField;
+
+  private Label wlOpField;
+  private CCombo wOpField;
+  private FormData fdlOpField, fdOpField;
+
+  private Label wlInsertCode;
+  private TextVar wInsertCode;
+  private FormData fdlInsertCode, fdInsertCode;
+
+  private Label wlUpdateCode;
+  private TextVar wUpdateCode;
+  private FormData fdlUpdateCode, fdUpdateCode;
+
+  private Label wlDeleteCode;
+  private TextVar wDeleteCode;
+  private FormData fdlDeleteCode, fdDeleteCode;
+
+  private Label wlTypeField;
+  private CCombo wTypeField;
+  private FormData fdlTypeField, fdTypeField;
+
+  private Label wlIdField;
+  private CCombo wIdField;
+  private FormData fdlIdField, fdIdField;
+
+  private Label wlOutIdField;
+  private CCombo wOutIdField;
+  private FormData fdlOutIdField, fdOutIdField;
+
+  private Label wlInIdField;
+  private CCombo wInIdField;
+  private FormData fdlInIdField, fdInIdField;
+
+  private Label wlLabelField;
+  private CCombo wLabelField;
+  private FormData fdlLabelField, fdLabelField;
+
+  private Label wlPropertiesField;
+  private CCombo wPropertiesField;
+  private FormData fdlPropertiesField, fdPropertiesField;
+
+  private Label wlBatchSize;
+  private TextVar wBatchSize;
+  private FormData fdlBatchSize, fdBatchSize;
+
+  public ApplyGraphChangesDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (ApplyGraphChangesMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    String[] prevStepNames = transMeta.getPrevStepNames( stepMeta );
+    String[] nextStepNames = transMeta.getNextStepNames( stepMeta );
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Step the graph to change is read from
+    wlGraphStep = new Label( shell, SWT.RIGHT );
+    wlGraphStep.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.GraphStep.Label" ) );
+    props.setLook( wlGraphStep );
+    fdlGraphStep = new FormData();
+    fdlGraphStep.left = new FormAttachment( 0, 0 );
+    fdlGraphStep.right = new FormAttachment( middle, -margin );
+    fdlGraphStep.top = new FormAttachment( wStepname, margin );
+    wlGraphStep.setLayoutData( fdlGraphStep );
+    wGraphStep = new CCombo( shell, SWT.BORDER );
+    wGraphStep.setItems( prevStepNames );
+    props.setLook( wGraphStep );
+    wGraphStep.addModifyListener( lsMod );
+    fdGraphStep = new FormData();
+    fdGraphStep.left = new FormAttachment( middle, 0 );
+    fdGraphStep.top = new FormAttachment( wStepname, margin );
+    fdGraphStep.right = new FormAttachment( 100, 0 );
+    wGraphStep.setLayoutData( fdGraphStep );
+
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wGraphStep, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wGraphStep, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+
+    // Target steps for the changed graph and the change log
+    wlGraphTarget = new Label( shell, SWT.RIGHT );
+    wlGraphTarget.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.GraphTarget.Label" ) );
+    props.setLook( wlGraphTarget );
+    fdlGraphTarget = new FormData();
+    fdlGraphTarget.left = new FormAttachment( 0, 0 );
+    fdlGraphTarget.right = new FormAttachment( middle, -margin );
+    fdlGraphTarget.top = new FormAttachment( wGraphField, margin );
+    wlGraphTarget.setLayoutData( fdlGraphTarget );
+    wGraphTarget = new CCombo( shell, SWT.BORDER );
+    wGraphTarget.setItems( nextStepNames );
+    props.setLook( wGraphTarget );
+    wGraphTarget.addModifyListener( lsMod );
+    fdGraphTarget = new FormData();
+    fdGraphTarget.left = new FormAttachment( middle, 0 );
+    fdGraphTarget.top = new FormAttachment( wGraphField, margin );
+    fdGraphTarget.right = new FormAttachment( 100, 0 );
+    wGraphTarget.setLayoutData( fdGraphTarget );
+
+    wlChangeLogTarget = new Label( shell, SWT.RIGHT );
+    wlChangeLogTarget.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.ChangeLogTarget.Label" ) );
+    props.setLook( wlChangeLogTarget );
+    fdlChangeLogTarget = new FormData();
+    fdlChangeLogTarget.left = new FormAttachment( 0, 0 );
+    fdlChangeLogTarget.right = new FormAttachment( middle, -margin );
+    fdlChangeLogTarget.top = new FormAttachment( wGraphTarget, margin );
+    wlChangeLogTarget.setLayoutData( fdlChangeLogTarget );
+    wChangeLogTarget = new CCombo( shell, SWT.BORDER );
+    wChangeLogTarget.setItems( nextStepNames );
+    props.setLook( wChangeLogTarget );
+    wChangeLogTarget.addModifyListener( lsMod );
+    fdChangeLogTarget = new FormData();
+    fdChangeLogTarget.left = new FormAttachment( middle, 0 );
+    fdChangeLogTarget.top = new FormAttachment( wGraphTarget, margin );
+    fdChangeLogTarget.right = new FormAttachment( 100, 0 );
+    wChangeLogTarget.setLayoutData( fdChangeLogTarget );
+
+    wlStatusField = new Label( shell, SWT.RIGHT );
+    wlStatusField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.StatusField.Label" ) );
+    props.setLook( wlStatusField );
+    fdlStatusField = new FormData();
+    fdlStatusField.left = new FormAttachment( 0, 0 );
+    fdlStatusField.right = new FormAttachment( middle, -margin );
+    fdlStatusField.top = new FormAttachment( wChangeLogTarget, margin );
+    wlStatusField.setLayoutData( fdlStatusField );
+    wStatusField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wStatusField );
+    wStatusField.addModifyListener( lsMod );
+    fdStatusField = new FormData();
+    fdStatusField.left = new FormAttachment( middle, 0 );
+    fdStatusField.top = new FormAttachment( wChangeLogTarget, margin );
+    fdStatusField.right = new FormAttachment( 100, 0 );
+    wStatusField.setLayoutData( fdStatusField );
+
+    // Operation field and its values
+    wlOpField = new Label( shell, SWT.RIGHT );
+    wlOpField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.OpField.Label" ) );
+    props.setLook( wlOpField );
+    fdlOpField = new FormData();
+    fdlOpField.left = new FormAttachment( 0, 0 );
+    fdlOpField.right = new FormAttachment( middle, -margin );
+    fdlOpField.top = new FormAttachment( wStatusField, margin );
+    wlOpField.setLayoutData( fdlOpField );
+    wOpField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wOpField );
+    wOpField.addModifyListener( lsMod );
+    fdOpField = new FormData();
+    fdOpField.left = new FormAttachment( middle, 0 );
+    fdOpField.top = new FormAttachment( wStatusField, margin );
+    fdOpField.right = new FormAttachment( 100, 0 );
+    wOpField.setLayoutData( fdOpField );
+    wOpField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wOpField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlInsertCode = new Label( shell, SWT.RIGHT );
+    wlInsertCode.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.InsertCode.Label" ) );
+    props.setLook( wlInsertCode );
+    fdlInsertCode = new FormData();
+    fdlInsertCode.left = new FormAttachment( 0, 0 );
+    fdlInsertCode.right = new FormAttachment( middle, -margin );
+    fdlInsertCode.top = new FormAttachment( wOpField, margin );
+    wlInsertCode.setLayoutData( fdlInsertCode );
+    wInsertCode = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wInsertCode );
+    wInsertCode.addModifyListener( lsMod );
+    fdInsertCode = new FormData();
+    fdInsertCode.left = new FormAttachment( middle, 0 );
+    fdInsertCode.top = new FormAttachment( wOpField, margin );
+    fdInsertCode.right = new FormAttachment( 100, 0 );
+    wInsertCode.setLayoutData( fdInsertCode );
+
+    wlUpdateCode = new Label( shell, SWT.RIGHT );
+    wlUpdateCode.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.UpdateCode.Label" ) );
+    props.setLook( wlUpdateCode );
+    fdlUpdateCode = new FormData();
+    fdlUpdateCode.left = new FormAttachment( 0, 0 );
+    fdlUpdateCode.right = new FormAttachment( middle, -margin );
+    fdlUpdateCode.top = new FormAttachment( wInsertCode, margin );
+    wlUpdateCode.setLayoutData( fdlUpdateCode );
+    wUpdateCode = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wUpdateCode );
+    wUpdateCode.addModifyListener( lsMod );
+    fdUpdateCode = new FormData();
+    fdUpdateCode.left = new FormAttachment( middle, 0 );
+    fdUpdateCode.top = new FormAttachment( wInsertCode, margin );
+    fdUpdateCode.right = new FormAttachment( 100, 0 );
+    wUpdateCode.setLayoutData( fdUpdateCode );
+
+    wlDeleteCode = new Label( shell, SWT.RIGHT );
+    wlDeleteCode.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.DeleteCode.Label" ) );
+    props.setLook( wlDeleteCode );
+    fdlDeleteCode = new FormData();
+    fdlDeleteCode.left = new FormAttachment( 0, 0 );
+    fdlDeleteCode.right = new FormAttachment( middle, -margin );
+    fdlDeleteCode.top = new FormAttachment( wUpdateCode, margin );
+    wlDeleteCode.setLayoutData( fdlDeleteCode );
+    wDeleteCode = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDeleteCode );
+    wDeleteCode.addModifyListener( lsMod );
+    fdDeleteCode = new FormData();
+    fdDeleteCode.left = new FormAttachment( middle, 0 );
+    fdDeleteCode.top = new FormAttachment( wUpdateCode, margin );
+    fdDeleteCode.right = new FormAttachment( 100, 0 );
+    wDeleteCode.setLayoutData( fdDeleteCode );
+
+    // Vertex and edge row fields
+    wlTypeField = new Label( shell, SWT.RIGHT );
+    wlTypeField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.TypeField.Label" ) );
+    props.setLook( wlTypeField );
+    fdlTypeField = new FormData();
+    fdlTypeField.left = new FormAttachment( 0, 0 );
+    fdlTypeField.right = new FormAttachment( middle, -margin );
+    fdlTypeField.top = new FormAttachment( wDeleteCode, margin );
+    wlTypeField.setLayoutData( fdlTypeField );
+    wTypeField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wTypeField );
+    wTypeField.addModifyListener( lsMod );
+    fdTypeField = new FormData();
+    fdTypeField.left = new FormAttachment( middle, 0 );
+    fdTypeField.top = new FormAttachment( wDeleteCode, margin );
+    fdTypeField.right = new FormAttachment( 100, 0 );
+    wTypeField.setLayoutData( fdTypeField );
+    wTypeField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wTypeField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlIdField = new Label( shell, SWT.RIGHT );
+    wlIdField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.IdField.Label" ) );
+    props.setLook( wlIdField );
+    fdlIdField = new FormData();
+    fdlIdField.left = new FormAttachment( 0, 0 );
+    fdlIdField.right = new FormAttachment( middle, -margin );
+    fdlIdField.top = new FormAttachment( wTypeField, margin );
+    wlIdField.setLayoutData( fdlIdField );
+    wIdField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wIdField );
+    wIdField.addModifyListener( lsMod );
+    fdIdField = new FormData();
+    fdIdField.left = new FormAttachment( middle, 0 );
+    fdIdField.top = new FormAttachment( wTypeField, margin );
+    fdIdField.right = new FormAttachment( 100, 0 );
+    wIdField.setLayoutData( fdIdField );
+    wIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlOutIdField = new Label( shell, SWT.RIGHT );
+    wlOutIdField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.OutIdField.Label" ) );
+    props.setLook( wlOutIdField );
+    fdlOutIdField = new FormData();
+    fdlOutIdField.left = new FormAttachment( 0, 0 );
+    fdlOutIdField.right = new FormAttachment( middle, -margin );
+    fdlOutIdField.top = new FormAttachment( wIdField, margin );
+    wlOutIdField.setLayoutData( fdlOutIdField );
+    wOutIdField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wOutIdField );
+    wOutIdField.addModifyListener( lsMod );
+    fdOutIdField = new FormData();
+    fdOutIdField.left = new FormAttachment( middle, 0 );
+    fdOutIdField.top = new FormAttachment( wIdField, margin );
+    fdOutIdField.right = new FormAttachment( 100, 0 );
+    wOutIdField.setLayoutData( fdOutIdField );
+    wOutIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wOutIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlInIdField = new Label( shell, SWT.RIGHT );
+    wlInIdField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.InIdField.Label" ) );
+    props.setLook( wlInIdField );
+    fdlInIdField = new FormData();
+    fdlInIdField.left = new FormAttachment( 0, 0 );
+    fdlInIdField.right = new FormAttachment( middle, -margin );
+    fdlInIdField.top = new FormAttachment( wOutIdField, margin );
+    wlInIdField.setLayoutData( fdlInIdField );
+    wInIdField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wInIdField );
+    wInIdField.addModifyListener( lsMod );
+    fdInIdField = new FormData();
+    fdInIdField.left = new FormAttachment( middle, 0 );
+    fdInIdField.top = new FormAttachment( wOutIdField, margin );
+    fdInIdField.right = new FormAttachment( 100, 0 );
+    wInIdField.setLayoutData( fdInIdField );
+    wInIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wInIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlLabelField = new Label( shell, SWT.RIGHT );
+    wlLabelField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.LabelField.Label" ) );
+    props.setLook( wlLabelField );
+    fdlLabelField = new FormData();
+    fdlLabelField.left = new FormAttachment( 0, 0 );
+    fdlLabelField.right = new FormAttachment( middle, -margin );
+    fdlLabelField.top = new FormAttachment( wInIdField, margin );
+    wlLabelField.setLayoutData( fdlLabelField );
+    wLabelField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wLabelField );
+    wLabelField.addModifyListener( lsMod );
+    fdLabelField = new FormData();
+    fdLabelField.left = new FormAttachment( middle, 0 );
+    fdLabelField.top = new FormAttachment( wInIdField, margin );
+    fdLabelField.right = new FormAttachment( 100, 0 );
+    wLabelField.setLayoutData( fdLabelField );
+    wLabelField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wLabelField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlPropertiesField = new Label( shell, SWT.RIGHT );
+    wlPropertiesField.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.PropertiesField.Label" ) );
+    props.setLook( wlPropertiesField );
+    fdlPropertiesField = new FormData();
+    fdlPropertiesField.left = new FormAttachment( 0, 0 );
+    fdlPropertiesField.right = new FormAttachment( middle, -margin );
+    fdlPropertiesField.top = new FormAttachment( wLabelField, margin );
+    wlPropertiesField.setLayoutData( fdlPropertiesField );
+    wPropertiesField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wPropertiesField );
+    wPropertiesField.addModifyListener( lsMod );
+    fdPropertiesField = new FormData();
+    fdPropertiesField.left = new FormAttachment( middle, 0 );
+    fdPropertiesField.top = new FormAttachment( wLabelField, margin );
+    fdPropertiesField.right = new FormAttachment( 100, 0 );
+    wPropertiesField.setLayoutData( fdPropertiesField );
+    wPropertiesField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wPropertiesField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Number of changes committed together
+    wlBatchSize = new Label( shell, SWT.RIGHT );
+    wlBatchSize.setText( BaseMessages.getString( PKG, "ApplyGraphChangesDialog.BatchSize.Label" ) );
+    props.setLook( wlBatchSize );
+    fdlBatchSize = new FormData();
+    fdlBatchSize.left = new FormAttachment( 0, 0 );
+    fdlBatchSize.right = new FormAttachment( middle, -margin );
+    fdlBatchSize.top = new FormAttachment( wPropertiesField, margin );
+    wlBatchSize.setLayoutData( fdlBatchSize );
+    wBatchSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wBatchSize );
+    wBatchSize.addModifyListener( lsMod );
+    fdBatchSize = new FormData();
+    fdBatchSize.left = new FormAttachment( middle, 0 );
+    fdBatchSize.top = new FormAttachment( wPropertiesField, margin );
+    fdBatchSize.right = new FormAttachment( 100, 0 );
+    wBatchSize.setLayoutData( fdBatchSize );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wBatchSize );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    wGraphStep.setText( Const.NVL( input.getStepIOMeta().getInfoStreams().get( 0 ).getStepname(), "" ) );
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    List<StreamInterface> targetStreams = input.getStepIOMeta().getTargetStreams();
+    wGraphTarget.setText( Const.NVL( targetStreams.get( 0 ).getStepname(), "" ) );
+    wChangeLogTarget.setText( Const.NVL( targetStreams.get( 1 ).getStepname(), "" ) );
+    if ( !Const.isEmpty( input.getStatusFieldName() ) ) {
+      wStatusField.setText( input.getStatusFieldName() );
+    }
+    if ( !Const.isEmpty( input.getOpFieldName() ) ) {
+      wOpField.setText( input.getOpFieldName() );
+    }
+    if ( !Const.isEmpty( input.getInsertCode() ) ) {
+      wInsertCode.setText( input.getInsertCode() );
+    }
+    if ( !Const.isEmpty( input.getUpdateCode() ) ) {
+      wUpdateCode.setText( input.getUpdateCode() );
+    }
+    if ( !Const.isEmpty( input.getDeleteCode() ) ) {
+      wDeleteCode.setText( input.getDeleteCode() );
+    }
+    if ( !Const.isEmpty( input.getTypeFieldName() ) ) {
+      wTypeField.setText( input.getTypeFieldName() );
+    }
+    if ( !Const.isEmpty( input.getIdFieldName() ) ) {
+      wIdField.setText( input.getIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getOutIdFieldName() ) ) {
+      wOutIdField.setText( input.getOutIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getInIdFieldName() ) ) {
+      wInIdField.setText( input.getInIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getLabelFieldName() ) ) {
+      wLabelField.setText( input.getLabelFieldName() );
+    }
+    if ( !Const.isEmpty( input.getPropertiesFieldName() ) ) {
+      wPropertiesField.setText( input.getPropertiesFieldName() );
+    }
+    if ( !Const.isEmpty( input.getBatchSize() ) ) {
+      wBatchSize.setText( input.getBatchSize() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.getStepIOMeta().getInfoStreams().get( 0 ).setStepMeta( transMeta.findStep( wGraphStep.getText() ) );
+    input.setGraphFieldName( wGraphField.getText() );
+    List<StreamInterface> targetStreams = input.getStepIOMeta().getTargetStreams();
+    targetStreams.get( 0 ).setStepMeta( transMeta.findStep( wGraphTarget.getText() ) );
+    targetStreams.get( 1 ).setStepMeta( transMeta.findStep( wChangeLogTarget.getText() ) );
+    input.setStatusFieldName( wStatusField.getText() );
+    input.setOpFieldName( wOpField.getText() );
+    input.setInsertCode( wInsertCode.getText() );
+    input.setUpdateCode( wUpdateCode.getText() );
+    input.setDeleteCode( wDeleteCode.getText() );
+    input.setTypeFieldName( wTypeField.getText() );
+    input.setIdFieldName( wIdField.getText() );
+    input.setOutIdFieldName( wOutIdField.getText() );
+    input.setInIdFieldName( wInIdField.getText() );
+    input.setLabelFieldName( wLabelField.getText() );
+    input.setPropertiesFieldName( wPropertiesField.getText() );
+    input.setBatchSize( wBatchSize.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "ApplyGraphChangesDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "ApplyGraphChangesDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphcomponents;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphcomponents.GraphConnectedComponentsMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphConnectedComponentsDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphConnectedComponentsMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphConnectedComponentsMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlParallelism;
+  private TextVar wParallelism;
+  private FormData fdlParallelism, fdParallelism;
+
+  private Label wlOutputMode;
+  private CCombo wOutputMode;
+  private FormData fdlOutputMode, fdOutputMode;
+
+  private Label wlComponentProperty;
+  private Text wComponentProperty;
+  private FormData fdlComponentProperty, fdComponentProperty;
+
+  private Label wlVertexIdField;
+  private Text wVertexIdField;
+  private FormData fdlVertexIdField, fdVertexIdField;
+
+  private Label wlComponentField;
+  private Text wComponentField;
+  private FormData fdlComponentField, fdComponentField;
+
+  public GraphConnectedComponentsDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphConnectedComponentsMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Number of threads
+    wlParallelism = new Label( shell, SWT.RIGHT );
+    wlParallelism.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.Parallelism.Label" ) );
+    props.setLook( wlParallelism );
+    fdlParallelism = new FormData();
+    fdlParallelism.left = new FormAttachment( 0, 0 );
+    fdlParallelism.right = new FormAttachment( middle, -margin );
+    fdlParallelism.top = new FormAttachment( wGraphField, margin );
+    wlParallelism.setLayoutData( fdlParallelism );
+    wParallelism = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wParallelism );
+    wParallelism.addModifyListener( lsMod );
+    fdParallelism = new FormData();
+    fdParallelism.left = new FormAttachment( middle, 0 );
+    fdParallelism.top = new FormAttachment( wGraphField, margin );
+    fdParallelism.right = new FormAttachment( 100, 0 );
+    wParallelism.setLayoutData( fdParallelism );
+
+    // Output mode
+    wlOutputMode = new Label( shell, SWT.RIGHT );
+    wlOutputMode.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.OutputMode.Label" ) );
+    props.setLook( wlOutputMode );
+    fdlOutputMode = new FormData();
+    fdlOutputMode.left = new FormAttachment( 0, 0 );
+    fdlOutputMode.right = new FormAttachment( middle, -margin );
+    fdlOutputMode.top = new FormAttachment( wParallelism, margin );
+    wlOutputMode.setLayoutData( fdlOutputMode );
+    wOutputMode = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wOutputMode.setItems( GraphConnectedComponentsMeta.OUTPUT_MODE_DESCS );
+    props.setLook( wOutputMode );
+    wOutputMode.addModifyListener( lsMod );
+    fdOutputMode = new FormData();
+    fdOutputMode.left = new FormAttachment( middle, 0 );
+    fdOutputMode.top = new FormAttachment( wParallelism, margin );
+    fdOutputMode.right = new FormAttachment( 100, 0 );
+    wOutputMode.setLayoutData( fdOutputMode );
+    wOutputMode.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    // Vertex property to store the component in
+    wlComponentProperty = new Label( shell, SWT.RIGHT );
+    wlComponentProperty.setText( BaseMessages.getString( PKG,
+        "GraphConnectedComponentsDialog.ComponentProperty.Label" ) );
+    props.setLook( wlComponentProperty );
+    fdlComponentProperty = new FormData();
+    fdlComponentProperty.left = new FormAttachment( 0, 0 );
+    fdlComponentProperty.right = new FormAttachment( middle, -margin );
+    fdlComponentProperty.top = new FormAttachment( wOutputMode, margin );
+    wlComponentProperty.setLayoutData( fdlComponentProperty );
+    wComponentProperty = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wComponentProperty );
+    wComponentProperty.addModifyListener( lsMod );
+    fdComponentProperty = new FormData();
+    fdComponentProperty.left = new FormAttachment( middle, 0 );
+    fdComponentProperty.top = new FormAttachment( wOutputMode, margin );
+    fdComponentProperty.right = new FormAttachment( 100, 0 );
+    wComponentProperty.setLayoutData( fdComponentProperty );
+
+    // Vertex ID output field
+    wlVertexIdField = new Label( shell, SWT.RIGHT );
+    wlVertexIdField.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.VertexIdField.Label" ) );
+    props.setLook( wlVertexIdField );
+    fdlVertexIdField = new FormData();
+    fdlVertexIdField.left = new FormAttachment( 0, 0 );
+    fdlVertexIdField.right = new FormAttachment( middle, -margin );
+    fdlVertexIdField.top = new FormAttachment( wComponentProperty, margin );
+    wlVertexIdField.setLayoutData( fdlVertexIdField );
+    wVertexIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wVertexIdField );
+    wVertexIdField.addModifyListener( lsMod );
+    fdVertexIdField = new FormData();
+    fdVertexIdField.left = new FormAttachment( middle, 0 );
+    fdVertexIdField.top = new FormAttachment( wComponentProperty, margin );
+    fdVertexIdField.right = new FormAttachment( 100, 0 );
+    wVertexIdField.setLayoutData( fdVertexIdField );
+
+    // Component output field
+    wlComponentField = new Label( shell, SWT.RIGHT );
+    wlComponentField.setText( BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.ComponentField.Label" ) );
+    props.setLook( wlComponentField );
+    fdlComponentField = new FormData();
+    fdlComponentField.left = new FormAttachment( 0, 0 );
+    fdlComponentField.right = new FormAttachment( middle, -margin );
+    fdlComponentField.top = new FormAttachment( wVertexIdField, margin );
+    wlComponentField.setLayoutData( fdlComponentField );
+    wComponentField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wComponentField );
+    wComponentField.addModifyListener( lsMod );
+    fdComponentField = new FormData();
+    fdComponentField.left = new FormAttachment( middle, 0 );
+    fdComponentField.top = new FormAttachment( wVertexIdField, margin );
+    fdComponentField.right = new FormAttachment( 100, 0 );
+    wComponentField.setLayoutData( fdComponentField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wComponentField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getParallelism() ) ) {
+      wParallelism.setText( input.getParallelism() );
+    }
+    wOutputMode.setText( GraphConnectedComponentsMeta.getOutputModeDesc( input.getOutputMode() ) );
+    if ( !Const.isEmpty( input.getComponentPropertyName() ) ) {
+      wComponentProperty.setText( input.getComponentPropertyName() );
+    }
+    if ( !Const.isEmpty( input.getVertexIdFieldName() ) ) {
+      wVertexIdField.setText( input.getVertexIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getComponentFieldName() ) ) {
+      wComponentField.setText( input.getComponentFieldName() );
+    }
+    setFlags();
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setParallelism( wParallelism.getText() );
+    input.setOutputMode( GraphConnectedComponentsMeta.getOutputModeCode( wOutputMode.getText() ) );
+    input.setComponentPropertyName( wComponentProperty.getText() );
+    input.setVertexIdFieldName( wVertexIdField.getText() );
+    input.setComponentFieldName( wComponentField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell,
+          BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphConnectedComponentsDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+
+  private void setFlags() {
+    String outputMode = GraphConnectedComponentsMeta.getOutputModeCode( wOutputMode.getText() );
+    boolean rows = GraphConnectedComponentsMeta.OUTPUT_MODE_ROWS.equals( outputMode );
+    wlComponentProperty.setEnabled( !rows );
+    wComponentProperty.setEnabled( !rows );
+    wlVertexIdField.setEnabled( rows );
+    wVertexIdField.setEnabled( rows );
+    wlComponentField.setEnabled( rows );
+    wComponentField.setEnabled( rows );
+  }
+}
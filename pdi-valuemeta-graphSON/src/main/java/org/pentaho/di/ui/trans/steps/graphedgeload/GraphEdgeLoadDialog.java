@@ -0,0 +1,437 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphedgeload;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphedgeload.GraphEdgeLoadMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphEdgeLoadDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphEdgeLoadMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphEdgeLoadMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlSourceField;
+  private CCombo wSourceField;
+  private FormData fdlSourceField, fdSourceField;
+
+  private Label wlTargetField;
+  private CCombo wTargetField;
+  private FormData fdlTargetField, fdTargetField;
+
+  private Label wlWeightField;
+  private CCombo wWeightField;
+  private FormData fdlWeightField, fdWeightField;
+
+  private Label wlWeightProperty;
+  private TextVar wWeightProperty;
+  private FormData fdlWeightProperty, fdWeightProperty;
+
+  private Label wlLabelField;
+  private CCombo wLabelField;
+  private FormData fdlLabelField, fdLabelField;
+
+  private Label wlDefaultLabel;
+  private TextVar wDefaultLabel;
+  private FormData fdlDefaultLabel, fdDefaultLabel;
+
+  private Label wlGraphField;
+  private Text wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  public GraphEdgeLoadDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphEdgeLoadMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Edge endpoints
+    wlSourceField = new Label( shell, SWT.RIGHT );
+    wlSourceField.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.SourceField.Label" ) );
+    props.setLook( wlSourceField );
+    fdlSourceField = new FormData();
+    fdlSourceField.left = new FormAttachment( 0, 0 );
+    fdlSourceField.right = new FormAttachment( middle, -margin );
+    fdlSourceField.top = new FormAttachment( wStepname, margin );
+    wlSourceField.setLayoutData( fdlSourceField );
+    wSourceField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wSourceField );
+    wSourceField.addModifyListener( lsMod );
+    fdSourceField = new FormData();
+    fdSourceField.left = new FormAttachment( middle, 0 );
+    fdSourceField.top = new FormAttachment( wStepname, margin );
+    fdSourceField.right = new FormAttachment( 100, 0 );
+    wSourceField.setLayoutData( fdSourceField );
+    wSourceField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wSourceField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlTargetField = new Label( shell, SWT.RIGHT );
+    wlTargetField.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.TargetField.Label" ) );
+    props.setLook( wlTargetField );
+    fdlTargetField = new FormData();
+    fdlTargetField.left = new FormAttachment( 0, 0 );
+    fdlTargetField.right = new FormAttachment( middle, -margin );
+    fdlTargetField.top = new FormAttachment( wSourceField, margin );
+    wlTargetField.setLayoutData( fdlTargetField );
+    wTargetField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wTargetField );
+    wTargetField.addModifyListener( lsMod );
+    fdTargetField = new FormData();
+    fdTargetField.left = new FormAttachment( middle, 0 );
+    fdTargetField.top = new FormAttachment( wSourceField, margin );
+    fdTargetField.right = new FormAttachment( 100, 0 );
+    wTargetField.setLayoutData( fdTargetField );
+    wTargetField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wTargetField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Optional weight
+    wlWeightField = new Label( shell, SWT.RIGHT );
+    wlWeightField.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.WeightField.Label" ) );
+    props.setLook( wlWeightField );
+    fdlWeightField = new FormData();
+    fdlWeightField.left = new FormAttachment( 0, 0 );
+    fdlWeightField.right = new FormAttachment( middle, -margin );
+    fdlWeightField.top = new FormAttachment( wTargetField, margin );
+    wlWeightField.setLayoutData( fdlWeightField );
+    wWeightField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wWeightField );
+    wWeightField.addModifyListener( lsMod );
+    fdWeightField = new FormData();
+    fdWeightField.left = new FormAttachment( middle, 0 );
+    fdWeightField.top = new FormAttachment( wTargetField, margin );
+    fdWeightField.right = new FormAttachment( 100, 0 );
+    wWeightField.setLayoutData( fdWeightField );
+    wWeightField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wWeightField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlWeightProperty = new Label( shell, SWT.RIGHT );
+    wlWeightProperty.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.WeightProperty.Label" ) );
+    props.setLook( wlWeightProperty );
+    fdlWeightProperty = new FormData();
+    fdlWeightProperty.left = new FormAttachment( 0, 0 );
+    fdlWeightProperty.right = new FormAttachment( middle, -margin );
+    fdlWeightProperty.top = new FormAttachment( wWeightField, margin );
+    wlWeightProperty.setLayoutData( fdlWeightProperty );
+    wWeightProperty = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wWeightProperty );
+    wWeightProperty.addModifyListener( lsMod );
+    fdWeightProperty = new FormData();
+    fdWeightProperty.left = new FormAttachment( middle, 0 );
+    fdWeightProperty.top = new FormAttachment( wWeightField, margin );
+    fdWeightProperty.right = new FormAttachment( 100, 0 );
+    wWeightProperty.setLayoutData( fdWeightProperty );
+
+    // Optional label
+    wlLabelField = new Label( shell, SWT.RIGHT );
+    wlLabelField.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.LabelField.Label" ) );
+    props.setLook( wlLabelField );
+    fdlLabelField = new FormData();
+    fdlLabelField.left = new FormAttachment( 0, 0 );
+    fdlLabelField.right = new FormAttachment( middle, -margin );
+    fdlLabelField.top = new FormAttachment( wWeightProperty, margin );
+    wlLabelField.setLayoutData( fdlLabelField );
+    wLabelField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wLabelField );
+    wLabelField.addModifyListener( lsMod );
+    fdLabelField = new FormData();
+    fdLabelField.left = new FormAttachment( middle, 0 );
+    fdLabelField.top = new FormAttachment( wWeightProperty, margin );
+    fdLabelField.right = new FormAttachment( 100, 0 );
+    wLabelField.setLayoutData( fdLabelField );
+    wLabelField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wLabelField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlDefaultLabel = new Label( shell, SWT.RIGHT );
+    wlDefaultLabel.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.DefaultLabel.Label" ) );
+    props.setLook( wlDefaultLabel );
+    fdlDefaultLabel = new FormData();
+    fdlDefaultLabel.left = new FormAttachment( 0, 0 );
+    fdlDefaultLabel.right = new FormAttachment( middle, -margin );
+    fdlDefaultLabel.top = new FormAttachment( wLabelField, margin );
+    wlDefaultLabel.setLayoutData( fdlDefaultLabel );
+    wDefaultLabel = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDefaultLabel );
+    wDefaultLabel.addModifyListener( lsMod );
+    fdDefaultLabel = new FormData();
+    fdDefaultLabel.left = new FormAttachment( middle, 0 );
+    fdDefaultLabel.top = new FormAttachment( wLabelField, margin );
+    fdDefaultLabel.right = new FormAttachment( 100, 0 );
+    wDefaultLabel.setLayoutData( fdDefaultLabel );
+
+    // Output field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphEdgeLoadDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wDefaultLabel, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wDefaultLabel, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wGraphField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getSourceFieldName() ) ) {
+      wSourceField.setText( input.getSourceFieldName() );
+    }
+    if ( !Const.isEmpty( input.getTargetFieldName() ) ) {
+      wTargetField.setText( input.getTargetFieldName() );
+    }
+    if ( !Const.isEmpty( input.getWeightFieldName() ) ) {
+      wWeightField.setText( input.getWeightFieldName() );
+    }
+    if ( !Const.isEmpty( input.getWeightPropertyName() ) ) {
+      wWeightProperty.setText( input.getWeightPropertyName() );
+    }
+    if ( !Const.isEmpty( input.getLabelFieldName() ) ) {
+      wLabelField.setText( input.getLabelFieldName() );
+    }
+    if ( !Const.isEmpty( input.getDefaultLabel() ) ) {
+      wDefaultLabel.setText( input.getDefaultLabel() );
+    }
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setSourceFieldName( wSourceField.getText() );
+    input.setTargetFieldName( wTargetField.getText() );
+    input.setWeightFieldName( wWeightField.getText() );
+    input.setWeightPropertyName( wWeightProperty.getText() );
+    input.setLabelFieldName( wLabelField.getText() );
+    input.setDefaultLabel( wDefaultLabel.getText() );
+    input.setGraphFieldName( wGraphField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphEdgeLoadDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphEdgeLoadDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
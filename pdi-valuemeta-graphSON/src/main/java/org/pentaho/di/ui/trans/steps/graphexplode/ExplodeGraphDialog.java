@@ -0,0 +1,526 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphexplode;
+
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.steps.graphexplode.ExplodeGraphMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class ExplodeGraphDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = ExplodeGraphMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private ExplodeGraphMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlPassInput;
+  private Button wPassInput;
+  private FormData fdlPassInput, fdPassInput;
+
+  private Label wlVertexTarget;
+  private CCombo wVertexTarget;
+  private FormData fdlVertexTarget, fdVertexTarget;
+
+  private Label wlEdgeTarget;
+  private CCombo wEdgeTarget;
+  private FormData fdlEdgeTarget, fdEdgeTarget;
+
+  private Label wlVertexIdField;
+  private Text wVertexIdField;
+  private FormData fdlVertexIdField, fdVertexIdField;
+
+  private Label wlEdgeIdField;
+  private Text wEdgeIdField;
+  private FormData fdlEdgeIdField, fdEdgeIdField;
+
+  private Label wlOutIdField;
+  private Text wOutIdField;
+  private FormData fdlOutIdField, fdOutIdField;
+
+  private Label wlInIdField;
+  private Text wInIdField;
+  private FormData fdlInIdField, fdInIdField;
+
+  private Label wlLabelField;
+  private Text wLabelField;
+  private FormData fdlLabelField, fdLabelField;
+
+  private Label wlProperties;
+  private TableView wProperties;
+  private FormData fdlProperties, fdProperties;
+
+  public ExplodeGraphDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (ExplodeGraphMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    String[] nextStepNames = transMeta.getNextStepNames( stepMeta );
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlPassInput = new Label( shell, SWT.RIGHT );
+    wlPassInput.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.PassInput.Label" ) );
+    props.setLook( wlPassInput );
+    fdlPassInput = new FormData();
+    fdlPassInput.left = new FormAttachment( 0, 0 );
+    fdlPassInput.right = new FormAttachment( middle, -margin );
+    fdlPassInput.top = new FormAttachment( wGraphField, margin );
+    wlPassInput.setLayoutData( fdlPassInput );
+    wPassInput = new Button( shell, SWT.CHECK );
+    props.setLook( wPassInput );
+    wPassInput.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+    fdPassInput = new FormData();
+    fdPassInput.left = new FormAttachment( middle, 0 );
+    fdPassInput.top = new FormAttachment( wGraphField, margin );
+    fdPassInput.right = new FormAttachment( 100, 0 );
+    wPassInput.setLayoutData( fdPassInput );
+
+    // Target steps for the vertex and edge rows
+    wlVertexTarget = new Label( shell, SWT.RIGHT );
+    wlVertexTarget.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.VertexTarget.Label" ) );
+    props.setLook( wlVertexTarget );
+    fdlVertexTarget = new FormData();
+    fdlVertexTarget.left = new FormAttachment( 0, 0 );
+    fdlVertexTarget.right = new FormAttachment( middle, -margin );
+    fdlVertexTarget.top = new FormAttachment( wPassInput, margin );
+    wlVertexTarget.setLayoutData( fdlVertexTarget );
+    wVertexTarget = new CCombo( shell, SWT.BORDER );
+    wVertexTarget.setItems( nextStepNames );
+    props.setLook( wVertexTarget );
+    wVertexTarget.addModifyListener( lsMod );
+    fdVertexTarget = new FormData();
+    fdVertexTarget.left = new FormAttachment( middle, 0 );
+    fdVertexTarget.top = new FormAttachment( wPassInput, margin );
+    fdVertexTarget.right = new FormAttachment( 100, 0 );
+    wVertexTarget.setLayoutData( fdVertexTarget );
+
+    wlEdgeTarget = new Label( shell, SWT.RIGHT );
+    wlEdgeTarget.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.EdgeTarget.Label" ) );
+    props.setLook( wlEdgeTarget );
+    fdlEdgeTarget = new FormData();
+    fdlEdgeTarget.left = new FormAttachment( 0, 0 );
+    fdlEdgeTarget.right = new FormAttachment( middle, -margin );
+    fdlEdgeTarget.top = new FormAttachment( wVertexTarget, margin );
+    wlEdgeTarget.setLayoutData( fdlEdgeTarget );
+    wEdgeTarget = new CCombo( shell, SWT.BORDER );
+    wEdgeTarget.setItems( nextStepNames );
+    props.setLook( wEdgeTarget );
+    wEdgeTarget.addModifyListener( lsMod );
+    fdEdgeTarget = new FormData();
+    fdEdgeTarget.left = new FormAttachment( middle, 0 );
+    fdEdgeTarget.top = new FormAttachment( wVertexTarget, margin );
+    fdEdgeTarget.right = new FormAttachment( 100, 0 );
+    wEdgeTarget.setLayoutData( fdEdgeTarget );
+
+    // Output fields
+    wlVertexIdField = new Label( shell, SWT.RIGHT );
+    wlVertexIdField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.VertexIdField.Label" ) );
+    props.setLook( wlVertexIdField );
+    fdlVertexIdField = new FormData();
+    fdlVertexIdField.left = new FormAttachment( 0, 0 );
+    fdlVertexIdField.right = new FormAttachment( middle, -margin );
+    fdlVertexIdField.top = new FormAttachment( wEdgeTarget, margin );
+    wlVertexIdField.setLayoutData( fdlVertexIdField );
+    wVertexIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wVertexIdField );
+    wVertexIdField.addModifyListener( lsMod );
+    fdVertexIdField = new FormData();
+    fdVertexIdField.left = new FormAttachment( middle, 0 );
+    fdVertexIdField.top = new FormAttachment( wEdgeTarget, margin );
+    fdVertexIdField.right = new FormAttachment( 100, 0 );
+    wVertexIdField.setLayoutData( fdVertexIdField );
+
+    wlEdgeIdField = new Label( shell, SWT.RIGHT );
+    wlEdgeIdField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.EdgeIdField.Label" ) );
+    props.setLook( wlEdgeIdField );
+    fdlEdgeIdField = new FormData();
+    fdlEdgeIdField.left = new FormAttachment( 0, 0 );
+    fdlEdgeIdField.right = new FormAttachment( middle, -margin );
+    fdlEdgeIdField.top = new FormAttachment( wVertexIdField, margin );
+    wlEdgeIdField.setLayoutData( fdlEdgeIdField );
+    wEdgeIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wEdgeIdField );
+    wEdgeIdField.addModifyListener( lsMod );
+    fdEdgeIdField = new FormData();
+    fdEdgeIdField.left = new FormAttachment( middle, 0 );
+    fdEdgeIdField.top = new FormAttachment( wVertexIdField, margin );
+    fdEdgeIdField.right = new FormAttachment( 100, 0 );
+    wEdgeIdField.setLayoutData( fdEdgeIdField );
+
+    wlOutIdField = new Label( shell, SWT.RIGHT );
+    wlOutIdField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.OutIdField.Label" ) );
+    props.setLook( wlOutIdField );
+    fdlOutIdField = new FormData();
+    fdlOutIdField.left = new FormAttachment( 0, 0 );
+    fdlOutIdField.right = new FormAttachment( middle, -margin );
+    fdlOutIdField.top = new FormAttachment( wEdgeIdField, margin );
+    wlOutIdField.setLayoutData( fdlOutIdField );
+    wOutIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wOutIdField );
+    wOutIdField.addModifyListener( lsMod );
+    fdOutIdField = new FormData();
+    fdOutIdField.left = new FormAttachment( middle, 0 );
+    fdOutIdField.top = new FormAttachment( wEdgeIdField, margin );
+    fdOutIdField.right = new FormAttachment( 100, 0 );
+    wOutIdField.setLayoutData( fdOutIdField );
+
+    wlInIdField = new Label( shell, SWT.RIGHT );
+    wlInIdField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.InIdField.Label" ) );
+    props.setLook( wlInIdField );
+    fdlInIdField = new FormData();
+    fdlInIdField.left = new FormAttachment( 0, 0 );
+    fdlInIdField.right = new FormAttachment( middle, -margin );
+    fdlInIdField.top = new FormAttachment( wOutIdField, margin );
+    wlInIdField.setLayoutData( fdlInIdField );
+    wInIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wInIdField );
+    wInIdField.addModifyListener( lsMod );
+    fdInIdField = new FormData();
+    fdInIdField.left = new FormAttachment( middle, 0 );
+    fdInIdField.top = new FormAttachment( wOutIdField, margin );
+    fdInIdField.right = new FormAttachment( 100, 0 );
+    wInIdField.setLayoutData( fdInIdField );
+
+    wlLabelField = new Label( shell, SWT.RIGHT );
+    wlLabelField.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.LabelField.Label" ) );
+    props.setLook( wlLabelField );
+    fdlLabelField = new FormData();
+    fdlLabelField.left = new FormAttachment( 0, 0 );
+    fdlLabelField.right = new FormAttachment( middle, -margin );
+    fdlLabelField.top = new FormAttachment( wInIdField, margin );
+    wlLabelField.setLayoutData( fdlLabelField );
+    wLabelField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wLabelField );
+    wLabelField.addModifyListener( lsMod );
+    fdLabelField = new FormData();
+    fdLabelField.left = new FormAttachment( middle, 0 );
+    fdLabelField.top = new FormAttachment( wInIdField, margin );
+    fdLabelField.right = new FormAttachment( 100, 0 );
+    wLabelField.setLayoutData( fdLabelField );
+
+    // The property projections
+    wlProperties = new Label( shell, SWT.NONE );
+    wlProperties.setText( BaseMessages.getString( PKG, "ExplodeGraphDialog.Properties.Label" ) );
+    props.setLook( wlProperties );
+    fdlProperties = new FormData();
+    fdlProperties.left = new FormAttachment( 0, 0 );
+    fdlProperties.top = new FormAttachment( wLabelField, margin );
+    wlProperties.setLayoutData( fdlProperties );
+
+    int nrProperties = input.getPropertyName() != null ? input.getPropertyName().length : 1;
+
+    ColumnInfo[] ciProperties = new ColumnInfo[4];
+    ciProperties[0] =
+        new ColumnInfo( BaseMessages.getString( PKG, "ExplodeGraphDialog.ColumnInfo.Element" ),
+            ColumnInfo.COLUMN_TYPE_CCOMBO, ExplodeGraphMeta.ELEMENT_DESCS );
+    ciProperties[1] =
+        new ColumnInfo( BaseMessages.getString( PKG, "ExplodeGraphDialog.ColumnInfo.Property" ),
+            ColumnInfo.COLUMN_TYPE_TEXT, false );
+    ciProperties[2] =
+        new ColumnInfo( BaseMessages.getString( PKG, "ExplodeGraphDialog.ColumnInfo.Field" ),
+            ColumnInfo.COLUMN_TYPE_TEXT, false );
+    ciProperties[3] =
+        new ColumnInfo( BaseMessages.getString( PKG, "ExplodeGraphDialog.ColumnInfo.Type" ),
+            ColumnInfo.COLUMN_TYPE_CCOMBO, ValueMeta.getTypes() );
+
+    wProperties =
+        new TableView( transMeta, shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.V_SCROLL | SWT.H_SCROLL,
+            ciProperties, nrProperties, lsMod, props );
+
+    fdProperties = new FormData();
+    fdProperties.left = new FormAttachment( 0, 0 );
+    fdProperties.top = new FormAttachment( wlProperties, margin );
+    fdProperties.right = new FormAttachment( 100, 0 );
+    fdProperties.bottom = new FormAttachment( 100, -50 );
+    wProperties.setLayoutData( fdProperties );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, null );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    wPassInput.setSelection( input.isPassingInputFields() );
+    List<StreamInterface> targetStreams = input.getStepIOMeta().getTargetStreams();
+    wVertexTarget.setText( Const.NVL( targetStreams.get( 0 ).getStepname(), "" ) );
+    wEdgeTarget.setText( Const.NVL( targetStreams.get( 1 ).getStepname(), "" ) );
+    if ( !Const.isEmpty( input.getVertexIdFieldName() ) ) {
+      wVertexIdField.setText( input.getVertexIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getEdgeIdFieldName() ) ) {
+      wEdgeIdField.setText( input.getEdgeIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getOutIdFieldName() ) ) {
+      wOutIdField.setText( input.getOutIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getInIdFieldName() ) ) {
+      wInIdField.setText( input.getInIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getLabelFieldName() ) ) {
+      wLabelField.setText( input.getLabelFieldName() );
+    }
+
+    if ( input.getPropertyName() != null ) {
+      for ( int i = 0; i < input.getPropertyName().length; i++ ) {
+        TableItem item = wProperties.table.getItem( i );
+        item.setText( 1, ExplodeGraphMeta.getElementDesc( input.getPropertyElement()[i] ) );
+        if ( input.getPropertyName()[i] != null ) {
+          item.setText( 2, input.getPropertyName()[i] );
+        }
+        if ( input.getPropertyField()[i] != null ) {
+          item.setText( 3, input.getPropertyField()[i] );
+        }
+        item.setText( 4, ValueMeta.getTypeDesc( input.getPropertyType()[i] ) );
+      }
+    }
+    wProperties.setRowNums();
+    wProperties.optWidth( true );
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setPassingInputFields( wPassInput.getSelection() );
+    List<StreamInterface> targetStreams = input.getStepIOMeta().getTargetStreams();
+    targetStreams.get( 0 ).setStepMeta( transMeta.findStep( wVertexTarget.getText() ) );
+    targetStreams.get( 1 ).setStepMeta( transMeta.findStep( wEdgeTarget.getText() ) );
+    input.setVertexIdFieldName( wVertexIdField.getText() );
+    input.setEdgeIdFieldName( wEdgeIdField.getText() );
+    input.setOutIdFieldName( wOutIdField.getText() );
+    input.setInIdFieldName( wInIdField.getText() );
+    input.setLabelFieldName( wLabelField.getText() );
+
+    int nrProperties = wProperties.nrNonEmpty();
+    input.allocate( nrProperties );
+    for ( int i = 0; i < nrProperties; i++ ) {
+      TableItem item = wProperties.getNonEmpty( i );
+      input.getPropertyElement()[i] = ExplodeGraphMeta.getElementCode( item.getText( 1 ) );
+      input.getPropertyName()[i] = item.getText( 2 );
+      input.getPropertyField()[i] = item.getText( 3 );
+      input.getPropertyType()[i] = ValueMeta.getType( item.getText( 4 ) );
+    }
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "ExplodeGraphDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "ExplodeGraphDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
@@ -0,0 +1,549 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphfileinput;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphfileinput.GraphFileInputMeta;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphFileInputDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphFileInputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphFileInputMeta input;
+
+  private Label wlFilename;
+  private TextVar wFilename;
+  private FormData fdlFilename, fdFilename;
+
+  private Label wlFormat;
+  private CCombo wFormat;
+  private FormData fdlFormat, fdFormat;
+
+  private Label wlDefaultLabel;
+  private TextVar wDefaultLabel;
+  private FormData fdlDefaultLabel, fdDefaultLabel;
+
+  private Label wlParallelism;
+  private TextVar wParallelism;
+  private FormData fdlParallelism, fdParallelism;
+
+  private Label wlOutputMode;
+  private CCombo wOutputMode;
+  private FormData fdlOutputMode, fdOutputMode;
+
+  private Label wlReadOnly;
+  private Button wReadOnly;
+  private FormData fdlReadOnly, fdReadOnly;
+
+  private Label wlGraphField;
+  private Text wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlTypeField;
+  private Text wTypeField;
+  private FormData fdlTypeField, fdTypeField;
+
+  private Label wlIdField;
+  private Text wIdField;
+  private FormData fdlIdField, fdIdField;
+
+  private Label wlOutIdField;
+  private Text wOutIdField;
+  private FormData fdlOutIdField, fdOutIdField;
+
+  private Label wlInIdField;
+  private Text wInIdField;
+  private FormData fdlInIdField, fdInIdField;
+
+  private Label wlLabelField;
+  private Text wLabelField;
+  private FormData fdlLabelField, fdLabelField;
+
+  private Label wlPropertiesField;
+  private Text wPropertiesField;
+  private FormData fdlPropertiesField, fdPropertiesField;
+
+  public GraphFileInputDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphFileInputMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // File to read
+    wlFilename = new Label( shell, SWT.RIGHT );
+    wlFilename.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.Filename.Label" ) );
+    props.setLook( wlFilename );
+    fdlFilename = new FormData();
+    fdlFilename.left = new FormAttachment( 0, 0 );
+    fdlFilename.right = new FormAttachment( middle, -margin );
+    fdlFilename.top = new FormAttachment( wStepname, margin );
+    wlFilename.setLayoutData( fdlFilename );
+    wFilename = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wFilename );
+    wFilename.addModifyListener( lsMod );
+    fdFilename = new FormData();
+    fdFilename.left = new FormAttachment( middle, 0 );
+    fdFilename.top = new FormAttachment( wStepname, margin );
+    fdFilename.right = new FormAttachment( 100, 0 );
+    wFilename.setLayoutData( fdFilename );
+
+    // File format
+    wlFormat = new Label( shell, SWT.RIGHT );
+    wlFormat.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.Format.Label" ) );
+    props.setLook( wlFormat );
+    fdlFormat = new FormData();
+    fdlFormat.left = new FormAttachment( 0, 0 );
+    fdlFormat.right = new FormAttachment( middle, -margin );
+    fdlFormat.top = new FormAttachment( wFilename, margin );
+    wlFormat.setLayoutData( fdlFormat );
+    wFormat = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wFormat.setItems( GraphFileInputMeta.FORMAT_DESCS );
+    props.setLook( wFormat );
+    wFormat.addModifyListener( lsMod );
+    fdFormat = new FormData();
+    fdFormat.left = new FormAttachment( middle, 0 );
+    fdFormat.top = new FormAttachment( wFilename, margin );
+    fdFormat.right = new FormAttachment( 100, 0 );
+    wFormat.setLayoutData( fdFormat );
+    wFormat.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    // Label of edges in plain text formats
+    wlDefaultLabel = new Label( shell, SWT.RIGHT );
+    wlDefaultLabel.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.DefaultLabel.Label" ) );
+    props.setLook( wlDefaultLabel );
+    fdlDefaultLabel = new FormData();
+    fdlDefaultLabel.left = new FormAttachment( 0, 0 );
+    fdlDefaultLabel.right = new FormAttachment( middle, -margin );
+    fdlDefaultLabel.top = new FormAttachment( wFormat, margin );
+    wlDefaultLabel.setLayoutData( fdlDefaultLabel );
+    wDefaultLabel = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDefaultLabel );
+    wDefaultLabel.addModifyListener( lsMod );
+    fdDefaultLabel = new FormData();
+    fdDefaultLabel.left = new FormAttachment( middle, 0 );
+    fdDefaultLabel.top = new FormAttachment( wFormat, margin );
+    fdDefaultLabel.right = new FormAttachment( 100, 0 );
+    wDefaultLabel.setLayoutData( fdDefaultLabel );
+
+    // Threads to parse GraphSON with
+    wlParallelism = new Label( shell, SWT.RIGHT );
+    wlParallelism.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.Parallelism.Label" ) );
+    props.setLook( wlParallelism );
+    fdlParallelism = new FormData();
+    fdlParallelism.left = new FormAttachment( 0, 0 );
+    fdlParallelism.right = new FormAttachment( middle, -margin );
+    fdlParallelism.top = new FormAttachment( wDefaultLabel, margin );
+    wlParallelism.setLayoutData( fdlParallelism );
+    wParallelism = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wParallelism );
+    wParallelism.addModifyListener( lsMod );
+    fdParallelism = new FormData();
+    fdParallelism.left = new FormAttachment( middle, 0 );
+    fdParallelism.top = new FormAttachment( wDefaultLabel, margin );
+    fdParallelism.right = new FormAttachment( 100, 0 );
+    wParallelism.setLayoutData( fdParallelism );
+
+    // Output mode
+    wlOutputMode = new Label( shell, SWT.RIGHT );
+    wlOutputMode.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.OutputMode.Label" ) );
+    props.setLook( wlOutputMode );
+    fdlOutputMode = new FormData();
+    fdlOutputMode.left = new FormAttachment( 0, 0 );
+    fdlOutputMode.right = new FormAttachment( middle, -margin );
+    fdlOutputMode.top = new FormAttachment( wParallelism, margin );
+    wlOutputMode.setLayoutData( fdlOutputMode );
+    wOutputMode = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wOutputMode.setItems( GraphFileInputMeta.OUTPUT_MODE_DESCS );
+    props.setLook( wOutputMode );
+    wOutputMode.addModifyListener( lsMod );
+    fdOutputMode = new FormData();
+    fdOutputMode.left = new FormAttachment( middle, 0 );
+    fdOutputMode.top = new FormAttachment( wParallelism, margin );
+    fdOutputMode.right = new FormAttachment( 100, 0 );
+    wOutputMode.setLayoutData( fdOutputMode );
+    wOutputMode.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    // Graph mode options
+    wlReadOnly = new Label( shell, SWT.RIGHT );
+    wlReadOnly.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.ReadOnly.Label" ) );
+    props.setLook( wlReadOnly );
+    fdlReadOnly = new FormData();
+    fdlReadOnly.left = new FormAttachment( 0, 0 );
+    fdlReadOnly.right = new FormAttachment( middle, -margin );
+    fdlReadOnly.top = new FormAttachment( wOutputMode, margin );
+    wlReadOnly.setLayoutData( fdlReadOnly );
+    wReadOnly = new Button( shell, SWT.CHECK );
+    props.setLook( wReadOnly );
+    wReadOnly.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+    fdReadOnly = new FormData();
+    fdReadOnly.left = new FormAttachment( middle, 0 );
+    fdReadOnly.top = new FormAttachment( wOutputMode, margin );
+    fdReadOnly.right = new FormAttachment( 100, 0 );
+    wReadOnly.setLayoutData( fdReadOnly );
+
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wReadOnly, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wReadOnly, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+
+    // Row mode fields
+    wlTypeField = new Label( shell, SWT.RIGHT );
+    wlTypeField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.TypeField.Label" ) );
+    props.setLook( wlTypeField );
+    fdlTypeField = new FormData();
+    fdlTypeField.left = new FormAttachment( 0, 0 );
+    fdlTypeField.right = new FormAttachment( middle, -margin );
+    fdlTypeField.top = new FormAttachment( wGraphField, margin );
+    wlTypeField.setLayoutData( fdlTypeField );
+    wTypeField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wTypeField );
+    wTypeField.addModifyListener( lsMod );
+    fdTypeField = new FormData();
+    fdTypeField.left = new FormAttachment( middle, 0 );
+    fdTypeField.top = new FormAttachment( wGraphField, margin );
+    fdTypeField.right = new FormAttachment( 100, 0 );
+    wTypeField.setLayoutData( fdTypeField );
+
+    wlIdField = new Label( shell, SWT.RIGHT );
+    wlIdField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.IdField.Label" ) );
+    props.setLook( wlIdField );
+    fdlIdField = new FormData();
+    fdlIdField.left = new FormAttachment( 0, 0 );
+    fdlIdField.right = new FormAttachment( middle, -margin );
+    fdlIdField.top = new FormAttachment( wTypeField, margin );
+    wlIdField.setLayoutData( fdlIdField );
+    wIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wIdField );
+    wIdField.addModifyListener( lsMod );
+    fdIdField = new FormData();
+    fdIdField.left = new FormAttachment( middle, 0 );
+    fdIdField.top = new FormAttachment( wTypeField, margin );
+    fdIdField.right = new FormAttachment( 100, 0 );
+    wIdField.setLayoutData( fdIdField );
+
+    wlOutIdField = new Label( shell, SWT.RIGHT );
+    wlOutIdField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.OutIdField.Label" ) );
+    props.setLook( wlOutIdField );
+    fdlOutIdField = new FormData();
+    fdlOutIdField.left = new FormAttachment( 0, 0 );
+    fdlOutIdField.right = new FormAttachment( middle, -margin );
+    fdlOutIdField.top = new FormAttachment( wIdField, margin );
+    wlOutIdField.setLayoutData( fdlOutIdField );
+    wOutIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wOutIdField );
+    wOutIdField.addModifyListener( lsMod );
+    fdOutIdField = new FormData();
+    fdOutIdField.left = new FormAttachment( middle, 0 );
+    fdOutIdField.top = new FormAttachment( wIdField, margin );
+    fdOutIdField.right = new FormAttachment( 100, 0 );
+    wOutIdField.setLayoutData( fdOutIdField );
+
+    wlInIdField = new Label( shell, SWT.RIGHT );
+    wlInIdField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.InIdField.Label" ) );
+    props.setLook( wlInIdField );
+    fdlInIdField = new FormData();
+    fdlInIdField.left = new FormAttachment( 0, 0 );
+    fdlInIdField.right = new FormAttachment( middle, -margin );
+    fdlInIdField.top = new FormAttachment( wOutIdField, margin );
+    wlInIdField.setLayoutData( fdlInIdField );
+    wInIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wInIdField );
+    wInIdField.addModifyListener( lsMod );
+    fdInIdField = new FormData();
+    fdInIdField.left = new FormAttachment( middle, 0 );
+    fdInIdField.top = new FormAttachment( wOutIdField, margin );
+    fdInIdField.right = new FormAttachment( 100, 0 );
+    wInIdField.setLayoutData( fdInIdField );
+
+    wlLabelField = new Label( shell, SWT.RIGHT );
+    wlLabelField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.LabelField.Label" ) );
+    props.setLook( wlLabelField );
+    fdlLabelField = new FormData();
+    fdlLabelField.left = new FormAttachment( 0, 0 );
+    fdlLabelField.right = new FormAttachment( middle, -margin );
+    fdlLabelField.top = new FormAttachment( wInIdField, margin );
+    wlLabelField.setLayoutData( fdlLabelField );
+    wLabelField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wLabelField );
+    wLabelField.addModifyListener( lsMod );
+    fdLabelField = new FormData();
+    fdLabelField.left = new FormAttachment( middle, 0 );
+    fdLabelField.top = new FormAttachment( wInIdField, margin );
+    fdLabelField.right = new FormAttachment( 100, 0 );
+    wLabelField.setLayoutData( fdLabelField );
+
+    wlPropertiesField = new Label( shell, SWT.RIGHT );
+    wlPropertiesField.setText( BaseMessages.getString( PKG, "GraphFileInputDialog.PropertiesField.Label" ) );
+    props.setLook( wlPropertiesField );
+    fdlPropertiesField = new FormData();
+    fdlPropertiesField.left = new FormAttachment( 0, 0 );
+    fdlPropertiesField.right = new FormAttachment( middle, -margin );
+    fdlPropertiesField.top = new FormAttachment( wLabelField, margin );
+    wlPropertiesField.setLayoutData( fdlPropertiesField );
+    wPropertiesField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPropertiesField );
+    wPropertiesField.addModifyListener( lsMod );
+    fdPropertiesField = new FormData();
+    fdPropertiesField.left = new FormAttachment( middle, 0 );
+    fdPropertiesField.top = new FormAttachment( wLabelField, margin );
+    fdPropertiesField.right = new FormAttachment( 100, 0 );
+    wPropertiesField.setLayoutData( fdPropertiesField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wPropertiesField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getFilename() ) ) {
+      wFilename.setText( input.getFilename() );
+    }
+    wFormat.setText( GraphFileInputMeta.getFormatDesc( input.getFormat() ) );
+    if ( !Const.isEmpty( input.getDefaultLabel() ) ) {
+      wDefaultLabel.setText( input.getDefaultLabel() );
+    }
+    if ( !Const.isEmpty( input.getParallelism() ) ) {
+      wParallelism.setText( input.getParallelism() );
+    }
+    wOutputMode.setText( GraphFileInputMeta.getOutputModeDesc( input.getOutputMode() ) );
+    wReadOnly.setSelection( input.isReadOnly() );
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getTypeFieldName() ) ) {
+      wTypeField.setText( input.getTypeFieldName() );
+    }
+    if ( !Const.isEmpty( input.getIdFieldName() ) ) {
+      wIdField.setText( input.getIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getOutIdFieldName() ) ) {
+      wOutIdField.setText( input.getOutIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getInIdFieldName() ) ) {
+      wInIdField.setText( input.getInIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getLabelFieldName() ) ) {
+      wLabelField.setText( input.getLabelFieldName() );
+    }
+    if ( !Const.isEmpty( input.getPropertiesFieldName() ) ) {
+      wPropertiesField.setText( input.getPropertiesFieldName() );
+    }
+    setFlags();
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setFilename( wFilename.getText() );
+    input.setFormat( GraphFileInputMeta.getFormatCode( wFormat.getText() ) );
+    input.setDefaultLabel( wDefaultLabel.getText() );
+    input.setParallelism( wParallelism.getText() );
+    input.setOutputMode( GraphFileInputMeta.getOutputModeCode( wOutputMode.getText() ) );
+    input.setReadOnly( wReadOnly.getSelection() );
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setTypeFieldName( wTypeField.getText() );
+    input.setIdFieldName( wIdField.getText() );
+    input.setOutIdFieldName( wOutIdField.getText() );
+    input.setInIdFieldName( wInIdField.getText() );
+    input.setLabelFieldName( wLabelField.getText() );
+    input.setPropertiesFieldName( wPropertiesField.getText() );
+
+    dispose();
+  }
+
+  private void setFlags() {
+    String outputMode = GraphFileInputMeta.getOutputModeCode( wOutputMode.getText() );
+    boolean graph = GraphFileInputMeta.OUTPUT_MODE_GRAPH.equals( outputMode );
+    String format = GraphFileInputMeta.getFormatCode( wFormat.getText() );
+    boolean text =
+        GraphFileInputMeta.FORMAT_EDGE_LIST.equals( format )
+            || GraphFileInputMeta.FORMAT_ADJACENCY_LIST.equals( format );
+    wlDefaultLabel.setEnabled( text );
+    wDefaultLabel.setEnabled( text );
+    boolean graphSON = GraphFileInputMeta.FORMAT_GRAPHSON.equals( format );
+    wlParallelism.setEnabled( graphSON );
+    wParallelism.setEnabled( graphSON );
+    wlReadOnly.setEnabled( graph );
+    wReadOnly.setEnabled( graph );
+    wlGraphField.setEnabled( graph );
+    wGraphField.setEnabled( graph );
+    Control[] rowControls =
+        new Control[] { wlTypeField, wTypeField, wlIdField, wIdField, wlOutIdField, wOutIdField, wlInIdField,
+          wInIdField, wlLabelField, wLabelField, wlPropertiesField, wPropertiesField, };
+    for ( Control control : rowControls ) {
+      control.setEnabled( !graph );
+    }
+  }
+}
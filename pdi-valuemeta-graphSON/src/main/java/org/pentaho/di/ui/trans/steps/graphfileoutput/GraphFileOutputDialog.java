@@ -0,0 +1,653 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphfileoutput;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphfileoutput.GraphFileOutputMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphFileOutputDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphFileOutputMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphFileOutputMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlFilename;
+  private TextVar wFilename;
+  private FormData fdlFilename, fdFilename;
+
+  private Label wlExtension;
+  private TextVar wExtension;
+  private FormData fdlExtension, fdExtension;
+
+  private Label wlFormat;
+  private CCombo wFormat;
+  private FormData fdlFormat, fdFormat;
+
+  private Label wlTyped;
+  private Button wTyped;
+  private FormData fdlTyped, fdTyped;
+
+  private Label wlSplitSize;
+  private TextVar wSplitSize;
+  private FormData fdlSplitSize, fdSplitSize;
+
+  private Label wlInputMode;
+  private CCombo wInputMode;
+  private FormData fdlInputMode, fdInputMode;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlTypeField;
+  private CCombo wTypeField;
+  private FormData fdlTypeField, fdTypeField;
+
+  private Label wlIdField;
+  private CCombo wIdField;
+  private FormData fdlIdField, fdIdField;
+
+  private Label wlOutIdField;
+  private CCombo wOutIdField;
+  private FormData fdlOutIdField, fdOutIdField;
+
+  private Label wlInIdField;
+  private CCombo wInIdField;
+  private FormData fdlInIdField, fdInIdField;
+
+  private Label wlLabelField;
+  private CCombo wLabelField;
+  private FormData fdlLabelField, fdLabelField;
+
+  private Label wlPropertiesField;
+  private CCombo wPropertiesField;
+  private FormData fdlPropertiesField, fdPropertiesField;
+
+  public GraphFileOutputDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphFileOutputMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // File to write, without extension
+    wlFilename = new Label( shell, SWT.RIGHT );
+    wlFilename.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Filename.Label" ) );
+    props.setLook( wlFilename );
+    fdlFilename = new FormData();
+    fdlFilename.left = new FormAttachment( 0, 0 );
+    fdlFilename.right = new FormAttachment( middle, -margin );
+    fdlFilename.top = new FormAttachment( wStepname, margin );
+    wlFilename.setLayoutData( fdlFilename );
+    wFilename = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wFilename );
+    wFilename.addModifyListener( lsMod );
+    fdFilename = new FormData();
+    fdFilename.left = new FormAttachment( middle, 0 );
+    fdFilename.top = new FormAttachment( wStepname, margin );
+    fdFilename.right = new FormAttachment( 100, 0 );
+    wFilename.setLayoutData( fdFilename );
+
+    wlExtension = new Label( shell, SWT.RIGHT );
+    wlExtension.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Extension.Label" ) );
+    props.setLook( wlExtension );
+    fdlExtension = new FormData();
+    fdlExtension.left = new FormAttachment( 0, 0 );
+    fdlExtension.right = new FormAttachment( middle, -margin );
+    fdlExtension.top = new FormAttachment( wFilename, margin );
+    wlExtension.setLayoutData( fdlExtension );
+    wExtension = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wExtension );
+    wExtension.addModifyListener( lsMod );
+    fdExtension = new FormData();
+    fdExtension.left = new FormAttachment( middle, 0 );
+    fdExtension.top = new FormAttachment( wFilename, margin );
+    fdExtension.right = new FormAttachment( 100, 0 );
+    wExtension.setLayoutData( fdExtension );
+
+    // File format
+    wlFormat = new Label( shell, SWT.RIGHT );
+    wlFormat.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Format.Label" ) );
+    props.setLook( wlFormat );
+    fdlFormat = new FormData();
+    fdlFormat.left = new FormAttachment( 0, 0 );
+    fdlFormat.right = new FormAttachment( middle, -margin );
+    fdlFormat.top = new FormAttachment( wExtension, margin );
+    wlFormat.setLayoutData( fdlFormat );
+    wFormat = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wFormat.setItems( GraphFileOutputMeta.FORMAT_DESCS );
+    props.setLook( wFormat );
+    wFormat.addModifyListener( lsMod );
+    fdFormat = new FormData();
+    fdFormat.left = new FormAttachment( middle, 0 );
+    fdFormat.top = new FormAttachment( wExtension, margin );
+    fdFormat.right = new FormAttachment( 100, 0 );
+    wFormat.setLayoutData( fdFormat );
+    wFormat.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    wlTyped = new Label( shell, SWT.RIGHT );
+    wlTyped.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.Typed.Label" ) );
+    props.setLook( wlTyped );
+    fdlTyped = new FormData();
+    fdlTyped.left = new FormAttachment( 0, 0 );
+    fdlTyped.right = new FormAttachment( middle, -margin );
+    fdlTyped.top = new FormAttachment( wFormat, margin );
+    wlTyped.setLayoutData( fdlTyped );
+    wTyped = new Button( shell, SWT.CHECK );
+    props.setLook( wTyped );
+    wTyped.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+    fdTyped = new FormData();
+    fdTyped.left = new FormAttachment( middle, 0 );
+    fdTyped.top = new FormAttachment( wFormat, margin );
+    fdTyped.right = new FormAttachment( 100, 0 );
+    wTyped.setLayoutData( fdTyped );
+
+    // Split every ... MB
+    wlSplitSize = new Label( shell, SWT.RIGHT );
+    wlSplitSize.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.SplitSize.Label" ) );
+    props.setLook( wlSplitSize );
+    fdlSplitSize = new FormData();
+    fdlSplitSize.left = new FormAttachment( 0, 0 );
+    fdlSplitSize.right = new FormAttachment( middle, -margin );
+    fdlSplitSize.top = new FormAttachment( wTyped, margin );
+    wlSplitSize.setLayoutData( fdlSplitSize );
+    wSplitSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wSplitSize );
+    wSplitSize.addModifyListener( lsMod );
+    fdSplitSize = new FormData();
+    fdSplitSize.left = new FormAttachment( middle, 0 );
+    fdSplitSize.top = new FormAttachment( wTyped, margin );
+    fdSplitSize.right = new FormAttachment( 100, 0 );
+    wSplitSize.setLayoutData( fdSplitSize );
+
+    // What the rows hold
+    wlInputMode = new Label( shell, SWT.RIGHT );
+    wlInputMode.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.InputMode.Label" ) );
+    props.setLook( wlInputMode );
+    fdlInputMode = new FormData();
+    fdlInputMode.left = new FormAttachment( 0, 0 );
+    fdlInputMode.right = new FormAttachment( middle, -margin );
+    fdlInputMode.top = new FormAttachment( wSplitSize, margin );
+    wlInputMode.setLayoutData( fdlInputMode );
+    wInputMode = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wInputMode.setItems( GraphFileOutputMeta.INPUT_MODE_DESCS );
+    props.setLook( wInputMode );
+    wInputMode.addModifyListener( lsMod );
+    fdInputMode = new FormData();
+    fdInputMode.left = new FormAttachment( middle, 0 );
+    fdInputMode.top = new FormAttachment( wSplitSize, margin );
+    fdInputMode.right = new FormAttachment( 100, 0 );
+    wInputMode.setLayoutData( fdInputMode );
+    wInputMode.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wInputMode, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wInputMode, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Vertex and edge row fields
+    wlTypeField = new Label( shell, SWT.RIGHT );
+    wlTypeField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.TypeField.Label" ) );
+    props.setLook( wlTypeField );
+    fdlTypeField = new FormData();
+    fdlTypeField.left = new FormAttachment( 0, 0 );
+    fdlTypeField.right = new FormAttachment( middle, -margin );
+    fdlTypeField.top = new FormAttachment( wGraphField, margin );
+    wlTypeField.setLayoutData( fdlTypeField );
+    wTypeField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wTypeField );
+    wTypeField.addModifyListener( lsMod );
+    fdTypeField = new FormData();
+    fdTypeField.left = new FormAttachment( middle, 0 );
+    fdTypeField.top = new FormAttachment( wGraphField, margin );
+    fdTypeField.right = new FormAttachment( 100, 0 );
+    wTypeField.setLayoutData( fdTypeField );
+    wTypeField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wTypeField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlIdField = new Label( shell, SWT.RIGHT );
+    wlIdField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.IdField.Label" ) );
+    props.setLook( wlIdField );
+    fdlIdField = new FormData();
+    fdlIdField.left = new FormAttachment( 0, 0 );
+    fdlIdField.right = new FormAttachment( middle, -margin );
+    fdlIdField.top = new FormAttachment( wTypeField, margin );
+    wlIdField.setLayoutData( fdlIdField );
+    wIdField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wIdField );
+    wIdField.addModifyListener( lsMod );
+    fdIdField = new FormData();
+    fdIdField.left = new FormAttachment( middle, 0 );
+    fdIdField.top = new FormAttachment( wTypeField, margin );
+    fdIdField.right = new FormAttachment( 100, 0 );
+    wIdField.setLayoutData( fdIdField );
+    wIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlOutIdField = new Label( shell, SWT.RIGHT );
+    wlOutIdField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.OutIdField.Label" ) );
+    props.setLook( wlOutIdField );
+    fdlOutIdField = new FormData();
+    fdlOutIdField.left = new FormAttachment( 0, 0 );
+    fdlOutIdField.right = new FormAttachment( middle, -margin );
+    fdlOutIdField.top = new FormAttachment( wIdField, margin );
+    wlOutIdField.setLayoutData( fdlOutIdField );
+    wOutIdField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wOutIdField );
+    wOutIdField.addModifyListener( lsMod );
+    fdOutIdField = new FormData();
+    fdOutIdField.left = new FormAttachment( middle, 0 );
+    fdOutIdField.top = new FormAttachment( wIdField, margin );
+    fdOutIdField.right = new FormAttachment( 100, 0 );
+    wOutIdField.setLayoutData( fdOutIdField );
+    wOutIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wOutIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlInIdField = new Label( shell, SWT.RIGHT );
+    wlInIdField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.InIdField.Label" ) );
+    props.setLook( wlInIdField );
+    fdlInIdField = new FormData();
+    fdlInIdField.left = new FormAttachment( 0, 0 );
+    fdlInIdField.right = new FormAttachment( middle, -margin );
+    fdlInIdField.top = new FormAttachment( wOutIdField, margin );
+    wlInIdField.setLayoutData( fdlInIdField );
+    wInIdField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wInIdField );
+    wInIdField.addModifyListener( lsMod );
+    fdInIdField = new FormData();
+    fdInIdField.left = new FormAttachment( middle, 0 );
+    fdInIdField.top = new FormAttachment( wOutIdField, margin );
+    fdInIdField.right = new FormAttachment( 100, 0 );
+    wInIdField.setLayoutData( fdInIdField );
+    wInIdField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wInIdField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlLabelField = new Label( shell, SWT.RIGHT );
+    wlLabelField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.LabelField.Label" ) );
+    props.setLook( wlLabelField );
+    fdlLabelField = new FormData();
+    fdlLabelField.left = new FormAttachment( 0, 0 );
+    fdlLabelField.right = new FormAttachment( middle, -margin );
+    fdlLabelField.top = new FormAttachment( wInIdField, margin );
+    wlLabelField.setLayoutData( fdlLabelField );
+    wLabelField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wLabelField );
+    wLabelField.addModifyListener( lsMod );
+    fdLabelField = new FormData();
+    fdLabelField.left = new FormAttachment( middle, 0 );
+    fdLabelField.top = new FormAttachment( wInIdField, margin );
+    fdLabelField.right = new FormAttachment( 100, 0 );
+    wLabelField.setLayoutData( fdLabelField );
+    wLabelField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wLabelField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    wlPropertiesField = new Label( shell, SWT.RIGHT );
+    wlPropertiesField.setText( BaseMessages.getString( PKG, "GraphFileOutputDialog.PropertiesField.Label" ) );
+    props.setLook( wlPropertiesField );
+    fdlPropertiesField = new FormData();
+    fdlPropertiesField.left = new FormAttachment( 0, 0 );
+    fdlPropertiesField.right = new FormAttachment( middle, -margin );
+    fdlPropertiesField.top = new FormAttachment( wLabelField, margin );
+    wlPropertiesField.setLayoutData( fdlPropertiesField );
+    wPropertiesField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wPropertiesField );
+    wPropertiesField.addModifyListener( lsMod );
+    fdPropertiesField = new FormData();
+    fdPropertiesField.left = new FormAttachment( middle, 0 );
+    fdPropertiesField.top = new FormAttachment( wLabelField, margin );
+    fdPropertiesField.right = new FormAttachment( 100, 0 );
+    wPropertiesField.setLayoutData( fdPropertiesField );
+    wPropertiesField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wPropertiesField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wPropertiesField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getFilename() ) ) {
+      wFilename.setText( input.getFilename() );
+    }
+    if ( !Const.isEmpty( input.getExtension() ) ) {
+      wExtension.setText( input.getExtension() );
+    }
+    wFormat.setText( GraphFileOutputMeta.getFormatDesc( input.getFormat() ) );
+    wTyped.setSelection( input.isTyped() );
+    if ( !Const.isEmpty( input.getSplitSize() ) ) {
+      wSplitSize.setText( input.getSplitSize() );
+    }
+    wInputMode.setText( GraphFileOutputMeta.getInputModeDesc( input.getInputMode() ) );
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getTypeFieldName() ) ) {
+      wTypeField.setText( input.getTypeFieldName() );
+    }
+    if ( !Const.isEmpty( input.getIdFieldName() ) ) {
+      wIdField.setText( input.getIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getOutIdFieldName() ) ) {
+      wOutIdField.setText( input.getOutIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getInIdFieldName() ) ) {
+      wInIdField.setText( input.getInIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getLabelFieldName() ) ) {
+      wLabelField.setText( input.getLabelFieldName() );
+    }
+    if ( !Const.isEmpty( input.getPropertiesFieldName() ) ) {
+      wPropertiesField.setText( input.getPropertiesFieldName() );
+    }
+    setFlags();
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setFilename( wFilename.getText() );
+    input.setExtension( wExtension.getText() );
+    input.setFormat( GraphFileOutputMeta.getFormatCode( wFormat.getText() ) );
+    input.setTyped( wTyped.getSelection() );
+    input.setSplitSize( wSplitSize.getText() );
+    input.setInputMode( GraphFileOutputMeta.getInputModeCode( wInputMode.getText() ) );
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setTypeFieldName( wTypeField.getText() );
+    input.setIdFieldName( wIdField.getText() );
+    input.setOutIdFieldName( wOutIdField.getText() );
+    input.setInIdFieldName( wInIdField.getText() );
+    input.setLabelFieldName( wLabelField.getText() );
+    input.setPropertiesFieldName( wPropertiesField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphFileOutputDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphFileOutputDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+
+  private void setFlags() {
+    String format = GraphFileOutputMeta.getFormatCode( wFormat.getText() );
+    boolean graphson = GraphFileOutputMeta.FORMAT_GRAPHSON.equals( format );
+    wlTyped.setEnabled( graphson );
+    wTyped.setEnabled( graphson );
+    String inputMode = GraphFileOutputMeta.getInputModeCode( wInputMode.getText() );
+    boolean graph = GraphFileOutputMeta.INPUT_MODE_GRAPH.equals( inputMode );
+    wlGraphField.setEnabled( graph );
+    wGraphField.setEnabled( graph );
+    Control[] rowControls =
+        new Control[] { wlTypeField, wTypeField, wlIdField, wIdField, wlOutIdField, wOutIdField, wlInIdField,
+          wInIdField, wlLabelField, wLabelField, wlPropertiesField, wPropertiesField, };
+    for ( Control control : rowControls ) {
+      control.setEnabled( !graph );
+    }
+  }
+}
@@ -0,0 +1,388 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphmerge;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphmerge.GraphMergeMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphMergeDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphMergeMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphMergeMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlGroupField;
+  private CCombo wGroupField;
+  private FormData fdlGroupField, fdGroupField;
+
+  private Label wlKeyProperty;
+  private Text wKeyProperty;
+  private FormData fdlKeyProperty, fdKeyProperty;
+
+  private Label wlGhostProperty;
+  private Text wGhostProperty;
+  private FormData fdlGhostProperty, fdGhostProperty;
+
+  private Label wlConflictPolicy;
+  private CCombo wConflictPolicy;
+  private FormData fdlConflictPolicy, fdConflictPolicy;
+
+  private Label wlMergedField;
+  private Text wMergedField;
+  private FormData fdlMergedField, fdMergedField;
+
+  public GraphMergeDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphMergeMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphMergeDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphMergeDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphMergeDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Optional group field, the input is expected to be sorted on it
+    wlGroupField = new Label( shell, SWT.RIGHT );
+    wlGroupField.setText( BaseMessages.getString( PKG, "GraphMergeDialog.GroupField.Label" ) );
+    props.setLook( wlGroupField );
+    fdlGroupField = new FormData();
+    fdlGroupField.left = new FormAttachment( 0, 0 );
+    fdlGroupField.right = new FormAttachment( middle, -margin );
+    fdlGroupField.top = new FormAttachment( wGraphField, margin );
+    wlGroupField.setLayoutData( fdlGroupField );
+    wGroupField = new CCombo( shell, SWT.BORDER );
+    props.setLook( wGroupField );
+    wGroupField.addModifyListener( lsMod );
+    fdGroupField = new FormData();
+    fdGroupField.left = new FormAttachment( middle, 0 );
+    fdGroupField.top = new FormAttachment( wGraphField, margin );
+    fdGroupField.right = new FormAttachment( 100, 0 );
+    wGroupField.setLayoutData( fdGroupField );
+    wGroupField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGroupField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Vertex property to match vertices on
+    wlKeyProperty = new Label( shell, SWT.RIGHT );
+    wlKeyProperty.setText( BaseMessages.getString( PKG, "GraphMergeDialog.KeyProperty.Label" ) );
+    props.setLook( wlKeyProperty );
+    fdlKeyProperty = new FormData();
+    fdlKeyProperty.left = new FormAttachment( 0, 0 );
+    fdlKeyProperty.right = new FormAttachment( middle, -margin );
+    fdlKeyProperty.top = new FormAttachment( wGroupField, margin );
+    wlKeyProperty.setLayoutData( fdlKeyProperty );
+    wKeyProperty = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wKeyProperty );
+    wKeyProperty.addModifyListener( lsMod );
+    fdKeyProperty = new FormData();
+    fdKeyProperty.left = new FormAttachment( middle, 0 );
+    fdKeyProperty.top = new FormAttachment( wGroupField, margin );
+    fdKeyProperty.right = new FormAttachment( 100, 0 );
+    wKeyProperty.setLayoutData( fdKeyProperty );
+
+    // Vertex property marking ghost vertices
+    wlGhostProperty = new Label( shell, SWT.RIGHT );
+    wlGhostProperty.setText( BaseMessages.getString( PKG, "GraphMergeDialog.GhostProperty.Label" ) );
+    props.setLook( wlGhostProperty );
+    fdlGhostProperty = new FormData();
+    fdlGhostProperty.left = new FormAttachment( 0, 0 );
+    fdlGhostProperty.right = new FormAttachment( middle, -margin );
+    fdlGhostProperty.top = new FormAttachment( wKeyProperty, margin );
+    wlGhostProperty.setLayoutData( fdlGhostProperty );
+    wGhostProperty = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGhostProperty );
+    wGhostProperty.addModifyListener( lsMod );
+    fdGhostProperty = new FormData();
+    fdGhostProperty.left = new FormAttachment( middle, 0 );
+    fdGhostProperty.top = new FormAttachment( wKeyProperty, margin );
+    fdGhostProperty.right = new FormAttachment( 100, 0 );
+    wGhostProperty.setLayoutData( fdGhostProperty );
+
+    // What to do when merged elements disagree on a property
+    wlConflictPolicy = new Label( shell, SWT.RIGHT );
+    wlConflictPolicy.setText( BaseMessages.getString( PKG, "GraphMergeDialog.ConflictPolicy.Label" ) );
+    props.setLook( wlConflictPolicy );
+    fdlConflictPolicy = new FormData();
+    fdlConflictPolicy.left = new FormAttachment( 0, 0 );
+    fdlConflictPolicy.right = new FormAttachment( middle, -margin );
+    fdlConflictPolicy.top = new FormAttachment( wGhostProperty, margin );
+    wlConflictPolicy.setLayoutData( fdlConflictPolicy );
+    wConflictPolicy = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wConflictPolicy.setItems( GraphMergeMeta.CONFLICT_DESCS );
+    props.setLook( wConflictPolicy );
+    wConflictPolicy.addModifyListener( lsMod );
+    fdConflictPolicy = new FormData();
+    fdConflictPolicy.left = new FormAttachment( middle, 0 );
+    fdConflictPolicy.top = new FormAttachment( wGhostProperty, margin );
+    fdConflictPolicy.right = new FormAttachment( 100, 0 );
+    wConflictPolicy.setLayoutData( fdConflictPolicy );
+
+    // Output field
+    wlMergedField = new Label( shell, SWT.RIGHT );
+    wlMergedField.setText( BaseMessages.getString( PKG, "GraphMergeDialog.MergedField.Label" ) );
+    props.setLook( wlMergedField );
+    fdlMergedField = new FormData();
+    fdlMergedField.left = new FormAttachment( 0, 0 );
+    fdlMergedField.right = new FormAttachment( middle, -margin );
+    fdlMergedField.top = new FormAttachment( wConflictPolicy, margin );
+    wlMergedField.setLayoutData( fdlMergedField );
+    wMergedField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wMergedField );
+    wMergedField.addModifyListener( lsMod );
+    fdMergedField = new FormData();
+    fdMergedField.left = new FormAttachment( middle, 0 );
+    fdMergedField.top = new FormAttachment( wConflictPolicy, margin );
+    fdMergedField.right = new FormAttachment( 100, 0 );
+    wMergedField.setLayoutData( fdMergedField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wMergedField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getGroupFieldName() ) ) {
+      wGroupField.setText( input.getGroupFieldName() );
+    }
+    if ( !Const.isEmpty( input.getKeyPropertyName() ) ) {
+      wKeyProperty.setText( input.getKeyPropertyName() );
+    }
+    if ( !Const.isEmpty( input.getGhostPropertyName() ) ) {
+      wGhostProperty.setText( input.getGhostPropertyName() );
+    }
+    wConflictPolicy.setText( GraphMergeMeta.getConflictDesc( input.getConflictPolicy() ) );
+    if ( !Const.isEmpty( input.getMergedFieldName() ) ) {
+      wMergedField.setText( input.getMergedFieldName() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setGroupFieldName( wGroupField.getText() );
+    input.setKeyPropertyName( wKeyProperty.getText() );
+    input.setGhostPropertyName( wGhostProperty.getText() );
+    input.setConflictPolicy( GraphMergeMeta.getConflictCode( wConflictPolicy.getText() ) );
+    input.setMergedFieldName( wMergedField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphMergeDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphMergeDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
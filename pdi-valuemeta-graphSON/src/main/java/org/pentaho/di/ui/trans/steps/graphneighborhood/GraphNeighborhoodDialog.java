@@ -0,0 +1,443 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphneighborhood;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphneighborhood.GraphNeighborhoodMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphNeighborhoodDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphNeighborhoodMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphNeighborhoodMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlSeedField;
+  private CCombo wSeedField;
+  private FormData fdlSeedField, fdSeedField;
+
+  private Label wlMaxDepth;
+  private TextVar wMaxDepth;
+  private FormData fdlMaxDepth, fdMaxDepth;
+
+  private Label wlDirection;
+  private CCombo wDirection;
+  private FormData fdlDirection, fdDirection;
+
+  private Label wlEdgeLabels;
+  private TextVar wEdgeLabels;
+  private FormData fdlEdgeLabels, fdEdgeLabels;
+
+  private Label wlIncludeSeed;
+  private Button wIncludeSeed;
+  private FormData fdlIncludeSeed, fdIncludeSeed;
+
+  private Label wlNeighborField;
+  private Text wNeighborField;
+  private FormData fdlNeighborField, fdNeighborField;
+
+  private Label wlDistanceField;
+  private Text wDistanceField;
+  private FormData fdlDistanceField, fdDistanceField;
+
+  public GraphNeighborhoodDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphNeighborhoodMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Seed vertex id field
+    wlSeedField = new Label( shell, SWT.RIGHT );
+    wlSeedField.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.SeedField.Label" ) );
+    props.setLook( wlSeedField );
+    fdlSeedField = new FormData();
+    fdlSeedField.left = new FormAttachment( 0, 0 );
+    fdlSeedField.right = new FormAttachment( middle, -margin );
+    fdlSeedField.top = new FormAttachment( wGraphField, margin );
+    wlSeedField.setLayoutData( fdlSeedField );
+    wSeedField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wSeedField );
+    wSeedField.addModifyListener( lsMod );
+    fdSeedField = new FormData();
+    fdSeedField.left = new FormAttachment( middle, 0 );
+    fdSeedField.top = new FormAttachment( wGraphField, margin );
+    fdSeedField.right = new FormAttachment( 100, 0 );
+    wSeedField.setLayoutData( fdSeedField );
+    wSeedField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wSeedField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Number of hops
+    wlMaxDepth = new Label( shell, SWT.RIGHT );
+    wlMaxDepth.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.MaxDepth.Label" ) );
+    props.setLook( wlMaxDepth );
+    fdlMaxDepth = new FormData();
+    fdlMaxDepth.left = new FormAttachment( 0, 0 );
+    fdlMaxDepth.right = new FormAttachment( middle, -margin );
+    fdlMaxDepth.top = new FormAttachment( wSeedField, margin );
+    wlMaxDepth.setLayoutData( fdlMaxDepth );
+    wMaxDepth = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wMaxDepth );
+    wMaxDepth.addModifyListener( lsMod );
+    fdMaxDepth = new FormData();
+    fdMaxDepth.left = new FormAttachment( middle, 0 );
+    fdMaxDepth.top = new FormAttachment( wSeedField, margin );
+    fdMaxDepth.right = new FormAttachment( 100, 0 );
+    wMaxDepth.setLayoutData( fdMaxDepth );
+
+    // Edge direction
+    wlDirection = new Label( shell, SWT.RIGHT );
+    wlDirection.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.Direction.Label" ) );
+    props.setLook( wlDirection );
+    fdlDirection = new FormData();
+    fdlDirection.left = new FormAttachment( 0, 0 );
+    fdlDirection.right = new FormAttachment( middle, -margin );
+    fdlDirection.top = new FormAttachment( wMaxDepth, margin );
+    wlDirection.setLayoutData( fdlDirection );
+    wDirection = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wDirection.setItems( GraphNeighborhoodMeta.DIRECTION_DESCS );
+    props.setLook( wDirection );
+    wDirection.addModifyListener( lsMod );
+    fdDirection = new FormData();
+    fdDirection.left = new FormAttachment( middle, 0 );
+    fdDirection.top = new FormAttachment( wMaxDepth, margin );
+    fdDirection.right = new FormAttachment( 100, 0 );
+    wDirection.setLayoutData( fdDirection );
+
+    // Edge labels to follow
+    wlEdgeLabels = new Label( shell, SWT.RIGHT );
+    wlEdgeLabels.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.EdgeLabels.Label" ) );
+    props.setLook( wlEdgeLabels );
+    fdlEdgeLabels = new FormData();
+    fdlEdgeLabels.left = new FormAttachment( 0, 0 );
+    fdlEdgeLabels.right = new FormAttachment( middle, -margin );
+    fdlEdgeLabels.top = new FormAttachment( wDirection, margin );
+    wlEdgeLabels.setLayoutData( fdlEdgeLabels );
+    wEdgeLabels = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wEdgeLabels );
+    wEdgeLabels.addModifyListener( lsMod );
+    fdEdgeLabels = new FormData();
+    fdEdgeLabels.left = new FormAttachment( middle, 0 );
+    fdEdgeLabels.top = new FormAttachment( wDirection, margin );
+    fdEdgeLabels.right = new FormAttachment( 100, 0 );
+    wEdgeLabels.setLayoutData( fdEdgeLabels );
+
+    // Include the seed itself
+    wlIncludeSeed = new Label( shell, SWT.RIGHT );
+    wlIncludeSeed.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.IncludeSeed.Label" ) );
+    props.setLook( wlIncludeSeed );
+    fdlIncludeSeed = new FormData();
+    fdlIncludeSeed.left = new FormAttachment( 0, 0 );
+    fdlIncludeSeed.right = new FormAttachment( middle, -margin );
+    fdlIncludeSeed.top = new FormAttachment( wEdgeLabels, margin );
+    wlIncludeSeed.setLayoutData( fdlIncludeSeed );
+    wIncludeSeed = new Button( shell, SWT.CHECK );
+    props.setLook( wIncludeSeed );
+    wIncludeSeed.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+    fdIncludeSeed = new FormData();
+    fdIncludeSeed.left = new FormAttachment( middle, 0 );
+    fdIncludeSeed.top = new FormAttachment( wEdgeLabels, margin );
+    fdIncludeSeed.right = new FormAttachment( 100, 0 );
+    wIncludeSeed.setLayoutData( fdIncludeSeed );
+
+    // Neighbor output field
+    wlNeighborField = new Label( shell, SWT.RIGHT );
+    wlNeighborField.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.NeighborField.Label" ) );
+    props.setLook( wlNeighborField );
+    fdlNeighborField = new FormData();
+    fdlNeighborField.left = new FormAttachment( 0, 0 );
+    fdlNeighborField.right = new FormAttachment( middle, -margin );
+    fdlNeighborField.top = new FormAttachment( wIncludeSeed, margin );
+    wlNeighborField.setLayoutData( fdlNeighborField );
+    wNeighborField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wNeighborField );
+    wNeighborField.addModifyListener( lsMod );
+    fdNeighborField = new FormData();
+    fdNeighborField.left = new FormAttachment( middle, 0 );
+    fdNeighborField.top = new FormAttachment( wIncludeSeed, margin );
+    fdNeighborField.right = new FormAttachment( 100, 0 );
+    wNeighborField.setLayoutData( fdNeighborField );
+
+    // Distance output field
+    wlDistanceField = new Label( shell, SWT.RIGHT );
+    wlDistanceField.setText( BaseMessages.getString( PKG, "GraphNeighborhoodDialog.DistanceField.Label" ) );
+    props.setLook( wlDistanceField );
+    fdlDistanceField = new FormData();
+    fdlDistanceField.left = new FormAttachment( 0, 0 );
+    fdlDistanceField.right = new FormAttachment( middle, -margin );
+    fdlDistanceField.top = new FormAttachment( wNeighborField, margin );
+    wlDistanceField.setLayoutData( fdlDistanceField );
+    wDistanceField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDistanceField );
+    wDistanceField.addModifyListener( lsMod );
+    fdDistanceField = new FormData();
+    fdDistanceField.left = new FormAttachment( middle, 0 );
+    fdDistanceField.top = new FormAttachment( wNeighborField, margin );
+    fdDistanceField.right = new FormAttachment( 100, 0 );
+    wDistanceField.setLayoutData( fdDistanceField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wDistanceField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getSeedFieldName() ) ) {
+      wSeedField.setText( input.getSeedFieldName() );
+    }
+    if ( !Const.isEmpty( input.getMaxDepth() ) ) {
+      wMaxDepth.setText( input.getMaxDepth() );
+    }
+    wDirection.setText( GraphNeighborhoodMeta.getDirectionDesc( input.getDirection() ) );
+    if ( !Const.isEmpty( input.getEdgeLabels() ) ) {
+      wEdgeLabels.setText( input.getEdgeLabels() );
+    }
+    wIncludeSeed.setSelection( input.isIncludeSeed() );
+    if ( !Const.isEmpty( input.getNeighborFieldName() ) ) {
+      wNeighborField.setText( input.getNeighborFieldName() );
+    }
+    if ( !Const.isEmpty( input.getDistanceFieldName() ) ) {
+      wDistanceField.setText( input.getDistanceFieldName() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setSeedFieldName( wSeedField.getText() );
+    input.setMaxDepth( wMaxDepth.getText() );
+    input.setDirection( GraphNeighborhoodMeta.getDirectionCode( wDirection.getText() ) );
+    input.setEdgeLabels( wEdgeLabels.getText() );
+    input.setIncludeSeed( wIncludeSeed.getSelection() );
+    input.setNeighborFieldName( wNeighborField.getText() );
+    input.setDistanceFieldName( wDistanceField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphNeighborhoodDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphNeighborhoodDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
@@ -0,0 +1,472 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphpagerank;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphpagerank.GraphPageRankMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphPageRankDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphPageRankMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphPageRankMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlDampingFactor;
+  private TextVar wDampingFactor;
+  private FormData fdlDampingFactor, fdDampingFactor;
+
+  private Label wlTolerance;
+  private TextVar wTolerance;
+  private FormData fdlTolerance, fdTolerance;
+
+  private Label wlMaxIterations;
+  private TextVar wMaxIterations;
+  private FormData fdlMaxIterations, fdMaxIterations;
+
+  private Label wlParallelism;
+  private TextVar wParallelism;
+  private FormData fdlParallelism, fdParallelism;
+
+  private Label wlOutputMode;
+  private CCombo wOutputMode;
+  private FormData fdlOutputMode, fdOutputMode;
+
+  private Label wlScoreProperty;
+  private Text wScoreProperty;
+  private FormData fdlScoreProperty, fdScoreProperty;
+
+  private Label wlVertexIdField;
+  private Text wVertexIdField;
+  private FormData fdlVertexIdField, fdVertexIdField;
+
+  private Label wlScoreField;
+  private Text wScoreField;
+  private FormData fdlScoreField, fdScoreField;
+
+  public GraphPageRankDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphPageRankMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Damping factor
+    wlDampingFactor = new Label( shell, SWT.RIGHT );
+    wlDampingFactor.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.DampingFactor.Label" ) );
+    props.setLook( wlDampingFactor );
+    fdlDampingFactor = new FormData();
+    fdlDampingFactor.left = new FormAttachment( 0, 0 );
+    fdlDampingFactor.right = new FormAttachment( middle, -margin );
+    fdlDampingFactor.top = new FormAttachment( wGraphField, margin );
+    wlDampingFactor.setLayoutData( fdlDampingFactor );
+    wDampingFactor = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDampingFactor );
+    wDampingFactor.addModifyListener( lsMod );
+    fdDampingFactor = new FormData();
+    fdDampingFactor.left = new FormAttachment( middle, 0 );
+    fdDampingFactor.top = new FormAttachment( wGraphField, margin );
+    fdDampingFactor.right = new FormAttachment( 100, 0 );
+    wDampingFactor.setLayoutData( fdDampingFactor );
+
+    // Convergence tolerance
+    wlTolerance = new Label( shell, SWT.RIGHT );
+    wlTolerance.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.Tolerance.Label" ) );
+    props.setLook( wlTolerance );
+    fdlTolerance = new FormData();
+    fdlTolerance.left = new FormAttachment( 0, 0 );
+    fdlTolerance.right = new FormAttachment( middle, -margin );
+    fdlTolerance.top = new FormAttachment( wDampingFactor, margin );
+    wlTolerance.setLayoutData( fdlTolerance );
+    wTolerance = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wTolerance );
+    wTolerance.addModifyListener( lsMod );
+    fdTolerance = new FormData();
+    fdTolerance.left = new FormAttachment( middle, 0 );
+    fdTolerance.top = new FormAttachment( wDampingFactor, margin );
+    fdTolerance.right = new FormAttachment( 100, 0 );
+    wTolerance.setLayoutData( fdTolerance );
+
+    // Maximum number of iterations
+    wlMaxIterations = new Label( shell, SWT.RIGHT );
+    wlMaxIterations.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.MaxIterations.Label" ) );
+    props.setLook( wlMaxIterations );
+    fdlMaxIterations = new FormData();
+    fdlMaxIterations.left = new FormAttachment( 0, 0 );
+    fdlMaxIterations.right = new FormAttachment( middle, -margin );
+    fdlMaxIterations.top = new FormAttachment( wTolerance, margin );
+    wlMaxIterations.setLayoutData( fdlMaxIterations );
+    wMaxIterations = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wMaxIterations );
+    wMaxIterations.addModifyListener( lsMod );
+    fdMaxIterations = new FormData();
+    fdMaxIterations.left = new FormAttachment( middle, 0 );
+    fdMaxIterations.top = new FormAttachment( wTolerance, margin );
+    fdMaxIterations.right = new FormAttachment( 100, 0 );
+    wMaxIterations.setLayoutData( fdMaxIterations );
+
+    // Number of threads
+    wlParallelism = new Label( shell, SWT.RIGHT );
+    wlParallelism.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.Parallelism.Label" ) );
+    props.setLook( wlParallelism );
+    fdlParallelism = new FormData();
+    fdlParallelism.left = new FormAttachment( 0, 0 );
+    fdlParallelism.right = new FormAttachment( middle, -margin );
+    fdlParallelism.top = new FormAttachment( wMaxIterations, margin );
+    wlParallelism.setLayoutData( fdlParallelism );
+    wParallelism = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wParallelism );
+    wParallelism.addModifyListener( lsMod );
+    fdParallelism = new FormData();
+    fdParallelism.left = new FormAttachment( middle, 0 );
+    fdParallelism.top = new FormAttachment( wMaxIterations, margin );
+    fdParallelism.right = new FormAttachment( 100, 0 );
+    wParallelism.setLayoutData( fdParallelism );
+
+    // Output mode
+    wlOutputMode = new Label( shell, SWT.RIGHT );
+    wlOutputMode.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.OutputMode.Label" ) );
+    props.setLook( wlOutputMode );
+    fdlOutputMode = new FormData();
+    fdlOutputMode.left = new FormAttachment( 0, 0 );
+    fdlOutputMode.right = new FormAttachment( middle, -margin );
+    fdlOutputMode.top = new FormAttachment( wParallelism, margin );
+    wlOutputMode.setLayoutData( fdlOutputMode );
+    wOutputMode = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wOutputMode.setItems( GraphPageRankMeta.OUTPUT_MODE_DESCS );
+    props.setLook( wOutputMode );
+    wOutputMode.addModifyListener( lsMod );
+    fdOutputMode = new FormData();
+    fdOutputMode.left = new FormAttachment( middle, 0 );
+    fdOutputMode.top = new FormAttachment( wParallelism, margin );
+    fdOutputMode.right = new FormAttachment( 100, 0 );
+    wOutputMode.setLayoutData( fdOutputMode );
+    wOutputMode.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setFlags();
+      }
+    } );
+
+    // Vertex property to store the score in
+    wlScoreProperty = new Label( shell, SWT.RIGHT );
+    wlScoreProperty.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.ScoreProperty.Label" ) );
+    props.setLook( wlScoreProperty );
+    fdlScoreProperty = new FormData();
+    fdlScoreProperty.left = new FormAttachment( 0, 0 );
+    fdlScoreProperty.right = new FormAttachment( middle, -margin );
+    fdlScoreProperty.top = new FormAttachment( wOutputMode, margin );
+    wlScoreProperty.setLayoutData( fdlScoreProperty );
+    wScoreProperty = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wScoreProperty );
+    wScoreProperty.addModifyListener( lsMod );
+    fdScoreProperty = new FormData();
+    fdScoreProperty.left = new FormAttachment( middle, 0 );
+    fdScoreProperty.top = new FormAttachment( wOutputMode, margin );
+    fdScoreProperty.right = new FormAttachment( 100, 0 );
+    wScoreProperty.setLayoutData( fdScoreProperty );
+
+    // Vertex ID output field
+    wlVertexIdField = new Label( shell, SWT.RIGHT );
+    wlVertexIdField.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.VertexIdField.Label" ) );
+    props.setLook( wlVertexIdField );
+    fdlVertexIdField = new FormData();
+    fdlVertexIdField.left = new FormAttachment( 0, 0 );
+    fdlVertexIdField.right = new FormAttachment( middle, -margin );
+    fdlVertexIdField.top = new FormAttachment( wScoreProperty, margin );
+    wlVertexIdField.setLayoutData( fdlVertexIdField );
+    wVertexIdField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wVertexIdField );
+    wVertexIdField.addModifyListener( lsMod );
+    fdVertexIdField = new FormData();
+    fdVertexIdField.left = new FormAttachment( middle, 0 );
+    fdVertexIdField.top = new FormAttachment( wScoreProperty, margin );
+    fdVertexIdField.right = new FormAttachment( 100, 0 );
+    wVertexIdField.setLayoutData( fdVertexIdField );
+
+    // Score output field
+    wlScoreField = new Label( shell, SWT.RIGHT );
+    wlScoreField.setText( BaseMessages.getString( PKG, "GraphPageRankDialog.ScoreField.Label" ) );
+    props.setLook( wlScoreField );
+    fdlScoreField = new FormData();
+    fdlScoreField.left = new FormAttachment( 0, 0 );
+    fdlScoreField.right = new FormAttachment( middle, -margin );
+    fdlScoreField.top = new FormAttachment( wVertexIdField, margin );
+    wlScoreField.setLayoutData( fdlScoreField );
+    wScoreField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wScoreField );
+    wScoreField.addModifyListener( lsMod );
+    fdScoreField = new FormData();
+    fdScoreField.left = new FormAttachment( middle, 0 );
+    fdScoreField.top = new FormAttachment( wVertexIdField, margin );
+    fdScoreField.right = new FormAttachment( 100, 0 );
+    wScoreField.setLayoutData( fdScoreField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wScoreField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getDampingFactor() ) ) {
+      wDampingFactor.setText( input.getDampingFactor() );
+    }
+    if ( !Const.isEmpty( input.getTolerance() ) ) {
+      wTolerance.setText( input.getTolerance() );
+    }
+    if ( !Const.isEmpty( input.getMaxIterations() ) ) {
+      wMaxIterations.setText( input.getMaxIterations() );
+    }
+    if ( !Const.isEmpty( input.getParallelism() ) ) {
+      wParallelism.setText( input.getParallelism() );
+    }
+    wOutputMode.setText( GraphPageRankMeta.getOutputModeDesc( input.getOutputMode() ) );
+    if ( !Const.isEmpty( input.getScorePropertyName() ) ) {
+      wScoreProperty.setText( input.getScorePropertyName() );
+    }
+    if ( !Const.isEmpty( input.getVertexIdFieldName() ) ) {
+      wVertexIdField.setText( input.getVertexIdFieldName() );
+    }
+    if ( !Const.isEmpty( input.getScoreFieldName() ) ) {
+      wScoreField.setText( input.getScoreFieldName() );
+    }
+    setFlags();
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setDampingFactor( wDampingFactor.getText() );
+    input.setTolerance( wTolerance.getText() );
+    input.setMaxIterations( wMaxIterations.getText() );
+    input.setParallelism( wParallelism.getText() );
+    input.setOutputMode( GraphPageRankMeta.getOutputModeCode( wOutputMode.getText() ) );
+    input.setScorePropertyName( wScoreProperty.getText() );
+    input.setVertexIdFieldName( wVertexIdField.getText() );
+    input.setScoreFieldName( wScoreField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphPageRankDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphPageRankDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+
+  private void setFlags() {
+    boolean rows =
+        GraphPageRankMeta.OUTPUT_MODE_ROWS.equals( GraphPageRankMeta.getOutputModeCode( wOutputMode.getText() ) );
+    wlScoreProperty.setEnabled( !rows );
+    wScoreProperty.setEnabled( !rows );
+    wlVertexIdField.setEnabled( rows );
+    wVertexIdField.setEnabled( rows );
+    wlScoreField.setEnabled( rows );
+    wScoreField.setEnabled( rows );
+  }
+}
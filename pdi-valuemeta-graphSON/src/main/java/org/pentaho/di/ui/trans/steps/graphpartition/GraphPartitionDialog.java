@@ -0,0 +1,427 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphpartition;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphpartition.GraphPartitionMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphPartitionDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphPartitionMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphPartitionMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlMethod;
+  private CCombo wMethod;
+  private FormData fdlMethod, fdMethod;
+
+  private Label wlPartitions;
+  private TextVar wPartitions;
+  private FormData fdlPartitions, fdPartitions;
+
+  private Label wlIterations;
+  private TextVar wIterations;
+  private FormData fdlIterations, fdIterations;
+
+  private Label wlGhostProperty;
+  private Text wGhostProperty;
+  private FormData fdlGhostProperty, fdGhostProperty;
+
+  private Label wlPartitionField;
+  private Text wPartitionField;
+  private FormData fdlPartitionField, fdPartitionField;
+
+  private Label wlSubgraphField;
+  private Text wSubgraphField;
+  private FormData fdlSubgraphField, fdSubgraphField;
+
+  private Label wlGhostCountField;
+  private Text wGhostCountField;
+  private FormData fdlGhostCountField, fdGhostCountField;
+
+  public GraphPartitionDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphPartitionMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Partitioning method
+    wlMethod = new Label( shell, SWT.RIGHT );
+    wlMethod.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.Method.Label" ) );
+    props.setLook( wlMethod );
+    fdlMethod = new FormData();
+    fdlMethod.left = new FormAttachment( 0, 0 );
+    fdlMethod.right = new FormAttachment( middle, -margin );
+    fdlMethod.top = new FormAttachment( wGraphField, margin );
+    wlMethod.setLayoutData( fdlMethod );
+    wMethod = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wMethod.setItems( GraphPartitionMeta.METHOD_DESCS );
+    props.setLook( wMethod );
+    wMethod.addModifyListener( lsMod );
+    fdMethod = new FormData();
+    fdMethod.left = new FormAttachment( middle, 0 );
+    fdMethod.top = new FormAttachment( wGraphField, margin );
+    fdMethod.right = new FormAttachment( 100, 0 );
+    wMethod.setLayoutData( fdMethod );
+
+    // Number of subgraphs
+    wlPartitions = new Label( shell, SWT.RIGHT );
+    wlPartitions.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.Partitions.Label" ) );
+    props.setLook( wlPartitions );
+    fdlPartitions = new FormData();
+    fdlPartitions.left = new FormAttachment( 0, 0 );
+    fdlPartitions.right = new FormAttachment( middle, -margin );
+    fdlPartitions.top = new FormAttachment( wMethod, margin );
+    wlPartitions.setLayoutData( fdlPartitions );
+    wPartitions = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPartitions );
+    wPartitions.addModifyListener( lsMod );
+    fdPartitions = new FormData();
+    fdPartitions.left = new FormAttachment( middle, 0 );
+    fdPartitions.top = new FormAttachment( wMethod, margin );
+    fdPartitions.right = new FormAttachment( 100, 0 );
+    wPartitions.setLayoutData( fdPartitions );
+
+    // Label propagation sweeps
+    wlIterations = new Label( shell, SWT.RIGHT );
+    wlIterations.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.Iterations.Label" ) );
+    props.setLook( wlIterations );
+    fdlIterations = new FormData();
+    fdlIterations.left = new FormAttachment( 0, 0 );
+    fdlIterations.right = new FormAttachment( middle, -margin );
+    fdlIterations.top = new FormAttachment( wPartitions, margin );
+    wlIterations.setLayoutData( fdlIterations );
+    wIterations = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wIterations );
+    wIterations.addModifyListener( lsMod );
+    fdIterations = new FormData();
+    fdIterations.left = new FormAttachment( middle, 0 );
+    fdIterations.top = new FormAttachment( wPartitions, margin );
+    fdIterations.right = new FormAttachment( 100, 0 );
+    wIterations.setLayoutData( fdIterations );
+
+    // Vertex property marking ghost vertices
+    wlGhostProperty = new Label( shell, SWT.RIGHT );
+    wlGhostProperty.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.GhostProperty.Label" ) );
+    props.setLook( wlGhostProperty );
+    fdlGhostProperty = new FormData();
+    fdlGhostProperty.left = new FormAttachment( 0, 0 );
+    fdlGhostProperty.right = new FormAttachment( middle, -margin );
+    fdlGhostProperty.top = new FormAttachment( wIterations, margin );
+    wlGhostProperty.setLayoutData( fdlGhostProperty );
+    wGhostProperty = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGhostProperty );
+    wGhostProperty.addModifyListener( lsMod );
+    fdGhostProperty = new FormData();
+    fdGhostProperty.left = new FormAttachment( middle, 0 );
+    fdGhostProperty.top = new FormAttachment( wIterations, margin );
+    fdGhostProperty.right = new FormAttachment( 100, 0 );
+    wGhostProperty.setLayoutData( fdGhostProperty );
+
+    // Output fields
+    wlPartitionField = new Label( shell, SWT.RIGHT );
+    wlPartitionField.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.PartitionField.Label" ) );
+    props.setLook( wlPartitionField );
+    fdlPartitionField = new FormData();
+    fdlPartitionField.left = new FormAttachment( 0, 0 );
+    fdlPartitionField.right = new FormAttachment( middle, -margin );
+    fdlPartitionField.top = new FormAttachment( wGhostProperty, margin );
+    wlPartitionField.setLayoutData( fdlPartitionField );
+    wPartitionField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPartitionField );
+    wPartitionField.addModifyListener( lsMod );
+    fdPartitionField = new FormData();
+    fdPartitionField.left = new FormAttachment( middle, 0 );
+    fdPartitionField.top = new FormAttachment( wGhostProperty, margin );
+    fdPartitionField.right = new FormAttachment( 100, 0 );
+    wPartitionField.setLayoutData( fdPartitionField );
+
+    wlSubgraphField = new Label( shell, SWT.RIGHT );
+    wlSubgraphField.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.SubgraphField.Label" ) );
+    props.setLook( wlSubgraphField );
+    fdlSubgraphField = new FormData();
+    fdlSubgraphField.left = new FormAttachment( 0, 0 );
+    fdlSubgraphField.right = new FormAttachment( middle, -margin );
+    fdlSubgraphField.top = new FormAttachment( wPartitionField, margin );
+    wlSubgraphField.setLayoutData( fdlSubgraphField );
+    wSubgraphField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wSubgraphField );
+    wSubgraphField.addModifyListener( lsMod );
+    fdSubgraphField = new FormData();
+    fdSubgraphField.left = new FormAttachment( middle, 0 );
+    fdSubgraphField.top = new FormAttachment( wPartitionField, margin );
+    fdSubgraphField.right = new FormAttachment( 100, 0 );
+    wSubgraphField.setLayoutData( fdSubgraphField );
+
+    wlGhostCountField = new Label( shell, SWT.RIGHT );
+    wlGhostCountField.setText( BaseMessages.getString( PKG, "GraphPartitionDialog.GhostCountField.Label" ) );
+    props.setLook( wlGhostCountField );
+    fdlGhostCountField = new FormData();
+    fdlGhostCountField.left = new FormAttachment( 0, 0 );
+    fdlGhostCountField.right = new FormAttachment( middle, -margin );
+    fdlGhostCountField.top = new FormAttachment( wSubgraphField, margin );
+    wlGhostCountField.setLayoutData( fdlGhostCountField );
+    wGhostCountField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wGhostCountField );
+    wGhostCountField.addModifyListener( lsMod );
+    fdGhostCountField = new FormData();
+    fdGhostCountField.left = new FormAttachment( middle, 0 );
+    fdGhostCountField.top = new FormAttachment( wSubgraphField, margin );
+    fdGhostCountField.right = new FormAttachment( 100, 0 );
+    wGhostCountField.setLayoutData( fdGhostCountField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wGhostCountField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    wMethod.setText( GraphPartitionMeta.getMethodDesc( input.getMethod() ) );
+    if ( !Const.isEmpty( input.getPartitions() ) ) {
+      wPartitions.setText( input.getPartitions() );
+    }
+    if ( !Const.isEmpty( input.getIterations() ) ) {
+      wIterations.setText( input.getIterations() );
+    }
+    if ( !Const.isEmpty( input.getGhostPropertyName() ) ) {
+      wGhostProperty.setText( input.getGhostPropertyName() );
+    }
+    if ( !Const.isEmpty( input.getPartitionFieldName() ) ) {
+      wPartitionField.setText( input.getPartitionFieldName() );
+    }
+    if ( !Const.isEmpty( input.getSubgraphFieldName() ) ) {
+      wSubgraphField.setText( input.getSubgraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getGhostCountFieldName() ) ) {
+      wGhostCountField.setText( input.getGhostCountFieldName() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setMethod( GraphPartitionMeta.getMethodCode( wMethod.getText() ) );
+    input.setPartitions( wPartitions.getText() );
+    input.setIterations( wIterations.getText() );
+    input.setGhostPropertyName( wGhostProperty.getText() );
+    input.setPartitionFieldName( wPartitionField.getText() );
+    input.setSubgraphFieldName( wSubgraphField.getText() );
+    input.setGhostCountFieldName( wGhostCountField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphPartitionDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphPartitionDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
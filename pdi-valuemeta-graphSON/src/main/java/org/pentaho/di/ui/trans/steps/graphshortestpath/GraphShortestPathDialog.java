@@ -0,0 +1,503 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.ui.trans.steps.graphshortestpath;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.steps.graphshortestpath.GraphShortestPathMeta;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class GraphShortestPathDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = GraphShortestPathMeta.class; // for i18n purposes, needed by Translator2!! $NON-NLS-1$
+
+  private GraphShortestPathMeta input;
+  private boolean gotPreviousFields = false;
+  private RowMetaInterface previousFields;
+
+  private Label wlGraphField;
+  private CCombo wGraphField;
+  private FormData fdlGraphField, fdGraphField;
+
+  private Label wlSourceField;
+  private CCombo wSourceField;
+  private FormData fdlSourceField, fdSourceField;
+
+  private Label wlTargetField;
+  private CCombo wTargetField;
+  private FormData fdlTargetField, fdTargetField;
+
+  private Label wlDirection;
+  private CCombo wDirection;
+  private FormData fdlDirection, fdDirection;
+
+  private Label wlWeightProperty;
+  private TextVar wWeightProperty;
+  private FormData fdlWeightProperty, fdWeightProperty;
+
+  private Label wlHeuristicXProperty;
+  private TextVar wHeuristicXProperty;
+  private FormData fdlHeuristicXProperty, fdHeuristicXProperty;
+
+  private Label wlHeuristicYProperty;
+  private TextVar wHeuristicYProperty;
+  private FormData fdlHeuristicYProperty, fdHeuristicYProperty;
+
+  private Label wlHeuristicScale;
+  private TextVar wHeuristicScale;
+  private FormData fdlHeuristicScale, fdHeuristicScale;
+
+  private Label wlDistanceField;
+  private Text wDistanceField;
+  private FormData fdlDistanceField, fdDistanceField;
+
+  private Label wlPathField;
+  private Text wPathField;
+  private FormData fdlPathField, fdPathField;
+
+  public GraphShortestPathDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    input = (GraphShortestPathMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+
+    // Graph field
+    wlGraphField = new Label( shell, SWT.RIGHT );
+    wlGraphField.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.GraphField.Label" ) );
+    props.setLook( wlGraphField );
+    fdlGraphField = new FormData();
+    fdlGraphField.left = new FormAttachment( 0, 0 );
+    fdlGraphField.right = new FormAttachment( middle, -margin );
+    fdlGraphField.top = new FormAttachment( wStepname, margin );
+    wlGraphField.setLayoutData( fdlGraphField );
+    wGraphField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wGraphField );
+    wGraphField.addModifyListener( lsMod );
+    fdGraphField = new FormData();
+    fdGraphField.left = new FormAttachment( middle, 0 );
+    fdGraphField.top = new FormAttachment( wStepname, margin );
+    fdGraphField.right = new FormAttachment( 100, 0 );
+    wGraphField.setLayoutData( fdGraphField );
+    wGraphField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wGraphField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Source vertex id field
+    wlSourceField = new Label( shell, SWT.RIGHT );
+    wlSourceField.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.SourceField.Label" ) );
+    props.setLook( wlSourceField );
+    fdlSourceField = new FormData();
+    fdlSourceField.left = new FormAttachment( 0, 0 );
+    fdlSourceField.right = new FormAttachment( middle, -margin );
+    fdlSourceField.top = new FormAttachment( wGraphField, margin );
+    wlSourceField.setLayoutData( fdlSourceField );
+    wSourceField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wSourceField );
+    wSourceField.addModifyListener( lsMod );
+    fdSourceField = new FormData();
+    fdSourceField.left = new FormAttachment( middle, 0 );
+    fdSourceField.top = new FormAttachment( wGraphField, margin );
+    fdSourceField.right = new FormAttachment( 100, 0 );
+    wSourceField.setLayoutData( fdSourceField );
+    wSourceField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wSourceField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Target vertex id field
+    wlTargetField = new Label( shell, SWT.RIGHT );
+    wlTargetField.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.TargetField.Label" ) );
+    props.setLook( wlTargetField );
+    fdlTargetField = new FormData();
+    fdlTargetField.left = new FormAttachment( 0, 0 );
+    fdlTargetField.right = new FormAttachment( middle, -margin );
+    fdlTargetField.top = new FormAttachment( wSourceField, margin );
+    wlTargetField.setLayoutData( fdlTargetField );
+    wTargetField = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wTargetField );
+    wTargetField.addModifyListener( lsMod );
+    fdTargetField = new FormData();
+    fdTargetField.left = new FormAttachment( middle, 0 );
+    fdTargetField.top = new FormAttachment( wSourceField, margin );
+    fdTargetField.right = new FormAttachment( 100, 0 );
+    wTargetField.setLayoutData( fdTargetField );
+    wTargetField.addFocusListener( new FocusListener() {
+      public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+      }
+
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        getFieldsInto( wTargetField );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+
+    // Edge direction
+    wlDirection = new Label( shell, SWT.RIGHT );
+    wlDirection.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.Direction.Label" ) );
+    props.setLook( wlDirection );
+    fdlDirection = new FormData();
+    fdlDirection.left = new FormAttachment( 0, 0 );
+    fdlDirection.right = new FormAttachment( middle, -margin );
+    fdlDirection.top = new FormAttachment( wTargetField, margin );
+    wlDirection.setLayoutData( fdlDirection );
+    wDirection = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wDirection.setItems( GraphShortestPathMeta.DIRECTION_DESCS );
+    props.setLook( wDirection );
+    wDirection.addModifyListener( lsMod );
+    fdDirection = new FormData();
+    fdDirection.left = new FormAttachment( middle, 0 );
+    fdDirection.top = new FormAttachment( wTargetField, margin );
+    fdDirection.right = new FormAttachment( 100, 0 );
+    wDirection.setLayoutData( fdDirection );
+
+    // Edge weight property
+    wlWeightProperty = new Label( shell, SWT.RIGHT );
+    wlWeightProperty.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.WeightProperty.Label" ) );
+    props.setLook( wlWeightProperty );
+    fdlWeightProperty = new FormData();
+    fdlWeightProperty.left = new FormAttachment( 0, 0 );
+    fdlWeightProperty.right = new FormAttachment( middle, -margin );
+    fdlWeightProperty.top = new FormAttachment( wDirection, margin );
+    wlWeightProperty.setLayoutData( fdlWeightProperty );
+    wWeightProperty = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wWeightProperty );
+    wWeightProperty.addModifyListener( lsMod );
+    fdWeightProperty = new FormData();
+    fdWeightProperty.left = new FormAttachment( middle, 0 );
+    fdWeightProperty.top = new FormAttachment( wDirection, margin );
+    fdWeightProperty.right = new FormAttachment( 100, 0 );
+    wWeightProperty.setLayoutData( fdWeightProperty );
+
+    // A* coordinates
+    wlHeuristicXProperty = new Label( shell, SWT.RIGHT );
+    wlHeuristicXProperty.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.HeuristicXProperty.Label" ) );
+    props.setLook( wlHeuristicXProperty );
+    fdlHeuristicXProperty = new FormData();
+    fdlHeuristicXProperty.left = new FormAttachment( 0, 0 );
+    fdlHeuristicXProperty.right = new FormAttachment( middle, -margin );
+    fdlHeuristicXProperty.top = new FormAttachment( wWeightProperty, margin );
+    wlHeuristicXProperty.setLayoutData( fdlHeuristicXProperty );
+    wHeuristicXProperty = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wHeuristicXProperty );
+    wHeuristicXProperty.addModifyListener( lsMod );
+    fdHeuristicXProperty = new FormData();
+    fdHeuristicXProperty.left = new FormAttachment( middle, 0 );
+    fdHeuristicXProperty.top = new FormAttachment( wWeightProperty, margin );
+    fdHeuristicXProperty.right = new FormAttachment( 100, 0 );
+    wHeuristicXProperty.setLayoutData( fdHeuristicXProperty );
+
+    wlHeuristicYProperty = new Label( shell, SWT.RIGHT );
+    wlHeuristicYProperty.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.HeuristicYProperty.Label" ) );
+    props.setLook( wlHeuristicYProperty );
+    fdlHeuristicYProperty = new FormData();
+    fdlHeuristicYProperty.left = new FormAttachment( 0, 0 );
+    fdlHeuristicYProperty.right = new FormAttachment( middle, -margin );
+    fdlHeuristicYProperty.top = new FormAttachment( wHeuristicXProperty, margin );
+    wlHeuristicYProperty.setLayoutData( fdlHeuristicYProperty );
+    wHeuristicYProperty = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wHeuristicYProperty );
+    wHeuristicYProperty.addModifyListener( lsMod );
+    fdHeuristicYProperty = new FormData();
+    fdHeuristicYProperty.left = new FormAttachment( middle, 0 );
+    fdHeuristicYProperty.top = new FormAttachment( wHeuristicXProperty, margin );
+    fdHeuristicYProperty.right = new FormAttachment( 100, 0 );
+    wHeuristicYProperty.setLayoutData( fdHeuristicYProperty );
+
+    wlHeuristicScale = new Label( shell, SWT.RIGHT );
+    wlHeuristicScale.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.HeuristicScale.Label" ) );
+    props.setLook( wlHeuristicScale );
+    fdlHeuristicScale = new FormData();
+    fdlHeuristicScale.left = new FormAttachment( 0, 0 );
+    fdlHeuristicScale.right = new FormAttachment( middle, -margin );
+    fdlHeuristicScale.top = new FormAttachment( wHeuristicYProperty, margin );
+    wlHeuristicScale.setLayoutData( fdlHeuristicScale );
+    wHeuristicScale = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wHeuristicScale );
+    wHeuristicScale.addModifyListener( lsMod );
+    fdHeuristicScale = new FormData();
+    fdHeuristicScale.left = new FormAttachment( middle, 0 );
+    fdHeuristicScale.top = new FormAttachment( wHeuristicYProperty, margin );
+    fdHeuristicScale.right = new FormAttachment( 100, 0 );
+    wHeuristicScale.setLayoutData( fdHeuristicScale );
+
+    // Distance output field
+    wlDistanceField = new Label( shell, SWT.RIGHT );
+    wlDistanceField.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.DistanceField.Label" ) );
+    props.setLook( wlDistanceField );
+    fdlDistanceField = new FormData();
+    fdlDistanceField.left = new FormAttachment( 0, 0 );
+    fdlDistanceField.right = new FormAttachment( middle, -margin );
+    fdlDistanceField.top = new FormAttachment( wHeuristicScale, margin );
+    wlDistanceField.setLayoutData( fdlDistanceField );
+    wDistanceField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDistanceField );
+    wDistanceField.addModifyListener( lsMod );
+    fdDistanceField = new FormData();
+    fdDistanceField.left = new FormAttachment( middle, 0 );
+    fdDistanceField.top = new FormAttachment( wHeuristicScale, margin );
+    fdDistanceField.right = new FormAttachment( 100, 0 );
+    wDistanceField.setLayoutData( fdDistanceField );
+
+    // Path output field
+    wlPathField = new Label( shell, SWT.RIGHT );
+    wlPathField.setText( BaseMessages.getString( PKG, "GraphShortestPathDialog.PathField.Label" ) );
+    props.setLook( wlPathField );
+    fdlPathField = new FormData();
+    fdlPathField.left = new FormAttachment( 0, 0 );
+    fdlPathField.right = new FormAttachment( middle, -margin );
+    fdlPathField.top = new FormAttachment( wDistanceField, margin );
+    wlPathField.setLayoutData( fdlPathField );
+    wPathField = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPathField );
+    wPathField.addModifyListener( lsMod );
+    fdPathField = new FormData();
+    fdPathField.left = new FormAttachment( middle, 0 );
+    fdPathField.top = new FormAttachment( wDistanceField, margin );
+    fdPathField.right = new FormAttachment( 100, 0 );
+    wPathField.setLayoutData( fdPathField );
+
+    // Some buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wPathField );
+
+    // Add listeners
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() )
+        display.sleep();
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    if ( !Const.isEmpty( input.getGraphFieldName() ) ) {
+      wGraphField.setText( input.getGraphFieldName() );
+    }
+    if ( !Const.isEmpty( input.getSourceFieldName() ) ) {
+      wSourceField.setText( input.getSourceFieldName() );
+    }
+    if ( !Const.isEmpty( input.getTargetFieldName() ) ) {
+      wTargetField.setText( input.getTargetFieldName() );
+    }
+    wDirection.setText( GraphShortestPathMeta.getDirectionDesc( input.getDirection() ) );
+    if ( !Const.isEmpty( input.getWeightProperty() ) ) {
+      wWeightProperty.setText( input.getWeightProperty() );
+    }
+    if ( !Const.isEmpty( input.getHeuristicXProperty() ) ) {
+      wHeuristicXProperty.setText( input.getHeuristicXProperty() );
+    }
+    if ( !Const.isEmpty( input.getHeuristicYProperty() ) ) {
+      wHeuristicYProperty.setText( input.getHeuristicYProperty() );
+    }
+    if ( !Const.isEmpty( input.getHeuristicScale() ) ) {
+      wHeuristicScale.setText( input.getHeuristicScale() );
+    }
+    if ( !Const.isEmpty( input.getDistanceFieldName() ) ) {
+      wDistanceField.setText( input.getDistanceFieldName() );
+    }
+    if ( !Const.isEmpty( input.getPathFieldName() ) ) {
+      wPathField.setText( input.getPathFieldName() );
+    }
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) )
+      return;
+
+    stepname = wStepname.getText(); // return value
+    input.setGraphFieldName( wGraphField.getText() );
+    input.setSourceFieldName( wSourceField.getText() );
+    input.setTargetFieldName( wTargetField.getText() );
+    input.setDirection( GraphShortestPathMeta.getDirectionCode( wDirection.getText() ) );
+    input.setWeightProperty( wWeightProperty.getText() );
+    input.setHeuristicXProperty( wHeuristicXProperty.getText() );
+    input.setHeuristicYProperty( wHeuristicYProperty.getText() );
+    input.setHeuristicScale( wHeuristicScale.getText() );
+    input.setDistanceFieldName( wDistanceField.getText() );
+    input.setPathFieldName( wPathField.getText() );
+
+    dispose();
+  }
+
+  private void getFieldsInto( CCombo fieldCombo ) {
+    try {
+      if ( !gotPreviousFields ) {
+        previousFields = transMeta.getPrevStepFields( stepname );
+      }
+
+      String field = fieldCombo.getText();
+
+      if ( previousFields != null ) {
+        fieldCombo.setItems( previousFields.getFieldNames() );
+      }
+
+      if ( field != null )
+        fieldCombo.setText( field );
+      gotPreviousFields = true;
+
+    } catch ( KettleException ke ) {
+      new ErrorDialog( shell, BaseMessages.getString( PKG, "GraphShortestPathDialog.FailedToGetFields.DialogTitle" ),
+          BaseMessages.getString( PKG, "GraphShortestPathDialog.FailedToGetFields.DialogMessage" ), ke );
+    }
+  }
+}
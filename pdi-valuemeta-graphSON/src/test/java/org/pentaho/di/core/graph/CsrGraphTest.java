@@ -0,0 +1,238 @@
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONReader;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONWriter;
+
+public class CsrGraphTest {
+
+  protected CsrGraph graph;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+  }
+
+  @Test
+  public void testFreezeCounts() {
+    assertEquals( 6, graph.getVertexCount() );
+    assertEquals( 6, graph.getEdgeCount() );
+    assertEquals( 6, count( graph.getVertices() ) );
+    assertEquals( 6, count( graph.getEdges() ) );
+    assertSame( graph, CsrGraph.freeze( graph ) );
+  }
+
+  @Test
+  public void testVertexLookup() {
+    Vertex marko = graph.getVertex( "1" );
+    assertNotNull( marko );
+    assertEquals( "marko", marko.getProperty( "name" ) );
+    assertEquals( Integer.valueOf( 29 ), marko.getProperty( "age" ) );
+    assertNull( marko.getProperty( "lang" ) );
+    assertEquals( set( "name", "age" ), marko.getPropertyKeys() );
+    // TinkerGraph ids are strings, numeric ids are tried in their string form
+    assertEquals( marko, graph.getVertex( 1 ) );
+    assertNull( graph.getVertex( "42" ) );
+  }
+
+  @Test
+  public void testAdjacency() {
+    Vertex marko = graph.getVertex( "1" );
+    assertEquals( set( "2", "3", "4" ), ids( marko.getVertices( Direction.OUT ) ) );
+    assertEquals( set( "2", "4" ), ids( marko.getVertices( Direction.OUT, "knows" ) ) );
+    assertEquals( 0, count( marko.getVertices( Direction.IN ) ) );
+    assertEquals( 0, count( marko.getEdges( Direction.OUT, "unknown" ) ) );
+
+    Vertex lop = graph.getVertex( "3" );
+    assertEquals( set( "1", "4", "6" ), ids( lop.getVertices( Direction.IN, "created" ) ) );
+
+    Vertex josh = graph.getVertex( "4" );
+    assertEquals( 3, count( josh.getEdges( Direction.BOTH ) ) );
+    assertEquals( 2, josh.query().direction( Direction.OUT ).count() );
+  }
+
+  @Test
+  public void testIndexAccessors() {
+    int marko = graph.indexOf( "1" );
+    assertEquals( 3, graph.getOutDegree( marko ) );
+    assertEquals( 0, graph.getInDegree( marko ) );
+    for ( int e = graph.getOutStart( marko ); e < graph.getOutEnd( marko ); e++ ) {
+      assertEquals( marko, graph.getSource( e ) );
+    }
+    int lop = graph.indexOf( "3" );
+    for ( int slot = graph.getInStart( lop ); slot < graph.getInEnd( lop ); slot++ ) {
+      assertEquals( lop, graph.getTarget( graph.getInEdge( slot ) ) );
+    }
+    assertEquals( -1, graph.indexOfLabel( "unknown" ) );
+  }
+
+  @Test
+  public void testEdges() {
+    Edge edge = graph.getEdge( "7" );
+    assertNotNull( edge );
+    assertEquals( "knows", edge.getLabel() );
+    assertEquals( "1", edge.getVertex( Direction.OUT ).getId() );
+    assertEquals( "2", edge.getVertex( Direction.IN ).getId() );
+    assertEquals( Float.valueOf( 0.5f ), edge.getProperty( "weight" ) );
+    assertEquals( 0.5, graph.getEdgeDouble( ( (CsrEdge) edge ).getIndex(), "weight", 0.0 ), 1e-6 );
+    assertNull( graph.getEdge( "42" ) );
+    assertEquals( 2, count( graph.getEdges( "weight", Float.valueOf( 0.4f ) ) ) );
+  }
+
+  @Test
+  public void testPropertyQueries() {
+    assertEquals( set( "3", "5" ), ids( graph.getVertices( "lang", "java" ) ) );
+    assertEquals( 0, count( graph.getVertices( "missing", "java" ) ) );
+    assertEquals( 1, count( graph.query().has( "name", "josh" ).vertices() ) );
+  }
+
+  @Test
+  public void testBuilderColumnsKeepTypes() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int a = builder.addVertex( "a" );
+    int b = builder.addVertex( "b" );
+    builder.setVertexProperty( a, "x", 1 );
+    builder.setVertexProperty( b, "x", 2L );
+    builder.setVertexProperty( a, "y", 1.5 );
+    int e = builder.addEdge( null, b, a, "to" );
+    builder.setEdgeProperty( e, "w", 3 );
+    CsrGraph built = builder.build();
+
+    assertEquals( Integer.valueOf( 1 ), built.getVertex( "a" ).getProperty( "x" ) );
+    assertEquals( Long.valueOf( 2L ), built.getVertex( "b" ).getProperty( "x" ) );
+    assertEquals( Double.valueOf( 1.5 ), built.getVertex( "a" ).getProperty( "y" ) );
+    assertNull( built.getVertex( "b" ).getProperty( "y" ) );
+    Edge edge = built.getEdges().iterator().next();
+    assertEquals( Integer.valueOf( 0 ), edge.getId() );
+    assertEquals( Integer.valueOf( 3 ), edge.getProperty( "w" ) );
+    assertEquals( edge, built.getEdge( 0 ) );
+  }
+
+  @Test
+  public void testBuilderDictionaryEncodesStrings() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < 4; i++ ) {
+      int v = builder.addVertex( "v" + i );
+      builder.setVertexProperty( v, "country", new String( i % 2 == 0 ? "NL" : "US" ) );
+      builder.setVertexProperty( v, "mixed", i < 2 ? (Object) ( "s" + i ) : (Object) Integer.valueOf( i ) );
+    }
+    CsrGraph built = builder.build();
+
+    assertEquals( "NL", built.getVertex( "v0" ).getProperty( "country" ) );
+    assertEquals( "US", built.getVertex( "v1" ).getProperty( "country" ) );
+    assertSame( built.getVertex( "v0" ).getProperty( "country" ), built.getVertex( "v2" ).getProperty( "country" ) );
+    assertEquals( 2, count( built.getVertices( "country", "US" ) ) );
+    // a string column widens when other types show up
+    assertEquals( "s1", built.getVertex( "v1" ).getProperty( "mixed" ) );
+    assertEquals( Integer.valueOf( 3 ), built.getVertex( "v3" ).getProperty( "mixed" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testBuilderDuplicateVertex() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    builder.addVertex( "a" );
+    builder.addVertex( "a" );
+  }
+
+  @Test
+  public void testBuilderDuplicateVertexKeepsIndex() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int a = builder.addVertex( "a" );
+    int b = builder.addVertex( "b" );
+    try {
+      builder.addVertex( "a" );
+      fail( "duplicate vertex id accepted" );
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+    assertEquals( a, builder.indexOf( "a" ) );
+    assertEquals( 2, builder.getVertexCount() );
+    builder.addEdge( null, a, b, "to" );
+    CsrGraph built = builder.build();
+    assertEquals( 1, built.getOutDegree( built.indexOf( "a" ) ) );
+  }
+
+  @Test
+  public void testBuilderGetOrAddVertex() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int a = builder.getOrAddVertex( 10L );
+    int b = builder.getOrAddVertex( 20L );
+    assertEquals( a, builder.getOrAddVertex( 10L ) );
+    builder.addEdge( null, a, b, "to" );
+    builder.addEdge( null, builder.getOrAddVertex( 20L ), builder.getOrAddVertex( 30L ), "to" );
+    CsrGraph built = builder.build();
+
+    assertEquals( 3, built.getVertexCount() );
+    assertEquals( 2, built.getEdgeCount() );
+    assertEquals( 1, built.getOutDegree( built.indexOf( 20L ) ) );
+    assertEquals( 1, built.getInDegree( built.indexOf( 30L ) ) );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testAddVertexIsUnsupported() {
+    graph.addVertex( null );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testSetPropertyIsUnsupported() {
+    graph.getVertex( "1" ).setProperty( "name", "bob" );
+  }
+
+  @Test
+  public void testGraphSONRoundTrip() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    GraphSONWriter.outputGraph( graph, baos );
+    Graph copy = new TinkerGraph();
+    GraphSONReader.inputGraph( copy, new ByteArrayInputStream( baos.toByteArray() ) );
+    assertEquals( 6, count( copy.getVertices() ) );
+    assertEquals( 6, count( copy.getEdges() ) );
+    assertEquals( "marko", copy.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( 2, count( copy.getVertex( "1" ).getEdges( Direction.OUT, "knows" ) ) );
+    assertTrue( graph.toString().contains( "vertices:6" ) );
+  }
+
+  protected int count( Iterable<?> iterable ) {
+    int count = 0;
+    for ( @SuppressWarnings( "unused" )
+    Object o : iterable ) {
+      count++;
+    }
+    return count;
+  }
+
+  protected Set<Object> ids( Iterable<Vertex> vertices ) {
+    Set<Object> ids = new HashSet<Object>();
+    for ( Vertex vertex : vertices ) {
+      ids.add( vertex.getId() );
+    }
+    return ids;
+  }
+
+  protected Set<Object> set( Object... values ) {
+    Set<Object> set = new HashSet<Object>();
+    for ( Object value : values ) {
+      set.add( value );
+    }
+    return set;
+  }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class GraphChangeApplierTest {
+
+  private Graph graph;
+  private GraphChangeApplier applier;
+
+  @Before
+  public void setUp() {
+    graph = TinkerGraphFactory.createTinkerGraph();
+    applier = new GraphChangeApplier( graph );
+  }
+
+  private static Map<String, Object> properties( String key, Object value ) {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    properties.put( key, value );
+    return properties;
+  }
+
+  @Test
+  public void testVertexUpsertAndDelete() {
+    assertEquals( GraphChangeApplier.STATUS_UPDATED, applier.applyVertex( GraphChangeApplier.OP_UPDATE, "1",
+        properties( "age", 30 ) ) );
+    assertEquals( Integer.valueOf( 30 ), graph.getVertex( "1" ).getProperty( "age" ) );
+    assertEquals( "marko", graph.getVertex( "1" ).getProperty( "name" ) );
+
+    assertEquals( GraphChangeApplier.STATUS_UPDATED, applier.applyVertex( GraphChangeApplier.OP_UPDATE, "1",
+        properties( "age", null ) ) );
+    assertNull( graph.getVertex( "1" ).getProperty( "age" ) );
+
+    assertEquals( GraphChangeApplier.STATUS_INSERTED, applier.applyVertex( GraphChangeApplier.OP_INSERT, "7",
+        properties( "name", "ann" ) ) );
+    assertEquals( "ann", graph.getVertex( "7" ).getProperty( "name" ) );
+
+    assertEquals( GraphChangeApplier.STATUS_DELETED, applier.applyVertex( GraphChangeApplier.OP_DELETE, "4", null ) );
+    assertNull( graph.getVertex( "4" ) );
+    // josh's edges went with him
+    assertNull( graph.getEdge( "8" ) );
+    assertEquals( GraphChangeApplier.STATUS_NOT_FOUND, applier.applyVertex( GraphChangeApplier.OP_DELETE, "4", null ) );
+
+    assertEquals( 1, applier.getInserted() );
+    assertEquals( 2, applier.getUpdated() );
+    assertEquals( 1, applier.getDeleted() );
+    assertEquals( 1, applier.getNotFound() );
+  }
+
+  @Test
+  public void testEdgeChangesByEndpoints() {
+    // marko -knows-> vadas exists as edge 7
+    assertEquals( GraphChangeApplier.STATUS_UPDATED, applier.applyEdge( GraphChangeApplier.OP_UPDATE, null, "1",
+        "2", "knows", properties( "weight", 0.1f ) ) );
+    assertEquals( Float.valueOf( 0.1f ), graph.getEdge( "7" ).getProperty( "weight" ) );
+
+    assertEquals( GraphChangeApplier.STATUS_INSERTED, applier.applyEdge( GraphChangeApplier.OP_INSERT, null, "2",
+        "9", "knows", null ) );
+    Vertex created = graph.getVertex( "9" );
+    assertEquals( "2", created.getEdges( Direction.IN, "knows" ).iterator().next().getVertex( Direction.OUT )
+        .getId() );
+
+    assertEquals( GraphChangeApplier.STATUS_DELETED, applier.applyEdge( GraphChangeApplier.OP_DELETE, "7", null,
+        null, null, null ) );
+    assertNull( graph.getEdge( "7" ) );
+    assertEquals( GraphChangeApplier.STATUS_NOT_FOUND, applier.applyEdge( GraphChangeApplier.OP_DELETE, null, "1",
+        "2", "knows", null ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUnknownOperation() {
+    applier.applyVertex( 42, "1", null );
+  }
+}
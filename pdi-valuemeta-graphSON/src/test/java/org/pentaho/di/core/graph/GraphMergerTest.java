@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.algorithms.GraphPartitioner;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class GraphMergerTest {
+
+  private Graph person( String id, String name, int age ) {
+    Graph g = new TinkerGraph();
+    Vertex v = g.addVertex( id );
+    v.setProperty( "name", name );
+    v.setProperty( "age", age );
+    return g;
+  }
+
+  @Test
+  public void testPartitionsMergeBackIntoTheOriginal() {
+    Graph original = TinkerGraphFactory.createTinkerGraph();
+    CsrGraph csr = CsrGraph.freeze( original );
+    GraphPartitioner.Subgraph[] subgraphs = GraphPartitioner.split( csr, GraphPartitioner.hash( csr, 3 ), 3, null );
+
+    GraphMerger merger = new GraphMerger( new TinkerGraph(), null, PropertyConflictPolicy.FAIL, 6 );
+    for ( GraphPartitioner.Subgraph subgraph : subgraphs ) {
+      merger.merge( subgraph.getGraph() );
+    }
+    Graph merged = merger.getTarget();
+    assertEquals( 6, merger.getVertexCount() );
+    assertEquals( 6, GraphMerger.countVertices( merged ) );
+    int edges = 0;
+    for ( Edge edge : original.getEdges() ) {
+      Edge copy = merged.getEdge( edge.getId() );
+      assertNotNull( copy );
+      assertEquals( edge.getLabel(), copy.getLabel() );
+      assertEquals( edge.getVertex( Direction.OUT ).getId(), copy.getVertex( Direction.OUT ).getId() );
+      assertEquals( (Object) edge.getProperty( "weight" ), copy.getProperty( "weight" ) );
+      edges++;
+    }
+    int mergedEdges = 0;
+    for ( Edge edge : merged.getEdges() ) {
+      assertNotNull( edge );
+      mergedEdges++;
+    }
+    assertEquals( edges, mergedEdges );
+    assertEquals( "marko", merged.getVertex( "1" ).getProperty( "name" ) );
+  }
+
+  @Test
+  public void testConflictPolicies() {
+    GraphMerger first = new GraphMerger( new TinkerGraph(), null, PropertyConflictPolicy.KEEP_FIRST, 1 );
+    first.merge( person( "1", "marko", 29 ) );
+    first.merge( person( "1", "marko", 30 ) );
+    assertEquals( 1, first.getVertexCount() );
+    assertEquals( 1, first.getMergedVertices() );
+    assertEquals( Integer.valueOf( 29 ), first.getTarget().getVertex( "1" ).getProperty( "age" ) );
+
+    GraphMerger last = new GraphMerger( new TinkerGraph(), null, PropertyConflictPolicy.KEEP_LAST, 1 );
+    last.merge( person( "1", "marko", 29 ) );
+    last.merge( person( "1", "marko", 30 ) );
+    assertEquals( Integer.valueOf( 30 ), last.getTarget().getVertex( "1" ).getProperty( "age" ) );
+
+    GraphMerger strict = new GraphMerger( new TinkerGraph(), null, PropertyConflictPolicy.FAIL, 1 );
+    strict.merge( person( "1", "marko", 29 ) );
+    strict.merge( person( "1", "marko", 29 ) );
+    try {
+      strict.merge( person( "1", "marko", 30 ) );
+      fail( "conflicting ages should not merge" );
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMatchOnKeyProperty() {
+    Graph a = person( "1", "marko", 29 );
+    Graph b = person( "100", "marko", 29 );
+    Vertex josh = b.addVertex( "1" );
+    josh.setProperty( "name", "josh" );
+    b.addEdge( "e", b.getVertex( "100" ), josh, "knows" );
+
+    GraphMerger merger = new GraphMerger( new TinkerGraph(), "name", PropertyConflictPolicy.FAIL, 3 );
+    merger.merge( a );
+    merger.merge( b );
+    Graph merged = merger.getTarget();
+    assertEquals( 2, merger.getVertexCount() );
+    Vertex marko = merged.getVertex( "1" );
+    assertEquals( "marko", marko.getProperty( "name" ) );
+    // josh could not keep his id, but is linked to marko all the same
+    Edge knows = merged.getEdge( "e" );
+    assertEquals( marko, knows.getVertex( Direction.OUT ) );
+    assertEquals( "josh", knows.getVertex( Direction.IN ).getProperty( "name" ) );
+  }
+
+  @Test
+  public void testGhostsGiveWayToTheOwningPartition() {
+    Graph original = TinkerGraphFactory.createTinkerGraph();
+    CsrGraph csr = CsrGraph.freeze( original );
+    GraphPartitioner.Subgraph[] subgraphs =
+        GraphPartitioner.split( csr, GraphPartitioner.hash( csr, 3 ), 3, "_ghostOf" );
+
+    GraphMerger merger = new GraphMerger( new TinkerGraph(), null, "_ghostOf", PropertyConflictPolicy.FAIL, 6 );
+    for ( GraphPartitioner.Subgraph subgraph : subgraphs ) {
+      merger.merge( subgraph.getGraph() );
+    }
+    assertEquals( 6, merger.getVertexCount() );
+    for ( Vertex vertex : merger.getTarget().getVertices() ) {
+      assertNull( vertex.getProperty( "_ghostOf" ) );
+      assertEquals( original.getVertex( vertex.getId() ).getPropertyKeys(), vertex.getPropertyKeys() );
+    }
+
+    Graph ghosts = person( "1", "marko", 28 );
+    ghosts.getVertex( "1" ).setProperty( "_ghostOf", 1 );
+    GraphMerger ownerWins = new GraphMerger( new TinkerGraph(), null, "_ghostOf", PropertyConflictPolicy.FAIL, 1 );
+    ownerWins.merge( ghosts );
+    ownerWins.merge( person( "1", "marko", 29 ) );
+    ownerWins.merge( ghosts );
+    Vertex marko = ownerWins.getTarget().getVertex( "1" );
+    assertEquals( Integer.valueOf( 29 ), marko.getProperty( "age" ) );
+    assertNull( marko.getProperty( "_ghostOf" ) );
+  }
+}
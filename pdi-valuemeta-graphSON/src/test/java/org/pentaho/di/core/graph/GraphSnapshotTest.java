@@ -0,0 +1,148 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONWriter;
+
+/**
+ * Runs the CsrGraph tests against a snapshot of the same graph, mapped back from disk.
+ */
+public class GraphSnapshotTest extends CsrGraphTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private CsrGraph original;
+  private File directory;
+
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    original = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    directory = new File( folder.getRoot(), "snapshot" );
+    assertFalse( GraphSnapshot.isSnapshot( directory ) );
+    GraphSnapshot.write( original, directory );
+    assertTrue( GraphSnapshot.isSnapshot( directory ) );
+    graph = GraphSnapshot.open( directory );
+  }
+
+  @Test
+  public void testSameAsOriginal() {
+    assertTrue( graph instanceof MappedCsrGraph );
+    assertEquals( original.getVertexCount(), graph.getVertexCount() );
+    assertEquals( original.getEdgeCount(), graph.getEdgeCount() );
+    for ( int v = 0; v < original.getVertexCount(); v++ ) {
+      assertEquals( original.getVertexId( v ), graph.getVertexId( v ) );
+      assertEquals( original.getOutStart( v ), graph.getOutStart( v ) );
+      assertEquals( original.getInDegree( v ), graph.getInDegree( v ) );
+      for ( String key : original.getVertexPropertyKeys() ) {
+        assertEquals( original.getVertexProperty( v, key ), graph.getVertexProperty( v, key ) );
+      }
+    }
+    for ( int e = 0; e < original.getEdgeCount(); e++ ) {
+      assertEquals( original.getEdgeId( e ), graph.getEdgeId( e ) );
+      assertEquals( original.getSource( e ), graph.getSource( e ) );
+      assertEquals( original.getTarget( e ), graph.getTarget( e ) );
+      assertEquals( original.getLabel( original.getLabelIndex( e ) ), graph.getLabel( graph.getLabelIndex( e ) ) );
+      assertEquals( original.getEdgeProperty( e, "weight" ), graph.getEdgeProperty( e, "weight" ) );
+    }
+    for ( int slot = 0; slot < original.getEdgeCount(); slot++ ) {
+      assertEquals( original.getInEdge( slot ), graph.getInEdge( slot ) );
+    }
+  }
+
+  @Test
+  public void testEmptyGraph() throws Exception {
+    File empty = new File( folder.getRoot(), "empty" );
+    GraphSnapshot.write( new CsrGraphBuilder().build(), empty );
+    CsrGraph mapped = GraphSnapshot.open( empty );
+    assertEquals( 0, mapped.getVertexCount() );
+    assertEquals( 0, mapped.getEdgeCount() );
+    assertEquals( -1, mapped.indexOf( "1" ) );
+  }
+
+  @Test
+  public void testRewriteReplacesSnapshot() throws Exception {
+    CsrGraph empty = new CsrGraphBuilder().build();
+    GraphSnapshot.write( empty, directory );
+    // the graph mapped before keeps reading the files it mapped
+    assertEquals( original.getVertexCount(), graph.getVertexCount() );
+    assertEquals( original.getVertexId( 0 ), graph.getVertexId( 0 ) );
+    assertEquals( 0, GraphSnapshot.open( directory ).getVertexCount() );
+    assertEquals( Arrays.asList( "snapshot" ), Arrays.asList( folder.getRoot().list() ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testRefusesToOverwriteOtherDirectories() throws Exception {
+    File other = folder.newFolder( "other" );
+    new File( other, "keep.txt" ).createNewFile();
+    GraphSnapshot.write( original, other );
+  }
+
+  @Test
+  public void testValueMetaWritesReference() throws Exception {
+    ValueMetaGraph valueMeta = new ValueMetaGraph( "graph" );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    valueMeta.writeData( new DataOutputStream( bytes ), graph );
+    // only the directory is written, not the graph
+    assertTrue( bytes.size() < 2 + 2 + directory.getAbsolutePath().length() * 3 );
+
+    Object read = valueMeta.readData( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    assertTrue( read instanceof MappedCsrGraph );
+    assertEquals( directory.getAbsoluteFile(), ( (MappedCsrGraph) read ).getDirectory().getAbsoluteFile() );
+    assertEquals( 6, ( (MappedCsrGraph) read ).getEdgeCount() );
+  }
+
+  @Test
+  public void testValueMetaStillReadsGraphSON() throws Exception {
+    ValueMetaGraph valueMeta = new ValueMetaGraph( "graph" );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    // the layout of values written before dictionary encoding: the null flag followed by GraphSON
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeBoolean( false );
+    GraphSONWriter.outputGraph( original, out );
+    Object read = valueMeta.readData( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    assertEquals( 6, count( ( (Graph) read ).getVertices() ) );
+  }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class GraphStatisticsTest {
+
+  @Test
+  public void testCounts() {
+    GraphStatistics statistics = GraphStatistics.compute( TinkerGraphFactory.createTinkerGraph() );
+    assertEquals( 6, statistics.getVertexCount() );
+    assertEquals( 6, statistics.getEdgeCount() );
+    assertEquals( Long.valueOf( 2 ), statistics.getLabelCounts().get( "knows" ) );
+    assertEquals( Long.valueOf( 4 ), statistics.getLabelCounts().get( "created" ) );
+    // marko has 3 edges, josh and lop 3, vadas, ripple and peter 1
+    assertEquals( 1, statistics.getMinDegree() );
+    assertEquals( 3, statistics.getMaxDegree() );
+    assertEquals( 2.0, statistics.getMeanDegree(), 0.0 );
+    long[] histogram = statistics.getDegreeHistogram();
+    assertEquals( 0, histogram[0] );
+    assertEquals( 3, histogram[1] );
+    assertEquals( 3, histogram[2] );
+  }
+
+  @Test
+  public void testCsrGraphMatchesTinkerGraph() {
+    Graph graph = TinkerGraphFactory.createTinkerGraph();
+    GraphStatistics tinker = GraphStatistics.compute( graph );
+    GraphStatistics csr = GraphStatistics.compute( CsrGraph.freeze( graph ) );
+    assertEquals( tinker.getVertexCount(), csr.getVertexCount() );
+    assertEquals( tinker.getEdgeCount(), csr.getEdgeCount() );
+    assertEquals( tinker.getLabelCounts(), csr.getLabelCounts() );
+    assertArrayEquals( tinker.getDegreeHistogram(), csr.getDegreeHistogram() );
+    assertEquals( tinker.getMinDegree(), csr.getMinDegree() );
+    assertEquals( tinker.getMaxDegree(), csr.getMaxDegree() );
+  }
+
+  @Test
+  public void testCacheFollowsAddedVertices() {
+    Graph graph = TinkerGraphFactory.createTinkerGraph();
+    GraphStatistics statistics = GraphStatistics.of( graph );
+    assertSame( statistics, GraphStatistics.of( graph ) );
+
+    graph.addVertex( null );
+    GraphStatistics.vertexAdded( graph );
+    assertEquals( 7, statistics.getVertexCount() );
+    assertEquals( 0, statistics.getMinDegree() );
+    assertEquals( 1, statistics.getDegreeHistogram()[0] );
+
+    GraphStatistics.invalidate( graph );
+    GraphStatistics recomputed = GraphStatistics.of( graph );
+    assertNotSame( statistics, recomputed );
+    assertEquals( 7, recomputed.getVertexCount() );
+  }
+
+  @Test
+  public void testEmptyGraph() {
+    GraphStatistics statistics = GraphStatistics.compute( new TinkerGraph() );
+    assertEquals( 0, statistics.getVertexCount() );
+    assertEquals( 0.0, statistics.getMeanDegree(), 0.0 );
+    assertEquals( 0, GraphStatistics.bucketOf( 0 ) );
+    assertEquals( 3, GraphStatistics.bucketOf( 7 ) );
+    assertEquals( 4, GraphStatistics.bucketStart( 3 ) );
+  }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+public class SpillGraphTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private SpillGraph graph;
+
+  @Before
+  public void setUp() throws Exception {
+    // tiny cache and pages, so nearly every access goes through the spill file and records cross page boundaries
+    graph = new SpillGraph( folder.getRoot(), 2, 2, 64 );
+  }
+
+  @After
+  public void tearDown() {
+    graph.shutdown();
+  }
+
+  @Test
+  public void testCopyOfTinkerGraph() {
+    Graph tinker = TinkerGraphFactory.createTinkerGraph();
+    GraphMerger merger = new GraphMerger( graph, null, PropertyConflictPolicy.FAIL, 6 );
+    merger.merge( tinker );
+
+    assertEquals( 6, graph.getVertexCount() );
+    assertEquals( 6, graph.getEdgeCount() );
+    assertTrue( graph.getSpilledRecords() > 0 );
+    for ( Vertex vertex : tinker.getVertices() ) {
+      Vertex copy = graph.getVertex( vertex.getId() );
+      assertTrue( ElementHelper.haveEqualProperties( vertex, copy ) );
+      assertEquals( ids( vertex.getVertices( Direction.OUT ) ), ids( copy.getVertices( Direction.OUT ) ) );
+      assertEquals( ids( vertex.getVertices( Direction.IN ) ), ids( copy.getVertices( Direction.IN ) ) );
+    }
+    for ( Edge edge : tinker.getEdges() ) {
+      Edge copy = graph.getEdge( edge.getId() );
+      assertEquals( edge.getLabel(), copy.getLabel() );
+      assertEquals( edge.getVertex( Direction.OUT ).getId(), copy.getVertex( Direction.OUT ).getId() );
+      assertEquals( edge.getVertex( Direction.IN ).getId(), copy.getVertex( Direction.IN ).getId() );
+      assertEquals( edge.<Object> getProperty( "weight" ), copy.<Object> getProperty( "weight" ) );
+    }
+    assertEquals( ids( tinker.getVertex( "1" ).getVertices( Direction.OUT, "knows" ) ), ids( graph.getVertex( 1 )
+        .getVertices( Direction.OUT, "knows" ) ) );
+  }
+
+  @Test
+  public void testChangesSurviveEviction() {
+    Vertex a = graph.addVertex( null );
+    Vertex b = graph.addVertex( null );
+    a.setProperty( "name", "a" );
+    Edge edge = a.addEdge( "link", b );
+    for ( int i = 0; i < 100; i++ ) {
+      graph.addVertex( "filler" + i ).setProperty( "i", i );
+    }
+    a.setProperty( "name", "changed" );
+    edge.setProperty( "weight", 0.5 );
+    for ( int i = 0; i < 100; i++ ) {
+      graph.getVertex( "filler" + i ).removeProperty( "i" );
+    }
+    assertEquals( "changed", a.getProperty( "name" ) );
+    assertEquals( Double.valueOf( 0.5 ), edge.getProperty( "weight" ) );
+    assertEquals( b, edge.getVertex( Direction.IN ) );
+    assertNull( graph.getVertex( "filler7" ).getProperty( "i" ) );
+    assertEquals( 102, count( graph.getVertices() ) );
+  }
+
+  @Test
+  public void testRemove() {
+    Vertex a = graph.addVertex( "a" );
+    Vertex b = graph.addVertex( "b" );
+    Vertex c = graph.addVertex( "c" );
+    a.addEdge( "link", b );
+    b.addEdge( "link", c );
+    c.addEdge( "self", c );
+    graph.removeVertex( b );
+    assertNull( graph.getVertex( "b" ) );
+    assertEquals( 0, count( a.getEdges( Direction.BOTH ) ) );
+    assertEquals( 1, count( c.getEdges( Direction.OUT ) ) );
+    assertEquals( 1, graph.getEdgeCount() );
+    graph.removeVertex( c );
+    assertEquals( 0, graph.getEdgeCount() );
+    assertEquals( 1, count( graph.getVertices() ) );
+  }
+
+  @Test
+  public void testHubVertexEdgesAreAppended() {
+    Vertex hub = graph.addVertex( "hub" );
+    int edges = 3 * SpillGraph.CHUNK_ENTRIES;
+    for ( int i = 0; i < edges; i++ ) {
+      // every new leaf evicts the hub, which used to write all of its edges again
+      hub.addEdge( i % 2 == 0 ? "even" : "odd", graph.addVertex( "leaf" + i ) );
+    }
+    assertEquals( edges, count( hub.getEdges( Direction.OUT ) ) );
+    assertEquals( edges / 2, count( hub.getVertices( Direction.OUT, "odd" ) ) );
+    assertEquals( 0, count( hub.getEdges( Direction.OUT, "unknown" ) ) );
+    assertEquals( "hub", graph.getVertex( "leaf5" ).getVertices( Direction.IN ).iterator().next().getId() );
+    // linear in the number of edges, a few records and entries per edge
+    assertTrue( graph.getSpilledBytes() < edges * 200L );
+  }
+
+  @Test
+  public void testCompactionKeepsLiveElements() {
+    for ( int i = 0; i < 200; i++ ) {
+      Vertex vertex = graph.addVertex( "v" + i );
+      vertex.setProperty( "i", i );
+      if ( i > 0 ) {
+        graph.addEdge( "e" + i, graph.getVertex( "v" + ( i - 1 ) ), vertex, "next" );
+      }
+    }
+    long before = graph.getSpilledBytes();
+    for ( int i = 0; i < 200; i++ ) {
+      if ( i % 10 != 0 ) {
+        graph.removeVertex( graph.getVertex( "v" + i ) );
+      }
+    }
+    for ( int i = 0; i < 200; i += 20 ) {
+      graph.addEdge( null, graph.getVertex( "v" + i ), graph.getVertex( "v" + ( i + 10 ) ), "skip" );
+    }
+    assertTrue( graph.getCompactions() > 0 );
+    assertTrue( graph.getSpilledBytes() < before );
+    assertEquals( 20, graph.getVertexCount() );
+    assertEquals( 10, graph.getEdgeCount() );
+    for ( int i = 0; i < 200; i += 10 ) {
+      Vertex vertex = graph.getVertex( "v" + i );
+      assertEquals( Integer.valueOf( i ), vertex.getProperty( "i" ) );
+      assertEquals( 0, count( vertex.getEdges( Direction.BOTH, "next" ) ) );
+      assertEquals( i % 20 == 0 ? 1 : 0, count( vertex.getEdges( Direction.OUT, "skip" ) ) );
+      assertEquals( i % 20 == 0 ? 0 : 1, count( vertex.getEdges( Direction.IN, "skip" ) ) );
+    }
+    // the slots of the removed elements are reused
+    graph.addVertex( "new" ).addEdge( "link", graph.getVertex( "v0" ) );
+    assertEquals( 1, count( graph.getVertex( "v0" ).getEdges( Direction.IN ) ) );
+    assertNull( graph.getVertex( "v1" ) );
+    assertNull( graph.getEdge( "e1" ) );
+  }
+
+  @Test
+  public void testIterationWhileRemoving() {
+    for ( int i = 0; i < 20; i++ ) {
+      graph.addVertex( i );
+    }
+    int seen = 0;
+    for ( Vertex vertex : graph.getVertices() ) {
+      seen++;
+      graph.removeVertex( vertex );
+      Vertex next = graph.getVertex( Integer.parseInt( vertex.getId().toString() ) + 1 );
+      if ( next != null ) {
+        graph.removeVertex( next );
+      }
+    }
+    assertEquals( 10, seen );
+    assertEquals( 0, graph.getVertexCount() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testDuplicateId() {
+    graph.addVertex( "a" );
+    graph.addVertex( "a" );
+  }
+
+  private static Set<Object> ids( Iterable<Vertex> vertices ) {
+    Set<Object> ids = new HashSet<Object>();
+    for ( Vertex vertex : vertices ) {
+      ids.add( vertex.getId() );
+    }
+    return ids;
+  }
+
+  private static int count( Iterable<?> iterable ) {
+    int count = 0;
+    for ( @SuppressWarnings( "unused" ) Object item : iterable ) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class ConnectedComponentsTest {
+
+  @Test
+  public void testSingleComponent() {
+    ConnectedComponents connectedComponents =
+        new ConnectedComponents( CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() ) );
+    int[] components = connectedComponents.compute( null, 1 );
+    assertEquals( 1, connectedComponents.getComponentCount() );
+    for ( int component : components ) {
+      assertEquals( 0, component );
+    }
+  }
+
+  @Test
+  public void testEdgeDirectionIsIgnored() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < 6; i++ ) {
+      builder.addVertex( i );
+    }
+    // 0 <- 1 -> 2 and 3 <- 4, 5 isolated
+    builder.addEdge( null, 1, 0, "link" );
+    builder.addEdge( null, 1, 2, "link" );
+    builder.addEdge( null, 4, 3, "link" );
+    ConnectedComponents connectedComponents = new ConnectedComponents( builder.build() );
+    int[] components = connectedComponents.compute( null, 1 );
+    assertEquals( 3, connectedComponents.getComponentCount() );
+    assertEquals( 0, components[0] );
+    assertEquals( 0, components[1] );
+    assertEquals( 0, components[2] );
+    assertEquals( 3, components[3] );
+    assertEquals( 3, components[4] );
+    assertEquals( 5, components[5] );
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int vertices = 50000;
+    for ( int i = 0; i < vertices; i++ ) {
+      builder.addVertex( i );
+    }
+    // Sparse enough to leave many components of different sizes
+    Random random = new Random( 42 );
+    for ( int i = 0; i < vertices / 2; i++ ) {
+      builder.addEdge( null, random.nextInt( vertices ), random.nextInt( vertices ), "link" );
+    }
+    CsrGraph graph = builder.build();
+
+    ConnectedComponents sequential = new ConnectedComponents( graph );
+    int[] expected = sequential.compute( null, 1 );
+    assertTrue( sequential.getComponentCount() > 1 );
+
+    ExecutorService executor = VertexRanges.newExecutor( "ConnectedComponentsTest", 4 );
+    try {
+      ConnectedComponents parallel = new ConnectedComponents( graph );
+      int[] actual = parallel.compute( executor, 4 );
+      assertEquals( sequential.getComponentCount(), parallel.getComponentCount() );
+      for ( int v = 0; v < vertices; v++ ) {
+        assertEquals( expected[v], actual[v] );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class GraphPartitionerTest {
+
+  /**
+   * Builds a number of dense clusters joined in a ring by single edges, with the vertices of the clusters interleaved
+   * so that contiguous ranges of vertices cut straight through every cluster.
+   */
+  private CsrGraph clusters( int clusters, int size ) {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < clusters * size; i++ ) {
+      builder.addVertex( i );
+    }
+    for ( int c = 0; c < clusters; c++ ) {
+      for ( int a = 0; a < size; a++ ) {
+        for ( int b = a + 1; b < size; b++ ) {
+          builder.addEdge( null, a * clusters + c, b * clusters + c, "link" );
+        }
+      }
+      builder.addEdge( null, c, ( c + 1 ) % clusters, "bridge" );
+    }
+    return builder.build();
+  }
+
+  private void assertBalanced( int[] assignment, int partitions, int maxSize ) {
+    int[] sizes = new int[partitions];
+    for ( int p : assignment ) {
+      assertTrue( p >= 0 && p < partitions );
+      sizes[p]++;
+    }
+    for ( int size : sizes ) {
+      assertTrue( "partition of " + size + " vertices", size > 0 && size <= maxSize );
+    }
+  }
+
+  @Test
+  public void testAssignmentsAreBalanced() {
+    CsrGraph graph = clusters( 4, 10 );
+    assertBalanced( GraphPartitioner.range( graph, 4 ), 4, 12 );
+    assertBalanced( GraphPartitioner.labelPropagation( graph, 4, GraphPartitioner.DEFAULT_ITERATIONS,
+        GraphPartitioner.DEFAULT_IMBALANCE ), 4, 11 );
+    int[] hash = GraphPartitioner.hash( graph, 4 );
+    assertEquals( graph.getVertexCount(), hash.length );
+    for ( int p : hash ) {
+      assertTrue( p >= 0 && p < 4 );
+    }
+  }
+
+  @Test
+  public void testLabelPropagationCutsFewerEdges() {
+    CsrGraph graph = clusters( 4, 10 );
+    int rangeCut = GraphPartitioner.countCutEdges( graph, GraphPartitioner.range( graph, 4 ) );
+    int lpCut =
+        GraphPartitioner.countCutEdges( graph, GraphPartitioner.labelPropagation( graph, 4,
+            GraphPartitioner.DEFAULT_ITERATIONS, GraphPartitioner.DEFAULT_IMBALANCE ) );
+    assertTrue( "label propagation cut " + lpCut + " edges, ranges cut " + rangeCut, lpCut < rangeCut );
+  }
+
+  @Test
+  public void testSplitReplicatesCutEdges() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    int[] assignment = new int[graph.getVertexCount()];
+    // marko on his own, everybody else in the second partition
+    assignment[graph.indexOf( "1" )] = 0;
+    for ( int v = 0; v < assignment.length; v++ ) {
+      if ( v != graph.indexOf( "1" ) ) {
+        assignment[v] = 1;
+      }
+    }
+    GraphPartitioner.Subgraph[] subgraphs = GraphPartitioner.split( graph, assignment, 2, "_ghostOf" );
+    assertEquals( 2, subgraphs.length );
+    // marko's three edges are all cut
+    assertEquals( 3, GraphPartitioner.countCutEdges( graph, assignment ) );
+    assertEquals( 3, subgraphs[0].getCutEdges() );
+    assertEquals( 3, subgraphs[1].getCutEdges() );
+    assertEquals( 3, subgraphs[0].getGhosts() );
+    assertEquals( 1, subgraphs[1].getGhosts() );
+
+    int vertices = 0;
+    int edges = 0;
+    for ( GraphPartitioner.Subgraph subgraph : subgraphs ) {
+      for ( Vertex vertex : subgraph.getGraph().getVertices() ) {
+        if ( vertex.getProperty( "_ghostOf" ) == null ) {
+          vertices++;
+        }
+      }
+      for ( Edge edge : subgraph.getGraph().getEdges() ) {
+        assertTrue( edge.getLabel().length() > 0 );
+        edges++;
+      }
+    }
+    assertEquals( graph.getVertexCount(), vertices );
+    assertEquals( graph.getEdgeCount() + 3, edges );
+
+    Graph second = subgraphs[1].getGraph();
+    Vertex ghost = second.getVertex( "1" );
+    assertEquals( Integer.valueOf( 0 ), ghost.getProperty( "_ghostOf" ) );
+    assertEquals( "marko", ghost.getProperty( "name" ) );
+    assertNull( second.getVertex( "4" ).getProperty( "_ghostOf" ) );
+  }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class MultiSourceBfsTest {
+
+  @Test
+  public void testDirectionsAndLabels() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    int marko = graph.indexOf( "1" );
+
+    Map<String, Integer> out = search( graph, marko, 2, Direction.OUT );
+    // marko knows vadas and josh and created lop; josh created ripple
+    assertEquals( Integer.valueOf( 1 ), out.get( "2" ) );
+    assertEquals( Integer.valueOf( 1 ), out.get( "3" ) );
+    assertEquals( Integer.valueOf( 1 ), out.get( "4" ) );
+    assertEquals( Integer.valueOf( 2 ), out.get( "5" ) );
+    assertEquals( 4, out.size() );
+
+    assertTrue( search( graph, marko, 2, Direction.IN ).isEmpty() );
+
+    Map<String, Integer> both = search( graph, marko, 2, Direction.BOTH );
+    // peter reaches lop from the other side
+    assertEquals( Integer.valueOf( 2 ), both.get( "6" ) );
+    assertFalse( both.containsKey( "1" ) );
+
+    Map<String, Integer> knows = search( graph, marko, 2, Direction.OUT, "knows" );
+    assertEquals( 2, knows.size() );
+  }
+
+  @Test
+  public void testIncludeSourcesAndMissingSeeds() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    final int[] count = new int[2];
+    new MultiSourceBfs( graph, Direction.BOTH ).run( new int[] { graph.indexOf( "1" ), -1 }, 2, 0, true,
+        new MultiSourceBfs.Visitor() {
+          public void visit( int source, int vertex, int distance ) {
+            assertEquals( 0, distance );
+            count[source]++;
+          }
+        } );
+    assertEquals( 1, count[0] );
+    assertEquals( 0, count[1] );
+  }
+
+  @Test
+  public void testBatchMatchesSingleSourceSearches() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int vertices = 2000;
+    for ( int i = 0; i < vertices; i++ ) {
+      builder.addVertex( i );
+    }
+    Random random = new Random( 7 );
+    for ( int i = 0; i < vertices * 2; i++ ) {
+      builder.addEdge( null, random.nextInt( vertices ), random.nextInt( vertices ), "link" );
+    }
+    CsrGraph graph = builder.build();
+    MultiSourceBfs bfs = new MultiSourceBfs( graph, Direction.BOTH );
+
+    // Run twice to check the working arrays are cleared between runs
+    for ( int round = 0; round < 2; round++ ) {
+      int[] sources = new int[MultiSourceBfs.MAX_SOURCES];
+      for ( int i = 0; i < sources.length; i++ ) {
+        sources[i] = random.nextInt( vertices );
+      }
+      sources[1] = sources[0];
+      final int[][] distances = new int[sources.length][vertices];
+      for ( int[] d : distances ) {
+        Arrays.fill( d, -1 );
+      }
+      bfs.run( sources, sources.length, 3, true, new MultiSourceBfs.Visitor() {
+        public void visit( int source, int vertex, int distance ) {
+          assertEquals( -1, distances[source][vertex] );
+          distances[source][vertex] = distance;
+        }
+      } );
+      for ( int i = 0; i < sources.length; i++ ) {
+        assertTrue( Arrays.equals( bfs( graph, sources[i], 3 ), distances[i] ) );
+      }
+    }
+  }
+
+  private static Map<String, Integer> search( final CsrGraph graph, int source, int depth, Direction direction,
+      String... labels ) {
+    final Map<String, Integer> found = new HashMap<String, Integer>();
+    new MultiSourceBfs( graph, direction, labels ).run( new int[] { source }, 1, depth, false,
+        new MultiSourceBfs.Visitor() {
+          public void visit( int s, int vertex, int distance ) {
+            found.put( String.valueOf( graph.getVertexId( vertex ) ), Integer.valueOf( distance ) );
+          }
+        } );
+    return found;
+  }
+
+  /**
+   * Plain undirected breadth-first search to compare against
+   */
+  private static int[] bfs( CsrGraph graph, int source, int maxDepth ) {
+    int[] distance = new int[graph.getVertexCount()];
+    Arrays.fill( distance, -1 );
+    distance[source] = 0;
+    ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+    queue.add( source );
+    while ( !queue.isEmpty() ) {
+      int v = queue.poll();
+      if ( distance[v] == maxDepth ) {
+        continue;
+      }
+      for ( int e = graph.getOutStart( v ); e < graph.getOutEnd( v ); e++ ) {
+        visit( distance, queue, graph.getTarget( e ), distance[v] + 1 );
+      }
+      for ( int slot = graph.getInStart( v ); slot < graph.getInEnd( v ); slot++ ) {
+        visit( distance, queue, graph.getSource( graph.getInEdge( slot ) ), distance[v] + 1 );
+      }
+    }
+    return distance;
+  }
+
+  private static void visit( int[] distance, ArrayDeque<Integer> queue, int u, int d ) {
+    if ( distance[u] < 0 ) {
+      distance[u] = d;
+      queue.add( u );
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class PageRankTest {
+
+  @Test
+  public void testRanksSumToOne() {
+    PageRank pageRank = new PageRank( CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() ) );
+    double[] ranks = pageRank.compute( null, 1 );
+    assertEquals( 6, ranks.length );
+    assertEquals( 1.0, sum( ranks ), 1.0E-9 );
+    assertTrue( pageRank.isConverged() );
+  }
+
+  @Test
+  public void testCycleHasUniformRanks() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < 5; i++ ) {
+      builder.addVertex( i );
+    }
+    for ( int i = 0; i < 5; i++ ) {
+      builder.addEdge( null, i, ( i + 1 ) % 5, "next" );
+    }
+    double[] ranks = new PageRank( builder.build() ).compute( null, 1 );
+    for ( double rank : ranks ) {
+      assertEquals( 0.2, rank, 1.0E-9 );
+    }
+  }
+
+  @Test
+  public void testDanglingVertexMassIsRedistributed() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    builder.addVertex( "a" );
+    builder.addVertex( "b" );
+    builder.addEdge( null, 0, 1, "link" );
+    PageRank pageRank = new PageRank( builder.build() );
+    double[] ranks = pageRank.compute( null, 1 );
+    assertEquals( 1.0, sum( ranks ), 1.0E-9 );
+    assertTrue( ranks[1] > ranks[0] );
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    int vertices = 20000;
+    for ( int i = 0; i < vertices; i++ ) {
+      builder.addVertex( i );
+    }
+    Random random = new Random( 42 );
+    for ( int i = 0; i < vertices * 4; i++ ) {
+      builder.addEdge( null, random.nextInt( vertices ), random.nextInt( vertices ), "link" );
+    }
+    CsrGraph graph = builder.build();
+
+    double[] sequential = new PageRank( graph ).compute( null, 1 );
+    ExecutorService executor = VertexRanges.newExecutor( "PageRankTest", 4 );
+    try {
+      double[] parallel = new PageRank( graph ).compute( executor, 4 );
+      for ( int i = 0; i < vertices; i++ ) {
+        assertEquals( sequential[i], parallel[i], 1.0E-12 );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidDampingFactor() {
+    new PageRank( CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() ) ).setDampingFactor( 1.0 );
+  }
+
+  private static double sum( double[] values ) {
+    double sum = 0;
+    for ( double value : values ) {
+      sum += value;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class ShortestPathsTest {
+
+  @Test
+  public void testWeightedPath() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    ShortestPaths shortestPaths = new ShortestPaths( graph, Direction.OUT, "weight" );
+    int marko = graph.indexOf( "1" );
+    int ripple = graph.indexOf( "5" );
+    // marko -knows(1.0)-> josh -created(1.0)-> ripple
+    assertEquals( 2.0, shortestPaths.search( marko, ripple ), 1.0E-9 );
+    assertArrayEquals( new int[] { marko, graph.indexOf( "4" ), ripple }, shortestPaths.getPath( ripple ) );
+
+    // marko -created(0.4)-> lop beats marko -knows(1.0)-> josh -created(0.4)-> lop
+    int lop = graph.indexOf( "3" );
+    assertEquals( 0.4, shortestPaths.search( marko, lop ), 1.0E-6 );
+    assertEquals( 2, shortestPaths.getPath( lop ).length );
+
+    assertEquals( 0.0, shortestPaths.search( marko, marko ), 0.0 );
+    assertArrayEquals( new int[] { marko }, shortestPaths.getPath( marko ) );
+  }
+
+  @Test
+  public void testUnreachableTarget() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    ShortestPaths shortestPaths = new ShortestPaths( graph, Direction.OUT, null );
+    int lop = graph.indexOf( "3" );
+    int marko = graph.indexOf( "1" );
+    assertEquals( Double.POSITIVE_INFINITY, shortestPaths.search( lop, marko ), 0.0 );
+    assertNull( shortestPaths.getPath( marko ) );
+
+    shortestPaths = new ShortestPaths( graph, Direction.BOTH, null );
+    assertEquals( 1.0, shortestPaths.search( lop, marko ), 0.0 );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testNegativeWeight() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    builder.addVertex( "a" );
+    builder.addVertex( "b" );
+    int e = builder.addEdge( null, 0, 1, "road" );
+    builder.setEdgeProperty( e, "length", -1.0 );
+    new ShortestPaths( builder.build(), Direction.OUT, "length" );
+  }
+
+  @Test
+  public void testAStarOnGridMatchesDijkstra() {
+    int side = 40;
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int y = 0; y < side; y++ ) {
+      for ( int x = 0; x < side; x++ ) {
+        int v = builder.addVertex( x + "," + y );
+        builder.setVertexProperty( v, "x", (double) x );
+        builder.setVertexProperty( v, "y", (double) y );
+      }
+    }
+    Random random = new Random( 3 );
+    for ( int y = 0; y < side; y++ ) {
+      for ( int x = 0; x < side; x++ ) {
+        int v = y * side + x;
+        if ( x + 1 < side ) {
+          int e = builder.addEdge( null, v, v + 1, "road" );
+          builder.setEdgeProperty( e, "length", 1.0 + random.nextDouble() );
+        }
+        if ( y + 1 < side ) {
+          int e = builder.addEdge( null, v, v + side, "road" );
+          builder.setEdgeProperty( e, "length", 1.0 + random.nextDouble() );
+        }
+      }
+    }
+    CsrGraph graph = builder.build();
+    ShortestPaths dijkstra = new ShortestPaths( graph, Direction.BOTH, "length" );
+    ShortestPaths aStar = new ShortestPaths( graph, Direction.BOTH, "length" );
+    // Every edge is at least 1 long, so the straight-line distance never overestimates
+    aStar.setHeuristic( "x", "y", 1.0 );
+
+    for ( int i = 0; i < 50; i++ ) {
+      int from = random.nextInt( side * side );
+      int to = random.nextInt( side * side );
+      assertEquals( dijkstra.search( from, to ), aStar.search( from, to ), 1.0E-9 );
+      assertTrue( aStar.getSettledCount() <= dijkstra.getSettledCount() );
+    }
+  }
+
+  @Test
+  public void testHeapOrder() {
+    IndexedMinHeap heap = new IndexedMinHeap( 100 );
+    Random random = new Random( 11 );
+    double[] priorities = new double[100];
+    for ( int i = 0; i < 100; i++ ) {
+      priorities[i] = random.nextDouble();
+      heap.insertOrDecrease( i, priorities[i] );
+    }
+    for ( int i = 0; i < 100; i += 3 ) {
+      priorities[i] /= 2;
+      heap.insertOrDecrease( i, priorities[i] );
+      // A higher priority is ignored
+      heap.insertOrDecrease( i, priorities[i] + 1 );
+    }
+    double last = -1;
+    while ( !heap.isEmpty() ) {
+      double priority = heap.peekPriority();
+      int item = heap.poll();
+      assertEquals( priorities[item], priority, 0.0 );
+      assertTrue( priority >= last );
+      last = priority;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.algorithms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+import org.pentaho.di.core.graph.CsrGraphBuilder;
+
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class TriangleCountTest {
+
+  @Test
+  public void testTinkerGraph() {
+    CsrGraph graph = CsrGraph.freeze( TinkerGraphFactory.createTinkerGraph() );
+    TriangleCount triangleCount = new TriangleCount( graph );
+    triangleCount.compute( null, 1 );
+    // marko, josh and lop form the only triangle
+    assertEquals( 1, triangleCount.getTriangleCount() );
+    assertEquals( 1, triangleCount.getTriangles( graph.indexOf( "1" ) ) );
+    assertEquals( 1, triangleCount.getTriangles( graph.indexOf( "4" ) ) );
+    assertEquals( 1, triangleCount.getTriangles( graph.indexOf( "3" ) ) );
+    assertEquals( 0, triangleCount.getTriangles( graph.indexOf( "6" ) ) );
+    // marko has three neighbors, one pair of which is joined
+    assertEquals( 3, triangleCount.getDegree( graph.indexOf( "1" ) ) );
+    assertEquals( 1.0 / 3.0, triangleCount.getClusteringCoefficient( graph.indexOf( "1" ) ), 1.0E-9 );
+    assertEquals( 0.0, triangleCount.getClusteringCoefficient( graph.indexOf( "2" ) ), 0.0 );
+  }
+
+  @Test
+  public void testParallelEdgesAndSelfLoopsAreIgnored() {
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < 4; i++ ) {
+      builder.addVertex( i );
+    }
+    // a complete graph on four vertices, with a few duplicates in both directions and a self loop
+    for ( int a = 0; a < 4; a++ ) {
+      for ( int b = a + 1; b < 4; b++ ) {
+        builder.addEdge( null, a, b, "link" );
+        builder.addEdge( null, b, a, "link" );
+      }
+    }
+    builder.addEdge( null, 0, 1, "other" );
+    builder.addEdge( null, 2, 2, "link" );
+    TriangleCount triangleCount = new TriangleCount( builder.build() );
+    triangleCount.compute( null, 1 );
+    assertEquals( 4, triangleCount.getTriangleCount() );
+    for ( int v = 0; v < 4; v++ ) {
+      assertEquals( 3, triangleCount.getTriangles( v ) );
+      assertEquals( 1.0, triangleCount.getClusteringCoefficient( v ), 0.0 );
+    }
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    int vertices = 3000;
+    CsrGraphBuilder builder = new CsrGraphBuilder();
+    for ( int i = 0; i < vertices; i++ ) {
+      builder.addVertex( i );
+    }
+    @SuppressWarnings( "unchecked" )
+    Set<Integer>[] adjacency = new Set[vertices];
+    for ( int i = 0; i < vertices; i++ ) {
+      adjacency[i] = new HashSet<Integer>();
+    }
+    Random random = new Random( 5 );
+    for ( int i = 0; i < vertices * 6; i++ ) {
+      // Skewed so a few hubs collect many edges
+      int a = (int) ( vertices * Math.pow( random.nextDouble(), 3 ) );
+      int b = random.nextInt( vertices );
+      builder.addEdge( null, a, b, "link" );
+      if ( a != b ) {
+        adjacency[a].add( b );
+        adjacency[b].add( a );
+      }
+    }
+    CsrGraph graph = builder.build();
+
+    long[] expected = new long[vertices];
+    for ( int v = 0; v < vertices; v++ ) {
+      for ( int u : adjacency[v] ) {
+        for ( int w : adjacency[u] ) {
+          if ( u < w && adjacency[v].contains( w ) ) {
+            expected[v]++;
+          }
+        }
+      }
+    }
+
+    ExecutorService executor = VertexRanges.newExecutor( "TriangleCountTest", 4 );
+    try {
+      TriangleCount triangleCount = new TriangleCount( graph );
+      triangleCount.compute( executor, 4 );
+      long total = 0;
+      for ( int v = 0; v < vertices; v++ ) {
+        assertEquals( expected[v], triangleCount.getTriangles( v ) );
+        assertEquals( adjacency[v].size(), triangleCount.getDegree( v ) );
+        total += expected[v];
+      }
+      assertEquals( total / 3, triangleCount.getTriangleCount() );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.PropertyDictionary;
+import org.pentaho.di.core.row.value.ValueMetaGraph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+
+public class DictionaryGraphCodecTest {
+
+  private Graph categories( int count ) {
+    Graph graph = new TinkerGraph();
+    for ( int i = 0; i < count; i++ ) {
+      Vertex vertex = graph.addVertex( "v" + i );
+      vertex.setProperty( "category", new String( "cat" + ( i % 3 ) ) );
+      vertex.setProperty( "name", "name" + i );
+    }
+    return graph;
+  }
+
+  private Graph roundTrip( Graph graph, int maxCardinality ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DictionaryGraphCodec.write( graph, new DataOutputStream( bytes ), maxCardinality );
+    Graph read = new TinkerGraph();
+    DictionaryGraphCodec.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ), read );
+    return read;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Graph graph = TinkerGraphFactory.createTinkerGraph();
+    graph.getVertex( "1" ).setProperty( "nicknames", Arrays.asList( "mark", "marco" ) );
+    Graph read = roundTrip( graph, PropertyDictionary.DEFAULT_MAX_CARDINALITY );
+
+    assertEquals( "marko", read.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( Integer.valueOf( 29 ), read.getVertex( "1" ).getProperty( "age" ) );
+    assertEquals( Arrays.asList( "mark", "marco" ), read.getVertex( "1" ).getProperty( "nicknames" ) );
+    Edge knows = read.getEdge( "7" );
+    assertEquals( "knows", knows.getLabel() );
+    assertEquals( Float.valueOf( 0.5f ), knows.getProperty( "weight" ) );
+    int edges = 0;
+    for ( Edge edge : read.getEdges() ) {
+      edges++;
+    }
+    assertEquals( 6, edges );
+  }
+
+  @Test
+  public void testRepeatedValuesAreShared() throws IOException {
+    Graph read = roundTrip( categories( 10 ), 4 );
+    assertEquals( "cat1", read.getVertex( "v1" ).getProperty( "category" ) );
+    assertSame( read.getVertex( "v1" ).getProperty( "category" ), read.getVertex( "v4" ).getProperty( "category" ) );
+    // name has more distinct values than the maximum cardinality, but all of them still arrive
+    for ( int i = 0; i < 10; i++ ) {
+      assertEquals( "name" + i, read.getVertex( "v" + i ).getProperty( "name" ) );
+    }
+  }
+
+  @Test
+  public void testEncodingIsSmaller() throws IOException {
+    Graph graph = categories( 1000 );
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    BinaryElementWriter writer = new BinaryElementWriter( plain );
+    GraphExporter.export( graph, writer );
+    writer.close();
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    DictionaryGraphCodec.write( graph, new DataOutputStream( encoded ) );
+    assertTrue( encoded.size() < plain.size() );
+  }
+
+  @Test
+  public void testPropertyDictionary() {
+    Graph graph = categories( 6 );
+    PropertyDictionary dictionary = new PropertyDictionary( 4 );
+    assertEquals( 3, dictionary.apply( graph ) );
+    assertSame( graph.getVertex( "v0" ).getProperty( "category" ), graph.getVertex( "v3" ).getProperty( "category" ) );
+    assertNotSame( graph.getVertex( "v0" ).getProperty( "name" ), dictionary.encode( "name", new String( "name0" ) ) );
+    assertTrue( dictionary.isHighCardinality( "name" ) );
+    assertFalse( dictionary.isHighCardinality( "category" ) );
+  }
+
+  @Test
+  public void testValueMetaRoundTrip() throws Exception {
+    ValueMetaGraph valueMeta = new ValueMetaGraph( "graph" );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    valueMeta.writeData( new DataOutputStream( bytes ), categories( 5 ) );
+    Graph read = (Graph) valueMeta.readData( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    assertEquals( "cat2", read.getVertex( "v2" ).getProperty( "category" ) );
+    assertEquals( "name4", read.getVertex( "v4" ).getProperty( "name" ) );
+  }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONWriter;
+
+public class GraphElementReaderTest {
+
+  private GraphElementReader graphSON( Graph graph, GraphSONMode mode ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GraphSONWriter.outputGraph( graph, out, mode );
+    return new GraphSONElementReader( new ByteArrayInputStream( out.toByteArray() ) );
+  }
+
+  @Test
+  public void testStreamGraphSON() throws IOException {
+    GraphElementReader reader = graphSON( TinkerGraphFactory.createTinkerGraph(), GraphSONMode.NORMAL );
+    int vertices = 0;
+    int edges = 0;
+    while ( reader.next() ) {
+      if ( reader.isVertex() ) {
+        vertices++;
+        if ( "1".equals( reader.getId() ) ) {
+          assertEquals( "marko", reader.getProperties().get( "name" ) );
+          assertEquals( Integer.valueOf( 29 ), reader.getProperties().get( "age" ) );
+        }
+      } else {
+        edges++;
+        if ( "7".equals( reader.getId() ) ) {
+          assertEquals( "1", reader.getOutId() );
+          assertEquals( "2", reader.getInId() );
+          assertEquals( "knows", reader.getLabel() );
+          assertEquals( 0.5, ( (Number) reader.getProperties().get( "weight" ) ).doubleValue(), 1.0E-6 );
+          assertFalse( reader.getProperties().containsKey( "_label" ) );
+        }
+      }
+    }
+    reader.close();
+    assertEquals( 6, vertices );
+    assertEquals( 6, edges );
+  }
+
+  @Test
+  public void testLoadExtendedGraphSON() throws IOException {
+    Graph original = TinkerGraphFactory.createTinkerGraph();
+    CsrGraph csr = GraphLoader.loadCsr( graphSON( original, GraphSONMode.EXTENDED ) );
+    assertEquals( 6, csr.getVertexCount() );
+    assertEquals( 6, csr.getEdgeCount() );
+    assertEquals( Integer.valueOf( 29 ), csr.getVertex( "1" ).getProperty( "age" ) );
+    assertEquals( Float.valueOf( 0.5f ), csr.getEdge( "7" ).getProperty( "weight" ) );
+
+    Graph tinker = new TinkerGraph();
+    GraphLoader.load( graphSON( original, GraphSONMode.NORMAL ), tinker );
+    assertEquals( "josh", tinker.getVertex( "4" ).getProperty( "name" ) );
+    assertEquals( "created", tinker.getEdge( "12" ).getLabel() );
+  }
+
+  @Test
+  public void testEdgeAndAdjacencyLists() throws IOException {
+    String edges = "# a comment\n1 2\n1,3 likes\n\n% another comment\n2\t3\n";
+    CsrGraph graph = GraphLoader.loadCsr( new EdgeListElementReader( new StringReader( edges ), false, "link" ) );
+    assertEquals( 3, graph.getVertexCount() );
+    assertEquals( 3, graph.getEdgeCount() );
+    assertEquals( 2, graph.getOutDegree( graph.indexOf( "1" ) ) );
+    assertTrue( graph.indexOfLabel( "likes" ) >= 0 );
+
+    String adjacency = "1 2 3\n2 3\n4\n";
+    GraphElementReader reader = new EdgeListElementReader( new StringReader( adjacency ), true, "link" );
+    graph = GraphLoader.loadCsr( reader );
+    assertEquals( 4, graph.getVertexCount() );
+    assertEquals( 3, graph.getEdgeCount() );
+    assertEquals( 0, graph.getOutDegree( graph.indexOf( "4" ) ) );
+    assertEquals( 2, graph.getInDegree( graph.indexOf( "3" ) ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testEdgeListNeedsTwoColumns() throws IOException {
+    GraphLoader.loadCsr( new EdgeListElementReader( new StringReader( "1 2\n3\n" ), false, "link" ) );
+  }
+}
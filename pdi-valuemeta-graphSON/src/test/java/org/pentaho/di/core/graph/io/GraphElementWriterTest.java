@@ -0,0 +1,120 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.pentaho.di.core.graph.CsrGraph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONReader;
+
+public class GraphElementWriterTest {
+
+  private Graph sample() {
+    Graph graph = TinkerGraphFactory.createTinkerGraph();
+    Vertex marko = graph.getVertex( "1" );
+    marko.setProperty( "nicknames", Arrays.asList( "mark", "marco" ) );
+    marko.setProperty( "since", Long.valueOf( 1234567890123L ) );
+    return graph;
+  }
+
+  private void assertSample( Graph graph ) {
+    assertEquals( "marko", graph.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( Integer.valueOf( 29 ), graph.getVertex( "1" ).getProperty( "age" ) );
+    assertEquals( Long.valueOf( 1234567890123L ), graph.getVertex( "1" ).getProperty( "since" ) );
+    assertEquals( Arrays.asList( "mark", "marco" ), graph.getVertex( "1" ).getProperty( "nicknames" ) );
+    Edge knows = graph.getEdge( "7" );
+    assertEquals( "knows", knows.getLabel() );
+    assertEquals( Float.valueOf( 0.5f ), knows.getProperty( "weight" ) );
+    int edges = 0;
+    for ( Edge edge : graph.getEdges() ) {
+      assertTrue( edge.getLabel().length() > 0 );
+      edges++;
+    }
+    assertEquals( 6, edges );
+  }
+
+  @Test
+  public void testExtendedGraphSONIsReadableByBlueprints() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GraphElementWriter writer = new GraphSONElementWriter( out, GraphSONMode.EXTENDED );
+    GraphExporter.export( sample(), writer );
+    writer.close();
+
+    Graph graph = new TinkerGraph();
+    GraphSONReader.inputGraph( graph, new ByteArrayInputStream( out.toByteArray() ) );
+    assertSample( graph );
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GraphElementWriter writer = new BinaryElementWriter( out );
+    // export a frozen copy to go through the array based path as well
+    GraphExporter.export( CsrGraph.freeze( sample() ), writer );
+    writer.close();
+
+    Graph graph = new TinkerGraph();
+    GraphLoader.load( new BinaryElementReader( new ByteArrayInputStream( out.toByteArray() ) ), graph );
+    assertSample( graph );
+  }
+
+  @Test
+  public void testEdgeListRoundTrip() throws IOException {
+    StringWriter out = new StringWriter();
+    GraphElementWriter writer = new EdgeListElementWriter( out );
+    GraphExporter.export( sample(), writer );
+    writer.close();
+
+    CsrGraph graph = GraphLoader.loadCsr( new EdgeListElementReader( new StringReader( out.toString() ), false, "x" ) );
+    assertEquals( 6, graph.getVertexCount() );
+    assertEquals( 6, graph.getEdgeCount() );
+    assertEquals( 3, graph.getOutDegree( graph.indexOf( "1" ) ) );
+    assertTrue( graph.indexOfLabel( "created" ) >= 0 );
+  }
+
+  @Test
+  public void testCountingOutputStream() throws IOException {
+    CountingOutputStream out = new CountingOutputStream( new ByteArrayOutputStream() );
+    out.write( 1 );
+    out.write( new byte[10], 2, 5 );
+    assertEquals( 6, out.getCount() );
+    out.close();
+  }
+}
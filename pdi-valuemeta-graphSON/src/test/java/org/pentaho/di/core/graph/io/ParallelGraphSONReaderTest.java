@@ -0,0 +1,153 @@
+/*******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2012 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.graph.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONReader;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONWriter;
+
+public class ParallelGraphSONReaderTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool( 2 );
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private byte[] graphSON( Graph graph, GraphSONMode mode ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GraphSONWriter.outputGraph( graph, out, mode );
+    return out.toByteArray();
+  }
+
+  private List<String> elements( GraphElementReader reader ) throws IOException {
+    List<String> elements = new ArrayList<String>();
+    try {
+      while ( reader.next() ) {
+        elements.add( reader.isVertex() + " " + reader.getId() + " " + reader.getOutId() + " " + reader.getInId()
+            + " " + reader.getLabel() + " " + reader.getProperties() );
+      }
+    } finally {
+      reader.close();
+    }
+    return elements;
+  }
+
+  private void assertSameElements( byte[] document ) throws IOException {
+    List<String> expected = elements( new GraphSONElementReader( new ByteArrayInputStream( document ) ) );
+    assertEquals( expected, elements( new ParallelGraphSONReader( new ByteArrayInputStream( document ), executor,
+        2, 16 ) ) );
+    assertEquals( expected, elements( new ParallelGraphSONReader( new ByteArrayInputStream( document ), null, 1,
+        16 ) ) );
+    assertEquals( expected, elements( new ParallelGraphSONReader( new ByteArrayInputStream( document ), executor,
+        2 ) ) );
+  }
+
+  @Test
+  public void testSameElementsAsSequentialReader() throws IOException {
+    Graph graph = TinkerGraphFactory.createTinkerGraph();
+    assertSameElements( graphSON( graph, GraphSONMode.NORMAL ) );
+    assertSameElements( graphSON( graph, GraphSONMode.EXTENDED ) );
+  }
+
+  @Test
+  public void testUnusualDocuments() throws IOException {
+    assertSameElements( ( "{ \"mode\" : \"NORMAL\", \"extra\" : { \"vertices\" : [ 1, [ 2 ] ] },\n"
+        + "  \"vertices\" : [ { \"_id\" : \"a\", \"_type\" : \"vertex\", \"name\" : \"x]}\\\"[{\" },\n"
+        + "    { \"_id\" : \"b\", \"_type\" : \"vertex\", \"tags\" : [ \"p\", \"q\" ] } ],\n"
+        + "  \"edges\" : [ { \"_id\" : \"e\", \"_type\" : \"edge\", \"_outV\" : \"a\", \"_inV\" : \"b\","
+        + " \"_label\" : \"knows\" } ] }" ).getBytes( "UTF-8" ) );
+    assertSameElements( "{ \"mode\" : \"NORMAL\", \"vertices\" : [ ], \"edges\" : [] }".getBytes( "UTF-8" ) );
+  }
+
+  @Test
+  public void testNullPropertiesAreSkipped() throws IOException {
+    byte[] document = "{ \"vertices\" : [ { \"_id\" : 1, \"_type\" : \"vertex\", \"name\" : null, \"x\" : \"a\" } ] }"
+        .getBytes( "UTF-8" );
+    Graph expected = new TinkerGraph();
+    GraphSONReader.inputGraph( expected, new ByteArrayInputStream( document ) );
+    Graph graph = new TinkerGraph();
+    GraphLoader.load( new ParallelGraphSONReader( new ByteArrayInputStream( document ), executor, 2, 16 ), graph );
+
+    assertEquals( expected.getVertex( "1" ).getPropertyKeys(), graph.getVertex( "1" ).getPropertyKeys() );
+    assertEquals( Collections.singleton( "x" ), graph.getVertex( "1" ).getPropertyKeys() );
+  }
+
+  @Test
+  public void testLoadGraph() throws IOException {
+    Graph original = TinkerGraphFactory.createTinkerGraph();
+    byte[] document = graphSON( original, GraphSONMode.EXTENDED );
+    Graph graph = new TinkerGraph();
+    GraphLoader.load( new ParallelGraphSONReader( new ByteArrayInputStream( document ), executor, 2, 64 ), graph );
+    assertEquals( 6, count( graph.getVertices() ) );
+    assertEquals( 6, count( graph.getEdges() ) );
+    assertEquals( "marko", graph.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( Integer.valueOf( 29 ), graph.getVertex( "1" ).getProperty( "age" ) );
+    assertEquals( "knows", graph.getEdge( "7" ).getLabel() );
+  }
+
+  @Test
+  public void testCloseBeforeEnd() throws IOException {
+    byte[] document = graphSON( TinkerGraphFactory.createTinkerGraph(), GraphSONMode.NORMAL );
+    GraphElementReader reader = new ParallelGraphSONReader( new ByteArrayInputStream( document ), executor, 2, 16 );
+    assertTrue( reader.next() );
+    assertTrue( reader.isVertex() );
+    reader.close();
+    assertFalse( executor.isShutdown() );
+  }
+
+  private int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object element : elements ) {
+      count++;
+    }
+    return count;
+  }
+}
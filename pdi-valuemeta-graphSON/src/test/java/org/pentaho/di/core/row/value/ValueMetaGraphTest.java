@@ -219,6 +219,27 @@ public class ValueMetaGraphTest {
     assertEquals( g, vmg.getGraph( g ) );
   }
 
+  @Test
+  public void testGetGraphBinaryStringStorage() throws KettleValueException {
+    ValueMetaGraph vmg = new ValueMetaGraph();
+    vmg.setType( ValueMetaInterface.TYPE_STRING );
+    vmg.setStorageType( ValueMetaInterface.STORAGE_TYPE_BINARY_STRING );
+    vmg.setStorageMetadata( new ValueMetaString( "graph" ) );
+    Graph g = vmg.getGraph( TINKER_GRAPH_STRING.getBytes() );
+    assertNotNull( g );
+    assertEquals( 6, getNumberOfVertices( g ) );
+  }
+
+  @Test
+  public void testGetGraphIndexedStorage() throws KettleValueException {
+    ValueMetaGraph vmg = new ValueMetaGraph();
+    vmg.setType( ValueMetaInterface.TYPE_STRING );
+    vmg.setStorageType( ValueMetaInterface.STORAGE_TYPE_INDEXED );
+    vmg.setIndex( new Object[] { EMPTY_GRAPH_STRING, TINKER_GRAPH_STRING } );
+    assertEquals( 6, getNumberOfVertices( vmg.getGraph( 1 ) ) );
+    assertEquals( 0, getNumberOfVertices( vmg.getGraph( 0 ) ) );
+  }
+
   @Test
   public void testConvertStringToGraphNullString() throws KettleValueException {
     ValueMetaGraph vmg = new ValueMetaGraph();